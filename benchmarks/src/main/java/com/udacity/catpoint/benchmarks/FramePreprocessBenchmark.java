@@ -0,0 +1,70 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.FramePreprocessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding a camera frame for AWS: the original full-frame, default-quality
+ * {@code ImageIO.write} against the {@link FramePreprocessor} path. Payload sizes are printed
+ * at setup; run with {@code -prof gc} to compare per-frame allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FramePreprocessBenchmark {
+
+    @Param({"1280x720", "1920x1080"})
+    public String resolution;
+
+    private BufferedImage frame;
+    private final FramePreprocessor preprocessor = new FramePreprocessor();
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int level = Math.min(255, Math.max(0, x * 255 / width + random.nextInt(48) - 24));
+                frame.setRGB(x, y, level << 16 | level << 8 | (y * 255 / height));
+            }
+        }
+        System.out.printf("%nfull frame %d bytes, preprocessed %d bytes%n",
+                fullFrame().length, preprocessor.encodeJpeg(FramePreprocessor.DEFAULT_CAMERA, frame).remaining());
+    }
+
+    @Benchmark
+    public byte[] fullFrame() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ImageIO.write(frame, "jpg", os);
+        return os.toByteArray();
+    }
+
+    @Benchmark
+    public int preprocessed() {
+        return preprocessor.encodeJpeg(FramePreprocessor.DEFAULT_CAMERA, frame).remaining();
+    }
+}
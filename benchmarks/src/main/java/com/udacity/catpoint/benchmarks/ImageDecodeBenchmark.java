@@ -0,0 +1,81 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.ImageDecoder;
+import com.udacity.catpoint.image.service.ImagePool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a 1080p camera frame from a file: {@code ImageIO.read(File)} at full resolution
+ * against {@link ImageDecoder} subsampling to classifier size into pooled images. Run with
+ * {@code -prof gc} to compare garbage per frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageDecodeBenchmark {
+
+    private Path frame;
+    private final ImageDecoder fullResolution = new ImageDecoder();
+    private final ImageDecoder subsampledPooled = new ImageDecoder(640, new ImagePool(4));
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                int level = Math.min(255, Math.max(0, x * 255 / image.getWidth() + random.nextInt(48) - 24));
+                image.setRGB(x, y, level << 16 | level << 8 | (y * 255 / image.getHeight()));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        frame = Files.createTempFile("frame", ".jpg");
+        Files.write(frame, out.toByteArray());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(frame);
+    }
+
+    @Benchmark
+    public BufferedImage imageIoRead() throws IOException {
+        return ImageIO.read(frame.toFile());
+    }
+
+    @Benchmark
+    public BufferedImage decoderFullResolution() throws IOException {
+        return fullResolution.decode(frame);
+    }
+
+    @Benchmark
+    public int decoderSubsampledPooled() throws IOException {
+        BufferedImage image = subsampledPooled.decode(frame);
+        int width = image.getWidth();
+        subsampledPooled.release(image);
+        return width;
+    }
+}
@@ -0,0 +1,80 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.image.service.CircuitBreaker;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.InstrumentedImageService;
+import com.udacity.catpoint.image.service.ResilientImageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead the ImageService decorators add around a backend that answers at once, so only the
+ * decorator itself is measured: metrics recording, and the resilient wrapper's hand-off to its
+ * caller threads or, with the circuit open, its fallback path. Part of the performance gate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageServiceDecoratorBenchmark {
+
+    private final BufferedImage frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private ImageService backend;
+    private ImageService instrumented;
+    private ImageService resilient;
+    private ImageService circuitOpen;
+
+    @Setup
+    public void setUp() {
+        backend = new ImmediateImageService();
+        instrumented = new InstrumentedImageService(backend);
+        resilient = new ResilientImageService(backend, backend);
+        CircuitBreaker open = new CircuitBreaker(1, Duration.ofDays(1));
+        open.recordFailure();
+        circuitOpen = new ResilientImageService(backend, backend, Duration.ofSeconds(2), open);
+    }
+
+    @Benchmark
+    public boolean direct() {
+        return backend.imageContainsCat(frame, 50.0f);
+    }
+
+    @Benchmark
+    public boolean instrumented() {
+        return instrumented.imageContainsCat(frame, 50.0f);
+    }
+
+    @Benchmark
+    public boolean resilient() {
+        return resilient.imageContainsCat(frame, 50.0f);
+    }
+
+    @Benchmark
+    public boolean resilientCircuitOpen() {
+        return circuitOpen.imageContainsCat(frame, 50.0f);
+    }
+
+    /**
+     * Named class rather than a lambda, since the decorators name their metrics after it.
+     */
+    private static class ImmediateImageService implements ImageService {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.JdbcSecurityRepository;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.RepositorySnapshot;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Persisted sensor writes and lookups with the embedded SQL repository against the snapshot
+ * file repository, at different sensor counts. The snapshot repository rewrites its whole file
+ * on every change, so its write cost grows with the sensor count while the SQL repository's
+ * stays close to flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final int BULK = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int sensorCount;
+
+    private Path dir;
+    private JdbcSecurityRepository jdbc;
+    private PretendDatabaseSecurityRepositoryImpl snapshot;
+    private List<Sensor> jdbcSensors;
+    private List<Sensor> snapshotSensors;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("repository");
+        List<Sensor> sensors = new ArrayList<>();
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors.add(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+
+        jdbc = new JdbcSecurityRepository("jdbc:h2:file:" + dir.resolve("catpoint").toAbsolutePath());
+        for (int i = 0; i < sensors.size(); i += BULK) {
+            jdbc.updateSensors(sensors.subList(i, Math.min(sensors.size(), i + BULK)));
+        }
+        Path snapshotFile = dir.resolve("repository.snapshot");
+        RepositorySnapshot.write(snapshotFile, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, sensors);
+        snapshot = new PretendDatabaseSecurityRepositoryImpl(snapshotFile);
+
+        jdbcSensors = new ArrayList<>(jdbc.getSensors());
+        snapshotSensors = new ArrayList<>(snapshot.getSensors());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        jdbc.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void jdbcUpdateSensor() {
+        Sensor sensor = jdbcSensors.get(random.nextInt(sensorCount));
+        sensor.setActive(!sensor.getActive());
+        jdbc.updateSensor(sensor);
+    }
+
+    @Benchmark
+    public void snapshotUpdateSensor() {
+        Sensor sensor = snapshotSensors.get(random.nextInt(sensorCount));
+        sensor.setActive(!sensor.getActive());
+        snapshot.updateSensor(sensor);
+    }
+
+    @Benchmark
+    public void jdbcUpdateSensorsBatch() {
+        jdbc.updateSensors(toggle(jdbcSensors));
+    }
+
+    @Benchmark
+    public void snapshotUpdateSensorsBatch() {
+        snapshot.updateSensors(toggle(snapshotSensors));
+    }
+
+    @Benchmark
+    public Sensor jdbcFindSensor() {
+        Sensor sensor = jdbcSensors.get(random.nextInt(sensorCount));
+        return jdbc.findSensor(sensor.getSensorId().getMostSignificantBits(), sensor.getSensorId().getLeastSignificantBits());
+    }
+
+    @Benchmark
+    public Sensor snapshotFindSensor() {
+        Sensor sensor = snapshotSensors.get(random.nextInt(sensorCount));
+        return snapshot.findSensor(sensor.getSensorId().getMostSignificantBits(), sensor.getSensorId().getLeastSignificantBits());
+    }
+
+    private List<Sensor> toggle(List<Sensor> sensors) {
+        int from = random.nextInt(sensorCount - BULK);
+        List<Sensor> batch = sensors.subList(from, from + BULK);
+        batch.forEach(sensor -> sensor.setActive(!sensor.getActive()));
+        return batch;
+    }
+}
@@ -0,0 +1,101 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.RepositorySnapshot;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to first event: opening the repository, building the security service and handling one
+ * sensor activation while disarmed, which only needs that one sensor. This should stay roughly
+ * flat as the number of sensors grows. Materializing every sensor, as the GUI and any alarm
+ * decision do, is measured separately; for comparison, the old startup parsed the whole sensor
+ * set from JSON before anything else.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryStartupBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int sensorCount;
+
+    private Path dir;
+    private Path snapshot;
+    private String sensorJson;
+    private UUID firstEventSensor;
+    private boolean active;
+    private final Gson gson = new Gson();
+    private final Type sensorSetType = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("startup");
+        snapshot = dir.resolve("repository.snapshot");
+        Set<Sensor> sensors = new TreeSet<>();
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < sensorCount; i++) {
+            sensors.add(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        RepositorySnapshot.write(snapshot, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, sensors);
+        firstEventSensor = sensors.iterator().next().getSensorId();
+        sensorJson = gson.toJson(sensors);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public boolean snapshotStartup() {
+        SecurityService securityService = new SecurityService(new PretendDatabaseSecurityRepositoryImpl(snapshot), (image, confidence) -> false);
+        active = !active;
+        return securityService.changeSensorActivationStatus(
+                firstEventSensor.getMostSignificantBits(), firstEventSensor.getLeastSignificantBits(), active);
+    }
+
+    @Benchmark
+    public int snapshotAllSensors() {
+        return new PretendDatabaseSecurityRepositoryImpl(snapshot).getSensors().size();
+    }
+
+    @Benchmark
+    public Set<Sensor> jsonSensorParse() {
+        return gson.fromJson(sensorJson, sensorSetType);
+    }
+}
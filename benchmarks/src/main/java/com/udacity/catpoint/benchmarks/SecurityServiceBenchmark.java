@@ -0,0 +1,128 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SecurityService calls the rest of the system is built on, in a home of 1,000 sensors
+ * kept in memory: sensor events while disarmed, alarm transitions while armed with and without
+ * zones, and camera verdicts. Part of the performance gate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityServiceBenchmark {
+
+    private static final int SENSORS = 1000;
+
+    public abstract static class Home {
+        SecurityService securityService;
+        Sensor[] sensors;
+        long[] idHighs;
+        long[] idLows;
+        int next;
+        boolean active;
+        final BufferedImage frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+        void fill() {
+            securityService = new SecurityService(new InMemorySecurityRepository(), (image, confidence) -> false);
+            sensors = new Sensor[SENSORS];
+            idHighs = new long[SENSORS];
+            idLows = new long[SENSORS];
+            SensorType[] types = SensorType.values();
+            for (int i = 0; i < SENSORS; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+                sensor.setZone(i % 2 == 0 ? "perimeter" : "interior");
+                securityService.addSensor(sensor);
+                sensors[i] = sensor;
+                idHighs[i] = sensor.getSensorId().getMostSignificantBits();
+                idLows[i] = sensor.getSensorId().getLeastSignificantBits();
+            }
+        }
+
+        int nextIndex() {
+            int index = next;
+            next = index + 1 == SENSORS ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Disarmed extends Home {
+        @Setup
+        public void setUp() {
+            fill();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Armed extends Home {
+        @Setup
+        public void setUp() {
+            fill();
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ArmedZones extends Home {
+        @Setup
+        public void setUp() {
+            fill();
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            securityService.enableZones();
+        }
+    }
+
+    @Benchmark
+    public boolean sensorEventDisarmed(Disarmed home) {
+        int i = home.nextIndex();
+        home.active = !home.active;
+        return home.securityService.changeSensorActivationStatus(home.idHighs[i], home.idLows[i], home.active);
+    }
+
+    /**
+     * A sensor going active and back, which takes the alarm to pending and back.
+     */
+    @Benchmark
+    public void alarmTransitionArmed(Armed home) {
+        Sensor sensor = home.sensors[home.nextIndex()];
+        home.securityService.changeSensorActivationStatus(sensor, true);
+        home.securityService.changeSensorActivationStatus(sensor, false);
+    }
+
+    @Benchmark
+    public void alarmTransitionArmedZones(ArmedZones home) {
+        Sensor sensor = home.sensors[home.nextIndex()];
+        home.securityService.changeSensorActivationStatus(sensor, true);
+        home.securityService.changeSensorActivationStatus(sensor, false);
+    }
+
+    @Benchmark
+    public void imageVerdict(Disarmed home) {
+        home.active = !home.active;
+        home.securityService.applyImageVerdict("porch", home.active);
+    }
+
+    @Benchmark
+    public void processImage(Disarmed home) {
+        home.securityService.processImage(home.frame);
+    }
+}
@@ -0,0 +1,158 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.api.HttpApiServer;
+import com.udacity.catpoint.security.api.SecurityApiHandler;
+import com.udacity.catpoint.security.api.SensorEventCodec;
+import com.udacity.catpoint.security.api.SensorEventIngestServer;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end loopback throughput of sensor activation events, comparing the binary ingest
+ * protocol against the same events sent as pipelined JSON requests to the HTTP API. Each
+ * invocation sends one batch and waits until every event in it has been acknowledged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorIngestBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private HttpApiServer httpServer;
+    private SensorEventIngestServer ingestServer;
+    private SocketChannel httpChannel;
+    private SocketChannel ingestChannel;
+
+    private ByteBuffer binaryBatch;
+    private ByteBuffer jsonBatch;
+    private final ByteBuffer ack = ByteBuffer.allocateDirect(SensorEventCodec.ACK_BYTES);
+    private final ByteBuffer responses = ByteBuffer.allocate(1024 * 1024);
+    private long acknowledged;
+
+    @Setup
+    public void setUp() throws IOException {
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepository(), (image, confidence) -> false);
+        Sensor sensor = new Sensor("Front door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        httpServer = new HttpApiServer(new InetSocketAddress("localhost", 0), new SecurityApiHandler(securityService));
+        httpServer.start();
+        ingestServer = new SensorEventIngestServer(new InetSocketAddress("localhost", 0), securityService);
+        ingestServer.start();
+        httpChannel = SocketChannel.open(new InetSocketAddress("localhost", httpServer.getPort()));
+        ingestChannel = SocketChannel.open(new InetSocketAddress("localhost", ingestServer.getPort()));
+
+        binaryBatch = ByteBuffer.allocateDirect(SensorEventCodec.FRAME_BYTES * BATCH);
+        StringBuilder json = new StringBuilder();
+        //stamped once; a run is far shorter than the age at which the server rejects events
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < BATCH; i++) {
+            boolean active = i % 2 == 0;
+            SensorEventCodec.encode(binaryBatch, sensor.getSensorId(), active, now);
+            String body = "{\"active\":" + active + "}";
+            json.append("POST /sensors/").append(sensor.getSensorId()).append("/activation HTTP/1.1\r\n")
+                    .append("Content-Length: ").append(body.length()).append("\r\n\r\n").append(body);
+        }
+        binaryBatch.flip();
+        jsonBatch = ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        httpChannel.close();
+        ingestChannel.close();
+        httpServer.close();
+        ingestServer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long binaryProtocol() throws IOException {
+        ByteBuffer batch = binaryBatch.duplicate();
+        while (batch.hasRemaining()) {
+            ingestChannel.write(batch);
+        }
+        long target = acknowledged + BATCH;
+        while (acknowledged < target) {
+            ack.clear();
+            while (ack.hasRemaining()) {
+                ingestChannel.read(ack);
+            }
+            acknowledged = ack.getLong(0) + ack.getLong(8);
+        }
+        return acknowledged;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int jsonOverHttp() throws IOException {
+        ByteBuffer batch = jsonBatch.duplicate();
+        while (batch.hasRemaining()) {
+            httpChannel.write(batch);
+        }
+        int received = 0;
+        responses.clear();
+        while (received < BATCH) {
+            httpChannel.read(responses);
+            responses.flip();
+            received += consumeResponses(responses);
+            responses.compact();
+        }
+        return received;
+    }
+
+    /**
+     * Skips over every complete response in the buffer and returns how many there were.
+     */
+    private static int consumeResponses(ByteBuffer in) {
+        int count = 0;
+        while (true) {
+            int start = in.position();
+            int headerEnd = -1;
+            for (int i = start; i + 3 < in.limit(); i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    headerEnd = i;
+                    break;
+                }
+            }
+            if (headerEnd < 0) {
+                return count;
+            }
+            String head = StandardCharsets.US_ASCII.decode(in.duplicate().position(start).limit(headerEnd)).toString();
+            int idx = head.indexOf("Content-Length: ");
+            int end = head.indexOf("\r\n", idx);
+            int length = Integer.parseInt(head.substring(idx + 16, end < 0 ? head.length() : end));
+            if (headerEnd + 4 + length > in.limit()) {
+                return count;
+            }
+            in.position(headerEnd + 4 + length);
+            count++;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.data.UuidSensorMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking a sensor up by the two halves of its id and toggling it, as an ingested event does,
+ * against the sorted set the repositories used to scan and a HashMap keyed by UUID. Run with
+ * {@code -prof gc}: the UuidSensorMap path should report no allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SensorLookupBenchmark {
+
+    @Param({"100", "10000"})
+    private int sensorCount;
+
+    private Set<Sensor> sortedSensors;
+    private Map<UUID, Sensor> hashedSensors;
+    private UuidSensorMap sensorMap;
+    private long[] highs;
+    private long[] lows;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sortedSensors = new TreeSet<>();
+        hashedSensors = new HashMap<>();
+        sensorMap = new UuidSensorMap(sensorCount);
+        highs = new long[sensorCount];
+        lows = new long[sensorCount];
+        for (int i = 0; i < sensorCount; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sortedSensors.add(sensor);
+            hashedSensors.put(sensor.getSensorId(), sensor);
+            sensorMap.put(sensor);
+            highs[i] = sensor.getSensorId().getMostSignificantBits();
+            lows[i] = sensor.getSensorId().getLeastSignificantBits();
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == sensorCount ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Sensor sortedSetScan() {
+        int i = nextIndex();
+        for (Sensor sensor : sortedSensors) {
+            UUID id = sensor.getSensorId();
+            if (id.getMostSignificantBits() == highs[i] && id.getLeastSignificantBits() == lows[i]) {
+                return sensor;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Sensor uuidHashMap() {
+        int i = nextIndex();
+        return hashedSensors.get(new UUID(highs[i], lows[i]));
+    }
+
+    @Benchmark
+    public Sensor uuidSensorMap() {
+        int i = nextIndex();
+        return sensorMap.get(highs[i], lows[i]);
+    }
+
+    @Benchmark
+    public boolean uuidSensorMapToggle() {
+        int i = nextIndex();
+        return sensorMap.setActive(highs[i], lows[i], (next & 1) == 0);
+    }
+}
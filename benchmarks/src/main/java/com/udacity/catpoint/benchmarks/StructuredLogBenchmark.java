@@ -0,0 +1,115 @@
+package com.udacity.catpoint.benchmarks;
+
+import com.udacity.catpoint.telemetry.logging.EventType;
+import com.udacity.catpoint.telemetry.logging.LazyValue;
+import com.udacity.catpoint.telemetry.logging.LogRecord;
+import com.udacity.catpoint.telemetry.logging.StructuredLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Caller-side cost of logging a classification result: the eager label formatting that used
+ * to run on every call, against structured events that are off, sampled out or written by the
+ * background writer to a discarding sink. Run with {@code -prof gc} to see the allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructuredLogBenchmark {
+
+    //what a typical DetectLabels response holds
+    private final String[] names = {"Cat", "Pet", "Mammal", "Animal", "Kitten", "Couch", "Furniture", "Indoors"};
+    private final float[] confidences = {99.2f, 98.7f, 97.1f, 96.4f, 88.0f, 71.3f, 65.9f, 55.5f};
+
+    private StructuredLog off;
+    private StructuredLog on;
+    private EventType disabled;
+    private EventType sampledOut;
+    private EventType enabled;
+
+    @Setup
+    public void setUp() {
+        Properties config = new Properties();
+        config.setProperty("catpoint.events.sampled.sampleRate", "0");
+        off = new StructuredLog(config, null);
+        on = new StructuredLog(config, new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        disabled = off.event("image.classified");
+        sampledOut = on.event("sampled");
+        enabled = on.event("image.classified");
+    }
+
+    @TearDown
+    public void tearDown() {
+        on.close();
+    }
+
+    @Benchmark
+    public String eagerFormat() {
+        return IntStream.range(0, names.length)
+                .mapToObj(i -> String.format("%s(%.1f%%)", names[i], confidences[i]))
+                .collect(Collectors.joining(", "));
+    }
+
+    @Benchmark
+    public void eventDisabled() {
+        classified(disabled);
+    }
+
+    @Benchmark
+    public void eventSampledOut() {
+        classified(sampledOut);
+    }
+
+    @Benchmark
+    public void eventWritten() {
+        classified(enabled);
+    }
+
+    private void classified(EventType type) {
+        LogRecord record = type.begin();
+        if (record != null) {
+            record.with("camera", "default").with("cat", true).with("labels", names.length)
+                    .with("detail", (LazyValue) this::appendLabels)
+                    .commit();
+        }
+    }
+
+    private void appendLabels(StringBuilder sb) {
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(names[i]).append('(').append(Math.round(confidences[i] * 10) / 10.0).append("%)");
+        }
+    }
+}
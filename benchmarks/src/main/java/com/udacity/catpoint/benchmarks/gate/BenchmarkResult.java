@@ -0,0 +1,164 @@
+package com.udacity.catpoint.benchmarks.gate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One benchmark score from a JMH result file, as written by {@code -rf json}: the primary score
+ * and, if the run used {@code -prof gc}, the bytes allocated per operation.
+ */
+public class BenchmarkResult {
+
+    //JMH before 1.36 prefixed profiler metrics with a middle dot
+    private static final String[] ALLOCATION_METRICS = {"gc.alloc.rate.norm", "\u00b7gc.alloc.rate.norm"};
+
+    private final String benchmark;
+    private final Map<String, String> params;
+    private final String mode;
+    private final double score;
+    private final double scoreError;
+    private final String unit;
+    private final Double allocatedBytesPerOp;
+    private final String jdkVersion;
+
+    public BenchmarkResult(String benchmark, Map<String, String> params, String mode, double score, double scoreError,
+                           String unit, Double allocatedBytesPerOp, String jdkVersion) {
+        this.benchmark = benchmark;
+        this.params = Collections.unmodifiableMap(new TreeMap<>(params));
+        this.mode = mode;
+        this.score = score;
+        this.scoreError = scoreError;
+        this.unit = unit;
+        this.allocatedBytesPerOp = allocatedBytesPerOp;
+        this.jdkVersion = jdkVersion;
+    }
+
+    /**
+     * Reads every result in a JMH JSON result file.
+     */
+    public static List<BenchmarkResult> read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(new Gson().fromJson(reader, JsonArray.class));
+        }
+    }
+
+    static List<BenchmarkResult> parse(JsonArray results) {
+        List<BenchmarkResult> parsed = new ArrayList<>(results.size());
+        for (JsonElement element : results) {
+            JsonObject result = element.getAsJsonObject();
+            Map<String, String> params = new TreeMap<>();
+            if (result.has("params")) {
+                for (Map.Entry<String, JsonElement> param : result.getAsJsonObject("params").entrySet()) {
+                    params.put(param.getKey(), param.getValue().getAsString());
+                }
+            }
+            JsonObject primary = result.getAsJsonObject("primaryMetric");
+            Double allocated = null;
+            if (result.has("secondaryMetrics")) {
+                JsonObject secondary = result.getAsJsonObject("secondaryMetrics");
+                for (String name : ALLOCATION_METRICS) {
+                    if (secondary.has(name)) {
+                        allocated = secondary.getAsJsonObject(name).get("score").getAsDouble();
+                    }
+                }
+            }
+            parsed.add(new BenchmarkResult(
+                    result.get("benchmark").getAsString(),
+                    params,
+                    result.get("mode").getAsString(),
+                    primary.get("score").getAsDouble(),
+                    errorOf(primary),
+                    primary.get("scoreUnit").getAsString(),
+                    allocated,
+                    result.has("jdkVersion") ? result.get("jdkVersion").getAsString() : null));
+        }
+        return parsed;
+    }
+
+    /**
+     * JMH writes "NaN" for the error of single-iteration runs.
+     */
+    private static double errorOf(JsonObject metric) {
+        JsonElement error = metric.get("scoreError");
+        if (error == null || error.isJsonNull()) {
+            return 0;
+        }
+        try {
+            double value = error.getAsDouble();
+            return Double.isNaN(value) ? 0 : value;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the benchmark name with its parameters, which identifies it across runs
+     */
+    public String getKey() {
+        if (params.isEmpty()) {
+            return benchmark;
+        }
+        StringBuilder key = new StringBuilder(benchmark);
+        char separator = ':';
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            key.append(separator).append(param.getKey()).append('=').append(param.getValue());
+            separator = ',';
+        }
+        return key.toString();
+    }
+
+    public String getBenchmark() {
+        return benchmark;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * @return true if a higher score is better, i.e. the score counts operations per unit of time
+     */
+    public boolean isThroughput() {
+        return "thrpt".equals(mode);
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public double getScoreError() {
+        return scoreError;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * @return bytes allocated per operation, or null if the run didn't use the GC profiler
+     */
+    public Double getAllocatedBytesPerOp() {
+        return allocatedBytesPerOp;
+    }
+
+    public String getJdkVersion() {
+        return jdkVersion;
+    }
+}
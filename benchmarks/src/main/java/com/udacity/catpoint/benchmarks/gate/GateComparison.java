@@ -0,0 +1,242 @@
+package com.udacity.catpoint.benchmarks.gate;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares a benchmark run with the stored baseline.
+ * <p>
+ * Scores are compared as speed, i.e. throughput, whatever the benchmark mode: an average time
+ * that doubled is a throughput that halved. A benchmark has regressed when its speed dropped by
+ * more than the tolerance and by more than the two runs' score errors together, so noise alone
+ * doesn't fail the gate. Allocation is compared in bytes per operation, which unlike the
+ * allocation rate doesn't move with throughput, and may grow by the allocation tolerance plus a
+ * few bytes of slack for benchmarks that allocate next to nothing.
+ */
+public class GateComparison {
+
+    public enum Status {
+        /**
+         * Within tolerance.
+         */
+        PASSED,
+        /**
+         * Faster than the tolerance allows for; the baseline is probably due an update.
+         */
+        IMPROVED,
+        REGRESSED,
+        /**
+         * Not in the baseline.
+         */
+        NEW,
+        /**
+         * In the baseline but not in this run, e.g. because the run was narrowed down.
+         */
+        MISSING,
+        /**
+         * Mode or unit changed, so the baseline has to be recorded again.
+         */
+        INCOMPARABLE
+    }
+
+    /**
+     * Outcome for one benchmark.
+     */
+    public static class Entry {
+        private final String key;
+        private final BenchmarkResult baseline;
+        private final BenchmarkResult current;
+        private final Status status;
+        private final Double speedChange;
+        private final Double allocationChange;
+        private final List<String> reasons;
+
+        Entry(String key, BenchmarkResult baseline, BenchmarkResult current, Status status,
+              Double speedChange, Double allocationChange, List<String> reasons) {
+            this.key = key;
+            this.baseline = baseline;
+            this.current = current;
+            this.status = status;
+            this.speedChange = speedChange;
+            this.allocationChange = allocationChange;
+            this.reasons = reasons;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return relative change in speed, e.g. -0.2 for 20% slower, or null if not compared
+         */
+        public Double getSpeedChange() {
+            return speedChange;
+        }
+
+        /**
+         * @return relative change in bytes allocated per operation, or null if not compared
+         */
+        public Double getAllocationChange() {
+            return allocationChange;
+        }
+
+        public List<String> getReasons() {
+            return reasons;
+        }
+    }
+
+    private final double tolerance;
+    private final double allocationTolerance;
+    private final double allocationSlackBytes;
+    private final List<Entry> entries = new ArrayList<>();
+    private String baselineJdk;
+    private String currentJdk;
+
+    /**
+     * @param tolerance            largest accepted drop in speed, e.g. 0.1 for 10%
+     * @param allocationTolerance  largest accepted growth in bytes allocated per operation
+     * @param allocationSlackBytes growth in bytes per operation that is always accepted
+     */
+    public GateComparison(double tolerance, double allocationTolerance, double allocationSlackBytes) {
+        this.tolerance = tolerance;
+        this.allocationTolerance = allocationTolerance;
+        this.allocationSlackBytes = allocationSlackBytes;
+    }
+
+    /**
+     * Compares every benchmark of a run with its baseline, replacing any earlier comparison.
+     */
+    public GateComparison compare(Collection<BenchmarkResult> baseline, Collection<BenchmarkResult> current) {
+        entries.clear();
+        Map<String, BenchmarkResult> remaining = new LinkedHashMap<>();
+        for (BenchmarkResult result : baseline) {
+            remaining.put(result.getKey(), result);
+            baselineJdk = result.getJdkVersion();
+        }
+        for (BenchmarkResult result : current) {
+            currentJdk = result.getJdkVersion();
+            BenchmarkResult base = remaining.remove(result.getKey());
+            entries.add(base == null
+                    ? new Entry(result.getKey(), null, result, Status.NEW, null, null, Collections.emptyList())
+                    : compare(base, result));
+        }
+        for (BenchmarkResult base : remaining.values()) {
+            entries.add(new Entry(base.getKey(), base, null, Status.MISSING, null, null, Collections.emptyList()));
+        }
+        return this;
+    }
+
+    private Entry compare(BenchmarkResult base, BenchmarkResult result) {
+        if (!base.getMode().equals(result.getMode()) || !base.getUnit().equals(result.getUnit())) {
+            return new Entry(result.getKey(), base, result, Status.INCOMPARABLE, null, null, List.of(String.format(Locale.ROOT,
+                    "measured in %s %s, baseline in %s %s", result.getMode(), result.getUnit(), base.getMode(), base.getUnit())));
+        }
+        List<String> reasons = new ArrayList<>();
+        Status status = Status.PASSED;
+
+        //speed as a ratio, so both modes compare the same way round
+        double speed = result.isThroughput() ? result.getScore() / base.getScore() : base.getScore() / result.getScore();
+        double speedChange = speed - 1;
+        boolean beyondNoise = Math.abs(result.getScore() - base.getScore()) > result.getScoreError() + base.getScoreError();
+        if (speedChange < -tolerance && beyondNoise) {
+            status = Status.REGRESSED;
+            reasons.add(String.format(Locale.ROOT, "%.1f%% slower: %.3f %s against %.3f %s",
+                    -speedChange * 100, result.getScore(), result.getUnit(), base.getScore(), base.getUnit()));
+        } else if (speedChange > tolerance && beyondNoise) {
+            status = Status.IMPROVED;
+        }
+
+        Double allocationChange = null;
+        Double allocated = result.getAllocatedBytesPerOp();
+        Double baseAllocated = base.getAllocatedBytesPerOp();
+        if (allocated != null && baseAllocated != null) {
+            allocationChange = baseAllocated > 0 ? allocated / baseAllocated - 1 : null;
+            if (allocated > baseAllocated * (1 + allocationTolerance) + allocationSlackBytes) {
+                status = Status.REGRESSED;
+                reasons.add(String.format(Locale.ROOT, "allocates %.1f B/op against %.1f B/op", allocated, baseAllocated));
+            }
+        }
+        return new Entry(result.getKey(), base, result, status, speedChange, allocationChange, reasons);
+    }
+
+    /**
+     * @return false if any benchmark regressed or can't be compared with its baseline
+     */
+    public boolean passed() {
+        return entries.stream().noneMatch(e -> e.status == Status.REGRESSED || e.status == Status.INCOMPARABLE);
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return the comparison as a JSON document, for CI to pick up
+     */
+    public String toJson() {
+        JsonObject report = new JsonObject();
+        report.addProperty("passed", passed());
+        report.addProperty("tolerance", tolerance);
+        report.addProperty("allocationTolerance", allocationTolerance);
+        report.addProperty("allocationSlackBytes", allocationSlackBytes);
+        report.addProperty("baselineJdk", baselineJdk);
+        report.addProperty("jdk", currentJdk);
+        report.addProperty("sameJdk", baselineJdk != null && baselineJdk.equals(currentJdk));
+        JsonArray benchmarks = new JsonArray();
+        for (Entry entry : entries) {
+            JsonObject benchmark = new JsonObject();
+            benchmark.addProperty("benchmark", entry.key);
+            benchmark.addProperty("status", entry.status.name());
+            BenchmarkResult any = entry.current != null ? entry.current : entry.baseline;
+            benchmark.addProperty("mode", any.getMode());
+            benchmark.addProperty("unit", any.getUnit());
+            if (entry.baseline != null) {
+                benchmark.addProperty("baselineScore", entry.baseline.getScore());
+                benchmark.addProperty("baselineScoreError", entry.baseline.getScoreError());
+                benchmark.addProperty("baselineAllocatedBytesPerOp", entry.baseline.getAllocatedBytesPerOp());
+            }
+            if (entry.current != null) {
+                benchmark.addProperty("score", entry.current.getScore());
+                benchmark.addProperty("scoreError", entry.current.getScoreError());
+                benchmark.addProperty("allocatedBytesPerOp", entry.current.getAllocatedBytesPerOp());
+            }
+            benchmark.addProperty("speedChange", entry.speedChange);
+            benchmark.addProperty("allocationChange", entry.allocationChange);
+            JsonArray reasons = new JsonArray();
+            entry.reasons.forEach(reasons::add);
+            benchmark.add("reasons", reasons);
+            benchmarks.add(benchmark);
+        }
+        report.add("benchmarks", benchmarks);
+        return new GsonBuilder().setPrettyPrinting().serializeNulls().create().toJson(report);
+    }
+
+    /**
+     * @return one line per benchmark, for the build log
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Entry entry : entries) {
+            text.append(String.format(Locale.ROOT, "%-12s %-90s %s%s%n", entry.status, entry.key,
+                    entry.speedChange == null ? "" : String.format(Locale.ROOT, "speed %+.1f%%", entry.speedChange * 100),
+                    entry.allocationChange == null ? "" : String.format(Locale.ROOT, ", allocation %+.1f%%", entry.allocationChange * 100)));
+            for (String reason : entry.reasons) {
+                text.append("             ").append(reason).append(System.lineSeparator());
+            }
+        }
+        return text.toString();
+    }
+}
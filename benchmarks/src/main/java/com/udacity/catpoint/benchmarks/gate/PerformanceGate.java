@@ -0,0 +1,130 @@
+package com.udacity.catpoint.benchmarks.gate;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Performance regression gate: runs a fixed set of benchmarks over SecurityService, the
+ * repositories and the ImageService decorators with the GC profiler, compares them with a
+ * stored baseline and exits with status 1 if any regressed, failing the build. Without a
+ * baseline it runs nothing and passes. The comparison
+ * is written as JSON next to the raw JMH results; see {@link GateComparison} for the rules.
+ * Run by the perf-gate profile:
+ * <pre>
+ * mvn -pl benchmarks -am -Pperf-gate verify
+ * </pre>
+ * Settings are system properties with these keys and defaults:
+ * <pre>
+ *      catpoint.perf.baseline=perf-baseline.json   JMH results of the reference run
+ *      catpoint.perf.reportDir=target/perf-gate    where jmh-results.json and report.json go
+ *      catpoint.perf.tolerance=0.10                largest accepted drop in speed
+ *      catpoint.perf.allocTolerance=0.10           largest accepted growth in bytes allocated per operation
+ *      catpoint.perf.allocSlackBytes=16            growth in bytes per operation that is always accepted
+ *      catpoint.perf.forks=2                       JVM forks per benchmark
+ *      catpoint.perf.include=[regexes]             comma separated, instead of the curated set
+ *      catpoint.perf.results=[file]                compare an existing JMH JSON result file instead of running
+ *      catpoint.perf.updateBaseline=false          store this run as the new baseline instead of comparing
+ * </pre>
+ * Every run uses the same iterations, forks, heap and collector, so that scores only move when
+ * the code does. Baselines are only comparable on the machine and JDK they were recorded on; the
+ * report says whether the JDK matches.
+ */
+public class PerformanceGate {
+
+    /**
+     * The curated set: fast, CPU-bound benchmarks of the paths every event goes through.
+     * Benchmarks that write to disk on every operation are left out, since their scores follow
+     * the disk more than the code.
+     */
+    static final List<String> INCLUDES = List.of(
+            "SecurityServiceBenchmark",
+            "ImageServiceDecoratorBenchmark",
+            "RepositoryBenchmark\\.(jdbc|snapshot)FindSensor$",
+            "RepositoryStartupBenchmark\\.snapshotStartup$",
+            "SensorLookupBenchmark\\.uuidSensorMap(Toggle)?$",
+            "StructuredLogBenchmark\\.event(Disabled|SampledOut)$",
+            "MetricsBenchmark\\.(counterIncrement|histogramRecordSince|instrumentedSensorToggle)$");
+
+    //one size for every benchmark with a sensor count, so a run takes minutes rather than hours
+    private static final String SENSOR_COUNT = "10000";
+    private static final String[] JVM_ARGS = {"-Xms1g", "-Xmx1g", "-XX:+UseParallelGC"};
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Properties settings = System.getProperties();
+        Path baseline = Paths.get(settings.getProperty("catpoint.perf.baseline", "perf-baseline.json"));
+        Path reportDir = Paths.get(settings.getProperty("catpoint.perf.reportDir", "target/perf-gate"));
+        double tolerance = Double.parseDouble(settings.getProperty("catpoint.perf.tolerance", "0.10"));
+        double allocTolerance = Double.parseDouble(settings.getProperty("catpoint.perf.allocTolerance", "0.10"));
+        double allocSlack = Double.parseDouble(settings.getProperty("catpoint.perf.allocSlackBytes", "16"));
+        boolean updateBaseline = Boolean.parseBoolean(settings.getProperty("catpoint.perf.updateBaseline", "false"));
+        String include = settings.getProperty("catpoint.perf.include", "");
+        String existing = settings.getProperty("catpoint.perf.results", "");
+
+        //scores only compare on the machine that recorded them, so the repository ships without one
+        if (!updateBaseline && !Files.exists(baseline)) {
+            System.out.println("Performance gate skipped: no baseline at " + baseline.toAbsolutePath()
+                    + ". Record one on the machine that runs the gate with -Dperf.updateBaseline=true and commit it.");
+            return;
+        }
+
+        Files.createDirectories(reportDir);
+        Path results;
+        if (existing.isBlank()) {
+            results = reportDir.resolve("jmh-results.json");
+            run(include.isBlank() ? INCLUDES : Arrays.asList(include.split(",")),
+                    Integer.parseInt(settings.getProperty("catpoint.perf.forks", "2")), results);
+        } else {
+            results = Paths.get(existing);
+        }
+
+        if (updateBaseline) {
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Stored " + results + " as the performance baseline " + baseline.toAbsolutePath());
+            return;
+        }
+
+        GateComparison comparison = new GateComparison(tolerance, allocTolerance, allocSlack)
+                .compare(BenchmarkResult.read(baseline), BenchmarkResult.read(results));
+        Path report = reportDir.resolve("report.json");
+        Files.write(report, comparison.toJson().getBytes(StandardCharsets.UTF_8));
+        System.out.print(comparison.toText());
+        System.out.println("Performance gate " + (comparison.passed() ? "passed" : "FAILED") + ", report in " + report.toAbsolutePath());
+        if (!comparison.passed()) {
+            System.exit(1);
+        }
+    }
+
+    private static void run(List<String> includes, int forks, Path results) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .forks(forks)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .jvmArgs(JVM_ARGS)
+                .param("sensorCount", SENSOR_COUNT)
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results.toString());
+        for (String include : includes) {
+            options.include(include.trim());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,173 @@
+package com.udacity.catpoint.benchmarks.gate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateComparisonTest {
+
+    private static final String RESULTS = "[{"
+            + "\"jmhVersion\":\"1.37\",\"benchmark\":\"com.udacity.catpoint.benchmarks.RepositoryBenchmark.snapshotFindSensor\","
+            + "\"mode\":\"avgt\",\"threads\":1,\"forks\":2,\"jdkVersion\":\"17.0.9\","
+            + "\"params\":{\"sensorCount\":\"10000\"},"
+            + "\"primaryMetric\":{\"score\":120.5,\"scoreError\":3.2,\"scoreUnit\":\"ns/op\"},"
+            + "\"secondaryMetrics\":{\"gc.alloc.rate\":{\"score\":850.0,\"scoreError\":4.0,\"scoreUnit\":\"MB/sec\"},"
+            + "\"gc.alloc.rate.norm\":{\"score\":112.0,\"scoreError\":0.001,\"scoreUnit\":\"B/op\"}}"
+            + "},{"
+            + "\"benchmark\":\"com.udacity.catpoint.benchmarks.MetricsBenchmark.counterIncrement\","
+            + "\"mode\":\"thrpt\",\"jdkVersion\":\"17.0.9\","
+            + "\"primaryMetric\":{\"score\":95000000.0,\"scoreError\":\"NaN\",\"scoreUnit\":\"ops/s\"},"
+            + "\"secondaryMetrics\":{}"
+            + "}]";
+
+    @Test
+    public void jmhResultsAreParsedWithParamsAndAllocation() {
+        List<BenchmarkResult> results = BenchmarkResult.parse(new Gson().fromJson(RESULTS, JsonArray.class));
+
+        assertEquals(2, results.size());
+        BenchmarkResult find = results.get(0);
+        assertEquals("com.udacity.catpoint.benchmarks.RepositoryBenchmark.snapshotFindSensor:sensorCount=10000", find.getKey());
+        assertFalse(find.isThroughput());
+        assertEquals(120.5, find.getScore(), 0);
+        assertEquals(3.2, find.getScoreError(), 0);
+        assertEquals(112.0, find.getAllocatedBytesPerOp(), 0);
+        assertEquals("17.0.9", find.getJdkVersion());
+
+        BenchmarkResult counter = results.get(1);
+        assertEquals("com.udacity.catpoint.benchmarks.MetricsBenchmark.counterIncrement", counter.getKey());
+        assertTrue(counter.isThroughput());
+        assertEquals(0, counter.getScoreError(), 0);
+        assertNull(counter.getAllocatedBytesPerOp());
+    }
+
+    @Test
+    public void slowerThroughputBeyondToleranceRegresses() {
+        GateComparison comparison = gate().compare(
+                List.of(thrpt("a", 1000, 10, null)),
+                List.of(thrpt("a", 850, 10, null)));
+
+        assertEquals(GateComparison.Status.REGRESSED, only(comparison).getStatus());
+        assertEquals(-0.15, only(comparison).getSpeedChange(), 1e-9);
+        assertFalse(comparison.passed());
+    }
+
+    @Test
+    public void longerAverageTimeBeyondToleranceRegresses() {
+        GateComparison comparison = gate().compare(
+                List.of(avgt("a", 100, 1, null)),
+                List.of(avgt("a", 125, 1, null)));
+
+        assertEquals(GateComparison.Status.REGRESSED, only(comparison).getStatus());
+        assertEquals(-0.2, only(comparison).getSpeedChange(), 1e-9);
+    }
+
+    @Test
+    public void dropsWithinToleranceOrNoisePass() {
+        GateComparison withinTolerance = gate().compare(
+                List.of(thrpt("a", 1000, 10, null)),
+                List.of(thrpt("a", 950, 10, null)));
+        GateComparison withinNoise = gate().compare(
+                List.of(thrpt("a", 1000, 150, null)),
+                List.of(thrpt("a", 800, 150, null)));
+
+        assertEquals(GateComparison.Status.PASSED, only(withinTolerance).getStatus());
+        assertEquals(GateComparison.Status.PASSED, only(withinNoise).getStatus());
+        assertTrue(withinTolerance.passed());
+        assertTrue(withinNoise.passed());
+    }
+
+    @Test
+    public void fasterBeyondToleranceIsReportedAsImproved() {
+        GateComparison comparison = gate().compare(
+                List.of(avgt("a", 100, 1, null)),
+                List.of(avgt("a", 50, 1, null)));
+
+        assertEquals(GateComparison.Status.IMPROVED, only(comparison).getStatus());
+        assertTrue(comparison.passed());
+    }
+
+    @Test
+    public void allocationGrowthBeyondToleranceAndSlackRegresses() {
+        GateComparison grew = gate().compare(
+                List.of(avgt("a", 100, 1, 200.0)),
+                List.of(avgt("a", 100, 1, 260.0)));
+        GateComparison withinSlack = gate().compare(
+                List.of(avgt("a", 100, 1, 0.0)),
+                List.of(avgt("a", 100, 1, 16.0)));
+
+        assertEquals(GateComparison.Status.REGRESSED, only(grew).getStatus());
+        assertEquals(0.3, only(grew).getAllocationChange(), 1e-9);
+        assertEquals(GateComparison.Status.PASSED, only(withinSlack).getStatus());
+        assertNull(only(withinSlack).getAllocationChange());
+    }
+
+    @Test
+    public void newAndMissingBenchmarksDoNotFailTheGate() {
+        GateComparison comparison = gate().compare(
+                List.of(thrpt("old", 1000, 10, null)),
+                List.of(thrpt("new", 1000, 10, null)));
+
+        assertEquals(GateComparison.Status.NEW, comparison.getEntries().get(0).getStatus());
+        assertEquals(GateComparison.Status.MISSING, comparison.getEntries().get(1).getStatus());
+        assertTrue(comparison.passed());
+    }
+
+    @Test
+    public void changedModeIsIncomparableAndFailsTheGate() {
+        GateComparison comparison = gate().compare(
+                List.of(thrpt("a", 1000, 10, null)),
+                List.of(avgt("a", 1, 0, null)));
+
+        assertEquals(GateComparison.Status.INCOMPARABLE, only(comparison).getStatus());
+        assertFalse(comparison.passed());
+    }
+
+    @Test
+    public void reportListsEveryBenchmarkWithItsVerdict() {
+        GateComparison comparison = gate().compare(
+                List.of(thrpt("a", 1000, 10, 64.0), thrpt("b", 1000, 10, null)),
+                List.of(thrpt("a", 700, 10, 64.0), thrpt("b", 1000, 10, null)));
+
+        JsonObject report = new Gson().fromJson(comparison.toJson(), JsonObject.class);
+        assertFalse(report.get("passed").getAsBoolean());
+        assertTrue(report.get("sameJdk").getAsBoolean());
+        JsonArray benchmarks = report.getAsJsonArray("benchmarks");
+        assertEquals(2, benchmarks.size());
+        JsonObject a = benchmarks.get(0).getAsJsonObject();
+        assertEquals("a", a.get("benchmark").getAsString());
+        assertEquals("REGRESSED", a.get("status").getAsString());
+        assertEquals(1000.0, a.get("baselineScore").getAsDouble(), 0);
+        assertEquals(700.0, a.get("score").getAsDouble(), 0);
+        assertEquals(1, a.getAsJsonArray("reasons").size());
+        assertEquals("PASSED", benchmarks.get(1).getAsJsonObject().get("status").getAsString());
+    }
+
+    private static GateComparison gate() {
+        return new GateComparison(0.10, 0.10, 16);
+    }
+
+    private static GateComparison.Entry only(GateComparison comparison) {
+        assertEquals(1, comparison.getEntries().size());
+        return comparison.getEntries().get(0);
+    }
+
+    private static BenchmarkResult thrpt(String name, double score, double error, Double allocated) {
+        return result(name, "thrpt", "ops/s", score, error, allocated);
+    }
+
+    private static BenchmarkResult avgt(String name, double score, double error, Double allocated) {
+        return result(name, "avgt", "ns/op", score, error, allocated);
+    }
+
+    private static BenchmarkResult result(String name, String mode, String unit, double score, double error, Double allocated) {
+        Map<String, String> params = Collections.emptyMap();
+        return new BenchmarkResult(name, params, mode, score, error, unit, allocated, "17.0.9");
+    }
+}
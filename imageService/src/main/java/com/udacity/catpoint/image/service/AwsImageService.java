@@ -1,24 +1,28 @@
 package com.udacity.catpoint.image.service;
 
+import com.udacity.catpoint.telemetry.events.ImageBackendEvent;
+import com.udacity.catpoint.telemetry.events.ImageEncodeEvent;
+import com.udacity.catpoint.telemetry.logging.EventType;
+import com.udacity.catpoint.telemetry.logging.LazyValue;
+import com.udacity.catpoint.telemetry.logging.LogRecord;
+import com.udacity.catpoint.telemetry.logging.StructuredLog;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.AwsCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.Label;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Properties;
-import java.util.stream.Collectors;
+import java.util.concurrent.Flow;
 
 /**
  * Image Recognition Service that can identify cats. Requires aws credentials to be entered in config.properties to work.
@@ -32,32 +36,79 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ * Optional settings for batch classification:
+ *      aws.batch.parallelism=[concurrent DetectLabels calls per batch, default 8]
+ *      aws.batch.maxRequestsPerSecond=[account DetectLabels quota to stay under, default 5, shared by every instance]
+ * Optional frame preprocessing, see {@link FramePreprocessor#fromProperties}:
+ *      image.preprocess.maxDimension=[longest side sent to AWS, default 640]
+ *      image.preprocess.targetBytes=[JPEG payload to aim for, default 65536]
+ *      image.roi.[cameraId]=[x,y,width,height as fractions of the frame]
+ * Optional client timeouts, so a slow region can't hold a caller indefinitely:
+ *      aws.timeout.attemptMillis=[limit on a single HTTP attempt, default 1500]
+ *      aws.timeout.callMillis=[limit on a call including SDK retries, default 3000]
+ * Optional client startup and connection pool settings, see {@link RekognitionClientHolder}:
+ *      aws.warmup=[true to build the client in the background at startup rather than on the first scan]
+ *      aws.http.maxConnections, aws.http.acquireTimeoutMillis, aws.http.maxIdleMillis
+ * Wrap this service in a {@link ResilientImageService} to add deadlines, hedging and a local fallback.
+ * Each instance has its own batch worker threads; {@link #close()} it when done.
  */
-public class AwsImageService implements ImageService{
+public class AwsImageService implements ImageService, AutoCloseable {
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
+    private static final String BACKEND = "rekognition";
+    private static final EventType CLASSIFIED = StructuredLog.getDefault().event("image.classified");
 
     //aws recommendation is to maintain only a single instance of client objects
-    private static RekognitionClient rekognitionClient;
+    private final RekognitionClientHolder rekognitionClient;
 
+    private final LatencyHistogram encodeLatency = MetricsRegistry.getDefault().histogram("image.aws.encode");
+    private final LatencyHistogram detectLabelsLatency = MetricsRegistry.getDefault().histogram("image.aws.detectLabels");
+    private final LatencyHistogram payloadBytes = MetricsRegistry.getDefault().histogram("image.aws.payloadBytes");
+
+    private FramePreprocessor preprocessor = new FramePreprocessor();
+
+    //every DetectLabels call, single or batched, takes a permit here
+    private final RateLimiter quota;
+
+    //batches fan out over the single shared client; the quota is taken per frame in imageContainsCat
+    private final BatchImageClassifier batchClassifier;
+
+    private static class DefaultQuota {
+        //the quota is per account, so every instance using the configured client draws from one bucket
+        static final RateLimiter INSTANCE = new RateLimiter(Double.parseDouble(
+                RekognitionClientHolder.getConfig().getProperty("aws.batch.maxRequestsPerSecond", "5")));
+    }
+
+    /**
+     * Uses the shared client configured in config.properties, which is only built when the
+     * first image is classified.
+     */
     public AwsImageService() {
-        Properties props = new Properties();
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
-            props.load(is);
-        } catch (IOException ioe ) {
-            log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
-            return;
-        }
+        Properties props = RekognitionClientHolder.getConfig();
+        rekognitionClient = RekognitionClientHolder.getDefault();
+        quota = DefaultQuota.INSTANCE;
+        batchClassifier = new BatchImageClassifier(this,
+                Integer.parseInt(props.getProperty("aws.batch.parallelism", "8")), RateLimiter.unlimited());
+        preprocessor = FramePreprocessor.fromProperties(props);
+    }
 
-        String awsId = props.getProperty("aws.id");
-        String awsSecret = props.getProperty("aws.secret");
-        String awsRegion = props.getProperty("aws.region");
+    /**
+     * Uses the given client instead of one built from config.properties, for example a client
+     * pointed at a local stub of the Rekognition endpoint.
+     */
+    public AwsImageService(RekognitionClient client) {
+        this(client, 8, RateLimiter.unlimited());
+    }
 
-        AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .region(Region.of(awsRegion))
-                .build();
+    /**
+     * Uses the given client, classifying batches on up to parallelism threads. Every call, single
+     * frame or batched, stays within the given quota. Pass the same limiter to every instance
+     * that calls the same account.
+     */
+    public AwsImageService(RekognitionClient client, int parallelism, RateLimiter quota) {
+        rekognitionClient = RekognitionClientHolder.of(client);
+        this.quota = quota;
+        batchClassifier = new BatchImageClassifier(this, parallelism, RateLimiter.unlimited());
     }
 
     /**
@@ -68,23 +119,101 @@ public class AwsImageService implements ImageService{
      */
     @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(FramePreprocessor.DEFAULT_CAMERA, image, confidenceThreshhold);
+    }
+
+    /**
+     * Returns true if the provided image contains a cat, using the named camera's region of interest.
+     * Blocks until the request quota allows another call.
+     */
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        try {
+            quota.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the request quota", e);
+        }
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
-        } catch (IOException ioe) {
+        long start = System.nanoTime();
+        ImageEncodeEvent encodeEvent = ImageEncodeEvent.start();
+        long encodedBytes = -1;
+        try {
+            ByteBuffer jpeg = preprocessor.encodeJpeg(cameraId, image);
+            encodedBytes = jpeg.remaining();
+            payloadBytes.record(encodedBytes);
+            awsImage = Image.builder().bytes(SdkBytes.fromByteBuffer(jpeg)).build();
+        } catch (UncheckedIOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
+        } finally {
+            encodeLatency.recordSince(start);
+            encodeEvent.finish(cameraId, encodedBytes);
         }
         DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
-        logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        start = System.nanoTime();
+        ImageBackendEvent backendEvent = ImageBackendEvent.start();
+        DetectLabelsResponse response;
+        try {
+            response = rekognitionClient.get().detectLabels(detectLabelsRequest);
+        } catch (RuntimeException e) {
+            backendEvent.failed(BACKEND, cameraId);
+            throw e;
+        } finally {
+            detectLabelsLatency.recordSince(start);
+        }
+        boolean cat = response.labels().stream().anyMatch(l -> l.name().toLowerCase().contains("cat"));
+        backendEvent.finish(BACKEND, cameraId, response.labels().size(), cat);
+        logLabels(cameraId, response.labels(), cat);
+        return cat;
     }
 
-    private void logLabelsForFun(DetectLabelsResponse response) {
-        log.info(response.labels().stream()
-                .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
-                .collect(Collectors.joining(", ")));
+    /**
+     * Classifies a batch of frames concurrently over the shared client, within the configured
+     * parallelism and request rate. Verdicts are returned in input order.
+     */
+    @Override
+    public List<Boolean> imageContainsCatBatch(List<BufferedImage> images, float confidenceThreshhold) {
+        return batchClassifier.imageContainsCatBatch(images, confidenceThreshhold);
+    }
+
+    @Override
+    public Flow.Publisher<Boolean> classifyStream(Flow.Publisher<BufferedImage> images, float confidenceThreshhold) {
+        return batchClassifier.classifyStream(images, confidenceThreshhold);
+    }
+
+    /**
+     * Stops the batch worker threads. The shared client stays open for other instances.
+     */
+    @Override
+    public void close() {
+        batchClassifier.close();
+    }
+
+    /**
+     * Records the labels as a structured event, formatted on the log's writer thread and only
+     * if the event is sampled in. The plain log only gets them when debugging.
+     */
+    private void logLabels(String cameraId, List<Label> labels, boolean cat) {
+        LogRecord record = CLASSIFIED.begin();
+        if (record != null) {
+            record.with("camera", cameraId).with("cat", cat).with("labels", labels.size())
+                    .with("detail", (LazyValue) sb -> appendLabels(sb, labels))
+                    .commit();
+        }
+        if (log.isDebugEnabled()) {
+            StringBuilder sb = new StringBuilder();
+            appendLabels(sb, labels);
+            log.debug("Labels for {}: {}", cameraId, sb);
+        }
+    }
+
+    private static void appendLabels(StringBuilder sb, List<Label> labels) {
+        for (int i = 0; i < labels.size(); i++) {
+            Label label = labels.get(i);
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(label.name()).append('(').append(Math.round(label.confidence() * 10) / 10.0).append("%)");
+        }
     }
 }
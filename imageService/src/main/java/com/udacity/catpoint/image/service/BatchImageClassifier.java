@@ -0,0 +1,293 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classifies many frames at once by fanning calls to a single-frame {@link ImageService} out
+ * over a bounded number of worker threads. Verdicts always come back in input order, and
+ * every backend call first takes a permit from the backend's {@link RateLimiter}.
+ * <p>
+ * Used to backfill buffered frames after a site reconnects. Classifiers own their worker
+ * threads; {@link #close()} them when done.
+ */
+public class BatchImageClassifier implements AutoCloseable {
+
+    private static final AtomicInteger poolCount = new AtomicInteger();
+
+    private final ImageService delegate;
+    private final int parallelism;
+    private final RateLimiter rateLimiter;
+    private final Executor workers;
+    private final ExecutorService ownedWorkers;
+
+    public BatchImageClassifier(ImageService delegate, int parallelism) {
+        this(delegate, parallelism, RateLimiter.unlimited());
+    }
+
+    public BatchImageClassifier(ImageService delegate, int parallelism, RateLimiter rateLimiter) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.delegate = delegate;
+        this.parallelism = parallelism;
+        this.rateLimiter = rateLimiter;
+        int pool = poolCount.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.ownedWorkers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "image-batch-" + pool + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.workers = ownedWorkers;
+    }
+
+    private BatchImageClassifier(ImageService delegate) {
+        this.delegate = delegate;
+        this.parallelism = 1;
+        this.rateLimiter = RateLimiter.unlimited();
+        this.workers = Runnable::run;
+        this.ownedWorkers = null;
+    }
+
+    /**
+     * A classifier that runs every call on the calling thread, one frame at a time. It has no
+     * threads of its own, so it needs no closing.
+     */
+    public static BatchImageClassifier sequential(ImageService delegate) {
+        return new BatchImageClassifier(delegate);
+    }
+
+    /**
+     * Classifies every image and waits for all verdicts.
+     *
+     * @return one verdict per image, in the same order as the input
+     * @throws CompletionException if any classification fails
+     */
+    public List<Boolean> imageContainsCatBatch(List<BufferedImage> images, float confidenceThreshhold) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            futures.add(submit(image, confidenceThreshhold));
+        }
+        List<Boolean> verdicts = new ArrayList<>(images.size());
+        for (CompletableFuture<Boolean> future : futures) {
+            verdicts.add(future.join());
+        }
+        return verdicts;
+    }
+
+    /**
+     * Streaming variant. Subscribing to the returned publisher subscribes to the source, keeps at
+     * most {@code parallelism} frames in flight, never runs ahead of downstream demand, and
+     * delivers verdicts in source order.
+     */
+    public Flow.Publisher<Boolean> classifyStream(Flow.Publisher<BufferedImage> images, float confidenceThreshhold) {
+        return subscriber -> images.subscribe(new OrderedClassification(subscriber, confidenceThreshhold));
+    }
+
+    @Override
+    public void close() {
+        if (ownedWorkers != null) {
+            ownedWorkers.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(BufferedImage image, float confidenceThreshhold) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                rateLimiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            return delegate.imageContainsCat(image, confidenceThreshhold);
+        }, workers);
+    }
+
+    /**
+     * Bridges a source of frames to a subscriber of verdicts. All state is guarded by this
+     * object's monitor, but the subscriber and the source are only called outside it, so a slow
+     * subscriber doesn't hold up the workers completing other frames. One thread drains at a
+     * time, which keeps signals serial; a thread that finds the drain busy leaves it a note to go
+     * round again, which also makes it safe for subscribers to call {@code request} from inside
+     * {@code onNext}.
+     */
+    private class OrderedClassification implements Flow.Subscriber<BufferedImage>, Flow.Subscription {
+        private final Flow.Subscriber<? super Boolean> downstream;
+        private final float confidenceThreshhold;
+        private final Deque<CompletableFuture<Boolean>> inFlight = new ArrayDeque<>();
+        private Flow.Subscription upstream;
+        private long demand;
+        private int requestedUpstream;
+        private boolean upstreamDone;
+        private boolean terminated;
+        private boolean draining;
+        private boolean drainAgain;
+        private Throwable upstreamError;
+
+        OrderedClassification(Flow.Subscriber<? super Boolean> downstream, float confidenceThreshhold) {
+            this.downstream = downstream;
+            this.confidenceThreshhold = confidenceThreshhold;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            synchronized (this) {
+                upstream = subscription;
+            }
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(BufferedImage image) {
+            //submitted outside the monitor, since a sequential classifier runs the call right here
+            CompletableFuture<Boolean> verdict = submit(image, confidenceThreshhold);
+            synchronized (this) {
+                requestedUpstream--;
+                if (terminated) {
+                    verdict.cancel(true);
+                    return;
+                }
+                inFlight.add(verdict);
+            }
+            verdict.whenComplete((v, e) -> drain());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (this) {
+                upstreamError = throwable;
+                upstreamDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                upstreamDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                downstream.onError(new IllegalArgumentException("request must be positive"));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription source;
+            synchronized (this) {
+                source = terminate();
+            }
+            if (source != null) {
+                source.cancel();
+            }
+        }
+
+        /**
+         * Stops emitting and cancels the frames in flight. Call with the monitor held.
+         *
+         * @return the source to cancel once the monitor is released
+         */
+        private Flow.Subscription terminate() {
+            terminated = true;
+            inFlight.forEach(f -> f.cancel(true));
+            inFlight.clear();
+            return upstream;
+        }
+
+        /**
+         * Delivers completed verdicts in order and asks the source for more frames, one signal
+         * per pass: the next signal is chosen with the monitor held and sent after releasing it.
+         */
+        private void drain() {
+            synchronized (this) {
+                if (draining) {
+                    drainAgain = true;
+                    return;
+                }
+                draining = true;
+            }
+            while (true) {
+                Boolean verdict = null;
+                Throwable error = null;
+                boolean complete = false;
+                Flow.Subscription source = null;
+                long wanted = 0;
+                synchronized (this) {
+                    if (!terminated && demand > 0 && !inFlight.isEmpty() && inFlight.peek().isDone()) {
+                        try {
+                            verdict = inFlight.poll().join();
+                            demand--;
+                        } catch (CompletionException e) {
+                            error = e.getCause() == null ? e : e.getCause();
+                            source = terminate();
+                        }
+                    } else if (!terminated && upstreamDone && inFlight.isEmpty()) {
+                        terminated = true;
+                        error = upstreamError;
+                        complete = error == null;
+                    } else {
+                        wanted = takeUpstreamRequest();
+                        source = upstream;
+                        if (wanted == 0) {
+                            if (!drainAgain) {
+                                draining = false;
+                                return;
+                            }
+                            drainAgain = false;
+                        }
+                    }
+                }
+                if (verdict != null) {
+                    downstream.onNext(verdict);
+                } else if (error != null) {
+                    if (source != null) {
+                        source.cancel();
+                    }
+                    downstream.onError(error);
+                } else if (complete) {
+                    downstream.onComplete();
+                } else if (wanted > 0) {
+                    source.request(wanted);
+                }
+            }
+        }
+
+        /**
+         * @return how many more frames to ask the source for, counted as requested already
+         */
+        private long takeUpstreamRequest() {
+            if (terminated || upstreamDone || upstream == null) {
+                return 0;
+            }
+            int pending = inFlight.size() + requestedUpstream;
+            long wanted = Math.min(parallelism, demand) - pending;
+            if (wanted <= 0) {
+                return 0;
+            }
+            requestedUpstream += (int) wanted;
+            return wanted;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * ImageInputStream over a ByteBuffer, such as a memory-mapped file. Unlike the streams
+ * {@code ImageIO.createImageInputStream} builds, it reads in place instead of copying the data
+ * into a cache first. Reads are absolute, so the buffer's own position is never moved.
+ */
+class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+    private final ByteBuffer data;
+
+    ByteBufferImageInputStream(ByteBuffer data) {
+        this.data = data;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= data.limit() - data.position()) {
+            return -1;
+        }
+        return data.get(data.position() + (int) streamPos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        long remaining = data.limit() - data.position() - streamPos;
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+        int count = (int) Math.min(len, remaining);
+        ByteBuffer view = data.duplicate();
+        view.position(data.position() + (int) streamPos);
+        view.get(b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return data.limit() - data.position();
+    }
+}
@@ -0,0 +1,220 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shrinks frames before they are sent to a remote classifier. Each frame is cropped to its
+ * camera's region of interest, downscaled so its longest side is at most {@code maxDimension}
+ * (never upscaled), and JPEG-encoded at a quality chosen per camera to keep the payload near
+ * {@code targetBytes}.
+ * <p>
+ * Every thread gets its own scratch raster, encoder and output buffer, which are reused from
+ * frame to frame. Images and buffers returned by this class belong to the calling thread and
+ * are only valid until that thread's next call.
+ */
+public class FramePreprocessor {
+
+    /**
+     * Camera id used for frames whose source camera is unknown.
+     */
+    public static final String DEFAULT_CAMERA = "default";
+
+    private static final int DEFAULT_MAX_DIMENSION = 640;
+    private static final int DEFAULT_TARGET_BYTES = 64 * 1024;
+    private static final float INITIAL_QUALITY = 0.85f;
+    private static final float MIN_QUALITY = 0.4f;
+    private static final float MAX_QUALITY = 0.95f;
+    private static final int MAX_ENCODE_ATTEMPTS = 3;
+
+    private final int maxDimension;
+    private final int targetBytes;
+    private final Map<String, Rectangle2D> regionsOfInterest = new ConcurrentHashMap<>();
+    private final Map<String, Float> qualityByCamera = new ConcurrentHashMap<>();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public FramePreprocessor() {
+        this(DEFAULT_MAX_DIMENSION, DEFAULT_TARGET_BYTES);
+    }
+
+    public FramePreprocessor(int maxDimension, int targetBytes) {
+        if (maxDimension < 1 || targetBytes < 1) {
+            throw new IllegalArgumentException("maxDimension and targetBytes must be positive");
+        }
+        this.maxDimension = maxDimension;
+        this.targetBytes = targetBytes;
+    }
+
+    /**
+     * Reads settings from properties:
+     * <pre>
+     *      image.preprocess.maxDimension=[longest side in pixels, default 640]
+     *      image.preprocess.targetBytes=[JPEG payload to aim for, default 65536]
+     *      image.roi.[cameraId]=[x,y,width,height as fractions of the frame, e.g. 0.25,0,0.5,1]
+     * </pre>
+     */
+    public static FramePreprocessor fromProperties(Properties props) {
+        FramePreprocessor preprocessor = new FramePreprocessor(
+                Integer.parseInt(props.getProperty("image.preprocess.maxDimension", String.valueOf(DEFAULT_MAX_DIMENSION))),
+                Integer.parseInt(props.getProperty("image.preprocess.targetBytes", String.valueOf(DEFAULT_TARGET_BYTES))));
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("image.roi.")) {
+                String[] parts = props.getProperty(key).split(",");
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException(key + " must be x,y,width,height");
+                }
+                preprocessor.setRegionOfInterest(key.substring("image.roi.".length()), new Rectangle2D.Double(
+                        Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()),
+                        Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim())));
+            }
+        }
+        return preprocessor;
+    }
+
+    /**
+     * Sets the part of the frame worth classifying for a camera, as fractions of the frame's
+     * width and height so it survives resolution changes. A null region means the whole frame.
+     */
+    public void setRegionOfInterest(String cameraId, Rectangle2D region) {
+        if (region == null) {
+            regionsOfInterest.remove(cameraId);
+            return;
+        }
+        Rectangle2D unit = new Rectangle2D.Double(0, 0, 1, 1);
+        if (region.isEmpty() || !unit.contains(region)) {
+            throw new IllegalArgumentException("region must be a non-empty part of the unit square");
+        }
+        regionsOfInterest.put(cameraId, region);
+    }
+
+    /**
+     * Crops and downscales a frame. Returns the frame itself when there is nothing to do,
+     * otherwise this thread's scratch image.
+     */
+    public BufferedImage prepare(String cameraId, BufferedImage frame) {
+        Rectangle crop = cropFor(cameraId, frame);
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(crop.width, crop.height));
+        int width = Math.max(1, (int) Math.round(crop.width * scale));
+        int height = Math.max(1, (int) Math.round(crop.height * scale));
+        boolean whole = crop.width == frame.getWidth() && crop.height == frame.getHeight();
+        if (whole && scale == 1.0 && !frame.getColorModel().hasAlpha()) {
+            return frame;
+        }
+
+        BufferedImage target = scratch.get().raster(width, height);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(frame, 0, 0, width, height,
+                    crop.x, crop.y, crop.x + crop.width, crop.y + crop.height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Prepares a frame and JPEG-encodes it. If the payload exceeds the target the frame is
+     * re-encoded at lower quality, up to a few times; a payload well under the target raises the
+     * camera's quality for the next frame.
+     *
+     * @return this thread's output buffer, positioned at the start of the JPEG data
+     */
+    public ByteBuffer encodeJpeg(String cameraId, BufferedImage frame) {
+        BufferedImage prepared = prepare(cameraId, frame);
+        Scratch s = scratch.get();
+        float quality = qualityByCamera.getOrDefault(cameraId, INITIAL_QUALITY);
+        int size = s.encode(prepared, quality);
+        for (int attempt = 1; attempt < MAX_ENCODE_ATTEMPTS && size > targetBytes && quality > MIN_QUALITY; attempt++) {
+            //jpeg size falls roughly linearly with quality in the useful range
+            quality = Math.max(MIN_QUALITY, quality * Math.max(0.5f, (float) targetBytes / size));
+            size = s.encode(prepared, quality);
+        }
+        if (size < targetBytes / 2) {
+            quality = Math.min(MAX_QUALITY, quality + 0.05f);
+        }
+        qualityByCamera.put(cameraId, quality);
+        return ByteBuffer.wrap(s.output.buffer(), 0, size);
+    }
+
+    float getQuality(String cameraId) {
+        return qualityByCamera.getOrDefault(cameraId, INITIAL_QUALITY);
+    }
+
+    private Rectangle cropFor(String cameraId, BufferedImage frame) {
+        Rectangle2D region = regionsOfInterest.get(cameraId);
+        if (region == null) {
+            return new Rectangle(0, 0, frame.getWidth(), frame.getHeight());
+        }
+        int x = (int) Math.floor(region.getX() * frame.getWidth());
+        int y = (int) Math.floor(region.getY() * frame.getHeight());
+        int width = Math.max(1, Math.min(frame.getWidth() - x, (int) Math.ceil(region.getWidth() * frame.getWidth())));
+        int height = Math.max(1, Math.min(frame.getHeight() - y, (int) Math.ceil(region.getHeight() * frame.getHeight())));
+        return new Rectangle(x, y, width, height);
+    }
+
+    /**
+     * Per-thread reusable state. The raster is only reallocated when the output size changes,
+     * which for a given camera is rare.
+     */
+    private static class Scratch {
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        private final ImageWriteParam param = writer.getDefaultWriteParam();
+        private final ReusableOutputStream output = new ReusableOutputStream();
+        private BufferedImage raster;
+
+        Scratch() {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        }
+
+        BufferedImage raster(int width, int height) {
+            if (raster == null || raster.getWidth() != width || raster.getHeight() != height) {
+                raster = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            }
+            return raster;
+        }
+
+        int encode(BufferedImage image, float quality) {
+            output.reset();
+            param.setCompressionQuality(quality);
+            try (ImageOutputStream ios = new MemoryCacheImageOutputStream(output)) {
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                writer.setOutput(null);
+            }
+            return output.size();
+        }
+    }
+
+    /**
+     * Exposes its backing array so encoded frames can be handed on without copying.
+     */
+    private static class ReusableOutputStream extends ByteArrayOutputStream {
+        ReusableOutputStream() {
+            super(DEFAULT_TARGET_BYTES);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.udacity.catpoint.image.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * Decodes camera frames with as little work and garbage as possible:
+ * <ul>
+ *     <li>each thread keeps and reuses its own JPEG {@link ImageReader};</li>
+ *     <li>large frames are decoded straight at reduced resolution using source subsampling,
+ *     down to the smallest size whose longest side is still at least {@code minDimension};</li>
+ *     <li>JPEG frames are decoded into images taken from an {@link ImagePool}, which the
+ *     caller should release once done with the frame;</li>
+ *     <li>files are memory-mapped and read in place rather than copied onto the heap.</li>
+ * </ul>
+ * Formats other than JPEG are decoded by whichever ImageIO reader supports them, still
+ * subsampled but into a newly allocated image.
+ */
+public class ImageDecoder {
+
+    private static final int JPEG_SOI_1 = 0xFF;
+    private static final int JPEG_SOI_2 = 0xD8;
+
+    private final int minDimension;
+    private final ImagePool pool;
+    private final ThreadLocal<ImageReader> jpegReader =
+            ThreadLocal.withInitial(() -> ImageIO.getImageReadersByFormatName("jpeg").next());
+
+    /**
+     * A decoder that keeps frames at full resolution and allocates a new image per frame.
+     */
+    public ImageDecoder() {
+        this(Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * @param minDimension frames are subsampled only while their longest side stays at least this large
+     * @param pool where destination images come from, or null to allocate them
+     */
+    public ImageDecoder(int minDimension, ImagePool pool) {
+        if (minDimension < 1) {
+            throw new IllegalArgumentException("minDimension must be positive");
+        }
+        this.minDimension = minDimension;
+        this.pool = pool;
+    }
+
+    /**
+     * @return the decoded image, or null if the data is not in a supported format
+     */
+    public BufferedImage decode(byte[] data) throws IOException {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes the bytes between the buffer's position and limit, without moving its position.
+     *
+     * @return the decoded image, or null if the data is not in a supported format
+     */
+    public BufferedImage decode(ByteBuffer data) throws IOException {
+        try (ImageInputStream input = new ByteBufferImageInputStream(data)) {
+            if (isJpeg(data)) {
+                return read(jpegReader.get(), input, true);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                return read(reader, input, false);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Memory-maps the file and decodes it in place.
+     *
+     * @return the decoded image, or null if the file is not in a supported format
+     */
+    public BufferedImage decode(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return decode(mapped);
+    }
+
+    /**
+     * Returns a decoded image to the pool, if this decoder has one.
+     */
+    public void release(BufferedImage image) {
+        if (pool != null) {
+            pool.release(image);
+        }
+    }
+
+    private BufferedImage read(ImageReader reader, ImageInputStream input, boolean pooled) throws IOException {
+        reader.setInput(input, true, true);
+        try {
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int factor = Math.max(1, Math.max(width, height) / minDimension);
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (factor > 1) {
+                param.setSourceSubsampling(factor, factor, 0, 0);
+            }
+            BufferedImage destination = null;
+            if (pooled && pool != null && decodesToBgr(reader)) {
+                destination = pool.acquire((width + factor - 1) / factor, (height + factor - 1) / factor);
+                param.setDestination(destination);
+            }
+            try {
+                return reader.read(0, param);
+            } catch (IOException | RuntimeException e) {
+                //nobody else will ever see the destination, so hand it straight back
+                release(destination);
+                throw e;
+            }
+        } finally {
+            reader.setInput(null);
+        }
+    }
+
+    private static boolean decodesToBgr(ImageReader reader) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        while (types.hasNext()) {
+            if (types.next().getBufferedImageType() == BufferedImage.TYPE_3BYTE_BGR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJpeg(ByteBuffer data) {
+        int start = data.position();
+        return data.limit() - start >= 2
+                && (data.get(start) & 0xFF) == JPEG_SOI_1
+                && (data.get(start + 1) & 0xFF) == JPEG_SOI_2;
+    }
+}
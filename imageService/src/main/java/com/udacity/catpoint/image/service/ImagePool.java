@@ -0,0 +1,64 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recycles {@code TYPE_3BYTE_BGR} images, the layout JPEG decoding produces, so continuous
+ * decoding doesn't allocate a new multi-megabyte raster per frame. Images may be acquired on one
+ * thread and released on another. At most {@code maxPerSize} idle images of each size are kept.
+ */
+public class ImagePool {
+
+    private final int maxPerSize;
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public ImagePool(int maxPerSize) {
+        this.maxPerSize = maxPerSize;
+    }
+
+    public BufferedImage acquire(int width, int height) {
+        BufferedImage image = bucket(width, height).poll();
+        return image != null ? image : new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    /**
+     * Returns an image to the pool. The caller must not use it afterwards. Images of other types
+     * are ignored.
+     */
+    public void release(BufferedImage image) {
+        if (image == null || image.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+            return;
+        }
+        bucket(image.getWidth(), image.getHeight()).offer(image);
+    }
+
+    private Bucket bucket(int width, int height) {
+        return buckets.computeIfAbsent((long) width << 32 | height, key -> new Bucket());
+    }
+
+    private class Bucket {
+        private final Queue<BufferedImage> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        BufferedImage poll() {
+            BufferedImage image = idle.poll();
+            if (image != null) {
+                size.decrementAndGet();
+            }
+            return image;
+        }
+
+        void offer(BufferedImage image) {
+            if (size.incrementAndGet() > maxPerSize) {
+                size.decrementAndGet();
+                return;
+            }
+            idle.offer(image);
+        }
+    }
+}
@@ -1,7 +1,31 @@
 package com.udacity.catpoint.image.service;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
 
 public interface ImageService {
      boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+
+     /**
+      * Classifies a batch of frames, returning one verdict per frame in input order. The default
+      * implementation classifies one frame at a time; backends that can take concurrent calls
+      * should override it, typically with a {@link BatchImageClassifier}.
+      */
+     default List<Boolean> imageContainsCatBatch(List<BufferedImage> images, float confidenceThreshhold) {
+          List<Boolean> verdicts = new ArrayList<>(images.size());
+          for (BufferedImage image : images) {
+               verdicts.add(imageContainsCat(image, confidenceThreshhold));
+          }
+          return verdicts;
+     }
+
+     /**
+      * Streaming variant of the batch call: publishes one verdict per published frame, in order,
+      * honoring downstream demand.
+      */
+     default Flow.Publisher<Boolean> classifyStream(Flow.Publisher<BufferedImage> images, float confidenceThreshhold) {
+          return BatchImageClassifier.sequential(this).classifyStream(images, confidenceThreshhold);
+     }
 }
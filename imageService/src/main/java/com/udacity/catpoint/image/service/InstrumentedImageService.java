@@ -0,0 +1,48 @@
+package com.udacity.catpoint.image.service;
+
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Decorator that records call latency, cat verdicts and failures for another ImageService.
+ * Metrics are named after the wrapped implementation, e.g. {@code image.FakeImageService.imageContainsCat}.
+ */
+public class InstrumentedImageService implements ImageService {
+
+    private final ImageService delegate;
+    private final LatencyHistogram latency;
+    private final Counter cats;
+    private final Counter errors;
+
+    public InstrumentedImageService(ImageService delegate) {
+        this(delegate, MetricsRegistry.getDefault());
+    }
+
+    public InstrumentedImageService(ImageService delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        String prefix = "image." + delegate.getClass().getSimpleName();
+        this.latency = registry.histogram(prefix + ".imageContainsCat");
+        this.cats = registry.counter(prefix + ".catsDetected");
+        this.errors = registry.counter(prefix + ".errors");
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long start = System.nanoTime();
+        try {
+            boolean cat = delegate.imageContainsCat(image, confidenceThreshhold);
+            if (cat) {
+                cats.increment();
+            }
+            return cat;
+        } catch (RuntimeException e) {
+            errors.increment();
+            throw e;
+        } finally {
+            latency.recordSince(start);
+        }
+    }
+}
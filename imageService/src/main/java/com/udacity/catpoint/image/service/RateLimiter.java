@@ -0,0 +1,59 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting how often a backend may be called. Callers block in {@link #acquire()}
+ * until a permit is available. A bucket holds at most one second's worth of permits, so a
+ * quiet period allows a short burst but never more than the configured rate over a second.
+ */
+public class RateLimiter {
+
+    private final double permitsPerSecond;
+    private final double maxPermits;
+    private double storedPermits;
+    private long lastRefillNanos;
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.maxPermits = Math.max(1, permitsPerSecond);
+        this.storedPermits = maxPermits;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * A limiter that never blocks.
+     */
+    public static RateLimiter unlimited() {
+        return new RateLimiter(Double.MAX_VALUE) {
+            @Override
+            public void acquire() {
+            }
+        };
+    }
+
+    /**
+     * Blocks until a permit is available.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            refill();
+            storedPermits -= 1;
+            //a negative balance is the caller's place in the queue
+            waitNanos = storedPermits >= 0 ? 0 : (long) (-storedPermits / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        storedPermits = Math.min(maxPermits, storedPermits + (now - lastRefillNanos) / 1e9 * permitsPerSecond);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,182 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * The one Rekognition client of the process, built on first use rather than at startup.
+ * Building a client loads much of the SDK and sets up its connection pool, which takes long
+ * enough to be noticed, so nothing pays for it until the first image is classified, unless
+ * aws.warmup=true asks for it to be built in the background straight away.
+ * <p>
+ * config.properties is read once, by {@link #getConfig()}. Optional connection pool settings,
+ * sized so concurrent and hedged classifications don't queue for a connection:
+ *      aws.http.maxConnections=[pooled connections, default twice aws.batch.parallelism, at least 16]
+ *      aws.http.acquireTimeoutMillis=[wait for a free connection, default aws.timeout.attemptMillis]
+ *      aws.http.maxIdleMillis=[close connections idle this long, default 60000]
+ * <p>
+ * The shared client is closed by a shutdown hook once it has been built.
+ */
+public class RekognitionClientHolder implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RekognitionClientHolder.class);
+
+    private static class Default {
+        //initialized by the JVM the first time either the config or the default holder is asked for
+        static final Properties CONFIG = loadConfig();
+        static final RekognitionClientHolder INSTANCE = createDefault();
+    }
+
+    private final Supplier<RekognitionClient> factory;
+    private volatile RekognitionClient client;
+    private boolean closed;
+
+    /**
+     * @param factory builds the client on first use; called at most once
+     */
+    public RekognitionClientHolder(Supplier<RekognitionClient> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Holds an already built client.
+     */
+    public static RekognitionClientHolder of(RekognitionClient client) {
+        RekognitionClientHolder holder = new RekognitionClientHolder(() -> client);
+        holder.client = client;
+        return holder;
+    }
+
+    /**
+     * @return the holder of the client configured in config.properties
+     */
+    public static RekognitionClientHolder getDefault() {
+        return Default.INSTANCE;
+    }
+
+    /**
+     * @return the contents of config.properties, empty if there is none
+     */
+    public static Properties getConfig() {
+        return Default.CONFIG;
+    }
+
+    /**
+     * @return the client, building it if this is the first call
+     * @throws IllegalStateException if the holder is closed or the client cannot be built
+     */
+    public RekognitionClient get() {
+        RekognitionClient current = client;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The Rekognition client has been closed");
+            }
+            if (client == null) {
+                long start = System.nanoTime();
+                client = factory.get();
+                log.info("Built Rekognition client in {} ms", (System.nanoTime() - start) / 1_000_000);
+            }
+            return client;
+        }
+    }
+
+    public boolean isInitialized() {
+        return client != null;
+    }
+
+    /**
+     * Builds the client on a background thread, so the first classification doesn't wait for it.
+     */
+    public void warmUpInBackground() {
+        if (isInitialized()) {
+            return;
+        }
+        Thread warmup = new Thread(() -> {
+            try {
+                get();
+            } catch (RuntimeException e) {
+                log.warn("Unable to warm up the Rekognition client", e);
+            }
+        }, "rekognition-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+    }
+
+    /**
+     * Closes the client if it was built. Later calls to {@link #get()} fail.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    private static Properties loadConfig() {
+        Properties props = new Properties();
+        try (InputStream is = RekognitionClientHolder.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (is == null) {
+                log.error("Unable to initialize AWS Rekognition, no properties file found");
+            } else {
+                props.load(is);
+            }
+        } catch (IOException ioe) {
+            log.error("Unable to initialize AWS Rekognition, the properties file could not be read", ioe);
+        }
+        return props;
+    }
+
+    private static RekognitionClientHolder createDefault() {
+        RekognitionClientHolder holder = new RekognitionClientHolder(() -> buildClient(Default.CONFIG));
+        Runtime.getRuntime().addShutdownHook(new Thread(holder::close, "rekognition-shutdown"));
+        if (Boolean.parseBoolean(Default.CONFIG.getProperty("aws.warmup"))) {
+            holder.warmUpInBackground();
+        }
+        return holder;
+    }
+
+    private static RekognitionClient buildClient(Properties props) {
+        String awsId = props.getProperty("aws.id");
+        String awsSecret = props.getProperty("aws.secret");
+        String awsRegion = props.getProperty("aws.region");
+        if (awsId == null || awsSecret == null || awsRegion == null) {
+            throw new IllegalStateException("AWS Rekognition is not configured, see AwsImageService");
+        }
+        long attemptMillis = Long.parseLong(props.getProperty("aws.timeout.attemptMillis", "1500"));
+        int parallelism = Integer.parseInt(props.getProperty("aws.batch.parallelism", "8"));
+        return RekognitionClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(awsId, awsSecret)))
+                .region(Region.of(awsRegion))
+                .httpClientBuilder(ApacheHttpClient.builder()
+                        .maxConnections(Integer.parseInt(props.getProperty("aws.http.maxConnections",
+                                String.valueOf(Math.max(16, 2 * parallelism)))))
+                        .connectionAcquisitionTimeout(Duration.ofMillis(Long.parseLong(props.getProperty("aws.http.acquireTimeoutMillis",
+                                String.valueOf(attemptMillis)))))
+                        .connectionMaxIdleTime(Duration.ofMillis(Long.parseLong(props.getProperty("aws.http.maxIdleMillis", "60000"))))
+                        .useIdleConnectionReaper(true))
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .apiCallAttemptTimeout(Duration.ofMillis(attemptMillis))
+                        .apiCallTimeout(Duration.ofMillis(Long.parseLong(props.getProperty("aws.timeout.callMillis", "3000"))))
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,224 @@
+package com.udacity.catpoint.image.service;
+
+import com.udacity.catpoint.telemetry.events.ImageFallbackEvent;
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Protects callers from a slow or failing remote {@link ImageService}, such as {@link AwsImageService}.
+ * <ul>
+ *     <li>Every call has a deadline. A call that misses it is answered by the local fallback.</li>
+ *     <li>Once enough latency samples exist, a call still running past the recent p95 latency is
+ *     hedged with a second, identical request; whichever answers first wins. A call that fails
+ *     outright is retried once the same way.</li>
+ *     <li>Repeated failures open a {@link CircuitBreaker}, sending all calls straight to the
+ *     fallback until a trial call succeeds again.</li>
+ * </ul>
+ */
+public class ResilientImageService implements ImageService {
+
+    private static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(2);
+    private static final int MAX_ATTEMPTS = 2;
+    private static final int MIN_SAMPLES_FOR_HEDGING = 20;
+    private static final long LATENCY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final int MAX_OUTSTANDING_CALLS = 64;
+
+    private Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private final ImageService primary;
+    private final ImageService fallback;
+    private final String primaryName;
+    private final long deadlineNanos;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadPoolExecutor callers;
+
+    //latency of successful primary calls, rotated so the hedge point tracks recent behavior
+    private volatile LatencyHistogram currentWindow = new LatencyHistogram();
+    private volatile LatencyHistogram previousWindow = new LatencyHistogram();
+    private volatile long windowStart = System.nanoTime();
+
+    private final Counter hedges;
+    private final Counter timeouts;
+    private final Counter failures;
+    private final Counter fallbacks;
+
+    public ResilientImageService(ImageService primary, ImageService fallback) {
+        this(primary, fallback, DEFAULT_DEADLINE, new CircuitBreaker(5, Duration.ofSeconds(30)));
+    }
+
+    public ResilientImageService(ImageService primary, ImageService fallback, Duration deadline, CircuitBreaker circuitBreaker) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.primaryName = primary.getClass().getSimpleName();
+        this.deadlineNanos = deadline.toNanos();
+        this.circuitBreaker = circuitBreaker;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        //hung backend calls can't be interrupted, so cap how many threads they may tie up
+        this.callers = new ThreadPoolExecutor(0, MAX_OUTSTANDING_CALLS, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "image-resilient-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        String prefix = "image.resilient." + primaryName;
+        hedges = metrics.counter(prefix + ".hedges");
+        timeouts = metrics.counter(prefix + ".timeouts");
+        failures = metrics.counter(prefix + ".failures");
+        fallbacks = metrics.counter(prefix + ".fallbacks");
+        metrics.gauge(prefix + ".circuitState", () -> circuitBreaker.getState().ordinal());
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        if (!circuitBreaker.allowRequest()) {
+            fallbacks.increment();
+            ImageFallbackEvent.emit(primaryName, "circuit open");
+            return fallback.imageContainsCat(image, confidenceThreshhold);
+        }
+
+        long start = System.nanoTime();
+        String reason = "interrupted";
+        HedgedCall call = new HedgedCall(image, confidenceThreshhold);
+        try {
+            call.launch();
+            long hedgeAfter = hedgeDelayNanos();
+            if (hedgeAfter < deadlineNanos) {
+                try {
+                    return succeeded(call.result.get(hedgeAfter, TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    if (call.launchSecond()) {
+                        hedges.increment();
+                    }
+                }
+            }
+            long remaining = deadlineNanos - (System.nanoTime() - start);
+            return succeeded(call.result.get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            reason = "deadline";
+            log.warn("Image classification missed its {}ms deadline, using fallback", TimeUnit.NANOSECONDS.toMillis(deadlineNanos));
+        } catch (ExecutionException e) {
+            failures.increment();
+            reason = "failure";
+            log.warn("Image classification failed, using fallback", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        circuitBreaker.recordFailure();
+        fallbacks.increment();
+        ImageFallbackEvent.emit(primaryName, reason);
+        return fallback.imageContainsCat(image, confidenceThreshhold);
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private boolean succeeded(boolean verdict) {
+        circuitBreaker.recordSuccess();
+        return verdict;
+    }
+
+    /**
+     * Recent p95 of successful calls, or the full deadline while there are too few samples.
+     */
+    long hedgeDelayNanos() {
+        LatencyHistogram previous = previousWindow;
+        LatencyHistogram source = previous.getCount() >= MIN_SAMPLES_FOR_HEDGING ? previous : currentWindow;
+        if (source.getCount() < MIN_SAMPLES_FOR_HEDGING) {
+            return deadlineNanos;
+        }
+        return source.snapshot().getValueAtPercentile(95);
+    }
+
+    private void recordLatency(long nanos) {
+        long now = System.nanoTime();
+        if (now - windowStart > LATENCY_WINDOW_NANOS) {
+            synchronized (this) {
+                if (now - windowStart > LATENCY_WINDOW_NANOS) {
+                    previousWindow = currentWindow;
+                    currentWindow = new LatencyHistogram();
+                    windowStart = now;
+                }
+            }
+        }
+        currentWindow.record(nanos);
+    }
+
+    /**
+     * Up to two identical requests for one frame. The first success completes the result; the
+     * result fails only once every launched attempt has failed.
+     */
+    private class HedgedCall {
+        private final BufferedImage image;
+        private final float confidenceThreshhold;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private final AtomicInteger launched = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        HedgedCall(BufferedImage image, float confidenceThreshhold) {
+            this.image = image;
+            this.confidenceThreshhold = confidenceThreshhold;
+        }
+
+        void launch() {
+            launched.set(1);
+            attempt();
+        }
+
+        /**
+         * @return true if this call launched the second attempt
+         */
+        boolean launchSecond() {
+            if (result.isDone() || !launched.compareAndSet(1, MAX_ATTEMPTS)) {
+                return false;
+            }
+            attempt();
+            return true;
+        }
+
+        private void attempt() {
+            long start = System.nanoTime();
+            try {
+                CompletableFuture.supplyAsync(() -> primary.imageContainsCat(image, confidenceThreshhold), callers)
+                        .whenComplete((verdict, error) -> {
+                            if (error == null) {
+                                recordLatency(System.nanoTime() - start);
+                                result.complete(verdict);
+                            } else {
+                                attemptFailed(error);
+                            }
+                        });
+            } catch (RejectedExecutionException e) {
+                attemptFailed(e);
+            }
+        }
+
+        private void attemptFailed(Throwable error) {
+            int failures = failed.incrementAndGet();
+            //the first attempt failed outright; retry immediately unless a hedge is already running
+            if (launchSecond()) {
+                return;
+            }
+            if (failures >= launched.get()) {
+                result.completeExceptionally(error);
+            }
+        }
+    }
+}
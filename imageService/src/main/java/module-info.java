@@ -6,4 +6,7 @@ module com.udacity.catpoint.image.imageService {
     requires transitive software.amazon.awssdk.auth;
     requires transitive software.amazon.awssdk.regions;
     requires transitive software.amazon.awssdk.core;
+    requires software.amazon.awssdk.http;
+    requires software.amazon.awssdk.http.apache;
+    requires transitive com.udacity.catpoint.telemetry.telemetryService;
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchImageClassifierTest {
+
+    /**
+     * Says "cat" for frames whose width is even, after a random delay, and tracks how many
+     * calls run at once.
+     */
+    private static class SlowEvenWidthService implements ImageService {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return image.getWidth() % 2 == 0;
+        }
+    }
+
+    @Test
+    public void batchVerdictsInInputOrderWithinParallelism() {
+        SlowEvenWidthService backend = new SlowEvenWidthService();
+        List<BufferedImage> images = frames(200);
+
+        List<Boolean> verdicts;
+        try (BatchImageClassifier classifier = new BatchImageClassifier(backend, 4)) {
+            verdicts = classifier.imageContainsCatBatch(images, 50f);
+        }
+
+        assertEquals(images.size(), verdicts.size());
+        for (int i = 0; i < images.size(); i++) {
+            assertEquals(images.get(i).getWidth() % 2 == 0, verdicts.get(i));
+        }
+        assertTrue(backend.maxRunning.get() <= 4);
+        assertTrue(backend.maxRunning.get() > 1);
+    }
+
+    @Test
+    public void rateLimiterBoundsCallRate() {
+        List<BufferedImage> images = frames(15);
+        long start = System.nanoTime();
+        try (BatchImageClassifier classifier = new BatchImageClassifier((image, c) -> true, 8, new RateLimiter(10))) {
+            classifier.imageContainsCatBatch(images, 50f);
+        }
+        //10 permits are available up front, the remaining 5 take another half second
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 400);
+    }
+
+    @Test
+    public void publisherDeliversInOrderAndCompletes() throws InterruptedException {
+        SlowEvenWidthService backend = new SlowEvenWidthService();
+        List<Boolean> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        try (BatchImageClassifier classifier = new BatchImageClassifier(backend, 3);
+             SubmissionPublisher<BufferedImage> source = new SubmissionPublisher<>()) {
+            classifier.classifyStream(source, 50f).subscribe(new Flow.Subscriber<Boolean>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(Boolean item) {
+                    received.add(item);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    done.countDown();
+                }
+            });
+            for (int i = 0; i < 50; i++) {
+                source.submit(new BufferedImage(i + 1, 1, BufferedImage.TYPE_INT_RGB));
+            }
+            source.close();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(50, received.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals((i + 1) % 2 == 0, received.get(i));
+        }
+        assertTrue(backend.maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void slowSubscriberDoesNotHoldUpTheWorkers() throws Exception {
+        CountDownLatch inOnNext = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<Boolean> received = new CopyOnWriteArrayList<>();
+        //slow enough that verdicts complete, and are delivered, on the worker threads
+        ImageService widthIsEven = (image, confidence) -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return image.getWidth() % 2 == 0;
+        };
+
+        try (BatchImageClassifier classifier = new BatchImageClassifier(widthIsEven, 2);
+             SubmissionPublisher<BufferedImage> source = new SubmissionPublisher<>()) {
+            classifier.classifyStream(source, 50f).subscribe(new Flow.Subscriber<Boolean>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(Boolean item) {
+                    inOnNext.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    received.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    done.countDown();
+                }
+            });
+            frames(4).forEach(source::submit);
+            source.close();
+            assertTrue(inOnNext.await(5, TimeUnit.SECONDS));
+
+            //one worker is stuck delivering to the subscriber, the other still takes batch work
+            assertEquals(List.of(false, true, false), CompletableFuture
+                    .supplyAsync(() -> classifier.imageContainsCatBatch(frames(3), 50f))
+                    .get(5, TimeUnit.SECONDS));
+
+            release.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of(false, true, false, true), received);
+    }
+
+    @Test
+    public void defaultBatchMethodsClassifySequentially() {
+        ImageService widthIsEven = (image, confidence) -> image.getWidth() % 2 == 0;
+        assertEquals(List.of(false, true, false), widthIsEven.imageContainsCatBatch(frames(3), 50f));
+    }
+
+    private static List<BufferedImage> frames(int count) {
+        List<BufferedImage> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            images.add(new BufferedImage(i + 1, 1, BufferedImage.TYPE_INT_RGB));
+        }
+        return images;
+    }
+}
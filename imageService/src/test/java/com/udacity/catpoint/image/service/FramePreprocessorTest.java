@@ -0,0 +1,124 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FramePreprocessorTest {
+
+    @Test
+    public void downscalesToMaxDimensionKeepingAspectRatio() {
+        FramePreprocessor preprocessor = new FramePreprocessor(320, 64 * 1024);
+        BufferedImage prepared = preprocessor.prepare("front", new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_RGB));
+        assertEquals(320, prepared.getWidth());
+        assertEquals(180, prepared.getHeight());
+    }
+
+    @Test
+    public void smallFramesAreNotUpscaledOrCopied() {
+        FramePreprocessor preprocessor = new FramePreprocessor(640, 64 * 1024);
+        BufferedImage frame = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        assertSame(frame, preprocessor.prepare("front", frame));
+    }
+
+    @Test
+    public void cropsToCameraRegionOfInterest() {
+        Properties props = new Properties();
+        props.setProperty("image.roi.porch", "0.5, 0, 0.5, 0.5");
+        FramePreprocessor preprocessor = FramePreprocessor.fromProperties(props);
+
+        BufferedImage frame = new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB);
+        //paint only the top-right quadrant white
+        for (int x = 200; x < 400; x++) {
+            for (int y = 0; y < 100; y++) {
+                frame.setRGB(x, y, 0xFFFFFF);
+            }
+        }
+        BufferedImage prepared = preprocessor.prepare("porch", frame);
+        assertEquals(200, prepared.getWidth());
+        assertEquals(100, prepared.getHeight());
+        assertEquals(0xFFFFFF, prepared.getRGB(100, 50) & 0xFFFFFF);
+
+        //other cameras still see the whole frame
+        assertSame(frame, preprocessor.prepare("garage", frame));
+    }
+
+    @Test
+    public void rejectsRegionsOutsideTheFrame() {
+        FramePreprocessor preprocessor = new FramePreprocessor();
+        assertThrows(IllegalArgumentException.class,
+                () -> preprocessor.setRegionOfInterest("porch", new Rectangle2D.Double(0.5, 0, 0.6, 1)));
+    }
+
+    @Test
+    public void reusesScratchRasterAcrossFrames() {
+        FramePreprocessor preprocessor = new FramePreprocessor(320, 64 * 1024);
+        BufferedImage first = preprocessor.prepare("front", new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB));
+        BufferedImage second = preprocessor.prepare("front", new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB));
+        assertSame(first, second);
+    }
+
+    @Test
+    public void adaptiveQualityKeepsNoisyFramesNearTarget() throws IOException {
+        int target = 24 * 1024;
+        FramePreprocessor preprocessor = new FramePreprocessor(640, target);
+        BufferedImage noisy = grainy(1280, 960);
+
+        ByteBuffer jpeg = null;
+        for (int i = 0; i < 5; i++) {
+            jpeg = preprocessor.encodeJpeg("front", noisy);
+        }
+        assertTrue(jpeg.remaining() <= target * 1.25, "payload " + jpeg.remaining());
+        assertTrue(preprocessor.getQuality("front") < 0.85f);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg.array(), jpeg.position(), jpeg.remaining()));
+        assertEquals(640, decoded.getWidth());
+        assertEquals(480, decoded.getHeight());
+    }
+
+    @Test
+    public void payloadIsSmallerThanFullFrameEncoding() throws IOException {
+        BufferedImage frame = noise(1920, 1080);
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        ImageIO.write(frame, "jpg", full);
+
+        ByteBuffer jpeg = new FramePreprocessor().encodeJpeg(FramePreprocessor.DEFAULT_CAMERA, frame);
+        assertTrue(jpeg.remaining() * 4 < full.size(), jpeg.remaining() + " vs " + full.size());
+    }
+
+    /**
+     * A gradient with sensor-like grain, which compresses far less than a clean frame.
+     */
+    private static BufferedImage grainy(int width, int height) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int level = Math.min(255, Math.max(0, x * 255 / width + random.nextInt(48) - 24));
+                image.setRGB(x, y, level << 16 | level << 8 | (y * 255 / height));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage noise(int width, int height) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,120 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageDecoderTest {
+
+    @Test
+    public void decodesAtFullResolutionByDefault() throws IOException {
+        BufferedImage image = new ImageDecoder().decode(encode(1600, 1200, "jpg"));
+        assertEquals(1600, image.getWidth());
+        assertEquals(1200, image.getHeight());
+    }
+
+    @Test
+    public void subsamplesWhileKeepingLongestSideAtLeastMinimum() throws IOException {
+        ImageDecoder decoder = new ImageDecoder(640, null);
+        BufferedImage image = decoder.decode(encode(1920, 1080, "jpg"));
+        //factor 3 keeps the longest side at 640
+        assertEquals(640, image.getWidth());
+        assertEquals(360, image.getHeight());
+
+        BufferedImage small = decoder.decode(encode(800, 600, "jpg"));
+        assertEquals(800, small.getWidth());
+    }
+
+    @Test
+    public void releasedImagesAreReusedAsDestinations() throws IOException {
+        ImageDecoder decoder = new ImageDecoder(640, new ImagePool(4));
+        byte[] jpeg = encode(1280, 960, "jpg");
+
+        BufferedImage first = decoder.decode(jpeg);
+        decoder.release(first);
+        BufferedImage second = decoder.decode(jpeg);
+        assertSame(first, second);
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, second.getType());
+
+        //the reused image holds the new frame, not stale pixels
+        int rgb = second.getRGB(second.getWidth() / 2, second.getHeight() / 2);
+        assertTrue((rgb >> 16 & 0xFF) > 200);
+    }
+
+    @Test
+    public void destinationGoesBackToThePoolWhenDecodingFails() throws IOException {
+        List<BufferedImage> released = new ArrayList<>();
+        ImagePool pool = new ImagePool(4) {
+            @Override
+            public BufferedImage acquire(int width, int height) {
+                return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR) {
+                    @Override
+                    public WritableRaster getRaster() {
+                        throw new IllegalStateException("raster unavailable");
+                    }
+                };
+            }
+
+            @Override
+            public void release(BufferedImage image) {
+                released.add(image);
+            }
+        };
+        ImageDecoder decoder = new ImageDecoder(640, pool);
+
+        assertThrows(IllegalStateException.class, () -> decoder.decode(encode(320, 240, "jpg")));
+        assertEquals(1, released.size());
+    }
+
+    @Test
+    public void decodesMemoryMappedFiles() throws IOException {
+        Path file = Files.createTempFile("frame", ".jpg");
+        Files.write(file, encode(320, 240, "jpg"));
+        BufferedImage image = new ImageDecoder().decode(file);
+        assertEquals(320, image.getWidth());
+        Files.delete(file);
+    }
+
+    @Test
+    public void decodesOtherFormatsWithoutMovingBufferPosition() throws IOException {
+        byte[] png = encode(1000, 500, "png");
+        ByteBuffer buffer = ByteBuffer.allocate(png.length + 8);
+        buffer.position(8);
+        buffer.put(png);
+        buffer.position(8);
+
+        BufferedImage image = new ImageDecoder(250, new ImagePool(4)).decode(buffer);
+        assertEquals(250, image.getWidth());
+        assertEquals(125, image.getHeight());
+        assertEquals(8, buffer.position());
+    }
+
+    @Test
+    public void unknownDataDecodesToNull() throws IOException {
+        assertNull(new ImageDecoder().decode(new byte[]{1, 2, 3, 4}));
+    }
+
+    private static byte[] encode(int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
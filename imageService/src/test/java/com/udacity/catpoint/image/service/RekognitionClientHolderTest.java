@@ -0,0 +1,109 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RekognitionClientHolderTest {
+
+    private final AtomicInteger built = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    @Test
+    public void clientIsNotBuiltUntilFirstUse() {
+        RekognitionClientHolder holder = new RekognitionClientHolder(this::newClient);
+        assertFalse(holder.isInitialized());
+        assertEquals(0, built.get());
+
+        RekognitionClient client = holder.get();
+        assertTrue(holder.isInitialized());
+        assertSame(client, holder.get());
+        assertEquals(1, built.get());
+    }
+
+    @Test
+    public void concurrentFirstUseBuildsOneClient() throws Exception {
+        RekognitionClientHolder holder = new RekognitionClientHolder(() -> {
+            try {
+                //widen the window in which other threads arrive
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return newClient();
+        });
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<RekognitionClient> clients = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                RekognitionClient client = holder.get();
+                synchronized (clients) {
+                    clients.add(client);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, built.get());
+        assertEquals(8, clients.size());
+        clients.forEach(client -> assertSame(clients.get(0), client));
+    }
+
+    @Test
+    public void warmUpBuildsTheClientInTheBackground() throws Exception {
+        RekognitionClientHolder holder = new RekognitionClientHolder(this::newClient);
+        holder.warmUpInBackground();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!holder.isInitialized() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(holder.isInitialized());
+        holder.get();
+        assertEquals(1, built.get());
+    }
+
+    @Test
+    public void closeClosesABuiltClientOnce() {
+        RekognitionClientHolder holder = new RekognitionClientHolder(this::newClient);
+        holder.get();
+        holder.close();
+        holder.close();
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    public void closingAnUnusedHolderBuildsNothing() {
+        RekognitionClientHolder holder = new RekognitionClientHolder(this::newClient);
+        holder.close();
+        assertEquals(0, built.get());
+        assertThrows(IllegalStateException.class, holder::get);
+    }
+
+    private RekognitionClient newClient() {
+        built.incrementAndGet();
+        return (RekognitionClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RekognitionClient.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        closed.incrementAndGet();
+                    }
+                    return null;
+                });
+    }
+}
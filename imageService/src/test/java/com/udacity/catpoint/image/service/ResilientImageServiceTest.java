@@ -0,0 +1,265 @@
+package com.udacity.catpoint.image.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResilientImageServiceTest {
+
+    private static final BufferedImage FRAME = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+    private static final ImageService ALWAYS_CAT = (image, confidence) -> true;
+    private static final ImageService NEVER_CAT = (image, confidence) -> false;
+
+    private ServerSocket rekognitionStub;
+
+    @AfterEach
+    public void stopStub() throws IOException {
+        if (rekognitionStub != null) {
+            rekognitionStub.close();
+        }
+    }
+
+    @Test
+    public void fastPrimaryAnswers() {
+        ResilientImageService service = new ResilientImageService(ALWAYS_CAT, NEVER_CAT);
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitState());
+    }
+
+    @Test
+    public void missedDeadlineUsesFallback() {
+        ImageService hung = (image, confidence) -> sleep(2000);
+        ResilientImageService service = new ResilientImageService(hung, NEVER_CAT,
+                Duration.ofMillis(50), new CircuitBreaker(5, Duration.ofSeconds(30)));
+
+        long start = System.nanoTime();
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    public void failedAttemptIsRetriedOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        ImageService flaky = (image, confidence) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("connection reset");
+            }
+            return true;
+        };
+        ResilientImageService service = new ResilientImageService(flaky, NEVER_CAT);
+
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void slowCallIsHedgedPastP95() {
+        //once warmed up, one call stalls; a hedged second request should answer long before the deadline
+        AtomicBoolean stallNext = new AtomicBoolean();
+        ImageService tailLatency = (image, confidence) -> {
+            if (stallNext.getAndSet(false)) {
+                sleep(1500);
+            }
+            return true;
+        };
+        ResilientImageService service = new ResilientImageService(tailLatency, NEVER_CAT,
+                Duration.ofSeconds(1), new CircuitBreaker(5, Duration.ofSeconds(30)));
+
+        for (int i = 0; i < 30; i++) {
+            assertTrue(service.imageContainsCat(FRAME, 50f));
+        }
+        assertTrue(service.hedgeDelayNanos() < TimeUnit.SECONDS.toNanos(1));
+
+        stallNext.set(true);
+        long start = System.nanoTime();
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+    }
+
+    @Test
+    public void breakerOpensAndRecoversThroughTrialCall() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofSeconds(10), now::get);
+        AtomicInteger primaryCalls = new AtomicInteger();
+        boolean[] healthy = {false};
+        ImageService primary = (image, confidence) -> {
+            primaryCalls.incrementAndGet();
+            if (!healthy[0]) {
+                throw new IllegalStateException("region unavailable");
+            }
+            return true;
+        };
+        ResilientImageService service = new ResilientImageService(primary, NEVER_CAT, Duration.ofSeconds(1), breaker);
+
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        int callsWhenOpened = primaryCalls.get();
+        assertFalse(service.imageContainsCat(FRAME, 50f));
+        assertEquals(callsWhenOpened, primaryCalls.get());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        healthy[0] = true;
+        assertTrue(service.imageContainsCat(FRAME, 50f));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenBreakerAllowsOneTrialAtATime() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(10), now::get);
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void awsServiceAgainstLocalRekognitionStub() throws Exception {
+        URI endpoint = startRekognitionStub(0, "{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":99.0}]}");
+        try (AwsImageService aws = new AwsImageService(stubClient(endpoint))) {
+            ResilientImageService service = new ResilientImageService(aws, NEVER_CAT);
+
+            assertTrue(service.imageContainsCat(FRAME, 50f));
+        }
+    }
+
+    @Test
+    public void singleFramesAndBatchesShareTheQuota() throws Exception {
+        URI endpoint = startRekognitionStub(0, "{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":99.0}]}");
+        try (AwsImageService aws = new AwsImageService(stubClient(endpoint), 4, new RateLimiter(4))) {
+            //warms up the client; the bucket refills while it does
+            assertTrue(aws.imageContainsCat(FRAME, 50f));
+
+            long start = System.nanoTime();
+            aws.imageContainsCatBatch(List.of(FRAME, FRAME, FRAME), 50f);
+            for (int i = 0; i < 3; i++) {
+                assertTrue(aws.imageContainsCat(FRAME, 50f));
+            }
+            //six calls, at most four on stored permits, so the last waits at least half a second
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis >= 400, "six calls took " + elapsedMillis + "ms");
+        }
+    }
+
+    @Test
+    public void slowRekognitionStubFallsBackWithinDeadline() throws Exception {
+        URI endpoint = startRekognitionStub(3000, "{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":99.0}]}");
+        try (AwsImageService aws = new AwsImageService(stubClient(endpoint))) {
+            ResilientImageService service = new ResilientImageService(aws, NEVER_CAT,
+                    Duration.ofMillis(300), new CircuitBreaker(5, Duration.ofSeconds(30)));
+
+            long start = System.nanoTime();
+            assertFalse(service.imageContainsCat(FRAME, 50f));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        }
+    }
+
+    private static RekognitionClient stubClient(URI endpoint) {
+        return RekognitionClient.builder()
+                .endpointOverride(endpoint)
+                .region(Region.of("us-east-2"))
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+                .build();
+    }
+
+    /**
+     * Minimal HTTP/1.1 server answering every DetectLabels call with the given JSON body after
+     * the given delay.
+     */
+    private URI startRekognitionStub(long delayMillis, String responseJson) throws IOException {
+        rekognitionStub = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        CountDownLatch listening = new CountDownLatch(1);
+        Thread acceptor = new Thread(() -> {
+            listening.countDown();
+            while (!rekognitionStub.isClosed()) {
+                try {
+                    Socket socket = rekognitionStub.accept();
+                    Thread connection = new Thread(() -> serve(socket, delayMillis, responseJson));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "rekognition-stub");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            listening.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return URI.create("http://127.0.0.1:" + rekognitionStub.getLocalPort());
+    }
+
+    private static void serve(Socket socket, long delayMillis, String responseJson) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                int contentLength = 0;
+                String line = in.readLine();
+                if (line == null) {
+                    return;
+                }
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    if (line.toLowerCase().startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                in.skip(contentLength);
+                sleep(delayMillis);
+                byte[] body = responseJson.getBytes(StandardCharsets.UTF_8);
+                out.write(("HTTP/1.1 200 OK\r\n"
+                        + "Content-Type: application/x-amz-json-1.1\r\n"
+                        + "x-amzn-RequestId: stub\r\n"
+                        + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.write(body);
+                out.flush();
+            }
+        } catch (IOException e) {
+            //client went away
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
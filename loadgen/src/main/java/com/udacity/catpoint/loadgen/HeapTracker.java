@@ -0,0 +1,72 @@
+package com.udacity.catpoint.loadgen;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows how much heap survives garbage collection over a run, which is what grows when
+ * something leaks. Samples the heap pools' usage after their last collection, so sampling
+ * never forces a collection itself, and fits a line through the samples to estimate growth.
+ */
+public class HeapTracker {
+
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final List<double[]> samples = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+
+    public HeapTracker() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    /**
+     * @return the heap in use after the latest collection of each pool, in bytes
+     */
+    public long liveBytes() {
+        long live = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) {
+                live += usage.getUsed();
+            }
+        }
+        return live;
+    }
+
+    public synchronized long sample() {
+        long live = liveBytes();
+        samples.add(new double[]{(System.nanoTime() - startNanos) / 3.6e12, live});
+        return live;
+    }
+
+    /**
+     * @return the least-squares slope of the samples in bytes per hour, or 0 with fewer than
+     * two samples
+     */
+    public synchronized double growthPerHour() {
+        int n = samples.size();
+        if (n < 2) {
+            return 0;
+        }
+        double meanHours = 0;
+        double meanBytes = 0;
+        for (double[] sample : samples) {
+            meanHours += sample[0] / n;
+            meanBytes += sample[1] / n;
+        }
+        double covariance = 0;
+        double variance = 0;
+        for (double[] sample : samples) {
+            covariance += (sample[0] - meanHours) * (sample[1] - meanBytes);
+            variance += (sample[0] - meanHours) * (sample[0] - meanHours);
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+}
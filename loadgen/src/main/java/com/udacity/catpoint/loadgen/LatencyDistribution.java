@@ -0,0 +1,81 @@
+package com.udacity.catpoint.loadgen;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * How long the stub image service takes per frame. Parsed from specs in milliseconds:
+ * <pre>
+ *      fixed:20              always 20ms
+ *      uniform:5:50          evenly spread between 5ms and 50ms
+ *      lognormal:20:250      median 20ms, 99th percentile 250ms, the long tail of a remote call
+ * </pre>
+ */
+public class LatencyDistribution {
+
+    //standard normal quantile of the 99th percentile
+    private static final double Z_99 = 2.3263;
+
+    private enum Shape { FIXED, UNIFORM, LOGNORMAL }
+
+    private final Shape shape;
+    private final double first;
+    private final double second;
+
+    private LatencyDistribution(Shape shape, double first, double second) {
+        this.shape = shape;
+        this.first = first;
+        this.second = second;
+    }
+
+    public static LatencyDistribution fixed(double millis) {
+        return new LatencyDistribution(Shape.FIXED, millis, millis);
+    }
+
+    public static LatencyDistribution uniform(double minMillis, double maxMillis) {
+        return new LatencyDistribution(Shape.UNIFORM, minMillis, maxMillis);
+    }
+
+    public static LatencyDistribution lognormal(double medianMillis, double p99Millis) {
+        if (medianMillis <= 0 || p99Millis < medianMillis) {
+            throw new IllegalArgumentException("Need 0 < median <= p99, got " + medianMillis + " and " + p99Millis);
+        }
+        //mu and sigma of the underlying normal
+        return new LatencyDistribution(Shape.LOGNORMAL, Math.log(medianMillis), Math.log(p99Millis / medianMillis) / Z_99);
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0].toLowerCase(Locale.ROOT)) {
+                case "fixed":
+                    return fixed(Double.parseDouble(parts[1]));
+                case "uniform":
+                    return uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                case "lognormal":
+                    return lognormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            //reported below
+        }
+        throw new IllegalArgumentException("Expected fixed:ms, uniform:min:max or lognormal:median:p99 but got: " + spec);
+    }
+
+    public long sampleNanos(Random random) {
+        double millis;
+        switch (shape) {
+            case UNIFORM:
+                millis = first + random.nextDouble() * (second - first);
+                break;
+            case LOGNORMAL:
+                millis = Math.exp(first + second * random.nextGaussian());
+                break;
+            default:
+                millis = first;
+                break;
+        }
+        return (long) (millis * 1_000_000);
+    }
+}
@@ -0,0 +1,229 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.RepositorySnapshot;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a trace of sensor, arming and camera events against a {@link SecurityService} backed
+ * by the snapshot repository and a {@link StubImageService}, and reports latency percentiles,
+ * throughput and live heap growth.
+ * <p>
+ * The load is open-loop: each event is handed to the workers when it is due, whether or not
+ * earlier events have finished, and its latency is measured from that due time. A stall
+ * therefore shows up in the latency of every event that arrived during it, instead of quietly
+ * lowering the offered rate the way a closed loop that waits for each call would.
+ * <p>
+ * The service is called under its own lock, one event at a time. Frames are classified outside
+ * it on their own threads, as the camera pipeline does, so a slow image service delays cat
+ * verdicts but not sensor events. Run with the settings described in
+ * {@link LoadProfile} as system properties:
+ * <pre>
+ *      java -Dloadgen.rate=5000 -Dloadgen.durationSeconds=14400 -jar loadgen.jar
+ * </pre>
+ */
+public class LoadGenerator implements Closeable {
+
+    private Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final LoadProfile profile;
+    private final Path snapshotFile;
+    private final PretendDatabaseSecurityRepositoryImpl repository;
+    private final SecurityService securityService;
+    private final ImageService imageService;
+    private final long[] sensorIdHighs;
+    private final long[] sensorIdLows;
+    private final String[] cameraIds;
+    private final BufferedImage catFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private final BufferedImage clearFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<TraceEvent.Kind, LatencyHistogram> latencyByKind = new EnumMap<>(TraceEvent.Kind.class);
+    //swapped out at every progress line
+    private final AtomicReference<LatencyHistogram> intervalLatency = new AtomicReference<>(new LatencyHistogram());
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final HeapTracker heap = new HeapTracker();
+
+    public LoadGenerator(LoadProfile profile) throws IOException {
+        this.profile = profile;
+        for (TraceEvent.Kind kind : TraceEvent.Kind.values()) {
+            latencyByKind.put(kind, new LatencyHistogram());
+        }
+
+        //sensor ids come from the seed too, so recorded traces hit the same sensors on replay
+        Random random = new Random(profile.getSeed());
+        List<Sensor> sensors = new ArrayList<>(profile.getSensors());
+        sensorIdHighs = new long[profile.getSensors()];
+        sensorIdLows = new long[profile.getSensors()];
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < profile.getSensors(); i++) {
+            Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+            sensorIdHighs[i] = random.nextLong();
+            sensorIdLows[i] = random.nextLong();
+            sensor.setSensorId(new UUID(sensorIdHighs[i], sensorIdLows[i]));
+            sensors.add(sensor);
+        }
+        cameraIds = new String[profile.getCameras()];
+        for (int i = 0; i < cameraIds.length; i++) {
+            cameraIds[i] = "camera-" + i;
+        }
+
+        snapshotFile = Files.createTempFile("catpoint-loadgen", ".snapshot");
+        RepositorySnapshot.write(snapshotFile, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, sensors);
+        repository = new PretendDatabaseSecurityRepositoryImpl(snapshotFile, profile.getDurability(), Duration.ofMillis(200), 100);
+        imageService = new StubImageService(profile.getImageLatency(), catFrame, profile.getSeed());
+        securityService = new SecurityService(repository, imageService);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = new LoadProfile(System.getProperties());
+        if (profile.getRecord() != null) {
+            long events = TraceFile.write(profile.getRecord(), new SyntheticTrace(profile));
+            System.out.println("Recorded " + events + " events to " + profile.getRecord());
+            return;
+        }
+        Iterator<TraceEvent> trace = profile.getTrace() != null ? TraceFile.read(profile.getTrace()) : new SyntheticTrace(profile);
+        try (LoadGenerator generator = new LoadGenerator(profile)) {
+            System.out.print(generator.run(trace));
+        }
+    }
+
+    /**
+     * Replays the trace, printing a progress line every report interval, and returns once every
+     * event has finished.
+     */
+    public LoadReport run(Iterator<TraceEvent> trace) throws InterruptedException {
+        ThreadPoolExecutor workers = newWorkers("loadgen-worker-", profile.getWorkers());
+        ThreadPoolExecutor imageWorkers = newWorkers("loadgen-image-", profile.getImageWorkers());
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loadgen-report");
+            t.setDaemon(true);
+            return t;
+        });
+
+        long liveHeapStart = heap.sample();
+        long start = System.nanoTime();
+        long reportMillis = Math.max(1, profile.getReportInterval().toMillis());
+        reporter.scheduleAtFixedRate(() -> printProgress(start, workers, imageWorkers), reportMillis, reportMillis, TimeUnit.MILLISECONDS);
+
+        long maxDispatchLag = 0;
+        try {
+            while (trace.hasNext()) {
+                TraceEvent event = trace.next();
+                long due = start + event.getOffsetNanos();
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                maxDispatchLag = Math.max(maxDispatchLag, System.nanoTime() - due);
+                (event.getKind() == TraceEvent.Kind.FRAME ? imageWorkers : workers).execute(() -> execute(event, due));
+            }
+        } finally {
+            workers.shutdown();
+            imageWorkers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            imageWorkers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            reporter.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<TraceEvent.Kind, LatencyHistogram.Snapshot> snapshots = new EnumMap<>(TraceEvent.Kind.class);
+        latencyByKind.forEach((kind, histogram) -> snapshots.put(kind, histogram.snapshot()));
+        return new LoadReport(completed.sum(), errors.sum(), elapsed, maxDispatchLag, latency.snapshot(), snapshots,
+                liveHeapStart, heap.sample(), heap.growthPerHour());
+    }
+
+    private static ThreadPoolExecutor newWorkers(String namePrefix, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, namePrefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private void execute(TraceEvent event, long due) {
+        try {
+            switch (event.getKind()) {
+                case SENSOR -> {
+                    int sensor = event.getTarget() % sensorIdHighs.length;
+                    synchronized (securityService) {
+                        securityService.changeSensorActivationStatus(sensorIdHighs[sensor], sensorIdLows[sensor], event.getFlag());
+                    }
+                }
+                case ARMING -> {
+                    synchronized (securityService) {
+                        securityService.setArmingStatus(event.getArmingStatus());
+                    }
+                }
+                case FRAME -> {
+                    boolean cat = imageService.imageContainsCat(event.getFlag() ? catFrame : clearFrame, 50.0f);
+                    synchronized (securityService) {
+                        securityService.applyImageVerdict(cameraIds[event.getTarget() % cameraIds.length], cat);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.warn("Event {} failed", event.toCsv(), e);
+        }
+        long nanos = System.nanoTime() - due;
+        latency.record(nanos);
+        latencyByKind.get(event.getKind()).record(nanos);
+        intervalLatency.get().record(nanos);
+        completed.increment();
+    }
+
+    private void printProgress(long start, ThreadPoolExecutor workers, ThreadPoolExecutor imageWorkers) {
+        LatencyHistogram.Snapshot interval = intervalLatency.getAndSet(new LatencyHistogram()).snapshot();
+        double intervalSeconds = profile.getReportInterval().toNanos() / 1e9;
+        System.out.println(String.format(Locale.ROOT, "[%6.0fs] %7.0f events/s  %s  queued %d  live heap %s",
+                (System.nanoTime() - start) / 1e9, interval.getCount() / intervalSeconds, LoadReport.percentiles(interval),
+                workers.getQueue().size() + imageWorkers.getQueue().size(), LoadReport.megabytes(heap.sample())));
+    }
+
+    /**
+     * Writes out the repository and deletes its snapshot file.
+     */
+    @Override
+    public void close() throws IOException {
+        repository.close();
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    public SecurityService getSecurityService() {
+        return securityService;
+    }
+}
@@ -0,0 +1,148 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.security.data.Durability;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Settings of a load run, read from properties with these keys and defaults:
+ * <pre>
+ *      loadgen.sensors=1000              sensors in the repository
+ *      loadgen.cameras=4                 cameras sending frames
+ *      loadgen.rate=1000                 events per second, sent whether or not earlier events finished
+ *      loadgen.poisson=true              exponential gaps between events rather than even spacing
+ *      loadgen.durationSeconds=60        length of the run
+ *      loadgen.armingRatio=0.001         share of events that arm or disarm the system
+ *      loadgen.frameRatio=0.1            share of events that are camera frames, the rest are sensors
+ *      loadgen.catRatio=0.05             share of frames that show a cat
+ *      loadgen.imageLatency=lognormal:20:250   per-frame time of the stub image service, see {@link LatencyDistribution}
+ *      loadgen.workers=4                 threads running sensor and arming events
+ *      loadgen.imageWorkers=16           threads classifying frames, i.e. concurrent image service calls
+ *      loadgen.seed=42                   seed of the trace, sensor ids and image latencies
+ *      loadgen.reportSeconds=10          interval between progress lines
+ *      loadgen.durability=WRITE_BEHIND   durability of the snapshot repository under test
+ *      loadgen.trace=[file]              replay a recorded trace instead of generating one
+ *      loadgen.record=[file]             write the generated trace to a file and exit
+ * </pre>
+ */
+public class LoadProfile {
+
+    private final int sensors;
+    private final int cameras;
+    private final double rate;
+    private final boolean poisson;
+    private final Duration duration;
+    private final double armingRatio;
+    private final double frameRatio;
+    private final double catRatio;
+    private final LatencyDistribution imageLatency;
+    private final int workers;
+    private final int imageWorkers;
+    private final long seed;
+    private final Duration reportInterval;
+    private final Durability durability;
+    private final Path trace;
+    private final Path record;
+
+    public LoadProfile(Properties properties) {
+        sensors = Integer.parseInt(properties.getProperty("loadgen.sensors", "1000"));
+        cameras = Integer.parseInt(properties.getProperty("loadgen.cameras", "4"));
+        rate = Double.parseDouble(properties.getProperty("loadgen.rate", "1000"));
+        poisson = Boolean.parseBoolean(properties.getProperty("loadgen.poisson", "true"));
+        duration = Duration.ofMillis((long) (Double.parseDouble(properties.getProperty("loadgen.durationSeconds", "60")) * 1000));
+        armingRatio = Double.parseDouble(properties.getProperty("loadgen.armingRatio", "0.001"));
+        frameRatio = Double.parseDouble(properties.getProperty("loadgen.frameRatio", "0.1"));
+        catRatio = Double.parseDouble(properties.getProperty("loadgen.catRatio", "0.05"));
+        imageLatency = LatencyDistribution.parse(properties.getProperty("loadgen.imageLatency", "lognormal:20:250"));
+        workers = Integer.parseInt(properties.getProperty("loadgen.workers", "4"));
+        imageWorkers = Integer.parseInt(properties.getProperty("loadgen.imageWorkers", "16"));
+        seed = Long.parseLong(properties.getProperty("loadgen.seed", "42"));
+        reportInterval = Duration.ofMillis((long) (Double.parseDouble(properties.getProperty("loadgen.reportSeconds", "10")) * 1000));
+        durability = Durability.valueOf(properties.getProperty("loadgen.durability", Durability.WRITE_BEHIND.name()));
+        trace = pathOrNull(properties.getProperty("loadgen.trace"));
+        record = pathOrNull(properties.getProperty("loadgen.record"));
+        if (sensors < 1 || cameras < 1 || rate <= 0 || workers < 1 || imageWorkers < 1) {
+            throw new IllegalArgumentException("Need at least one sensor, camera and worker and a positive rate");
+        }
+        if (armingRatio < 0 || frameRatio < 0 || armingRatio + frameRatio > 1 || catRatio < 0 || catRatio > 1) {
+            throw new IllegalArgumentException("Event ratios must lie between 0 and 1, and arming plus frame ratios at most 1");
+        }
+    }
+
+    private static Path pathOrNull(String value) {
+        return value == null || value.isBlank() ? null : Paths.get(value);
+    }
+
+    public int getSensors() {
+        return sensors;
+    }
+
+    public int getCameras() {
+        return cameras;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public boolean isPoisson() {
+        return poisson;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public double getArmingRatio() {
+        return armingRatio;
+    }
+
+    public double getFrameRatio() {
+        return frameRatio;
+    }
+
+    public double getCatRatio() {
+        return catRatio;
+    }
+
+    public LatencyDistribution getImageLatency() {
+        return imageLatency;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getImageWorkers() {
+        return imageWorkers;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Duration getReportInterval() {
+        return reportInterval;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @return the trace to replay, or null to generate one
+     */
+    public Path getTrace() {
+        return trace;
+    }
+
+    /**
+     * @return where to record the generated trace, or null to run it
+     */
+    public Path getRecord() {
+        return record;
+    }
+}
@@ -0,0 +1,111 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcome of a load run. Latencies run from when each event was due, not from when it
+ * started, so time spent queued behind slow events is included.
+ */
+public class LoadReport {
+
+    private final long events;
+    private final long errors;
+    private final long elapsedNanos;
+    private final long maxDispatchLagNanos;
+    private final LatencyHistogram.Snapshot latency;
+    private final Map<TraceEvent.Kind, LatencyHistogram.Snapshot> latencyByKind;
+    private final long liveHeapStart;
+    private final long liveHeapEnd;
+    private final double liveHeapGrowthPerHour;
+
+    public LoadReport(long events, long errors, long elapsedNanos, long maxDispatchLagNanos,
+                      LatencyHistogram.Snapshot latency, Map<TraceEvent.Kind, LatencyHistogram.Snapshot> latencyByKind,
+                      long liveHeapStart, long liveHeapEnd, double liveHeapGrowthPerHour) {
+        this.events = events;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.maxDispatchLagNanos = maxDispatchLagNanos;
+        this.latency = latency;
+        this.latencyByKind = latencyByKind;
+        this.liveHeapStart = liveHeapStart;
+        this.liveHeapEnd = liveHeapEnd;
+        this.liveHeapGrowthPerHour = liveHeapGrowthPerHour;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : events * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the furthest behind schedule an event was handed to the workers; large values
+     * mean the generator itself could not keep up and the offered rate was lower than asked
+     */
+    public long getMaxDispatchLagNanos() {
+        return maxDispatchLagNanos;
+    }
+
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency;
+    }
+
+    public LatencyHistogram.Snapshot getLatency(TraceEvent.Kind kind) {
+        return latencyByKind.get(kind);
+    }
+
+    public long getLiveHeapStart() {
+        return liveHeapStart;
+    }
+
+    public long getLiveHeapEnd() {
+        return liveHeapEnd;
+    }
+
+    public double getLiveHeapGrowthPerHour() {
+        return liveHeapGrowthPerHour;
+    }
+
+    static String percentiles(LatencyHistogram.Snapshot snapshot) {
+        return String.format(Locale.ROOT, "p50 %s  p99 %s  p99.9 %s  max %s  (%d)",
+                millis(snapshot.getValueAtPercentile(50)), millis(snapshot.getValueAtPercentile(99)),
+                millis(snapshot.getValueAtPercentile(99.9)), millis(snapshot.getMax()), snapshot.getCount());
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1e6);
+    }
+
+    static String megabytes(double bytes) {
+        return String.format(Locale.ROOT, "%.1fMB", bytes / (1024 * 1024));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%d events in %.1fs, %.0f events/s, %d errors, dispatch lag at most %s%n",
+                events, elapsedNanos / 1e9, getThroughput(), errors, millis(maxDispatchLagNanos)));
+        report.append(String.format(Locale.ROOT, "  %-8s %s%n", "all", percentiles(latency)));
+        latencyByKind.forEach((kind, snapshot) -> {
+            if (snapshot.getCount() > 0) {
+                report.append(String.format(Locale.ROOT, "  %-8s %s%n", kind.name().toLowerCase(Locale.ROOT), percentiles(snapshot)));
+            }
+        });
+        report.append(String.format(Locale.ROOT, "  live heap %s -> %s, growing %s/hour%n",
+                megabytes(liveHeapStart), megabytes(liveHeapEnd), megabytes(liveHeapGrowthPerHour)));
+        return report.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.image.service.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stand-in for a remote image service. Every call takes a time drawn from the
+ * configured distribution, and a frame shows a cat exactly when it is the given cat frame, so
+ * a trace decides the verdicts while the stub only adds the latency.
+ * <p>
+ * Latencies come from one seeded sequence, so a run draws the same latencies each time;
+ * with several workers, which frame gets which latency depends on thread timing.
+ */
+public class StubImageService implements ImageService {
+
+    private final LatencyDistribution latency;
+    private final BufferedImage catFrame;
+    private final Random random;
+
+    public StubImageService(LatencyDistribution latency, BufferedImage catFrame, long seed) {
+        this.latency = latency;
+        this.catFrame = catFrame;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long deadline = System.nanoTime() + latency.sampleNanos(random);
+        //park in a loop, parkNanos may return early
+        for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+        return image == catFrame;
+    }
+}
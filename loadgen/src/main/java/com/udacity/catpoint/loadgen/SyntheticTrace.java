@@ -0,0 +1,59 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Generates the events of a run from the profile's seed, so the same profile always produces
+ * the same trace. Events arrive at the profile's rate, either evenly spaced or as a Poisson
+ * process, until the end of the run.
+ */
+public class SyntheticTrace implements Iterator<TraceEvent> {
+
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private final LoadProfile profile;
+    private final Random random;
+    private final double meanGapNanos;
+    private final long endNanos;
+    private double offsetNanos;
+
+    public SyntheticTrace(LoadProfile profile) {
+        this.profile = profile;
+        this.random = new Random(profile.getSeed());
+        this.meanGapNanos = 1_000_000_000.0 / profile.getRate();
+        this.endNanos = profile.getDuration().toNanos();
+        advance();
+    }
+
+    private void advance() {
+        offsetNanos += profile.isPoisson() ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return offsetNanos < endNanos;
+    }
+
+    @Override
+    public TraceEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long offset = (long) offsetNanos;
+        double kind = random.nextDouble();
+        TraceEvent event;
+        if (kind < profile.getArmingRatio()) {
+            event = TraceEvent.arming(offset, ARMING_STATUSES[random.nextInt(ARMING_STATUSES.length)]);
+        } else if (kind < profile.getArmingRatio() + profile.getFrameRatio()) {
+            event = TraceEvent.frame(offset, random.nextInt(profile.getCameras()), random.nextDouble() < profile.getCatRatio());
+        } else {
+            event = TraceEvent.sensor(offset, random.nextInt(profile.getSensors()), random.nextBoolean());
+        }
+        advance();
+        return event;
+    }
+}
@@ -0,0 +1,113 @@
+package com.udacity.catpoint.loadgen;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One event of a load trace, due a fixed time after the start of the run. Sensors and cameras
+ * are referred to by index, so a recorded trace replays against any run with at least as many
+ * of them.
+ * <p>
+ * Written to trace files as one line of {@code offsetMicros,kind,target,value}, e.g.
+ * <pre>
+ *      1520,SENSOR,17,true
+ *      2000,ARMING,0,ARMED_HOME
+ *      3000,FRAME,2,false
+ * </pre>
+ */
+public class TraceEvent {
+
+    public enum Kind {
+        /**
+         * A sensor changes state; the value is whether it is now active.
+         */
+        SENSOR,
+        /**
+         * The system is armed or disarmed; the value is the new arming status.
+         */
+        ARMING,
+        /**
+         * A camera frame is classified; the value is whether it shows a cat.
+         */
+        FRAME
+    }
+
+    private final long offsetNanos;
+    private final Kind kind;
+    private final int target;
+    private final boolean flag;
+    private final ArmingStatus armingStatus;
+
+    private TraceEvent(long offsetNanos, Kind kind, int target, boolean flag, ArmingStatus armingStatus) {
+        this.offsetNanos = offsetNanos;
+        this.kind = kind;
+        this.target = target;
+        this.flag = flag;
+        this.armingStatus = armingStatus;
+    }
+
+    public static TraceEvent sensor(long offsetNanos, int sensorIndex, boolean active) {
+        return new TraceEvent(offsetNanos, Kind.SENSOR, sensorIndex, active, null);
+    }
+
+    public static TraceEvent arming(long offsetNanos, ArmingStatus armingStatus) {
+        return new TraceEvent(offsetNanos, Kind.ARMING, 0, false, armingStatus);
+    }
+
+    public static TraceEvent frame(long offsetNanos, int cameraIndex, boolean cat) {
+        return new TraceEvent(offsetNanos, Kind.FRAME, cameraIndex, cat, null);
+    }
+
+    public static TraceEvent parse(String line) {
+        String[] fields = line.trim().split(",");
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Expected offsetMicros,kind,target,value but got: " + line);
+        }
+        long offsetNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(fields[0]));
+        int target = Integer.parseInt(fields[2]);
+        switch (Kind.valueOf(fields[1].toUpperCase(Locale.ROOT))) {
+            case SENSOR:
+                return sensor(offsetNanos, target, Boolean.parseBoolean(fields[3]));
+            case ARMING:
+                return arming(offsetNanos, ArmingStatus.valueOf(fields[3]));
+            default:
+                return frame(offsetNanos, target, Boolean.parseBoolean(fields[3]));
+        }
+    }
+
+    public String toCsv() {
+        String value = kind == Kind.ARMING ? armingStatus.name() : Boolean.toString(flag);
+        return TimeUnit.NANOSECONDS.toMicros(offsetNanos) + "," + kind + "," + target + "," + value;
+    }
+
+    /**
+     * @return when the event is due, relative to the start of the run
+     */
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the sensor or camera index
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * @return whether the sensor becomes active, or whether the frame shows a cat
+     */
+    public boolean getFlag() {
+        return flag;
+    }
+
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+}
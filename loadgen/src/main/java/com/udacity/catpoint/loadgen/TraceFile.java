@@ -0,0 +1,80 @@
+package com.udacity.catpoint.loadgen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads and writes traces as text, one {@link TraceEvent} per line in offset order. Blank lines
+ * and lines starting with # are ignored. Traces are streamed, so a multi-hour recording never
+ * has to fit in memory.
+ */
+public class TraceFile {
+
+    private static final String HEADER = "# offsetMicros,kind,target,value";
+
+    private TraceFile() {
+    }
+
+    /**
+     * @return the number of events written
+     */
+    public static long write(Path file, Iterator<TraceEvent> events) throws IOException {
+        long count = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            while (events.hasNext()) {
+                writer.write(events.next().toCsv());
+                writer.newLine();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Opens a trace for reading. The file is closed once the last event has been read.
+     */
+    public static Iterator<TraceEvent> read(Path file) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        return new Iterator<>() {
+            private TraceEvent next = readNext();
+
+            private TraceEvent readNext() {
+                try {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        if (!line.isBlank() && !line.startsWith("#")) {
+                            return TraceEvent.parse(line);
+                        }
+                    }
+                    reader.close();
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read trace " + file, e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public TraceEvent next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                TraceEvent event = next;
+                next = readNext();
+                return event;
+            }
+        };
+    }
+}
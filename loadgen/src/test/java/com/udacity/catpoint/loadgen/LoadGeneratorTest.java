@@ -0,0 +1,77 @@
+package com.udacity.catpoint.loadgen;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void syntheticTraceIsTheSameForTheSameSeed() {
+        LoadProfile profile = profile(5000, 1);
+        assertEquals(csv(new SyntheticTrace(profile)), csv(new SyntheticTrace(profile)));
+    }
+
+    @Test
+    public void recordedTraceReplaysTheGeneratedEvents() throws IOException {
+        LoadProfile profile = profile(2000, 1);
+        Path file = dir.resolve("trace.csv");
+        long written = TraceFile.write(file, new SyntheticTrace(profile));
+
+        List<String> replayed = csv(TraceFile.read(file));
+        assertEquals(written, replayed.size());
+        assertEquals(csv(new SyntheticTrace(profile)), replayed);
+    }
+
+    @Test
+    public void runCompletesEveryEventOfTheTrace() throws Exception {
+        LoadProfile profile = profile(2000, 0.5);
+        int expected = csv(new SyntheticTrace(profile)).size();
+        LoadReport report;
+        try (LoadGenerator generator = new LoadGenerator(profile)) {
+            report = generator.run(new SyntheticTrace(profile));
+        }
+
+        assertEquals(expected, report.getEvents());
+        assertEquals(0, report.getErrors());
+        assertEquals(expected, report.getLatency().getCount());
+        assertTrue(report.getLatency(TraceEvent.Kind.FRAME).getValueAtPercentile(50) >= 1_000_000);
+    }
+
+    @Test
+    public void latencyDistributionsMatchTheirSpecs() {
+        java.util.Random random = new java.util.Random(1);
+        assertEquals(20_000_000, LatencyDistribution.parse("fixed:20").sampleNanos(random));
+        long sample = LatencyDistribution.parse("uniform:5:10").sampleNanos(random);
+        assertTrue(sample >= 5_000_000 && sample <= 10_000_000);
+        assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.parse("gaussian:5"));
+    }
+
+    private LoadProfile profile(double rate, double seconds) {
+        Properties properties = new Properties();
+        properties.setProperty("loadgen.sensors", "100");
+        properties.setProperty("loadgen.rate", Double.toString(rate));
+        properties.setProperty("loadgen.durationSeconds", Double.toString(seconds));
+        properties.setProperty("loadgen.armingRatio", "0.01");
+        properties.setProperty("loadgen.frameRatio", "0.2");
+        properties.setProperty("loadgen.imageLatency", "fixed:1");
+        return new LoadProfile(properties);
+    }
+
+    private static List<String> csv(Iterator<TraceEvent> trace) {
+        List<String> lines = new ArrayList<>();
+        trace.forEachRemaining(event -> lines.add(event.toCsv()));
+        return lines;
+    }
+}
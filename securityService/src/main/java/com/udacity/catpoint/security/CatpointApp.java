@@ -1,12 +1,15 @@
 package com.udacity.catpoint.security;
 
 import com.udacity.catpoint.security.application.CatpointGui;
+import com.udacity.catpoint.telemetry.events.FlightRecording;
 
 /**
  * This is the main class that launches the application.
  */
 public class CatpointApp {
     public static void main(String[] args) {
+        //first, so the recording covers repository loading too
+        FlightRecording.startIfConfigured();
         CatpointGui gui = new CatpointGui();
         gui.setVisible(true);
     }
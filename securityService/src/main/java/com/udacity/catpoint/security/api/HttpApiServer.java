@@ -0,0 +1,337 @@
+package com.udacity.catpoint.security.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Minimal non-blocking HTTP/1.1 server built on a single NIO selector thread. Supports
+ * keep-alive, request pipelining (responses are written back in request order) and
+ * long-lived streaming responses used for server-sent events.
+ * <p>
+ * All request handling and all socket I/O happens on the event-loop thread. Other threads
+ * talk to the loop through {@link #execute(Runnable)} and {@link #broadcast(String)}, and
+ * handlers hand blocking work to them with {@link HttpResponse#deferred}.
+ */
+public class HttpApiServer implements Closeable {
+
+    private static final int INITIAL_BUFFER_BYTES = 16 * 1024;
+    //stop reading from a pipelining client until it has drained this much pending output
+    private static final int MAX_PENDING_OUTPUT_BYTES = 1024 * 1024;
+
+    private Logger log = LoggerFactory.getLogger(HttpApiServer.class);
+
+    private final InetSocketAddress address;
+    private final HttpHandler handler;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<Connection> streams = new ArrayList<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread loopThread;
+    private volatile boolean running;
+
+    public HttpApiServer(InetSocketAddress address, HttpHandler handler) {
+        this.address = address;
+        this.handler = handler;
+    }
+
+    /**
+     * Binds the listening socket and starts the event loop on a daemon thread.
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        loopThread = new Thread(this::runLoop, "catpoint-http-" + getPort());
+        loopThread.setDaemon(true);
+        loopThread.start();
+        log.info("HTTP API listening on {}", serverChannel.getLocalAddress());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Runs the task on the event-loop thread.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Writes the chunk to every open streaming response.
+     */
+    public void broadcast(String chunk) {
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        execute(() -> {
+            for (Connection stream : new ArrayList<>(streams)) {
+                stream.enqueue(ByteBuffer.wrap(bytes));
+                if (stream.pendingBytes > MAX_PENDING_OUTPUT_BYTES) {
+                    log.warn("Dropping slow event stream {}", stream.channel);
+                    close(stream);
+                } else {
+                    flush(stream);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (loopThread != null) {
+            try {
+                loopThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isWritable()) {
+                            flush(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            log.error("HTTP API event loop stopped", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) {
+        int n;
+        try {
+            n = connection.channel.read(connection.in);
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        if (n < 0) {
+            close(connection);
+            return;
+        }
+
+        processInput(connection);
+        flush(connection);
+    }
+
+    /**
+     * Answers the complete requests buffered for the connection, stopping at one whose response
+     * is deferred until that response is sent.
+     */
+    private void processInput(Connection connection) {
+        ByteBuffer in = connection.in;
+        in.flip();
+        try {
+            //a single read may carry several pipelined requests; answer all of them in order
+            while (!connection.closeAfterWrite && !connection.streaming && !connection.awaiting) {
+                HttpRequest request = HttpRequestParser.parse(in);
+                if (request == null) {
+                    break;
+                }
+                dispatch(connection, request);
+            }
+        } catch (HttpRequestParser.HttpParseException e) {
+            connection.enqueue(HttpResponse.error(e.getStatus(), e.getMessage()).encode(false));
+            connection.closeAfterWrite = true;
+        }
+
+        if (connection.streaming) {
+            //streaming clients have nothing more to say; discard anything they send
+            in.clear();
+        } else {
+            int required = HttpRequestParser.requiredCapacity(in);
+            in.compact();
+            if (required > in.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(required);
+                in.flip();
+                larger.put(in);
+                connection.in = larger;
+            }
+        }
+    }
+
+    private void dispatch(Connection connection, HttpRequest request) {
+        HttpResponse response;
+        try {
+            response = handler.handle(request);
+        } catch (RuntimeException e) {
+            log.error("Unhandled error serving {} {}", request.getMethod(), request.getPath(), e);
+            response = HttpResponse.error(500, "Internal error");
+        }
+        if (response.getDeferred() != null) {
+            connection.awaiting = true;
+            response.getDeferred().whenComplete((completed, error) -> execute(() -> {
+                connection.awaiting = false;
+                if (!connection.channel.isOpen()) {
+                    return;
+                }
+                HttpResponse answer = completed;
+                if (error != null || completed == null || completed.getDeferred() != null) {
+                    log.error("Unhandled error serving {} {}", request.getMethod(), request.getPath(), error);
+                    answer = HttpResponse.error(500, "Internal error");
+                }
+                respond(connection, request, answer);
+                processInput(connection);
+                flush(connection);
+            }));
+            return;
+        }
+        respond(connection, request, response);
+    }
+
+    private void respond(Connection connection, HttpRequest request, HttpResponse response) {
+        boolean keepAlive = request.isKeepAlive() || response.isStreaming();
+        connection.enqueue(response.encode(keepAlive));
+        if (response.isStreaming()) {
+            connection.streaming = true;
+            streams.add(connection);
+        } else if (!keepAlive) {
+            connection.closeAfterWrite = true;
+        }
+    }
+
+    private void flush(Connection connection) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        try {
+            while (!connection.out.isEmpty()) {
+                ByteBuffer[] pending = connection.out.toArray(new ByteBuffer[0]);
+                long written = connection.channel.write(pending);
+                connection.pendingBytes -= written;
+                while (!connection.out.isEmpty() && !connection.out.peek().hasRemaining()) {
+                    connection.out.poll();
+                }
+                if (written == 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+
+        if (connection.out.isEmpty() && connection.closeAfterWrite) {
+            close(connection);
+            return;
+        }
+        int interest = 0;
+        if (!connection.out.isEmpty()) {
+            interest |= SelectionKey.OP_WRITE;
+        }
+        //a connection waiting for a deferred response reads nothing more until it is sent
+        if (connection.pendingBytes < MAX_PENDING_OUTPUT_BYTES && !connection.closeAfterWrite && !connection.awaiting) {
+            interest |= SelectionKey.OP_READ;
+        }
+        connection.key.interestOps(interest);
+    }
+
+    private void close(Connection connection) {
+        streams.remove(connection);
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            log.debug("Error closing connection", e);
+        }
+    }
+
+    private void shutdown() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                log.debug("Error closing channel", e);
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.debug("Error closing selector", e);
+        }
+    }
+
+    /**
+     * Per-connection state. Only ever touched from the event-loop thread.
+     */
+    private static class Connection {
+        private final SocketChannel channel;
+        private final Queue<ByteBuffer> out = new ArrayDeque<>();
+        private SelectionKey key;
+        private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+        private long pendingBytes;
+        private boolean closeAfterWrite;
+        private boolean streaming;
+        private boolean awaiting;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void enqueue(ByteBuffer buffer) {
+            out.add(buffer);
+            pendingBytes += buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.udacity.catpoint.security.api;
+
+/**
+ * Produces the response for a single request. Handlers run on the server's event-loop
+ * thread, so they must not block; blocking work goes elsewhere and is answered with
+ * {@link HttpResponse#deferred}.
+ */
+public interface HttpHandler {
+    HttpResponse handle(HttpRequest request);
+}
@@ -0,0 +1,61 @@
+package com.udacity.catpoint.security.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A single parsed HTTP/1.x request. Header names are stored lower-cased.
+ */
+public class HttpRequest {
+
+    private final String method;
+    private final String path;
+    private final String version;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    HttpRequest(String method, String path, String version, Map<String, String> headers, byte[] body) {
+        this.method = method;
+        this.path = path;
+        this.version = version;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getBodyAsString() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * HTTP/1.1 connections stay open unless the client asks otherwise; HTTP/1.0 connections
+     * only stay open when the client explicitly asks for keep-alive.
+     */
+    boolean isKeepAlive() {
+        String connection = getHeader("connection");
+        if ("HTTP/1.0".equals(version)) {
+            return connection != null && connection.equalsIgnoreCase("keep-alive");
+        }
+        return connection == null || !connection.equalsIgnoreCase("close");
+    }
+}
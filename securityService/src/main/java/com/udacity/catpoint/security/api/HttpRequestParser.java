@@ -0,0 +1,140 @@
+package com.udacity.catpoint.security.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Incremental HTTP/1.x request parser. Works directly on a connection's input buffer so that
+ * several pipelined requests arriving in one read can be consumed back to back.
+ */
+class HttpRequestParser {
+
+    static final int MAX_HEADER_BYTES = 8 * 1024;
+    static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+
+    private HttpRequestParser() {
+    }
+
+    /**
+     * Attempts to parse one request from the readable bytes of the buffer.
+     *
+     * @param in buffer in read mode, positioned at the first unconsumed byte
+     * @return the request, with the buffer advanced past it, or null if the request is not complete yet
+     * @throws HttpParseException if the bytes cannot be a valid request
+     */
+    static HttpRequest parse(ByteBuffer in) {
+        int start = in.position();
+        int headerEnd = indexOfHeaderEnd(in, start, in.limit());
+        if (headerEnd < 0) {
+            if (in.remaining() > MAX_HEADER_BYTES) {
+                throw new HttpParseException(431, "Request headers too large");
+            }
+            return null;
+        }
+
+        String head = new String(in.array(), in.arrayOffset() + start, headerEnd - start, StandardCharsets.ISO_8859_1);
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+            throw new HttpParseException(400, "Malformed request line");
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                throw new HttpParseException(400, "Malformed header");
+            }
+            headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+        }
+        if (headers.containsKey("transfer-encoding")) {
+            throw new HttpParseException(501, "Chunked request bodies are not supported");
+        }
+
+        int contentLength = 0;
+        String lengthHeader = headers.get("content-length");
+        if (lengthHeader != null) {
+            try {
+                contentLength = Integer.parseInt(lengthHeader);
+            } catch (NumberFormatException e) {
+                throw new HttpParseException(400, "Invalid Content-Length");
+            }
+            if (contentLength < 0) {
+                throw new HttpParseException(400, "Invalid Content-Length");
+            }
+            if (contentLength > MAX_BODY_BYTES) {
+                throw new HttpParseException(413, "Request body too large");
+            }
+        }
+
+        int bodyStart = headerEnd + 4;
+        if (in.limit() - bodyStart < contentLength) {
+            return null;
+        }
+        byte[] body = new byte[contentLength];
+        in.position(bodyStart);
+        in.get(body);
+
+        String path = requestLine[1];
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        return new HttpRequest(requestLine[0], path, requestLine[2], headers, body);
+    }
+
+    /**
+     * Number of bytes the buffer must be able to hold to complete the request that starts at
+     * its position, or 0 if that is not known yet.
+     */
+    static int requiredCapacity(ByteBuffer in) {
+        int headerEnd = indexOfHeaderEnd(in, in.position(), in.limit());
+        if (headerEnd < 0) {
+            return 0;
+        }
+        String head = new String(in.array(), in.arrayOffset() + in.position(), headerEnd - in.position(), StandardCharsets.ISO_8859_1)
+                .toLowerCase(Locale.ROOT);
+        int idx = head.indexOf("\r\ncontent-length:");
+        if (idx < 0) {
+            return 0;
+        }
+        int end = head.indexOf("\r\n", idx + 2);
+        String value = head.substring(idx + 17, end < 0 ? head.length() : end).trim();
+        try {
+            return headerEnd - in.position() + 4 + Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int indexOfHeaderEnd(ByteBuffer in, int from, int to) {
+        byte[] a = in.array();
+        int off = in.arrayOffset();
+        for (int i = from; i + 3 < to; i++) {
+            if (a[off + i] == '\r' && a[off + i + 1] == '\n' && a[off + i + 2] == '\r' && a[off + i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Thrown when the input cannot be parsed. Carries the status code to answer with before
+     * closing the connection.
+     */
+    static class HttpParseException extends RuntimeException {
+        private final int status;
+
+        HttpParseException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+}
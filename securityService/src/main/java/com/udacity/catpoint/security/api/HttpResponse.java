@@ -0,0 +1,123 @@
+package com.udacity.catpoint.security.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A complete HTTP response. Use {@link #stream(String)} for responses whose body is written
+ * later as a never-ending stream, such as server-sent events, and {@link #deferred} for
+ * responses that are worked out off the event-loop thread.
+ */
+public class HttpResponse {
+
+    private final int status;
+    private final String contentType;
+    private final byte[] body;
+    private final boolean streaming;
+    private final CompletionStage<HttpResponse> deferred;
+
+    private HttpResponse(int status, String contentType, byte[] body, boolean streaming) {
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body;
+        this.streaming = streaming;
+        this.deferred = null;
+    }
+
+    private HttpResponse(CompletionStage<HttpResponse> deferred) {
+        this.status = 0;
+        this.contentType = null;
+        this.body = new byte[0];
+        this.streaming = false;
+        this.deferred = deferred;
+    }
+
+    public static HttpResponse json(int status, String json) {
+        return new HttpResponse(status, "application/json", json.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    public static HttpResponse text(int status, String text) {
+        return new HttpResponse(status, "text/plain; charset=utf-8", text.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    public static HttpResponse empty(int status) {
+        return new HttpResponse(status, null, new byte[0], false);
+    }
+
+    public static HttpResponse error(int status, String message) {
+        return json(status, "{\"error\":\"" + message.replace("\"", "'") + "\"}");
+    }
+
+    public static HttpResponse stream(String contentType) {
+        return new HttpResponse(200, contentType, new byte[0], true);
+    }
+
+    /**
+     * A response that is sent once the given stage completes, for requests that need blocking
+     * work. The connection answers nothing after it until then, so pipelined responses stay in
+     * order; other connections are served meanwhile. A stage that fails is answered with 500.
+     */
+    public static HttpResponse deferred(CompletionStage<HttpResponse> response) {
+        return new HttpResponse(response);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * @return the stage producing the real response, or null if this is the response
+     */
+    CompletionStage<HttpResponse> getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Serializes the status line, headers and body into a single buffer ready for writing.
+     */
+    ByteBuffer encode(boolean keepAlive) {
+        StringBuilder head = new StringBuilder(128)
+                .append("HTTP/1.1 ").append(status).append(' ').append(reason(status)).append("\r\n");
+        if (contentType != null) {
+            head.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        if (streaming) {
+            head.append("Cache-Control: no-cache\r\n");
+        } else {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer buffer = ByteBuffer.allocate(headBytes.length + body.length);
+        buffer.put(headBytes).put(body).flip();
+        return buffer;
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 204: return "No Content";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 411: return "Length Required";
+            case 413: return "Payload Too Large";
+            case 431: return "Request Header Fields Too Large";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return status < 500 ? "Client Error" : "Server Error";
+        }
+    }
+}
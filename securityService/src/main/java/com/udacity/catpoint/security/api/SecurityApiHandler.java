@@ -0,0 +1,337 @@
+package com.udacity.catpoint.security.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorCapacityExceededException;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps the JSON API onto {@link SecurityService}.
+ * <pre>
+ * GET    /status                    alarm status, arming status and sensor count
+ * GET    /alarm                     current alarm status
+ * GET    /arming                    current arming status
+ * PUT    /arming                    {"armingStatus":"ARMED_HOME"}
+ * GET    /sensors                   all sensors
+ * POST   /sensors                   {"name":"Front door","sensorType":"DOOR","zone":"perimeter"}
+ * GET    /sensors/{id}              one sensor
+ * PUT    /sensors/{id}              {"name":"Back door","sensorType":"DOOR","zone":"perimeter"}
+ * DELETE /sensors/{id}              remove a sensor
+ * POST   /sensors/{id}/activation   {"active":true}
+ * POST   /sensors/{id}/heartbeat    the sensor is alive; its state is left alone
+ * GET    /zones                     arming status, alarm status and active sensor count of each zone
+ * PUT    /zones/{name}/arming       {"armingStatus":"ARMED_AWAY"}
+ * POST   /images                    raw image bytes (any format ImageIO can read)
+ * GET    /events                    server-sent events stream of status changes
+ * GET    /metrics                   all registered metrics in plain text
+ * </pre>
+ * Images are decoded and classified on worker threads, since classification may call a remote
+ * service; the event loop goes on serving other connections meanwhile. Every other request that
+ * reaches the service is answered on a service worker, because service calls wait for each
+ * other and must never hold up the event loop. A single worker answers them in the order they
+ * arrive.
+ */
+public class SecurityApiHandler implements HttpHandler {
+
+    private static final Gson gson = new Gson();
+    private static final String SENSORS = "/sensors";
+    private static final String ZONES = "/zones";
+    //images waiting for a worker, beyond which uploads are turned away with 503
+    private static final int IMAGE_QUEUE = 16;
+    //requests waiting for the service worker; a connection has at most one waiting at a time
+    private static final int SERVICE_QUEUE = 1024;
+
+    private static final AtomicInteger poolCount = new AtomicInteger();
+
+    private final SecurityService securityService;
+    private final Executor imageWorkers;
+    private final Executor serviceWorker;
+
+    /**
+     * Classifies images on two daemon threads of its own, and calls the service on a third.
+     */
+    public SecurityApiHandler(SecurityService securityService) {
+        this(securityService, workers("images", 2, IMAGE_QUEUE));
+    }
+
+    /**
+     * @param imageWorkers runs image decoding and classification; may reject work when busy
+     */
+    public SecurityApiHandler(SecurityService securityService, Executor imageWorkers) {
+        this(securityService, imageWorkers, workers("service", 1, SERVICE_QUEUE));
+    }
+
+    /**
+     * @param imageWorkers  runs image decoding and classification; may reject work when busy
+     * @param serviceWorker runs every other request that calls the service; may reject work when busy
+     */
+    public SecurityApiHandler(SecurityService securityService, Executor imageWorkers, Executor serviceWorker) {
+        this.securityService = securityService;
+        this.imageWorkers = imageWorkers;
+        this.serviceWorker = serviceWorker;
+    }
+
+    private static Executor workers(String name, int threads, int queue) {
+        int pool = poolCount.incrementAndGet();
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue), r -> {
+            Thread t = new Thread(r, "catpoint-http-" + name + "-" + pool + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public HttpResponse handle(HttpRequest request) {
+        String method = request.getMethod();
+        switch (request.getPath()) {
+            case "/images":
+                return "POST".equals(method) ? processImage(request) : notAllowed();
+            case "/events":
+                return get(method) ? HttpResponse.stream("text/event-stream") : notAllowed();
+            case "/metrics":
+                return get(method) ? HttpResponse.text(200, MetricsRegistry.getDefault().toText()) : notAllowed();
+            default:
+                try {
+                    return HttpResponse.deferred(CompletableFuture.supplyAsync(() -> answer(request), serviceWorker));
+                } catch (RejectedExecutionException e) {
+                    return HttpResponse.error(503, "Too many requests waiting");
+                }
+        }
+    }
+
+    /**
+     * Runs on the service worker.
+     */
+    private HttpResponse answer(HttpRequest request) {
+        try {
+            return route(request);
+        } catch (JsonParseException | IllegalArgumentException e) {
+            return HttpResponse.error(400, "Invalid request: " + e.getMessage());
+        } catch (SensorCapacityExceededException e) {
+            return HttpResponse.error(409, e.getMessage());
+        }
+    }
+
+    private HttpResponse route(HttpRequest request) {
+        String method = request.getMethod();
+        String path = request.getPath();
+
+        switch (path) {
+            case "/status":
+                return get(method) ? ok(statusJson(securityService)) : notAllowed();
+            case "/alarm":
+                return get(method) ? ok(gson.toJson(securityService.getAlarmStatus())) : notAllowed();
+            case "/arming":
+                if (get(method)) {
+                    return ok(gson.toJson(securityService.getArmingStatus()));
+                } else if ("PUT".equals(method)) {
+                    JsonObject body = parseBody(request);
+                    securityService.setArmingStatus(ArmingStatus.valueOf(requiredString(body, "armingStatus")));
+                    return ok(statusJson(securityService));
+                }
+                return notAllowed();
+            case SENSORS:
+                if (get(method)) {
+                    return ok(gson.toJson(securityService.getSensors()));
+                } else if ("POST".equals(method)) {
+                    JsonObject body = parseBody(request);
+                    Sensor sensor = new Sensor(requiredString(body, "name"),
+                            SensorType.valueOf(requiredString(body, "sensorType")));
+                    sensor.setZone(optionalString(body, "zone"));
+                    securityService.addSensor(sensor);
+                    return HttpResponse.json(201, gson.toJson(sensor));
+                }
+                return notAllowed();
+            case ZONES:
+                return get(method) ? ok(zonesJson()) : notAllowed();
+            default:
+                if (path.startsWith(SENSORS + "/")) {
+                    return routeSensor(request, path.substring(SENSORS.length() + 1));
+                }
+                if (path.startsWith(ZONES + "/") && path.endsWith("/arming")) {
+                    if (!"PUT".equals(method)) {
+                        return notAllowed();
+                    }
+                    String zone = URLDecoder.decode(path.substring(ZONES.length() + 1, path.length() - "/arming".length()),
+                            StandardCharsets.UTF_8);
+                    if (zone.isEmpty()) {
+                        throw new IllegalArgumentException("missing zone");
+                    }
+                    securityService.setZoneArmingStatus(zone,
+                            ArmingStatus.valueOf(requiredString(parseBody(request), "armingStatus")));
+                    return ok(zonesJson());
+                }
+                return HttpResponse.error(404, "No such resource");
+        }
+    }
+
+    private HttpResponse routeSensor(HttpRequest request, String rest) {
+        String method = request.getMethod();
+        int slash = rest.indexOf('/');
+        String id = slash < 0 ? rest : rest.substring(0, slash);
+        String action = slash < 0 ? "" : rest.substring(slash + 1);
+
+        UUID sensorId = UUID.fromString(id);
+        Sensor sensor = securityService.findSensor(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+        if (sensor == null) {
+            return HttpResponse.error(404, "No such sensor");
+        }
+
+        if ("activation".equals(action)) {
+            if (!"POST".equals(method)) {
+                return notAllowed();
+            }
+            boolean active = requiredBoolean(parseBody(request), "active");
+            securityService.changeSensorActivationStatus(sensor, active);
+            return ok(gson.toJson(sensor));
+        } else if ("heartbeat".equals(action)) {
+            if (!"POST".equals(method)) {
+                return notAllowed();
+            }
+            securityService.sensorHeartbeat(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+            return HttpResponse.empty(204);
+        } else if (!action.isEmpty()) {
+            return HttpResponse.error(404, "No such resource");
+        }
+
+        switch (method) {
+            case "GET":
+                return ok(gson.toJson(sensor));
+            case "PUT":
+                JsonObject body = parseBody(request);
+                String name = optionalString(body, "name");
+                String type = optionalString(body, "sensorType");
+                SensorType sensorType = type == null ? null : SensorType.valueOf(type);
+                String zone = body.has("zone") ? optionalString(body, "zone") : sensor.getZone();
+                securityService.updateSensor(sensor, name, sensorType, zone);
+                return ok(gson.toJson(sensor));
+            case "DELETE":
+                securityService.removeSensor(sensor);
+                return HttpResponse.empty(204);
+            default:
+                return notAllowed();
+        }
+    }
+
+    private HttpResponse processImage(HttpRequest request) {
+        byte[] bytes = request.getBody();
+        try {
+            return HttpResponse.deferred(CompletableFuture.supplyAsync(() -> classify(bytes), imageWorkers));
+        } catch (RejectedExecutionException e) {
+            return HttpResponse.error(503, "Too many images waiting to be classified");
+        }
+    }
+
+    /**
+     * Runs on an image worker.
+     */
+    private HttpResponse classify(byte[] bytes) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            image = null;
+        }
+        if (image == null) {
+            return HttpResponse.error(400, "Unreadable image");
+        }
+        securityService.processImage(image);
+        return ok(statusJson(securityService));
+    }
+
+    /**
+     * Builds the JSON document describing the overall system state.
+     */
+    static String statusJson(SecurityService securityService) {
+        JsonObject status = new JsonObject();
+        status.addProperty("alarmStatus", securityService.getAlarmStatus().name());
+        status.addProperty("armingStatus", securityService.getArmingStatus().name());
+        status.addProperty("sensorCount", securityService.getSensorCount());
+        return gson.toJson(status);
+    }
+
+    private String zonesJson() {
+        JsonObject zones = new JsonObject();
+        for (String name : securityService.getZones()) {
+            JsonObject zone = new JsonObject();
+            zone.addProperty("armingStatus", securityService.getZoneArmingStatus(name).name());
+            zone.addProperty("alarmStatus", securityService.getZoneAlarmStatus(name).name());
+            zone.addProperty("activeSensors", securityService.getZoneActiveCount(name));
+            zones.add(name, zone);
+        }
+        return gson.toJson(zones);
+    }
+
+    private static JsonObject parseBody(HttpRequest request) {
+        JsonObject body = gson.fromJson(request.getBodyAsString(), JsonObject.class);
+        if (body == null) {
+            throw new IllegalArgumentException("missing body");
+        }
+        return body;
+    }
+
+    private static String requiredString(JsonObject body, String field) {
+        String value = optionalString(body, field);
+        if (value == null) {
+            throw new IllegalArgumentException("missing " + field);
+        }
+        return value;
+    }
+
+    /**
+     * @return the field's value, or null if it is missing or null
+     */
+    private static String optionalString(JsonObject body, String field) {
+        JsonElement value = body.get(field);
+        if (value == null || value.isJsonNull()) {
+            return null;
+        }
+        if (!value.isJsonPrimitive()) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return value.getAsString();
+    }
+
+    private static boolean requiredBoolean(JsonObject body, String field) {
+        JsonElement value = body.get(field);
+        if (value == null || !value.isJsonPrimitive() || !((JsonPrimitive) value).isBoolean()) {
+            throw new IllegalArgumentException(field + " must be true or false");
+        }
+        return value.getAsBoolean();
+    }
+
+    private static boolean get(String method) {
+        return "GET".equals(method);
+    }
+
+    private static HttpResponse ok(String json) {
+        return HttpResponse.json(200, json);
+    }
+
+    private static HttpResponse notAllowed() {
+        return HttpResponse.error(405, "Method not allowed");
+    }
+}
@@ -0,0 +1,93 @@
+package com.udacity.catpoint.security.api;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Fixed-width binary framing for sensor events, used by gateways that find JSON too heavy.
+ * <pre>
+ * event frame (client to server, 25 bytes, big-endian)
+ *   long    sensor id, most significant bits
+ *   long    sensor id, least significant bits
+ *   byte    1 if the sensor is active, 0 otherwise, 2 for a heartbeat that leaves the state alone
+ *   long    event timestamp, epoch milliseconds; events too old to act on are rejected
+ *
+ * ack frame (server to client, 16 bytes, big-endian), sent once per batch of frames read
+ *   long    total events accepted on this connection
+ *   long    total events rejected on this connection (unknown sensor or state byte, too old,
+ *           or not applied)
+ * </pre>
+ */
+public final class SensorEventCodec {
+
+    public static final int FRAME_BYTES = 25;
+    public static final int ACK_BYTES = 16;
+
+    private static final byte INACTIVE = 0;
+    private static final byte ACTIVE = 1;
+    private static final byte HEARTBEAT = 2;
+
+    private SensorEventCodec() {
+    }
+
+    /**
+     * Receives decoded events. Implementations get the raw id halves so no objects are
+     * allocated per event.
+     */
+    public interface SensorEventSink {
+        /**
+         * @return true if the event was applied, false if it was not, e.g. the sensor is unknown
+         */
+        boolean onSensorEvent(long sensorIdHigh, long sensorIdLow, boolean active, long timestamp);
+
+        /**
+         * @return true if the sensor is known, false otherwise
+         */
+        boolean onSensorHeartbeat(long sensorIdHigh, long sensorIdLow, long timestamp);
+    }
+
+    public static void encode(ByteBuffer out, UUID sensorId, boolean active, long timestamp) {
+        encode(out, sensorId, active ? ACTIVE : INACTIVE, timestamp);
+    }
+
+    public static void encodeHeartbeat(ByteBuffer out, UUID sensorId, long timestamp) {
+        encode(out, sensorId, HEARTBEAT, timestamp);
+    }
+
+    private static void encode(ByteBuffer out, UUID sensorId, byte state, long timestamp) {
+        out.putLong(sensorId.getMostSignificantBits())
+                .putLong(sensorId.getLeastSignificantBits())
+                .put(state)
+                .putLong(timestamp);
+    }
+
+    /**
+     * Decodes every complete frame in the buffer and hands it to the sink. Any trailing partial
+     * frame is left in the buffer.
+     *
+     * @param in buffer in read mode
+     * @return number of events that were malformed or that the sink rejected
+     */
+    public static int decode(ByteBuffer in, SensorEventSink sink) {
+        int rejected = 0;
+        while (in.remaining() >= FRAME_BYTES) {
+            long high = in.getLong();
+            long low = in.getLong();
+            byte state = in.get();
+            long timestamp = in.getLong();
+            boolean applied;
+            if (state == HEARTBEAT) {
+                applied = sink.onSensorHeartbeat(high, low, timestamp);
+            } else if (state == ACTIVE || state == INACTIVE) {
+                applied = sink.onSensorEvent(high, low, state == ACTIVE, timestamp);
+            } else {
+                //a corrupt frame, or one from a newer protocol; never guess that it means active
+                applied = false;
+            }
+            if (!applied) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+}
@@ -0,0 +1,288 @@
+package com.udacity.catpoint.security.api;
+
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Iterator;
+
+/**
+ * NIO server for the binary sensor event protocol described in {@link SensorEventCodec}.
+ * Frames are decoded straight out of a per-connection direct buffer and applied to the
+ * {@link SecurityService} by sensor id, without building any objects per event.
+ * <p>
+ * Acks are cumulative, so one ack is written per read rather than per event, and totals that
+ * pile up while a previous ack is still being written are folded into a single follow-up ack.
+ * <p>
+ * Events older than the maximum event age, e.g. replayed by a gateway after a long outage, are
+ * rejected rather than applied out of date. An event the sink fails on is rejected too; the
+ * connection stays open for the events after it.
+ */
+public class SensorEventIngestServer implements Closeable {
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final Duration DEFAULT_MAX_EVENT_AGE = Duration.ofMinutes(1);
+
+    private Logger log = LoggerFactory.getLogger(SensorEventIngestServer.class);
+
+    private final InetSocketAddress address;
+    private final GuardedSink sink;
+    private volatile long maxEventAgeMillis = DEFAULT_MAX_EVENT_AGE.toMillis();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread loopThread;
+    private volatile boolean running;
+
+    public SensorEventIngestServer(InetSocketAddress address, SecurityService securityService) {
+        this(address, new SensorEventCodec.SensorEventSink() {
+            @Override
+            public boolean onSensorEvent(long sensorIdHigh, long sensorIdLow, boolean active, long timestamp) {
+                return securityService.changeSensorActivationStatus(sensorIdHigh, sensorIdLow, active);
+            }
+
+            @Override
+            public boolean onSensorHeartbeat(long sensorIdHigh, long sensorIdLow, long timestamp) {
+                return securityService.sensorHeartbeat(sensorIdHigh, sensorIdLow);
+            }
+        });
+    }
+
+    public SensorEventIngestServer(InetSocketAddress address, SensorEventCodec.SensorEventSink sink) {
+        this.address = address;
+        this.sink = new GuardedSink(sink);
+    }
+
+    /**
+     * Events whose timestamp is older than this when they are read are rejected. Allow for
+     * gateway clocks running behind.
+     *
+     * @param maxEventAge
+     */
+    public void setMaxEventAge(Duration maxEventAge) {
+        this.maxEventAgeMillis = maxEventAge.toMillis();
+    }
+
+    /**
+     * Binds the listening socket and starts the event loop on a daemon thread.
+     */
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        loopThread = new Thread(this::runLoop, "catpoint-ingest-" + getPort());
+        loopThread.setDaemon(true);
+        loopThread.start();
+        log.info("Sensor event ingest listening on {}", serverChannel.getLocalAddress());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (loopThread != null) {
+            try {
+                loopThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isWritable()) {
+                            writeAck(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            log.error("Sensor event ingest loop stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Error closing selector", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void read(Connection connection) {
+        ByteBuffer in = connection.in;
+        int n;
+        try {
+            n = connection.channel.read(in);
+        } catch (IOException e) {
+            closeQuietly(connection.key);
+            return;
+        }
+        if (n < 0) {
+            closeQuietly(connection.key);
+            return;
+        }
+
+        in.flip();
+        int frames = in.remaining() / SensorEventCodec.FRAME_BYTES;
+        sink.oldestAcceptedMillis = System.currentTimeMillis() - maxEventAgeMillis;
+        int rejected = SensorEventCodec.decode(in, sink);
+        in.compact();
+        if (sink.failed > 0) {
+            log.warn("{} sensor events from {} could not be applied", sink.failed, connection.channel, sink.lastFailure);
+            sink.failed = 0;
+            sink.lastFailure = null;
+        }
+
+        if (frames > 0) {
+            connection.accepted += frames - rejected;
+            connection.rejected += rejected;
+            if (connection.ack.hasRemaining()) {
+                //never overwrite a partially written ack; send the newer totals once it is out
+                connection.ackDirty = true;
+            } else {
+                prepareAck(connection);
+                writeAck(connection);
+            }
+        }
+    }
+
+    private void prepareAck(Connection connection) {
+        connection.ack.clear();
+        connection.ack.putLong(connection.accepted).putLong(connection.rejected).flip();
+        connection.ackDirty = false;
+    }
+
+    private void writeAck(Connection connection) {
+        try {
+            connection.channel.write(connection.ack);
+            if (!connection.ack.hasRemaining() && connection.ackDirty) {
+                prepareAck(connection);
+                connection.channel.write(connection.ack);
+            }
+        } catch (IOException e) {
+            closeQuietly(connection.key);
+            return;
+        }
+        connection.key.interestOps(connection.ack.hasRemaining()
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ);
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Error closing channel", e);
+        }
+    }
+
+    /**
+     * Rejects events that are too old, and turns a failure to apply an event into a rejection
+     * of that event alone. Only ever used from the event-loop thread.
+     */
+    private static class GuardedSink implements SensorEventCodec.SensorEventSink {
+        private final SensorEventCodec.SensorEventSink delegate;
+        private long oldestAcceptedMillis;
+        private int failed;
+        private RuntimeException lastFailure;
+
+        GuardedSink(SensorEventCodec.SensorEventSink delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean onSensorEvent(long sensorIdHigh, long sensorIdLow, boolean active, long timestamp) {
+            if (timestamp < oldestAcceptedMillis) {
+                return false;
+            }
+            try {
+                return delegate.onSensorEvent(sensorIdHigh, sensorIdLow, active, timestamp);
+            } catch (RuntimeException e) {
+                //e.g. a replica refusing writes, or a database that is down
+                failed++;
+                lastFailure = e;
+                return false;
+            }
+        }
+
+        @Override
+        public boolean onSensorHeartbeat(long sensorIdHigh, long sensorIdLow, long timestamp) {
+            if (timestamp < oldestAcceptedMillis) {
+                return false;
+            }
+            try {
+                return delegate.onSensorHeartbeat(sensorIdHigh, sensorIdLow, timestamp);
+            } catch (RuntimeException e) {
+                failed++;
+                lastFailure = e;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Per-connection state. Only ever touched from the event-loop thread.
+     */
+    private static class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        private final ByteBuffer ack = ByteBuffer.allocateDirect(SensorEventCodec.ACK_BYTES).limit(0);
+        private SelectionKey key;
+        private long accepted;
+        private long rejected;
+        private boolean ackDirty;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
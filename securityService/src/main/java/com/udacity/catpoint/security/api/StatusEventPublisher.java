@@ -0,0 +1,65 @@
+package com.udacity.catpoint.security.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.util.List;
+
+/**
+ * Forwards status changes to every client connected to the server-sent events stream.
+ */
+public class StatusEventPublisher implements StatusListener {
+
+    private final HttpApiServer server;
+    private final SecurityService securityService;
+
+    public StatusEventPublisher(HttpApiServer server, SecurityService securityService) {
+        this.server = server;
+        this.securityService = securityService;
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        publish("alarm", SecurityApiHandler.statusJson(securityService));
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        publish("cat", "{\"catDetected\":" + catDetected + "}");
+    }
+
+    @Override
+    public void catDetected(String cameraId, boolean catDetected) {
+        JsonObject json = new JsonObject();
+        json.addProperty("camera", cameraId);
+        json.addProperty("catDetected", catDetected);
+        publish("camera", json.toString());
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        publish("sensors", SecurityApiHandler.statusJson(securityService));
+    }
+
+    @Override
+    public void sensorsStaleChanged(List<Sensor> stale, List<Sensor> recovered) {
+        JsonObject json = new JsonObject();
+        json.add("stale", sensorIds(stale));
+        json.add("recovered", sensorIds(recovered));
+        publish("stale", json.toString());
+    }
+
+    private static JsonArray sensorIds(List<Sensor> sensors) {
+        JsonArray ids = new JsonArray(sensors.size());
+        sensors.forEach(sensor -> ids.add(sensor.getSensorId().toString()));
+        return ids;
+    }
+
+    private void publish(String event, String json) {
+        server.broadcast("event: " + event + "\ndata: " + json + "\n\n");
+    }
+}
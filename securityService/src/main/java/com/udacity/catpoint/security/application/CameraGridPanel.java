@@ -0,0 +1,180 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.service.ImageDecoder;
+import com.udacity.catpoint.security.camera.FrameSink;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import net.miginfocom.swing.MigLayout;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Live view of every camera as a scrollable grid of tiles, each outlined in red while its camera
+ * sees a cat. Tiles are added as cameras first send frames.
+ * <p>
+ * Incoming frames are only parked on their tile; one Swing timer decides which tiles are
+ * visible and decodes just their newest frames, subsampled to tile size. Frames for tiles that
+ * are scrolled away, or in a minimized window, are dropped before any decoding, so the cost of
+ * the grid follows the number of visible tiles rather than the number of cameras.
+ */
+public class CameraGridPanel extends JPanel implements FrameSink, StatusListener {
+
+    private static final int TILE_WIDTH = 240;
+    private static final int TILE_HEIGHT = 180;
+    private static final int REFRESH_MILLIS = 100;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService decoders = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+                Thread t = new Thread(r, "camera-grid-decode-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final ImageDecoder decoder = new ImageDecoder(TILE_WIDTH, null);
+    private final Map<String, Tile> tiles = new ConcurrentHashMap<>();
+    private final JPanel grid = new JPanel(new MigLayout("wrap 3"));
+    private final Timer refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+    private final AtomicInteger decodedFrames = new AtomicInteger();
+
+    public CameraGridPanel() {
+        super(new BorderLayout());
+        JScrollPane scrollPane = new JScrollPane(grid);
+        scrollPane.setPreferredSize(new Dimension(3 * (TILE_WIDTH + 10) + 20, 2 * (TILE_HEIGHT + 40)));
+        add(scrollPane, BorderLayout.CENTER);
+        refreshTimer.start();
+    }
+
+    @Override
+    public void onFrame(String cameraId, byte[] encodedFrame) {
+        Tile tile = tiles.get(cameraId);
+        if (tile == null) {
+            addTileLater(cameraId);
+        } else if (tile.visible) {
+            tile.pending.set(encodedFrame);
+        }
+    }
+
+    @Override
+    public void catDetected(String cameraId, boolean catDetected) {
+        SwingUtilities.invokeLater(() -> tile(cameraId).setCatDetected(catDetected));
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        //no behavior necessary
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        //tiles follow their own cameras
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        //no behavior necessary
+    }
+
+    int getDecodedFrames() {
+        return decodedFrames.get();
+    }
+
+    /**
+     * Tiles with a frame being decoded. EDT only.
+     */
+    int getDecodingTiles() {
+        return (int) tiles.values().stream().filter(tile -> tile.decoding).count();
+    }
+
+    private void addTileLater(String cameraId) {
+        SwingUtilities.invokeLater(() -> tile(cameraId));
+    }
+
+    /**
+     * Looks up or creates a tile. EDT only.
+     */
+    private Tile tile(String cameraId) {
+        Tile tile = tiles.get(cameraId);
+        if (tile == null) {
+            tile = new Tile(cameraId);
+            tiles.put(cameraId, tile);
+            grid.add(tile);
+            grid.revalidate();
+        }
+        return tile;
+    }
+
+    /**
+     * Runs on the EDT every tick: updates each tile's visibility and starts decoding the newest
+     * frame of each visible tile that isn't still busy with the previous one.
+     */
+    void refresh() {
+        boolean windowVisible = isShowing() && !isMinimized();
+        for (Tile tile : tiles.values()) {
+            tile.visible = windowVisible && !tile.getVisibleRect().isEmpty();
+            if (!tile.visible) {
+                tile.pending.set(null);
+                continue;
+            }
+            if (tile.decoding || tile.pending.get() == null) {
+                continue;
+            }
+            byte[] frame = tile.pending.getAndSet(null);
+            tile.decoding = true;
+            decoders.execute(() -> decodeInto(tile, frame));
+        }
+    }
+
+    private void decodeInto(Tile tile, byte[] frame) {
+        BufferedImage image = null;
+        try {
+            image = decoder.decode(frame);
+        } catch (IOException e) {
+            //skip frames that don't decode; the next one usually will
+        }
+        if (image != null) {
+            decodedFrames.incrementAndGet();
+            tile.preview.setImage(image);
+        }
+        SwingUtilities.invokeLater(() -> tile.decoding = false);
+    }
+
+    private boolean isMinimized() {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        return window instanceof Frame && (((Frame) window).getExtendedState() & Frame.ICONIFIED) != 0;
+    }
+
+    private static class Tile extends JPanel {
+        private final String cameraId;
+        private final JLabel title;
+        private final CameraPreview preview = new CameraPreview(TILE_WIDTH, TILE_HEIGHT);
+        private final AtomicReference<byte[]> pending = new AtomicReference<>();
+        //written on the EDT, read by frame sources
+        private volatile boolean visible;
+        //EDT only
+        private boolean decoding;
+
+        Tile(String cameraId) {
+            super(new MigLayout("insets 2"));
+            this.cameraId = cameraId;
+            title = new JLabel(cameraId);
+            add(title, "wrap");
+            add(preview);
+            setCatDetected(false);
+        }
+
+        void setCatDetected(boolean catDetected) {
+            setBorder(BorderFactory.createLineBorder(catDetected ? Color.RED : Color.DARK_GRAY, catDetected ? 3 : 1));
+            title.setForeground(catDetected ? Color.RED : Color.BLACK);
+            title.setText(catDetected ? cameraId + " - CAT DETECTED" : cameraId);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.udacity.catpoint.security.application;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shows a camera image scaled to fit the component. Scaling happens on a shared background
+ * pool rather than the EDT: large reductions are done in bilinear halving steps, which looks as
+ * good as {@code SCALE_SMOOTH} at a fraction of the cost, into images that are reused from frame
+ * to frame. Only the parts of the preview that changed since the last frame are repainted.
+ * <p>
+ * {@link #setImage(BufferedImage)} may be called from any thread and at any rate; frames that
+ * arrive while one is still being scaled replace each other, so only the newest is shown.
+ */
+public class CameraPreview extends JComponent {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService scalers = new ThreadPoolExecutor(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "camera-preview-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    //changes are tracked in tiles of this many pixels square
+    private static final int TILE = 16;
+
+    private final Object lock = new Object();
+    //guarded by lock
+    private BufferedImage source;
+    private boolean scaling;
+    private boolean sourceChanged;
+
+    //scaler thread only, handed over to the EDT with each frame
+    private BufferedImage back;
+    private BufferedImage halfStep;
+    private BufferedImage quarterStep;
+
+    //EDT only
+    private BufferedImage front;
+    private Point frontOrigin = new Point();
+
+    public CameraPreview(int width, int height) {
+        setPreferredSize(new Dimension(width, height));
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                synchronized (lock) {
+                    if (source != null) {
+                        sourceChanged = true;
+                        scheduleLocked();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Shows a new image. The image must not be modified afterwards until a later image replaces it.
+     */
+    public void setImage(BufferedImage image) {
+        synchronized (lock) {
+            source = image;
+            sourceChanged = true;
+            scheduleLocked();
+        }
+    }
+
+    public BufferedImage getImage() {
+        synchronized (lock) {
+            return source;
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (front != null) {
+            g.drawImage(front, frontOrigin.x, frontOrigin.y, null);
+        }
+    }
+
+    private void scheduleLocked() {
+        if (!scaling && source != null) {
+            scaling = true;
+            scalers.execute(this::scaleLatest);
+        }
+    }
+
+    private void scaleLatest() {
+        BufferedImage image;
+        synchronized (lock) {
+            image = source;
+            sourceChanged = false;
+        }
+        Insets insets = getInsets();
+        Dimension size = getWidth() > 0 && getHeight() > 0 ? getSize() : getPreferredSize();
+        Dimension box = new Dimension(Math.max(1, size.width - insets.left - insets.right),
+                Math.max(1, size.height - insets.top - insets.bottom));
+        Dimension fitted = fit(image.getWidth(), image.getHeight(), box);
+        BufferedImage target = reuse(back, fitted.width, fitted.height);
+        scale(image, target);
+
+        BufferedImage previous = front;
+        Rectangle dirty = previous != null && previous.getWidth() == target.getWidth() && previous.getHeight() == target.getHeight()
+                ? changedRegion(previous, target)
+                : null;
+        Point origin = new Point(insets.left + (box.width - fitted.width) / 2, insets.top + (box.height - fitted.height) / 2);
+        SwingUtilities.invokeLater(() -> show(target, origin, dirty));
+    }
+
+    private void show(BufferedImage scaled, Point origin, Rectangle dirty) {
+        back = front;
+        front = scaled;
+        boolean moved = !origin.equals(frontOrigin);
+        frontOrigin = origin;
+        if (dirty == null || moved) {
+            repaint();
+        } else if (!dirty.isEmpty()) {
+            repaint(origin.x + dirty.x, origin.y + dirty.y, dirty.width, dirty.height);
+        }
+        synchronized (lock) {
+            scaling = false;
+            if (sourceChanged) {
+                scheduleLocked();
+            }
+        }
+    }
+
+    /**
+     * Scales the source into the target, halving in bilinear steps while the source is more than
+     * twice the target size, then finishing with one bilinear step.
+     */
+    private void scale(BufferedImage image, BufferedImage target) {
+        BufferedImage current = image;
+        boolean useHalf = true;
+        while (current.getWidth() / 2 >= target.getWidth() && current.getHeight() / 2 >= target.getHeight()) {
+            int width = current.getWidth() / 2;
+            int height = current.getHeight() / 2;
+            BufferedImage step;
+            if (useHalf) {
+                halfStep = reuse(halfStep, width, height);
+                step = halfStep;
+            } else {
+                quarterStep = reuse(quarterStep, width, height);
+                step = quarterStep;
+            }
+            draw(current, step, width, height);
+            current = step;
+            useHalf = !useHalf;
+        }
+        draw(current, target, target.getWidth(), target.getHeight());
+    }
+
+    private static void draw(BufferedImage from, BufferedImage to, int width, int height) {
+        Graphics2D g = to.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(from, 0, 0, width, height, 0, 0, from.getWidth(), from.getHeight(), null);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private BufferedImage reuse(BufferedImage image, int width, int height) {
+        if (image != null && image.getWidth() == width && image.getHeight() == height) {
+            return image;
+        }
+        return createCompatibleImage(width, height);
+    }
+
+    /**
+     * An opaque image in the screen's own format when there is a screen, so drawing it needs no
+     * conversion. Falls back to INT_RGB, which is what most screens use anyway.
+     */
+    private BufferedImage createCompatibleImage(int width, int height) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration != null) {
+            return configuration.createCompatibleImage(width, height, Transparency.OPAQUE);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    static Dimension fit(int width, int height, Dimension box) {
+        double scale = Math.min((double) box.width / width, (double) box.height / height);
+        return new Dimension(Math.max(1, (int) Math.round(width * scale)), Math.max(1, (int) Math.round(height * scale)));
+    }
+
+    /**
+     * Bounding box of the tiles that differ between two images of the same size. Returns an
+     * empty rectangle when nothing changed, and the whole image when the pixels can't be
+     * compared directly.
+     */
+    static Rectangle changedRegion(BufferedImage before, BufferedImage after) {
+        int width = after.getWidth();
+        int height = after.getHeight();
+        if (!(before.getRaster().getDataBuffer() instanceof DataBufferInt)
+                || !(after.getRaster().getDataBuffer() instanceof DataBufferInt)
+                || before.getRaster().getDataBuffer().getSize() != width * height
+                || after.getRaster().getDataBuffer().getSize() != width * height) {
+            return new Rectangle(0, 0, width, height);
+        }
+        int[] a = ((DataBufferInt) before.getRaster().getDataBuffer()).getData();
+        int[] b = ((DataBufferInt) after.getRaster().getDataBuffer()).getData();
+        int minTileX = Integer.MAX_VALUE;
+        int minTileY = Integer.MAX_VALUE;
+        int maxTileX = -1;
+        int maxTileY = -1;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                if (a[row + x] != b[row + x]) {
+                    int tileX = x / TILE;
+                    int tileY = y / TILE;
+                    minTileX = Math.min(minTileX, tileX);
+                    maxTileX = Math.max(maxTileX, tileX);
+                    minTileY = Math.min(minTileY, tileY);
+                    maxTileY = Math.max(maxTileY, tileY);
+                    //the rest of this tile can't widen the box
+                    x = (tileX + 1) * TILE - 1;
+                }
+            }
+        }
+        if (maxTileX < 0) {
+            return new Rectangle();
+        }
+        int x = minTileX * TILE;
+        int y = minTileY * TILE;
+        return new Rectangle(x, y, Math.min(width, (maxTileX + 1) * TILE) - x, Math.min(height, (maxTileY + 1) * TILE) - y);
+    }
+}
@@ -1,13 +1,42 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.security.api.HttpApiServer;
+import com.udacity.catpoint.security.api.SecurityApiHandler;
+import com.udacity.catpoint.security.api.SensorEventIngestServer;
+import com.udacity.catpoint.security.api.StatusEventPublisher;
+import com.udacity.catpoint.security.camera.DirectoryCameraSource;
+import com.udacity.catpoint.security.camera.FramePipeline;
+import com.udacity.catpoint.security.camera.MjpegCameraSource;
+import com.udacity.catpoint.security.data.CachingSecurityRepository;
+import com.udacity.catpoint.security.data.JdbcSecurityRepository;
 import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.notification.LogSink;
+import com.udacity.catpoint.security.notification.NotificationService;
+import com.udacity.catpoint.security.notification.SimulatedSmsSink;
+import com.udacity.catpoint.security.notification.Subscriber;
+import com.udacity.catpoint.security.notification.WebhookSink;
+import com.udacity.catpoint.security.replication.ReplicatedSecurityRepository;
+import com.udacity.catpoint.image.service.AwsImageService;
 import com.udacity.catpoint.image.service.FakeImageService;
 import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.InstrumentedImageService;
+import com.udacity.catpoint.image.service.ResilientImageService;
 import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorCapacityPolicy;
+import com.udacity.catpoint.security.service.SensorHeartbeatTracker;
+import com.udacity.catpoint.telemetry.metrics.JmxMetricsExporter;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.stream.Stream;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -16,9 +45,9 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private ImageService imageService = new FakeImageService();
-    private SecurityService securityService = new SecurityService(securityRepository, imageService);
+    private SecurityRepository securityRepository = createSecurityRepository();
+    private ImageService imageService = new InstrumentedImageService(createImageService());
+    private SecurityService securityService = createSecurityService(securityRepository, imageService);
     private DisplayPanel displayPanel = new DisplayPanel(securityService);
     private ControlPanel controlPanel = new ControlPanel(securityService);
     private SensorPanel sensorPanel = new SensorPanel(securityService);
@@ -39,5 +68,187 @@ public class CatpointGui extends JFrame {
 
         getContentPane().add(mainPanel);
 
+        JmxMetricsExporter.register(MetricsRegistry.getDefault());
+        trackHeartbeatsIfConfigured();
+        startNotificationsIfConfigured();
+        startApiServerIfConfigured();
+        startIngestServerIfConfigured();
+        startCameraPipelineIfConfigured();
+    }
+
+    /**
+     * Limits sensors per the catpoint.sensors.tier and catpoint.sensors.max system properties,
+     * by default to the four of the Basic plan.
+     */
+    private static SecurityService createSecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        SecurityService securityService = new SecurityService(securityRepository, imageService);
+        securityService.setCapacityPolicy(SensorCapacityPolicy.fromSystemProperties());
+        securityService.registerGauges(MetricsRegistry.getDefault());
+        return securityService;
+    }
+
+    /**
+     * Uses the embedded SQL database when the catpoint.repository system property is jdbc,
+     * otherwise the snapshot file. The database is read through a cache, which writes behind
+     * every catpoint.repository.writeBehindMillis if that is set.
+     * <p>
+     * When catpoint.replication.listen is set to a host:port, the repository is replicated with
+     * the node at catpoint.replication.peer. To try failover on one machine, start two instances
+     * with their own catpoint.snapshot files and each other's addresses.
+     */
+    private static SecurityRepository createSecurityRepository() {
+        SecurityRepository repository = createLocalRepository();
+        String listen = System.getProperty("catpoint.replication.listen");
+        if (listen == null) {
+            return repository;
+        }
+        String peer = System.getProperty("catpoint.replication.peer");
+        ReplicatedSecurityRepository replicated = new ReplicatedSecurityRepository(repository, parseAddress(listen),
+                peer == null ? null : parseAddress(peer));
+        try {
+            replicated.start();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Unable to start replication on " + listen);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(replicated::close, "replication-shutdown"));
+        return replicated;
+    }
+
+    private static SecurityRepository createLocalRepository() {
+        if ("jdbc".equals(System.getProperty("catpoint.repository"))) {
+            Long writeBehindMillis = Long.getLong("catpoint.repository.writeBehindMillis");
+            CachingSecurityRepository repository = new CachingSecurityRepository(new JdbcSecurityRepository(),
+                    writeBehindMillis == null ? null : Duration.ofMillis(writeBehindMillis));
+            Runtime.getRuntime().addShutdownHook(new Thread(repository::close, "repository-flush"));
+            return repository;
+        }
+        return new PretendDatabaseSecurityRepositoryImpl();
+    }
+
+    private static InetSocketAddress parseAddress(String hostAndPort) {
+        int colon = hostAndPort.lastIndexOf(':');
+        return new InetSocketAddress(hostAndPort.substring(0, colon), Integer.parseInt(hostAndPort.substring(colon + 1)));
+    }
+
+    /**
+     * Uses AWS Rekognition when the catpoint.image.aws system property is set, falling back to the
+     * fake service whenever AWS is slow or unavailable.
+     */
+    private static ImageService createImageService() {
+        if (Boolean.getBoolean("catpoint.image.aws")) {
+            AwsImageService aws = new AwsImageService();
+            Runtime.getRuntime().addShutdownHook(new Thread(aws::close, "image-shutdown"));
+            return new ResilientImageService(aws, new FakeImageService());
+        }
+        return new FakeImageService();
+    }
+
+    /**
+     * Reports sensors that have not changed state for catpoint.sensor.staleSeconds as stale,
+     * when that system property is set.
+     */
+    private void trackHeartbeatsIfConfigured() {
+        Long staleSeconds = Long.getLong("catpoint.sensor.staleSeconds");
+        if (staleSeconds != null) {
+            securityService.setHeartbeatTracker(new SensorHeartbeatTracker(Duration.ofSeconds(staleSeconds)));
+        }
+    }
+
+    /**
+     * Notifies the subscribers listed in the file named by the catpoint.notify.subscribers system
+     * property, one id,sink,address per line, where sink is log, webhook or sms.
+     */
+    private void startNotificationsIfConfigured() {
+        String subscribers = System.getProperty("catpoint.notify.subscribers");
+        if (subscribers == null) {
+            return;
+        }
+        NotificationService notifications = new NotificationService();
+        notifications.addSink(new LogSink());
+        notifications.addSink(new WebhookSink(Duration.ofSeconds(2)));
+        notifications.addSink(new SimulatedSmsSink(Duration.ofMillis(Long.getLong("catpoint.notify.smsLatencyMillis", 200))));
+        try (Stream<String> lines = Files.lines(Paths.get(subscribers))) {
+            lines.map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(Subscriber::parse)
+                    .forEach(notifications::subscribe);
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(null, "Unable to read notification subscribers: " + e.getMessage());
+        }
+        securityService.addStatusListener(notifications);
+        Runtime.getRuntime().addShutdownHook(new Thread(notifications::close, "notification-shutdown"));
+    }
+
+    /**
+     * Exposes the security service over HTTP when the catpoint.api.port system property is set,
+     * so that other local processes can drive the same system the GUI shows.
+     */
+    private void startApiServerIfConfigured() {
+        String port = System.getProperty("catpoint.api.port");
+        if (port == null) {
+            return;
+        }
+        HttpApiServer apiServer = new HttpApiServer(new InetSocketAddress("localhost", Integer.parseInt(port)),
+                new SecurityApiHandler(securityService));
+        try {
+            apiServer.start();
+            securityService.addStatusListener(new StatusEventPublisher(apiServer, securityService));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Unable to start the HTTP API on port " + port);
+        }
+    }
+
+    /**
+     * Accepts binary sensor events from gateways when the catpoint.ingest.port system property is set.
+     */
+    private void startIngestServerIfConfigured() {
+        String port = System.getProperty("catpoint.ingest.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            new SensorEventIngestServer(new InetSocketAddress("localhost", Integer.parseInt(port)), securityService).start();
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Unable to start sensor event ingest on port " + port);
+        }
+    }
+
+    /**
+     * Classifies live camera frames when either of these system properties is set:
+     * catpoint.camera.dir, a directory with one subdirectory of frames per camera, or
+     * catpoint.camera.mjpeg, a comma separated list of cameraId=url MJPEG streams.
+     * The feeds are shown live in a separate camera grid window.
+     */
+    private void startCameraPipelineIfConfigured() {
+        String dir = System.getProperty("catpoint.camera.dir");
+        String streams = System.getProperty("catpoint.camera.mjpeg");
+        if (dir == null && streams == null) {
+            return;
+        }
+        FramePipeline pipeline = new FramePipeline(securityService, imageService);
+        CameraGridPanel cameraGrid = new CameraGridPanel();
+        pipeline.addFrameObserver(cameraGrid);
+        securityService.addStatusListener(cameraGrid);
+        pipeline.start();
+
+        JFrame cameraWindow = new JFrame("Cameras");
+        cameraWindow.getContentPane().add(cameraGrid);
+        cameraWindow.pack();
+        cameraWindow.setLocation(getX() + getWidth() + 10, getY());
+        cameraWindow.setVisible(true);
+
+        try {
+            if (dir != null) {
+                pipeline.addSource(new DirectoryCameraSource(Paths.get(dir)));
+            }
+            if (streams != null) {
+                for (String stream : streams.split(",")) {
+                    String[] parts = stream.split("=", 2);
+                    pipeline.addSource(new MjpegCameraSource(parts[0].trim(), URI.create(parts[1].trim())));
+                }
+            }
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Unable to start camera ingestion: " + e.getMessage());
+        }
     }
 }
@@ -36,11 +36,16 @@ public class DisplayPanel extends JPanel implements StatusListener {
 
     }
 
+    /**
+     * May be called from any thread; the label is updated on the EDT.
+     */
     @Override
     public void notify(AlarmStatus status) {
-        currentStatusLabel.setText(status.getDescription());
-        currentStatusLabel.setBackground(status.getColor());
-        currentStatusLabel.setOpaque(true);
+        SwingUtilities.invokeLater(() -> {
+            currentStatusLabel.setText(status.getDescription());
+            currentStatusLabel.setBackground(status.getColor());
+            currentStatusLabel.setOpaque(true);
+        });
     }
 
     @Override
@@ -2,10 +2,10 @@ package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.image.service.ImageDecoder;
 import com.udacity.catpoint.image.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -19,8 +19,9 @@ public class ImagePanel extends JPanel implements StatusListener {
     private SecurityService securityService;
 
     private JLabel cameraHeader;
-    private JLabel cameraLabel;
+    private CameraPreview cameraPreview;
     private BufferedImage currentCameraImage;
+    private ImageDecoder imageDecoder = new ImageDecoder();
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
@@ -34,10 +35,8 @@ public class ImagePanel extends JPanel implements StatusListener {
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
 
-        cameraLabel = new JLabel();
-        cameraLabel.setBackground(Color.WHITE);
-        cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
-        cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        cameraPreview = new CameraPreview(IMAGE_WIDTH, IMAGE_HEIGHT);
+        cameraPreview.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
 
         //button allowing users to select a file to be the current camera image
         JButton addPictureButton = new JButton("Refresh Camera");
@@ -50,9 +49,11 @@ public class ImagePanel extends JPanel implements StatusListener {
                 return;
             }
             try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
+                currentCameraImage = imageDecoder.decode(chooser.getSelectedFile().toPath());
+                if (currentCameraImage == null) {
+                    throw new IOException("Unsupported image format");
+                }
+                cameraPreview.setImage(currentCameraImage);
             } catch (IOException |NullPointerException ioe) {
                 JOptionPane.showMessageDialog(null, "Invalid image selected.");
             }
@@ -66,7 +67,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         });
 
         add(cameraHeader, "span 3, wrap");
-        add(cameraLabel, "span 3, wrap");
+        add(cameraPreview, "span 3, wrap");
         add(addPictureButton);
         add(scanPictureButton);
     }
@@ -76,13 +77,18 @@ public class ImagePanel extends JPanel implements StatusListener {
         //no behavior necessary
     }
 
+    /**
+     * May be called from any thread; the header is updated on the EDT.
+     */
     @Override
     public void catDetected(boolean catDetected) {
-        if(catDetected) {
-            cameraHeader.setText("DANGER - CAT DETECTED");
-        } else {
-            cameraHeader.setText("Camera Feed - No Cats Detected");
-        }
+        SwingUtilities.invokeLater(() -> {
+            if(catDetected) {
+                cameraHeader.setText("DANGER - CAT DETECTED");
+            } else {
+                cameraHeader.setText("Camera Feed - No Cats Detected");
+            }
+        });
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.udacity.catpoint.security.application;
 import com.udacity.catpoint.security.data.Sensor;
 import com.udacity.catpoint.security.data.SensorType;
 import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorCapacityExceededException;
 import com.udacity.catpoint.image.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
@@ -11,6 +12,9 @@ import javax.swing.*;
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ * <p>
+ * Sensors are listed in a table, which only draws the rows on screen, so homes with many
+ * thousands of sensors can be managed too.
  */
 public class SensorPanel extends JPanel {
 
@@ -23,7 +27,12 @@ public class SensorPanel extends JPanel {
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
 
-    private JPanel sensorListPanel;
+    private SensorTableModel sensorTableModel = new SensorTableModel();
+    private JTable sensorTable = new JTable(sensorTableModel);
+    private JLabel sensorCountLabel = new JLabel();
+    private JButton sensorToggleButton = new JButton("Activate");
+    private JButton sensorRemoveButton = new JButton("Remove Sensor");
+
     private JPanel newSensorPanel;
 
     public SensorPanel(SecurityService securityService) {
@@ -37,14 +46,31 @@ public class SensorPanel extends JPanel {
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
 
-        updateSensorList(sensorListPanel);
+        sensorTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        sensorTable.setFillsViewportHeight(true);
+        sensorTable.getSelectionModel().addListSelectionListener(e -> updateButtons());
+        sensorToggleButton.addActionListener(e -> {
+            Sensor sensor = selectedSensor();
+            if (sensor != null) {
+                setSensorActivity(sensor, !sensor.getActive());
+            }
+        });
+        sensorRemoveButton.addActionListener(e -> {
+            Sensor sensor = selectedSensor();
+            if (sensor != null) {
+                removeSensor(sensor);
+            }
+        });
+
+        updateSensorList();
 
         add(panelLabel, "wrap");
         add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(sensorCountLabel, "span");
+        add(new JScrollPane(sensorTable), "span, width 500:500:500, height 100:150:300");
+        add(sensorToggleButton, "width 100:100:100");
+        add(sensorRemoveButton);
     }
 
     /**
@@ -62,59 +88,61 @@ public class SensorPanel extends JPanel {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Reloads the sensor table from the securityService, in the order the sensors are kept.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
-        });
+    private void updateSensorList() {
+        sensorTableModel.reload(securityService.getSensors());
+        sensorCountLabel.setText(String.format("%,d sensors, %s plan", sensorTableModel.getRowCount(),
+                securityService.getCapacityPolicy()));
+        updateButtons();
+    }
+
+    private Sensor selectedSensor() {
+        int row = sensorTable.getSelectedRow();
+        return row < 0 ? null : sensorTableModel.getSensorAt(row);
+    }
 
-        repaint();
-        revalidate();
+    private void updateButtons() {
+        Sensor sensor = selectedSensor();
+        sensorToggleButton.setEnabled(sensor != null);
+        sensorRemoveButton.setEnabled(sensor != null);
+        sensorToggleButton.setText(sensor != null && sensor.getActive() ? "Deactivate" : "Activate");
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the securityService to change a sensor activation status and then redraws its row,
+     * which is all that changed
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
         securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        sensorTableModel.sensorChanged(sensorTable.getSelectedRow());
+        updateButtons();
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then reloads the sensor list, unless the
+     * home's plan has no room for it
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
+        try {
             securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
-        } else {
-            JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
+            updateSensorList();
+        } catch (SensorCapacityExceededException e) {
+            JOptionPane.showMessageDialog(null, String.format(
+                    "Your %s plan allows %,d sensors. To add more, please upgrade your membership!",
+                    e.getPolicy().getTier(), e.getPolicy().getMaxSensors()));
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor from the securityService and then reload the sensor list
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
         securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+        updateSensorList();
     }
 }
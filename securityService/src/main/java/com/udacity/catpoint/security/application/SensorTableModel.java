@@ -0,0 +1,74 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Sensors as table rows, in the order the repository keeps them. The table only asks for the
+ * rows on screen, so this stays cheap however many sensors there are.
+ */
+class SensorTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"Name", "Type", "Zone", "Status"};
+
+    private List<Sensor> sensors = Collections.emptyList();
+
+    /**
+     * Replaces all the rows. Sensors from a sorted set keep their order, anything else is sorted.
+     */
+    void reload(Collection<Sensor> current) {
+        List<Sensor> rows = new ArrayList<>(current);
+        if (!(current instanceof SortedSet)) {
+            Collections.sort(rows);
+        }
+        sensors = rows;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Redraws one row after its sensor changed in place.
+     */
+    void sensorChanged(int row) {
+        fireTableRowsUpdated(row, row);
+    }
+
+    Sensor getSensorAt(int row) {
+        return sensors.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return sensors.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Sensor sensor = sensors.get(row);
+        switch (column) {
+            case 0:
+                return sensor.getName();
+            case 1:
+                return sensor.getSensorType();
+            case 2:
+                return sensor.getZone();
+            default:
+                return sensor.getActive() ? "Active" : "Inactive";
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.List;
 
 /**
  * Identifies a component that should be notified whenever the system status changes
@@ -8,5 +12,26 @@ import com.udacity.catpoint.security.data.AlarmStatus;
 public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
+
+    /**
+     * Called when the verdict for one camera changes, before the overall
+     * {@link #catDetected(boolean)} notification.
+     */
+    default void catDetected(String cameraId, boolean catDetected) {
+    }
     void sensorStatusChanged();
+
+    /**
+     * Called when sensors stop sending heartbeats, or start again after being reported stale.
+     * A stale sensor may be dead rather than inactive.
+     */
+    default void sensorsStaleChanged(List<Sensor> stale, List<Sensor> recovered) {
+    }
+
+    /**
+     * Called when a zone is armed or disarmed on its own, or its alarm changes, once zones are
+     * in use. The overall {@link #notify(AlarmStatus)} follows if the home's alarm changes too.
+     */
+    default void zoneStatusChanged(String zone, ArmingStatus armingStatus, AlarmStatus alarmStatus) {
+    }
 }
@@ -0,0 +1,14 @@
+package com.udacity.catpoint.security.camera;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Produces encoded frames for one or more cameras until closed.
+ */
+public interface CameraSource extends Closeable {
+    /**
+     * Starts delivering frames to the sink on a background thread owned by the source.
+     */
+    void start(FrameSink sink) throws IOException;
+}
@@ -0,0 +1,120 @@
+package com.udacity.catpoint.security.camera;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches a directory tree for frames dropped by camera gateways. Each subdirectory of the root
+ * is one camera, named after the directory; subdirectories created later are picked up too.
+ * A single thread serves every camera.
+ * <p>
+ * Writers should create frames under a temporary name (a leading dot or a {@code .tmp} suffix)
+ * and rename them into place, since a frame is read as soon as its final name appears.
+ */
+public class DirectoryCameraSource implements CameraSource {
+
+    private Logger log = LoggerFactory.getLogger(DirectoryCameraSource.class);
+
+    private final Path root;
+    private final Map<WatchKey, String> cameraByKey = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private WatchKey rootKey;
+    private Thread watchThread;
+
+    public DirectoryCameraSource(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public void start(FrameSink sink) throws IOException {
+        watchService = root.getFileSystem().newWatchService();
+        rootKey = root.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        try (DirectoryStream<Path> cameras = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path camera : cameras) {
+                watchCamera(camera);
+            }
+        }
+        watchThread = new Thread(() -> watch(sink), "camera-dir-" + root.getFileName());
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("Watching {} for frames from {} cameras", root, cameraByKey.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private String watchCamera(Path dir) throws IOException {
+        String cameraId = dir.getFileName().toString();
+        cameraByKey.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE), cameraId);
+        return cameraId;
+    }
+
+    private void watch(FrameSink sink) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        log.warn("Frame notifications overflowed under {}, some frames were skipped", root);
+                        continue;
+                    }
+                    Path created = ((Path) key.watchable()).resolve((Path) event.context());
+                    if (key == rootKey) {
+                        if (Files.isDirectory(created)) {
+                            String cameraId = watchCamera(created);
+                            //frames moved in before the watch was registered raise no event; one
+                            //moved in since may be read twice, and the pipeline drops the repeat
+                            try (DirectoryStream<Path> frames = Files.newDirectoryStream(created)) {
+                                for (Path frame : frames) {
+                                    readFrame(cameraId, frame, sink);
+                                }
+                            }
+                        }
+                    } else {
+                        readFrame(cameraByKey.get(key), created, sink);
+                    }
+                }
+                if (!key.reset()) {
+                    cameraByKey.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            //closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Stopped watching " + root, e);
+        }
+    }
+
+    private void readFrame(String cameraId, Path file, FrameSink sink) {
+        String name = file.getFileName().toString();
+        if (cameraId == null || name.startsWith(".") || name.endsWith(".tmp")) {
+            return;
+        }
+        try {
+            sink.onFrame(cameraId, Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            //already cleaned up by the gateway
+        } catch (IOException e) {
+            log.warn("Unable to read frame {}", file, e);
+        }
+    }
+}
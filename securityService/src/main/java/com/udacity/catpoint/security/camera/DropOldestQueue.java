@@ -0,0 +1,57 @@
+package com.udacity.catpoint.security.camera;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded hand-off between pipeline stages. Producers never block: when the queue is full the
+ * oldest element is discarded to make room, because for live video a fresh frame is always
+ * worth more than a stale one.
+ */
+class DropOldestQueue<T> {
+
+    private final BlockingQueue<T> queue;
+    private final Consumer<? super T> onDrop;
+    private final LongAdder dropped = new LongAdder();
+
+    DropOldestQueue(int capacity) {
+        this(capacity, item -> { });
+    }
+
+    /**
+     * @param onDrop called with each discarded element, on the offering thread, for instance to
+     *               return resources it holds
+     */
+    DropOldestQueue(int capacity, Consumer<? super T> onDrop) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.onDrop = onDrop;
+    }
+
+    void offer(T item) {
+        while (!queue.offer(item)) {
+            T discarded = queue.poll();
+            if (discarded != null) {
+                dropped.increment();
+                onDrop.accept(discarded);
+            }
+        }
+    }
+
+    /**
+     * @return the next element, or null if none arrived within the timeout
+     */
+    T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,356 @@
+package com.udacity.catpoint.security.camera;
+
+import com.udacity.catpoint.image.service.ImageDecoder;
+import com.udacity.catpoint.image.service.ImagePool;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Continuously classifies frames from any number of {@link CameraSource}s and feeds the verdicts
+ * to the {@link SecurityService}. Frames flow through four stages connected by bounded
+ * {@link DropOldestQueue}s:
+ * <ol>
+ *     <li>decode - turns encoded frames into images, on a pool of threads. Frames are subsampled
+ *     while decoding to about the size classifiers work at, into recycled images;</li>
+ *     <li>motion gate - drops frames that look the same as the camera's last classified frame,
+ *     on one thread;</li>
+ *     <li>classify - asks the {@link ImageService} about the frame, on a larger pool since calls
+ *     are usually remote;</li>
+ *     <li>update - applies changed verdicts to the SecurityService, on one thread so updates are
+ *     never reordered or run concurrently.</li>
+ * </ol>
+ * Each camera is also capped to a maximum frame rate as frames arrive, so a chatty camera cannot
+ * crowd out the others. When a stage falls behind, its queue discards the oldest frames first.
+ */
+public class FramePipeline implements FrameSink, Closeable {
+
+    private static final double DEFAULT_MAX_FPS = 2.0;
+    private static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final int DEFAULT_CLASSIFY_THREADS = 16;
+    private static final float CONFIDENCE_THRESHOLD = 50.0f;
+    //classifiers downscale to around this size anyway, so decoding more pixels is wasted work
+    private static final int DECODE_MIN_DIMENSION = 640;
+
+    //motion is judged on a coarse luma grid, which is cheap and ignores sensor noise
+    private static final int MOTION_GRID_WIDTH = 32;
+    private static final int MOTION_GRID_HEIGHT = 24;
+    private static final int MOTION_THRESHOLD = 6;
+    //still scenes are re-checked now and then so a motionless cat is still noticed, or cleared
+    private static final long STILL_RECHECK_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private Logger log = LoggerFactory.getLogger(FramePipeline.class);
+
+    private final SecurityService securityService;
+    private final ImageService imageService;
+    private final int decodeThreads;
+    private final int classifyThreads;
+    private final ImageDecoder decoder;
+
+    private final DropOldestQueue<Frame> decodeQueue;
+    private final DropOldestQueue<Frame> motionQueue;
+    private final DropOldestQueue<Frame> classifyQueue;
+    private final DropOldestQueue<Frame> updateQueue;
+
+    private final Map<String, CameraState> cameras = new ConcurrentHashMap<>();
+    private final List<CameraSource> sources = new CopyOnWriteArrayList<>();
+    private final List<FrameSink> observers = new CopyOnWriteArrayList<>();
+    private final List<Thread> workers = new CopyOnWriteArrayList<>();
+    private volatile long defaultMinIntervalNanos = intervalFor(DEFAULT_MAX_FPS);
+    private volatile boolean running;
+
+    private final Counter framesReceived;
+    private final Counter framesRateLimited;
+    private final Counter framesStill;
+    private final Counter framesClassified;
+    private final Counter decodeErrors;
+    private final Counter classifyErrors;
+    private final LatencyHistogram frameLatency;
+
+    public FramePipeline(SecurityService securityService, ImageService imageService) {
+        this(securityService, imageService, Runtime.getRuntime().availableProcessors(), DEFAULT_CLASSIFY_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public FramePipeline(SecurityService securityService, ImageService imageService,
+                         int decodeThreads, int classifyThreads, int queueCapacity) {
+        this.securityService = securityService;
+        this.imageService = imageService;
+        this.decodeThreads = decodeThreads;
+        this.classifyThreads = classifyThreads;
+        this.decoder = new ImageDecoder(DECODE_MIN_DIMENSION, new ImagePool(decodeThreads + classifyThreads + queueCapacity));
+        this.decodeQueue = new DropOldestQueue<>(queueCapacity);
+        //frames past decoding hold a pooled image, which must go back to the pool when dropped
+        this.motionQueue = new DropOldestQueue<>(queueCapacity, frame -> decoder.release(frame.image));
+        this.classifyQueue = new DropOldestQueue<>(queueCapacity, frame -> decoder.release(frame.image));
+        this.updateQueue = new DropOldestQueue<>(queueCapacity);
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        framesReceived = metrics.counter("camera.framesReceived");
+        framesRateLimited = metrics.counter("camera.framesRateLimited");
+        framesStill = metrics.counter("camera.framesStill");
+        framesClassified = metrics.counter("camera.framesClassified");
+        decodeErrors = metrics.counter("camera.decodeErrors");
+        classifyErrors = metrics.counter("camera.classifyErrors");
+        frameLatency = metrics.histogram("camera.frameLatency");
+        metrics.gauge("camera.cameras", cameras::size);
+        registerQueueGauges(metrics, "decode", decodeQueue);
+        registerQueueGauges(metrics, "motion", motionQueue);
+        registerQueueGauges(metrics, "classify", classifyQueue);
+        registerQueueGauges(metrics, "update", updateQueue);
+    }
+
+    /**
+     * Frame rate cap for cameras without their own.
+     */
+    public void setDefaultMaxFramesPerSecond(double maxFramesPerSecond) {
+        defaultMinIntervalNanos = intervalFor(maxFramesPerSecond);
+    }
+
+    public void setMaxFramesPerSecond(String cameraId, double maxFramesPerSecond) {
+        camera(cameraId).minIntervalNanos = intervalFor(maxFramesPerSecond);
+    }
+
+    /**
+     * Starts the stage threads. Frames received before this are queued.
+     */
+    public void start() {
+        running = true;
+        for (int i = 0; i < decodeThreads; i++) {
+            startWorker("camera-decode-" + i, decodeQueue, this::decode);
+        }
+        startWorker("camera-motion", motionQueue, this::gateMotion);
+        for (int i = 0; i < classifyThreads; i++) {
+            startWorker("camera-classify-" + i, classifyQueue, this::classify);
+        }
+        startWorker("camera-update", updateQueue, this::update);
+    }
+
+    /**
+     * Starts a source feeding this pipeline. The source is closed with the pipeline.
+     */
+    public void addSource(CameraSource source) throws IOException {
+        sources.add(source);
+        source.start(this);
+    }
+
+    /**
+     * Also hands every incoming frame, before rate capping, to the observer, e.g. a live view.
+     * Observers run on the source's thread and must return quickly.
+     */
+    public void addFrameObserver(FrameSink observer) {
+        observers.add(observer);
+    }
+
+    @Override
+    public void onFrame(String cameraId, byte[] encodedFrame) {
+        framesReceived.increment();
+        for (FrameSink observer : observers) {
+            observer.onFrame(cameraId, encodedFrame);
+        }
+        CameraState camera = camera(cameraId);
+        long now = System.nanoTime();
+        long next = camera.nextFrameNanos.get();
+        if (now - next < 0 || !camera.nextFrameNanos.compareAndSet(next, now + camera.minIntervalNanos)) {
+            framesRateLimited.increment();
+            return;
+        }
+        decodeQueue.offer(new Frame(camera, encodedFrame, now));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (CameraSource source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                log.warn("Unable to close camera source", e);
+            }
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void decode(Frame frame) {
+        try {
+            frame.image = decoder.decode(frame.encoded);
+        } catch (IOException e) {
+            frame.image = null;
+        }
+        frame.encoded = null;
+        if (frame.image == null) {
+            decodeErrors.increment();
+            return;
+        }
+        motionQueue.offer(frame);
+    }
+
+    private void gateMotion(Frame frame) {
+        CameraState camera = frame.camera;
+        byte[] luma = camera.spareLuma;
+        sampleLuma(frame.image, luma);
+        boolean recheckDue = frame.receivedNanos - camera.lastClassifiedNanos > STILL_RECHECK_NANOS;
+        if (camera.previousLuma != null && !recheckDue && meanDifference(camera.previousLuma, luma) < MOTION_THRESHOLD) {
+            framesStill.increment();
+            decoder.release(frame.image);
+            return;
+        }
+        camera.spareLuma = camera.previousLuma == null ? new byte[luma.length] : camera.previousLuma;
+        camera.previousLuma = luma;
+        camera.lastClassifiedNanos = frame.receivedNanos;
+        classifyQueue.offer(frame);
+    }
+
+    private void classify(Frame frame) {
+        try {
+            frame.cat = imageService.imageContainsCat(frame.image, CONFIDENCE_THRESHOLD);
+        } catch (RuntimeException e) {
+            classifyErrors.increment();
+            log.warn("Unable to classify frame from camera {}", frame.camera.id, e);
+            return;
+        } finally {
+            decoder.release(frame.image);
+            frame.image = null;
+        }
+        framesClassified.increment();
+        updateQueue.offer(frame);
+    }
+
+    private void update(Frame frame) {
+        CameraState camera = frame.camera;
+        //frames can be classified out of order; never let an older verdict replace a newer one
+        if (frame.receivedNanos - camera.lastVerdictNanos < 0) {
+            return;
+        }
+        camera.lastVerdictNanos = frame.receivedNanos;
+        if (camera.lastVerdict == null || camera.lastVerdict != frame.cat) {
+            camera.lastVerdict = frame.cat;
+            securityService.applyImageVerdict(camera.id, frame.cat);
+        }
+        frameLatency.recordSince(frame.receivedNanos);
+    }
+
+    private interface Stage {
+        void process(Frame frame);
+    }
+
+    private void startWorker(String name, DropOldestQueue<Frame> queue, Stage stage) {
+        Thread worker = new Thread(() -> {
+            while (running) {
+                Frame frame;
+                try {
+                    frame = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (frame == null) {
+                    continue;
+                }
+                try {
+                    stage.process(frame);
+                } catch (RuntimeException e) {
+                    log.error("Camera pipeline stage {} failed", name, e);
+                }
+            }
+        }, name);
+        worker.setDaemon(true);
+        workers.add(worker);
+        worker.start();
+    }
+
+    private CameraState camera(String cameraId) {
+        return cameras.computeIfAbsent(cameraId, id -> new CameraState(id, defaultMinIntervalNanos));
+    }
+
+    private static void sampleLuma(BufferedImage image, byte[] luma) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int i = 0;
+        for (int gy = 0; gy < MOTION_GRID_HEIGHT; gy++) {
+            int y = (2 * gy + 1) * height / (2 * MOTION_GRID_HEIGHT);
+            for (int gx = 0; gx < MOTION_GRID_WIDTH; gx++) {
+                int rgb = image.getRGB((2 * gx + 1) * width / (2 * MOTION_GRID_WIDTH), y);
+                luma[i++] = (byte) ((((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8);
+            }
+        }
+    }
+
+    private static int meanDifference(byte[] a, byte[] b) {
+        int total = 0;
+        for (int i = 0; i < a.length; i++) {
+            total += Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+        }
+        return total / a.length;
+    }
+
+    private static long intervalFor(double maxFramesPerSecond) {
+        if (maxFramesPerSecond <= 0) {
+            throw new IllegalArgumentException("maxFramesPerSecond must be positive");
+        }
+        return (long) (TimeUnit.SECONDS.toNanos(1) / maxFramesPerSecond);
+    }
+
+    private static void registerQueueGauges(MetricsRegistry metrics, String stage, DropOldestQueue<Frame> queue) {
+        metrics.gauge("camera.queue." + stage + ".depth", queue::size);
+        metrics.gauge("camera.queue." + stage + ".dropped", queue::getDropped);
+    }
+
+    /**
+     * Per-camera state. Each field is only touched by the stage noted beside it.
+     */
+    private static class CameraState {
+        private final String id;
+        private volatile long minIntervalNanos;
+        //source threads
+        private final AtomicLong nextFrameNanos;
+        //motion stage
+        private byte[] previousLuma;
+        private byte[] spareLuma = new byte[MOTION_GRID_WIDTH * MOTION_GRID_HEIGHT];
+        private long lastClassifiedNanos;
+        //update stage
+        private Boolean lastVerdict;
+        private long lastVerdictNanos;
+
+        CameraState(String id, long minIntervalNanos) {
+            this.id = id;
+            this.minIntervalNanos = minIntervalNanos;
+            long now = System.nanoTime();
+            this.nextFrameNanos = new AtomicLong(now);
+            this.lastClassifiedNanos = now;
+            this.lastVerdictNanos = now - 1;
+        }
+    }
+
+    /**
+     * A frame on its way through the stages; each stage fills in its result and clears what
+     * later stages no longer need.
+     */
+    private static class Frame {
+        private final CameraState camera;
+        private final long receivedNanos;
+        private byte[] encoded;
+        private BufferedImage image;
+        private boolean cat;
+
+        Frame(CameraState camera, byte[] encoded, long receivedNanos) {
+            this.camera = camera;
+            this.encoded = encoded;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+}
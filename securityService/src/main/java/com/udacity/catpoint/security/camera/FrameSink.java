@@ -0,0 +1,15 @@
+package com.udacity.catpoint.security.camera;
+
+/**
+ * Receives encoded frames from a {@link CameraSource}.
+ */
+@FunctionalInterface
+public interface FrameSink {
+    /**
+     * Called from the source's own thread for every frame. Implementations must not block for long.
+     *
+     * @param cameraId id of the camera that produced the frame
+     * @param encodedFrame the frame as read from the camera, typically JPEG
+     */
+    void onFrame(String cameraId, byte[] encodedFrame);
+}
@@ -0,0 +1,144 @@
+package com.udacity.catpoint.security.camera;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a camera's MJPEG stream ({@code multipart/x-mixed-replace} over HTTP) and delivers every
+ * JPEG part as a frame. Parts with a {@code Content-Length} header are read directly; parts
+ * without one are read up to the JPEG end-of-image marker. Dropped connections are retried with
+ * exponential backoff until the source is closed.
+ */
+public class MjpegCameraSource implements CameraSource {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    //streams mostly sit in socket reads, so a small stack lets one node hold hundreds of them
+    private static final long THREAD_STACK_BYTES = 256 * 1024;
+    private static final int MAX_HEADER_LINE = 1024;
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private Logger log = LoggerFactory.getLogger(MjpegCameraSource.class);
+
+    private final String cameraId;
+    private final URI uri;
+    private volatile boolean running;
+    private volatile HttpURLConnection connection;
+    private Thread readThread;
+
+    public MjpegCameraSource(String cameraId, URI uri) {
+        this.cameraId = cameraId;
+        this.uri = uri;
+    }
+
+    @Override
+    public void start(FrameSink sink) {
+        running = true;
+        readThread = new Thread(null, () -> run(sink), "camera-mjpeg-" + cameraId, THREAD_STACK_BYTES);
+        readThread.setDaemon(true);
+        readThread.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        HttpURLConnection current = connection;
+        if (current != null) {
+            current.disconnect();
+        }
+        if (readThread != null) {
+            readThread.interrupt();
+        }
+    }
+
+    private void run(FrameSink sink) {
+        long backoff = 500;
+        while (running) {
+            try {
+                HttpURLConnection current = (HttpURLConnection) uri.toURL().openConnection();
+                current.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+                current.setReadTimeout(READ_TIMEOUT_MILLIS);
+                connection = current;
+                try (InputStream in = new BufferedInputStream(current.getInputStream())) {
+                    backoff = 500;
+                    readParts(in, sink);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Camera {} stream failed, reconnecting in {}ms: {}", cameraId, backoff, e.toString());
+                }
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+        }
+    }
+
+    private void readParts(InputStream in, FrameSink sink) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(64 * 1024);
+        while (running) {
+            //part headers follow the boundary line and end with an empty line
+            String line;
+            do {
+                line = readLine(in);
+            } while (!line.startsWith("--"));
+            int contentLength = -1;
+            while (!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                    contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+                }
+            }
+            if (contentLength > MAX_FRAME_BYTES) {
+                throw new IOException("Frame of " + contentLength + " bytes is too large");
+            }
+            sink.onFrame(cameraId, contentLength >= 0 ? in.readNBytes(contentLength) : readToEndOfImage(in, frame));
+        }
+    }
+
+    private static byte[] readToEndOfImage(InputStream in, ByteArrayOutputStream frame) throws IOException {
+        frame.reset();
+        int previous = -1;
+        int b;
+        while ((b = in.read()) >= 0) {
+            frame.write(b);
+            if (previous == 0xFF && b == 0xD9) {
+                return frame.toByteArray();
+            }
+            if (frame.size() > MAX_FRAME_BYTES) {
+                throw new IOException("Frame exceeds " + MAX_FRAME_BYTES + " bytes");
+            }
+            previous = b;
+        }
+        throw new EOFException();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                int end = line.length();
+                return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+            }
+            if (line.length() >= MAX_HEADER_LINE) {
+                throw new IOException("Header line too long");
+            }
+            line.append((char) b);
+        }
+        throw new EOFException();
+    }
+}
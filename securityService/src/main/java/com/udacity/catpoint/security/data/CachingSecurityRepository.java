@@ -0,0 +1,401 @@
+package com.udacity.catpoint.security.data;
+
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the alarm status, arming status and sensors of a slower repository in memory, so that
+ * reads never reach the backing repository once the cache is warm.
+ * <p>
+ * Writes are applied to the cache immediately. In write-through mode they are also passed on
+ * straight away. In write-behind mode they are queued, with later writes to the same sensor or
+ * status replacing earlier ones, and handed to the backing repository in one go every flush
+ * interval, sensors as a single {@link SecurityRepository#updateSensors(Collection)} batch.
+ * Queued writes are flushed by {@link #flush()} and {@link #close()}; anything still queued when
+ * the process dies is lost.
+ * <p>
+ * The cache assumes it is the only writer of the backing repository. Call {@link #invalidate()}
+ * after changing the backing repository some other way.
+ */
+public class CachingSecurityRepository implements SecurityRepository, Closeable {
+
+    private Logger log = LoggerFactory.getLogger(CachingSecurityRepository.class);
+
+    private final SecurityRepository delegate;
+    private final ScheduledExecutorService flusher;
+
+    //guarded by this; null until first read
+    private AlarmStatus alarmStatus;
+    private ArmingStatus armingStatus;
+    private Set<Sensor> sensors;
+    private UuidSensorMap sensorsById;
+    //ids of the cached sensors that are active
+    private UuidMap<Boolean> activeIds;
+
+    //write-behind queue, guarded by this. A sensor id is in at most one of the two maps.
+    private final Map<UUID, Sensor> pendingSensors = new LinkedHashMap<>();
+    private final Map<UUID, Sensor> pendingRemovals = new LinkedHashMap<>();
+    //held for the whole of a flush, so batches reach the backing repository in order
+    private final Object flushLock = new Object();
+    private AlarmStatus pendingAlarmStatus;
+    private ArmingStatus pendingArmingStatus;
+
+    private final Counter loads;
+    private final Counter flushes;
+    private final Counter coalescedWrites;
+
+    /**
+     * Creates a write-through cache.
+     */
+    public CachingSecurityRepository(SecurityRepository delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * Creates a cache that writes behind at the given interval, or writes through if the
+     * interval is null.
+     */
+    public CachingSecurityRepository(SecurityRepository delegate, Duration flushInterval) {
+        this.delegate = delegate;
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        loads = metrics.counter("repository.cache.loads");
+        flushes = metrics.counter("repository.cache.flushes");
+        coalescedWrites = metrics.counter("repository.cache.coalescedWrites");
+        if (flushInterval == null) {
+            flusher = null;
+        } else {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "repository-write-behind");
+                t.setDaemon(true);
+                return t;
+            });
+            long millis = Math.max(1, flushInterval.toMillis());
+            flusher.scheduleWithFixedDelay(this::flushQuietly, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        cacheSensor(sensor);
+        if (flusher == null) {
+            delegate.addSensor(sensor);
+        } else {
+            queue(sensor.getSensorId(), copyOf(sensor));
+        }
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        loadSensors();
+        Sensor cached = sensorsById.remove(sensor.getSensorId());
+        sensors.remove(cached != null ? cached : sensor);
+        activeIds.remove(sensor.getSensorId());
+        if (flusher == null) {
+            delegate.removeSensor(sensor);
+        } else {
+            if (pendingSensors.remove(sensor.getSensorId()) != null) {
+                coalescedWrites.increment();
+            }
+            pendingRemovals.put(sensor.getSensorId(), copyOf(sensor));
+        }
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        cacheSensor(sensor);
+        if (flusher == null) {
+            delegate.updateSensor(sensor);
+        } else {
+            queue(sensor.getSensorId(), copyOf(sensor));
+        }
+    }
+
+    @Override
+    public synchronized void renameSensor(Sensor sensor, String name, SensorType sensorType) {
+        loadSensors();
+        //the set is sorted by name, so the sensor has to leave it under its old one
+        Sensor cached = sensorsById.remove(sensor.getSensorId());
+        sensors.remove(cached != null ? cached : sensor);
+        if (flusher == null) {
+            delegate.renameSensor(sensor, name, sensorType);
+        } else {
+            sensor.setName(name);
+            sensor.setSensorType(sensorType);
+            queue(sensor.getSensorId(), copyOf(sensor));
+        }
+        cacheSensor(sensor);
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> updated) {
+        updated.forEach(this::cacheSensor);
+        if (flusher == null) {
+            delegate.updateSensors(updated);
+        } else {
+            updated.forEach(sensor -> queue(sensor.getSensorId(), copyOf(sensor)));
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+        if (flusher == null) {
+            delegate.setAlarmStatus(alarmStatus);
+        } else {
+            if (pendingAlarmStatus != null) {
+                coalescedWrites.increment();
+            }
+            pendingAlarmStatus = alarmStatus;
+        }
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        if (flusher == null) {
+            delegate.setArmingStatus(armingStatus);
+        } else {
+            if (pendingArmingStatus != null) {
+                coalescedWrites.increment();
+            }
+            pendingArmingStatus = armingStatus;
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmAndArmingStatus(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        if (flusher == null) {
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+            delegate.setAlarmAndArmingStatus(alarmStatus, armingStatus);
+        } else {
+            setAlarmStatus(alarmStatus);
+            setArmingStatus(armingStatus);
+        }
+    }
+
+    /**
+     * @return a read-only copy, in sensor order, which later changes don't affect
+     */
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        loadSensors();
+        return Collections.unmodifiableSet(new TreeSet<>(sensors));
+    }
+
+    @Override
+    public synchronized int getSensorCount() {
+        loadSensors();
+        return sensors.size();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        loadSensors();
+        return activeIds.size();
+    }
+
+    @Override
+    public synchronized Sensor findSensor(long sensorIdHigh, long sensorIdLow) {
+        loadSensors();
+        return sensorsById.get(sensorIdHigh, sensorIdLow);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        if (alarmStatus == null) {
+            loads.increment();
+            alarmStatus = delegate.getAlarmStatus();
+        }
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        if (armingStatus == null) {
+            loads.increment();
+            armingStatus = delegate.getArmingStatus();
+        }
+        return armingStatus;
+    }
+
+    /**
+     * Writes everything queued to the backing repository. Does nothing in write-through mode.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<UUID, Sensor> updated;
+            Map<UUID, Sensor> removed;
+            AlarmStatus alarm;
+            ArmingStatus arming;
+            synchronized (this) {
+                if (pendingSensors.isEmpty() && pendingRemovals.isEmpty() && pendingAlarmStatus == null && pendingArmingStatus == null) {
+                    return;
+                }
+                updated = new LinkedHashMap<>(pendingSensors);
+                removed = new LinkedHashMap<>(pendingRemovals);
+                alarm = pendingAlarmStatus;
+                arming = pendingArmingStatus;
+                pendingSensors.clear();
+                pendingRemovals.clear();
+                pendingAlarmStatus = null;
+                pendingArmingStatus = null;
+            }
+            //outside the cache lock, so a slow backend never holds up reads
+            try {
+                if (!updated.isEmpty()) {
+                    delegate.updateSensors(new ArrayList<>(updated.values()));
+                }
+                removed.values().forEach(delegate::removeSensor);
+                if (alarm != null && arming != null) {
+                    delegate.setAlarmAndArmingStatus(alarm, arming);
+                } else if (alarm != null) {
+                    delegate.setAlarmStatus(alarm);
+                } else if (arming != null) {
+                    delegate.setArmingStatus(arming);
+                }
+                flushes.increment();
+            } catch (RuntimeException e) {
+                requeue(updated, removed, alarm, arming);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes out anything queued, then forgets everything cached so the next reads go to the
+     * backing repository.
+     */
+    public void invalidate() {
+        flush();
+        synchronized (this) {
+            alarmStatus = null;
+            armingStatus = null;
+            sensors = null;
+            sensorsById = null;
+            activeIds = null;
+        }
+    }
+
+    /**
+     * Stops writing behind and flushes anything still queued. The backing repository is not
+     * closed.
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Write-behind flush failed, will retry", e);
+        }
+    }
+
+    /**
+     * Puts a failed batch back in the queue, behind any writes made since it was taken.
+     */
+    private synchronized void requeue(Map<UUID, Sensor> updated, Map<UUID, Sensor> removed, AlarmStatus alarm, ArmingStatus arming) {
+        updated.forEach((id, sensor) -> {
+            if (!pendingSensors.containsKey(id) && !pendingRemovals.containsKey(id)) {
+                pendingSensors.put(id, sensor);
+            }
+        });
+        removed.forEach((id, sensor) -> {
+            if (!pendingSensors.containsKey(id) && !pendingRemovals.containsKey(id)) {
+                pendingRemovals.put(id, sensor);
+            }
+        });
+        if (pendingAlarmStatus == null) {
+            pendingAlarmStatus = alarm;
+        }
+        if (pendingArmingStatus == null) {
+            pendingArmingStatus = arming;
+        }
+    }
+
+    private void queue(UUID id, Sensor sensor) {
+        pendingRemovals.remove(id);
+        if (pendingSensors.put(id, sensor) != null) {
+            coalescedWrites.increment();
+        }
+    }
+
+    private void loadSensors() {
+        if (sensors == null) {
+            loads.increment();
+            sensors = new TreeSet<>(delegate.getSensors());
+            sensorsById = new UuidSensorMap(sensors.size());
+            activeIds = new UuidMap<>();
+            sensors.forEach(sensor -> {
+                sensorsById.put(sensor);
+                trackActive(sensor);
+            });
+        }
+    }
+
+    /**
+     * Makes the given object the cached copy of its sensor.
+     */
+    private void cacheSensor(Sensor sensor) {
+        loadSensors();
+        trackActive(sensor);
+        Sensor previous = sensorsById.put(sensor);
+        if (previous == sensor) {
+            //the usual case, a sensor handed out by findSensor coming back with a new state
+            return;
+        }
+        if (previous != null) {
+            sensors.remove(previous);
+        }
+        sensors.add(sensor);
+    }
+
+    private void trackActive(Sensor sensor) {
+        if (sensor.getActive()) {
+            activeIds.put(sensor.getSensorId(), Boolean.TRUE);
+        } else {
+            activeIds.remove(sensor.getSensorId());
+        }
+    }
+
+    /**
+     * Queued sensors are copies, so the flusher writes the state at the time of the write
+     * rather than racing with later changes to the caller's object.
+     */
+    private static Sensor copyOf(Sensor sensor) {
+        Sensor copy = new Sensor();
+        copy.setSensorId(sensor.getSensorId());
+        copy.setName(sensor.getName());
+        copy.setSensorType(sensor.getSensorType());
+        copy.setActive(sensor.getActive());
+        copy.setZone(sensor.getZone());
+        return copy;
+    }
+}
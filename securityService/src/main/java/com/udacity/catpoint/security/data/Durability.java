@@ -0,0 +1,21 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * How soon a repository change is persisted, traded against how long the change takes.
+ */
+public enum Durability {
+    /**
+     * Written and forced to disk before the change returns, so it survives a power cut.
+     */
+    FSYNC,
+    /**
+     * Written before the change returns; the operating system decides when it reaches the disk,
+     * so it survives the process crashing but not the machine.
+     */
+    WRITE_THROUGH,
+    /**
+     * Written in the background shortly afterwards, together with any other changes made in the
+     * meantime, and on normal shutdown. A crash loses the changes not yet written.
+     */
+    WRITE_BEHIND
+}
@@ -0,0 +1,388 @@
+package com.udacity.catpoint.security.data;
+
+import com.udacity.catpoint.telemetry.events.RepositoryPersistEvent;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Repository backed by an embedded SQL database, by default an H2 database file in
+ * .catpoint under the user's home directory, so no database server is needed.
+ * <p>
+ * The repository holds one connection and prepares each statement once, reusing it for the
+ * life of the repository; calls are serialized on the repository. Every write is its own
+ * transaction, so a failed write leaves the stored state as it was. Bulk sensor changes through
+ * {@link #updateSensors(Collection)} go to the database as a single JDBC batch in one
+ * transaction, and disarming writes the cleared alarm in the same row update as the arming
+ * status.
+ * <p>
+ * One connection rather than a pool is enough because every call already holds the
+ * repository's monitor, so a second connection would only sit idle; the embedded database is in
+ * the same process, so there is no network round trip for a pool to overlap. A pool would only
+ * pay off with a database server and unsynchronized reads, which this class doesn't do.
+ * <p>
+ * Sensor ids are stored as their two halves, which form the primary key, so lookups by id
+ * from the ingest paths never need a {@link UUID}. Sensor type has its own index. The zone
+ * column is null for sensors in the default zone, and is added to databases created before it.
+ */
+public class JdbcSecurityRepository implements SecurityRepository, Closeable {
+
+    /**
+     * Used when the catpoint.jdbc.url system property isn't set.
+     */
+    public static final String DEFAULT_URL = "jdbc:h2:file:~/.catpoint/catpoint";
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS sensor ("
+                    + "id_high BIGINT NOT NULL, "
+                    + "id_low BIGINT NOT NULL, "
+                    + "name VARCHAR(255) NOT NULL, "
+                    + "sensor_type VARCHAR(16) NOT NULL, "
+                    + "active BOOLEAN NOT NULL, "
+                    + "zone VARCHAR(255), "
+                    + "PRIMARY KEY (id_high, id_low))",
+            "ALTER TABLE sensor ADD COLUMN IF NOT EXISTS zone VARCHAR(255)",
+            "CREATE INDEX IF NOT EXISTS sensor_type_idx ON sensor (sensor_type)",
+            "CREATE TABLE IF NOT EXISTS system_status ("
+                    + "id INT PRIMARY KEY, "
+                    + "alarm_status VARCHAR(16) NOT NULL, "
+                    + "arming_status VARCHAR(16) NOT NULL)"
+    };
+
+    private static final String EVENT_NAME = "jdbc";
+    private static final LatencyHistogram sensorsPersistLatency = MetricsRegistry.getDefault().histogram("repository.persist.sensors");
+    private static final LatencyHistogram alarmPersistLatency = MetricsRegistry.getDefault().histogram("repository.persist.alarmStatus");
+    private static final LatencyHistogram armingPersistLatency = MetricsRegistry.getDefault().histogram("repository.persist.armingStatus");
+
+    private final Connection connection;
+    private final PreparedStatement mergeSensor;
+    private final PreparedStatement deleteSensor;
+    private final PreparedStatement selectSensors;
+    private final PreparedStatement selectSensorsOfType;
+    private final PreparedStatement selectSensor;
+    private final PreparedStatement countSensors;
+    private final PreparedStatement countActiveSensors;
+    private final PreparedStatement selectStatus;
+    private final PreparedStatement updateAlarmStatus;
+    private final PreparedStatement updateArmingStatus;
+    private final PreparedStatement updateStatus;
+
+    public JdbcSecurityRepository() {
+        this(System.getProperty("catpoint.jdbc.url", DEFAULT_URL));
+    }
+
+    public JdbcSecurityRepository(String url) {
+        try {
+            connection = DriverManager.getConnection(url);
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM system_status")) {
+                    rs.next();
+                    if (rs.getInt(1) == 0) {
+                        statement.executeUpdate("INSERT INTO system_status (id, alarm_status, arming_status) VALUES (1, '"
+                                + AlarmStatus.NO_ALARM.name() + "', '" + ArmingStatus.DISARMED.name() + "')");
+                    }
+                }
+            }
+            connection.commit();
+
+            mergeSensor = connection.prepareStatement(
+                    "MERGE INTO sensor (id_high, id_low, name, sensor_type, active, zone) KEY (id_high, id_low) VALUES (?, ?, ?, ?, ?, ?)");
+            deleteSensor = connection.prepareStatement("DELETE FROM sensor WHERE id_high = ? AND id_low = ?");
+            selectSensors = connection.prepareStatement("SELECT id_high, id_low, name, sensor_type, active, zone FROM sensor");
+            selectSensorsOfType = connection.prepareStatement(
+                    "SELECT id_high, id_low, name, sensor_type, active, zone FROM sensor WHERE sensor_type = ?");
+            selectSensor = connection.prepareStatement(
+                    "SELECT id_high, id_low, name, sensor_type, active, zone FROM sensor WHERE id_high = ? AND id_low = ?");
+            countSensors = connection.prepareStatement("SELECT COUNT(*) FROM sensor");
+            countActiveSensors = connection.prepareStatement("SELECT COUNT(*) FROM sensor WHERE active");
+            selectStatus = connection.prepareStatement("SELECT alarm_status, arming_status FROM system_status WHERE id = 1");
+            updateAlarmStatus = connection.prepareStatement("UPDATE system_status SET alarm_status = ? WHERE id = 1");
+            updateArmingStatus = connection.prepareStatement("UPDATE system_status SET arming_status = ? WHERE id = 1");
+            updateStatus = connection.prepareStatement("UPDATE system_status SET alarm_status = ?, arming_status = ? WHERE id = 1");
+        } catch (SQLException e) {
+            throw new RepositoryException("Could not open database " + url, e);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        RepositoryPersistEvent event = RepositoryPersistEvent.start();
+        try {
+            bind(mergeSensor, sensor).executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            event.finish(EVENT_NAME, "sensors", 1, true);
+            throw rollback("Could not add sensor " + sensor.getSensorId(), e);
+        }
+        sensorsPersistLatency.recordSince(start);
+        event.finish(EVENT_NAME, "sensors", 1, false);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        RepositoryPersistEvent event = RepositoryPersistEvent.start();
+        try {
+            deleteSensor.setLong(1, sensor.getSensorId().getMostSignificantBits());
+            deleteSensor.setLong(2, sensor.getSensorId().getLeastSignificantBits());
+            deleteSensor.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            event.finish(EVENT_NAME, "sensors", 1, true);
+            throw rollback("Could not remove sensor " + sensor.getSensorId(), e);
+        }
+        sensorsPersistLatency.recordSince(start);
+        event.finish(EVENT_NAME, "sensors", 1, false);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        RepositoryPersistEvent event = RepositoryPersistEvent.start();
+        try {
+            bind(mergeSensor, sensor).executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            event.finish(EVENT_NAME, "sensors", 1, true);
+            throw rollback("Could not update sensor " + sensor.getSensorId(), e);
+        }
+        sensorsPersistLatency.recordSince(start);
+        event.finish(EVENT_NAME, "sensors", 1, false);
+    }
+
+    /**
+     * Writes all the sensors as one batch in a single transaction: either every sensor is
+     * stored or none is.
+     */
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        long start = System.nanoTime();
+        RepositoryPersistEvent event = RepositoryPersistEvent.start();
+        try {
+            for (Sensor sensor : sensors) {
+                bind(mergeSensor, sensor).addBatch();
+            }
+            mergeSensor.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            event.finish(EVENT_NAME, "sensors", sensors.size(), true);
+            throw rollback("Could not update " + sensors.size() + " sensors", e);
+        } finally {
+            clearBatch(mergeSensor);
+        }
+        sensorsPersistLatency.recordSince(start);
+        event.finish(EVENT_NAME, "sensors", sensors.size(), false);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        long start = System.nanoTime();
+        RepositoryPersistEvent event = RepositoryPersistEvent.start();
+        try {
+            updateAlarmStatus.setString(1, alarmStatus.name());
+            updateAlarmStatus.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            event.finish(EVENT_NAME, "alarm_status", 0, true);
+            throw rollback("Could not set alarm status", e);
+        }
+        alarmPersistLatency.recordSince(start);
+        event.finish(EVENT_NAME, "alarm_status", 0, false);
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        long start = System.nanoTime();
+        RepositoryPersistEvent event = RepositoryPersistEvent.start();
+        try {
+            updateArmingStatus.setString(1, armingStatus.name());
+            updateArmingStatus.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            event.finish(EVENT_NAME, "arming_status", 0, true);
+            throw rollback("Could not set arming status", e);
+        }
+        armingPersistLatency.recordSince(start);
+        event.finish(EVENT_NAME, "arming_status", 0, false);
+    }
+
+    /**
+     * Writes both statuses in one statement and one transaction.
+     */
+    @Override
+    public synchronized void setAlarmAndArmingStatus(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        long start = System.nanoTime();
+        RepositoryPersistEvent event = RepositoryPersistEvent.start();
+        try {
+            updateStatus.setString(1, alarmStatus.name());
+            updateStatus.setString(2, armingStatus.name());
+            updateStatus.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            event.finish(EVENT_NAME, "system_status", 0, true);
+            throw rollback("Could not set alarm and arming status", e);
+        }
+        armingPersistLatency.recordSince(start);
+        event.finish(EVENT_NAME, "system_status", 0, false);
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        try {
+            return readSensors(selectSensors);
+        } catch (SQLException e) {
+            throw rollback("Could not read sensors", e);
+        }
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensorsOfType(SensorType sensorType) {
+        try {
+            selectSensorsOfType.setString(1, sensorType.name());
+            return readSensors(selectSensorsOfType);
+        } catch (SQLException e) {
+            throw rollback("Could not read sensors", e);
+        }
+    }
+
+    @Override
+    public synchronized Sensor findSensor(long sensorIdHigh, long sensorIdLow) {
+        try {
+            selectSensor.setLong(1, sensorIdHigh);
+            selectSensor.setLong(2, sensorIdLow);
+            try (ResultSet rs = selectSensor.executeQuery()) {
+                Sensor sensor = rs.next() ? readSensor(rs) : null;
+                connection.commit();
+                return sensor;
+            }
+        } catch (SQLException e) {
+            throw rollback("Could not read sensor", e);
+        }
+    }
+
+    /**
+     * Rows are keyed by sensor id, so renaming is an ordinary update.
+     */
+    @Override
+    public synchronized void renameSensor(Sensor sensor, String name, SensorType sensorType) {
+        sensor.setName(name);
+        sensor.setSensorType(sensorType);
+        updateSensor(sensor);
+    }
+
+    @Override
+    public synchronized int getSensorCount() {
+        return count(countSensors);
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return count(countActiveSensors);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return AlarmStatus.valueOf(readStatus(1));
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return ArmingStatus.valueOf(readStatus(2));
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new RepositoryException("Could not close database", e);
+        }
+    }
+
+    private int count(PreparedStatement query) {
+        try (ResultSet rs = query.executeQuery()) {
+            rs.next();
+            int count = rs.getInt(1);
+            connection.commit();
+            return count;
+        } catch (SQLException e) {
+            throw rollback("Could not count sensors", e);
+        }
+    }
+
+    private String readStatus(int column) {
+        try (ResultSet rs = selectStatus.executeQuery()) {
+            rs.next();
+            String status = rs.getString(column);
+            connection.commit();
+            return status;
+        } catch (SQLException e) {
+            throw rollback("Could not read system status", e);
+        }
+    }
+
+    private Set<Sensor> readSensors(PreparedStatement query) throws SQLException {
+        Set<Sensor> sensors = new TreeSet<>();
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                sensors.add(readSensor(rs));
+            }
+        }
+        connection.commit();
+        return sensors;
+    }
+
+    private static Sensor readSensor(ResultSet rs) throws SQLException {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(rs.getLong(1), rs.getLong(2)));
+        sensor.setName(rs.getString(3));
+        sensor.setSensorType(SensorType.valueOf(rs.getString(4)));
+        sensor.setActive(rs.getBoolean(5));
+        sensor.setZone(rs.getString(6));
+        return sensor;
+    }
+
+    private static PreparedStatement bind(PreparedStatement statement, Sensor sensor) throws SQLException {
+        statement.setLong(1, sensor.getSensorId().getMostSignificantBits());
+        statement.setLong(2, sensor.getSensorId().getLeastSignificantBits());
+        statement.setString(3, sensor.getName());
+        statement.setString(4, sensor.getSensorType().name());
+        statement.setBoolean(5, Boolean.TRUE.equals(sensor.getActive()));
+        String zone = sensor.getZone();
+        statement.setString(6, Sensor.DEFAULT_ZONE.equals(zone) ? null : zone);
+        return statement;
+    }
+
+    private static void clearBatch(PreparedStatement statement) {
+        try {
+            statement.clearBatch();
+        } catch (SQLException e) {
+            //the statement is unusable anyway; the next call will report it
+        }
+    }
+
+    private RepositoryException rollback(String message, SQLException cause) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+        return new RepositoryException(message, cause);
+    }
+}
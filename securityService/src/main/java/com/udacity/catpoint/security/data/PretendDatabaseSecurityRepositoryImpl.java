@@ -2,91 +2,576 @@ package com.udacity.catpoint.security.data;
 
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import com.udacity.catpoint.telemetry.events.RepositoryPersistEvent;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.prefs.Preferences;
 
 /**
  * Fake repository implementation for demo purposes. Stores state information in local
- * memory and writes it to user preferences between app loads. This implementation is
+ * memory and writes it to a binary snapshot file between app loads. This implementation is
  * intentionally a little hard to use in unit tests, so watch out!
+ * <p>
+ * Startup only maps the snapshot and reads its header. Sensors are built the first time they
+ * are needed: single lookups by id are answered straight from the snapshot, and the full set
+ * is only materialized when something asks for it or adds or removes a sensor. Until then,
+ * sensor activations and status changes are persisted by copying the snapshot with the
+ * changed flags patched in.
+ * <p>
+ * How soon changes reach the file depends on the {@link Durability}. With write-behind, changes
+ * only update memory and mark what they touched as dirty; a background thread writes the latest
+ * state once the flush interval has passed or enough changes have piled up, whichever is first,
+ * and a shutdown hook writes whatever is left when the JVM exits normally.
+ * <p>
+ * Earlier versions kept everything in user preferences as JSON; that state is read once
+ * when there is no snapshot yet, or when the snapshot turns out to be damaged. A damaged
+ * snapshot is first copied aside as {@code <snapshot>.corrupt-<millis>}, so the writes that
+ * follow never destroy what might still be recovered from it; if it can't be copied, the
+ * repository refuses to go on.
  */
-public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
+public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository, Closeable {
+
+    private Logger log = LoggerFactory.getLogger(PretendDatabaseSecurityRepositoryImpl.class);
+
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(200);
+    private static final int DEFAULT_FLUSH_AFTER_CHANGES = 100;
 
+    private final Path snapshotFile;
+    private final Durability durability;
+    private final int flushAfterChanges;
+    //only for write-behind
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+
+    //the fields below are guarded by this
+    //null until the sensors are materialized, after which the snapshot is no longer consulted
     private Set<Sensor> sensors;
+    private RepositorySnapshot snapshot;
+    //before materialization, the sensors handed out from the snapshot so callers always see the
+    // same objects; afterwards, every sensor, so lookups by id never walk the set
+    private UuidSensorMap sensorsById = new UuidSensorMap();
+    //ids of the active sensors, so alarm decisions never walk the set; null until first counted
+    private UuidMap<Boolean> activeIds;
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
+    //keys changed since the last write, and how many changes that was
+    private final Set<String> dirtyKeys = new HashSet<>();
+    private int pendingChanges;
+    private boolean flushRequested;
+
+    //held while writing the file, so writes never overtake each other
+    private final Object writeLock = new Object();
 
     //preference keys
     private static final String SENSORS = "SENSORS";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
+    private static final String EVENT_NAME = "snapshot";
 
     private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
     private static final Gson gson = new Gson(); //used to serialize objects into JSON
 
+    private static final LatencyHistogram sensorsPersistLatency = MetricsRegistry.getDefault().histogram("repository.persist.sensors");
+    private static final LatencyHistogram alarmPersistLatency = MetricsRegistry.getDefault().histogram("repository.persist.alarmStatus");
+    private static final LatencyHistogram armingPersistLatency = MetricsRegistry.getDefault().histogram("repository.persist.armingStatus");
+    private static final LatencyHistogram openLatency = MetricsRegistry.getDefault().histogram("repository.open");
+    private static final LatencyHistogram flushLatency = MetricsRegistry.getDefault().histogram("repository.flush");
+
+    /**
+     * Reads its settings from system properties:
+     * <pre>
+     *      catpoint.snapshot=[snapshot file, default ~/.catpoint/repository.snapshot]
+     *      catpoint.snapshot.durability=[FSYNC, WRITE_THROUGH or WRITE_BEHIND, default WRITE_BEHIND]
+     *      catpoint.snapshot.flushMillis=[longest a write-behind change waits, default 200]
+     *      catpoint.snapshot.flushChanges=[changes that trigger an early write-behind flush, default 100]
+     * </pre>
+     */
     public PretendDatabaseSecurityRepositoryImpl() {
-        //load system state from prefs, or else default
-        alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
-        armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
+        this(Paths.get(System.getProperty("catpoint.snapshot",
+                        Paths.get(System.getProperty("user.home"), ".catpoint", "repository.snapshot").toString())),
+                Durability.valueOf(System.getProperty("catpoint.snapshot.durability", Durability.WRITE_BEHIND.name())),
+                Duration.ofMillis(Long.getLong("catpoint.snapshot.flushMillis", DEFAULT_FLUSH_INTERVAL.toMillis())),
+                Integer.getInteger("catpoint.snapshot.flushChanges", DEFAULT_FLUSH_AFTER_CHANGES));
+    }
+
+    /**
+     * Writes every change through to the given snapshot file.
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Path snapshotFile) {
+        this(snapshotFile, Durability.WRITE_THROUGH, DEFAULT_FLUSH_INTERVAL, DEFAULT_FLUSH_AFTER_CHANGES);
+    }
 
+    /**
+     * @param flushInterval     for write-behind, the longest a change waits before it is written
+     * @param flushAfterChanges for write-behind, the number of changes that are written without
+     *                          waiting for the rest of the interval
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Path snapshotFile, Durability durability, Duration flushInterval, int flushAfterChanges) {
+        long start = System.nanoTime();
+        this.snapshotFile = snapshotFile;
+        this.durability = durability;
+        this.flushAfterChanges = Math.max(1, flushAfterChanges);
+        try {
+            snapshot = RepositorySnapshot.open(snapshotFile);
+        } catch (IOException e) {
+            setAside(e);
+        }
+        if (snapshot != null) {
+            alarmStatus = snapshot.getAlarmStatus();
+            armingStatus = snapshot.getArmingStatus();
+        } else {
+            //load system state from prefs, or else default
+            alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
+            armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
+            sensors = loadLegacySensors();
+            sensorsById = index(sensors);
+            dirtyKeys.add(SENSORS);
+            flush();
+        }
+
+        if (durability == Durability.WRITE_BEHIND) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "repository-write-behind");
+                t.setDaemon(true);
+                return t;
+            });
+            long millis = Math.max(1, flushInterval.toMillis());
+            flusher.scheduleWithFixedDelay(this::flushQuietly, millis, millis, TimeUnit.MILLISECONDS);
+            shutdownHook = new Thread(this::flushQuietly, "repository-shutdown-flush");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            flusher = null;
+            shutdownHook = null;
+        }
+        openLatency.recordSince(start);
+    }
+
+    private static Set<Sensor> loadLegacySensors() {
         //we've serialized our sensor objects for storage, which should be a good warning sign that
         // this is likely an impractical solution for a real system
         String sensorString = prefs.get(SENSORS, null);
         if(sensorString == null) {
-            sensors = new TreeSet<>();
-        } else {
-            Type type = new TypeToken<Set<Sensor>>() {
-            }.getType();
-            sensors = gson.fromJson(sensorString, type);
+            return new TreeSet<>();
         }
+        Type type = new TypeToken<Set<Sensor>>() {
+        }.getType();
+        return gson.fromJson(sensorString, type);
+    }
+
+    /**
+     * Copies a damaged snapshot next to itself before anything can overwrite it.
+     *
+     * @throws RepositoryException if the copy can't be made
+     */
+    private void setAside(IOException damage) {
+        Path aside = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try {
+            Files.copy(snapshotFile, aside);
+        } catch (IOException e) {
+            damage.addSuppressed(e);
+            throw new RepositoryException("Snapshot " + snapshotFile + " is damaged and could not be set aside", damage);
+        }
+        log.error("Snapshot {} is damaged; kept it as {} and fell back to the sensors last saved in preferences",
+                snapshotFile, aside, damage);
+    }
+
+    private static UuidSensorMap index(Collection<Sensor> sensors) {
+        UuidSensorMap index = new UuidSensorMap(sensors.size());
+        sensors.forEach(index::put);
+        return index;
+    }
+
+    /**
+     * Builds the full sensor set from the snapshot, reusing any sensors already handed out.
+     * Callers hold the lock.
+     */
+    private Set<Sensor> materializedSensors() {
+        if (sensors != null) {
+            return sensors;
+        }
+        try {
+            List<Sensor> stored = snapshot.readSensors();
+            UuidSensorMap all = new UuidSensorMap(stored.size());
+            for (Sensor sensor : stored) {
+                Sensor loaded = sensorsById.get(sensor.getSensorId());
+                all.put(loaded != null ? loaded : sensor);
+            }
+            sensors = new TreeSet<>(all.values());
+            sensorsById = all;
+        } catch (IOException e) {
+            setAside(e);
+            sensors = loadLegacySensors();
+            sensorsById = index(sensors);
+            activeIds = null;
+        }
+        //nothing reads it any more, but the file must be free to be replaced; waits for a flush copying from it
+        snapshot.copyToHeap();
+        snapshot = null;
+        return sensors;
     }
 
     @Override
     public void addSensor(Sensor sensor) {
-        sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        synchronized (this) {
+            if (materializedSensors().add(sensor)) {
+                sensorsById.put(sensor);
+                trackActive(sensor);
+            }
+            changed(SENSORS);
+        }
+        persistIfSynchronous();
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
-        sensors.remove(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+        synchronized (this) {
+            if (materializedSensors().remove(sensor)) {
+                sensorsById.remove(sensor.getSensorId());
+                if (activeIds != null) {
+                    activeIds.remove(sensor.getSensorId());
+                }
+            }
+            changed(SENSORS);
+        }
+        persistIfSynchronous();
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
-        sensors.remove(sensor);
+        synchronized (this) {
+            UUID id = sensor.getSensorId();
+            int index = sensors == null ? snapshot.indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits()) : -1;
+            if (index >= 0 && snapshot.matches(index, sensor)) {
+                //only the active flag changed, which the snapshot can patch in place
+                sensorsById.put(sensor);
+            } else if (sensors == null || sensorsById.get(id) != sensor) {
+                //a sensor object we don't hold yet, so re-sort it into the set; the objects we
+                // handed out are already there and only need marking dirty
+                replace(materializedSensors(), sensor);
+            }
+            trackActive(sensor);
+            changed(SENSORS);
+        }
+        persistIfSynchronous();
+    }
+
+    @Override
+    public void renameSensor(Sensor sensor, String name, SensorType sensorType) {
+        synchronized (this) {
+            Set<Sensor> sensors = materializedSensors();
+            //the set is sorted by name, so the sensor has to leave it under its old one
+            Sensor held = sensorsById.get(sensor.getSensorId());
+            sensors.remove(held != null ? held : sensor);
+            sensor.setName(name);
+            sensor.setSensorType(sensorType);
+            sensors.add(sensor);
+            sensorsById.put(sensor);
+            trackActive(sensor);
+            changed(SENSORS);
+        }
+        persistIfSynchronous();
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> updated) {
+        synchronized (this) {
+            Set<Sensor> sensors = materializedSensors();
+            for (Sensor sensor : updated) {
+                replace(sensors, sensor);
+                trackActive(sensor);
+            }
+            changed(SENSORS);
+        }
+        persistIfSynchronous();
+    }
+
+    /**
+     * Swaps a sensor into the set and the index in place of the one with the same id. Callers hold
+     * the lock.
+     */
+    private void replace(Set<Sensor> sensors, Sensor sensor) {
+        Sensor previous = sensorsById.put(sensor);
+        //the set is sorted by name, so the old object has to go by its own name
+        sensors.remove(previous != null ? previous : sensor);
         sensors.add(sensor);
-        prefs.put(SENSORS, gson.toJson(sensors));
+    }
+
+    /**
+     * Callers hold the lock.
+     */
+    private void trackActive(Sensor sensor) {
+        if (activeIds == null) {
+            return;
+        }
+        UUID id = sensor.getSensorId();
+        if (sensor.getActive()) {
+            activeIds.put(id, Boolean.TRUE);
+        } else {
+            activeIds.remove(id);
+        }
     }
 
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
-        this.alarmStatus = alarmStatus;
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        synchronized (this) {
+            this.alarmStatus = alarmStatus;
+            changed(ALARM_STATUS);
+        }
+        persistIfSynchronous();
     }
 
     @Override
     public void setArmingStatus(ArmingStatus armingStatus) {
-        this.armingStatus = armingStatus;
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        synchronized (this) {
+            this.armingStatus = armingStatus;
+            changed(ARMING_STATUS);
+        }
+        persistIfSynchronous();
     }
 
     @Override
-    public Set<Sensor> getSensors() {
-        return sensors;
+    public void setAlarmAndArmingStatus(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        synchronized (this) {
+            this.alarmStatus = alarmStatus;
+            this.armingStatus = armingStatus;
+            changed(ALARM_STATUS);
+            changed(ARMING_STATUS);
+        }
+        persistIfSynchronous();
+    }
+
+    /**
+     * Marks a key dirty, and wakes the write-behind flusher early once enough changes have
+     * piled up. Callers hold the lock.
+     */
+    private void changed(String key) {
+        dirtyKeys.add(key);
+        pendingChanges++;
+        if (flusher != null && pendingChanges >= flushAfterChanges && !flushRequested) {
+            flushRequested = true;
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void persistIfSynchronous() {
+        if (flusher == null) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the current state if anything changed since the last write. Called on the
+     * changing thread for synchronous durability levels and on the flusher thread for
+     * write-behind, but may be called at any time to force pending changes out.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            Set<String> keys;
+            AlarmStatus alarm;
+            ArmingStatus arming;
+            RepositorySnapshot base;
+            List<Sensor> patched = null;
+            List<Sensor> all = null;
+            synchronized (this) {
+                flushRequested = false;
+                if (dirtyKeys.isEmpty()) {
+                    return;
+                }
+                keys = new HashSet<>(dirtyKeys);
+                dirtyKeys.clear();
+                pendingChanges = 0;
+                alarm = alarmStatus;
+                arming = armingStatus;
+                base = snapshot;
+                if (base != null) {
+                    //the file is about to be replaced, which fails while it is mapped on some platforms
+                    base.copyToHeap();
+                }
+                if (sensors == null) {
+                    patched = sensorsById.values();
+                } else {
+                    all = new ArrayList<>(sensors);
+                }
+            }
+
+            //the file is written outside the lock so changes never wait for storage
+            long start = System.nanoTime();
+            RepositoryPersistEvent event = RepositoryPersistEvent.start();
+            int sensorCount = keys.contains(SENSORS) ? (all != null ? all.size() : patched.size()) : 0;
+            boolean force = durability == Durability.FSYNC;
+            try {
+                if (all == null) {
+                    try {
+                        base.writeWith(snapshotFile, alarm, arming, patched, force);
+                    } catch (IOException e) {
+                        log.warn("Could not patch snapshot {}, rewriting it in full", snapshotFile, e);
+                        synchronized (this) {
+                            all = new ArrayList<>(materializedSensors());
+                        }
+                    }
+                }
+                if (all != null) {
+                    RepositorySnapshot.write(snapshotFile, alarm, arming, all, force);
+                }
+            } catch (IOException e) {
+                //the in-memory state stays authoritative; the next successful write catches up
+                log.error("Could not write snapshot {}", snapshotFile, e);
+                synchronized (this) {
+                    dirtyKeys.addAll(keys);
+                }
+                event.finish(EVENT_NAME, changes(keys), sensorCount, true);
+                return;
+            }
+            recordPersistLatency(keys, start);
+            event.finish(EVENT_NAME, changes(keys), sensorCount, false);
+        }
+    }
+
+    private void recordPersistLatency(Set<String> keys, long start) {
+        if (keys.contains(SENSORS)) {
+            sensorsPersistLatency.recordSince(start);
+        }
+        if (keys.contains(ALARM_STATUS)) {
+            alarmPersistLatency.recordSince(start);
+        }
+        if (keys.contains(ARMING_STATUS)) {
+            armingPersistLatency.recordSince(start);
+        }
+        flushLatency.recordSince(start);
+    }
+
+    private static String changes(Set<String> keys) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : new String[]{SENSORS, ALARM_STATUS, ARMING_STATUS}) {
+            if (keys.contains(key)) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(key.toLowerCase());
+            }
+        }
+        return sb.toString();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Write-behind flush of {} failed", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Stops writing behind and writes anything still pending.
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                //already shutting down, the hook flushes too
+            }
+        }
+        flush();
+    }
+
+    /**
+     * @return a read-only copy, in sensor order, which later changes don't affect
+     */
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return Collections.unmodifiableSet(new TreeSet<>(materializedSensors()));
+    }
+
+    @Override
+    public synchronized int getSensorCount() {
+        return sensors != null ? sensors.size() : snapshot.size();
+    }
+
+    /**
+     * The first call reads the active flags from the snapshot, or the materialized sensors;
+     * after that the count is kept up to date as sensors change.
+     */
+    @Override
+    public synchronized int getActiveSensorCount() {
+        if (activeIds == null) {
+            UuidMap<Boolean> active = new UuidMap<>();
+            if (sensors != null) {
+                for (Sensor sensor : sensors) {
+                    if (sensor.getActive()) {
+                        active.put(sensor.getSensorId(), Boolean.TRUE);
+                    }
+                }
+            } else {
+                for (int i = 0; i < snapshot.size(); i++) {
+                    if (snapshot.isActive(i)) {
+                        active.put(snapshot.sensorIdHigh(i), snapshot.sensorIdLow(i), Boolean.TRUE);
+                    }
+                }
+                //sensors handed out since may have changed state
+                sensorsById.forEach(sensor -> {
+                    if (sensor.getActive()) {
+                        active.put(sensor.getSensorId(), Boolean.TRUE);
+                    } else {
+                        active.remove(sensor.getSensorId());
+                    }
+                });
+            }
+            activeIds = active;
+        }
+        return activeIds.size();
+    }
+
+    @Override
+    public synchronized Sensor findSensor(long sensorIdHigh, long sensorIdLow) {
+        Sensor sensor = sensorsById.get(sensorIdHigh, sensorIdLow);
+        if (sensor == null && sensors == null) {
+            int index = snapshot.indexOf(sensorIdHigh, sensorIdLow);
+            if (index < 0) {
+                return null;
+            }
+            sensor = snapshot.sensorAt(index);
+            sensorsById.put(sensor);
+        }
+        return sensor;
     }
 
     @Override
-    public AlarmStatus getAlarmStatus() {
+    public synchronized AlarmStatus getAlarmStatus() {
         return alarmStatus;
     }
 
     @Override
-    public ArmingStatus getArmingStatus() {
+    public synchronized ArmingStatus getArmingStatus() {
         return armingStatus;
     }
 }
@@ -0,0 +1,447 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Binary image of the repository state, read with a single memory mapping so startup cost
+ * doesn't grow with the number of sensors. Layout, all little endian:
+ * <pre>
+ *      header (32 bytes)
+ *          int     magic 'CATP'
+ *          short   format version
+ *          short   reserved
+ *          byte    alarm status ordinal
+ *          byte    arming status ordinal
+ *          short   zone count
+ *          int     sensor count
+ *          int     name bytes
+ *          int     CRC32 of everything after the header
+ *          int     zone bytes
+ *          int     CRC32 of the header up to here
+ *      sensor records (28 bytes each, sorted by id)
+ *          long    id, most significant bits
+ *          long    id, least significant bits
+ *          int     offset of the name in the name section
+ *          short   name length in bytes
+ *          byte    sensor type ordinal
+ *          byte    1 if active
+ *          short   zone number, 0 for the default zone
+ *          short   reserved
+ *      names (UTF-8, back to back)
+ *      zones, numbered from 1
+ *          short   name length in bytes
+ *          bytes   name, UTF-8
+ * </pre>
+ * Version 1 snapshots, written before sensors had zones, have 24 byte records and no zones;
+ * they are still read, with every sensor in the default zone.
+ * Opening a snapshot only checks the header. Records are read on demand and the rest of the
+ * file is checked the first time it is needed as a whole; until then only the pages actually
+ * touched are read from disk.
+ * <p>
+ * Some platforms, Windows among them, refuse to replace a file that is still mapped, so a
+ * snapshot is copied into memory and unmapped with {@link #copyToHeap()} before its file is
+ * replaced.
+ * <p>
+ * Enum ordinals are part of the format, so reordering {@link AlarmStatus}, {@link ArmingStatus}
+ * or {@link SensorType} needs a new version.
+ */
+public class RepositorySnapshot {
+
+    static final int MAGIC = 0x50544143;
+    static final short VERSION = 2;
+    private static final short VERSION_WITHOUT_ZONES = 1;
+
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 28;
+    private static final int RECORD_BYTES_WITHOUT_ZONES = 24;
+
+    private static final Comparator<Sensor> BY_ID = Comparator
+            .comparingLong((Sensor s) -> s.getSensorId().getMostSignificantBits())
+            .thenComparingLong(s -> s.getSensorId().getLeastSignificantBits());
+
+    //the file mapping until copyToHeap
+    private ByteBuffer buffer;
+    private final short version;
+    private final int recordBytes;
+    //zone names by number, with null for the default zone
+    private final String[] zones;
+    private final int zoneBytes;
+    private final AlarmStatus alarmStatus;
+    private final ArmingStatus armingStatus;
+    private final int sensorCount;
+    private final int namesStart;
+    private final int bodyCrc;
+    private boolean bodyVerified;
+
+    private RepositorySnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a repository snapshot");
+        }
+        version = buffer.getShort(4);
+        if (version != VERSION && version != VERSION_WITHOUT_ZONES) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        recordBytes = version == VERSION ? RECORD_BYTES : RECORD_BYTES_WITHOUT_ZONES;
+        if (crc(buffer, 0, HEADER_BYTES - 4) != buffer.getInt(HEADER_BYTES - 4)) {
+            throw new IOException("Snapshot header is corrupt");
+        }
+        AlarmStatus[] alarms = AlarmStatus.values();
+        ArmingStatus[] armings = ArmingStatus.values();
+        int alarm = buffer.get(8);
+        int arming = buffer.get(9);
+        sensorCount = buffer.getInt(12);
+        int nameBytes = buffer.getInt(16);
+        int zoneCount = version == VERSION ? buffer.getShort(10) & 0xFFFF : 0;
+        zoneBytes = version == VERSION ? buffer.getInt(24) : 0;
+        if (alarm < 0 || alarm >= alarms.length || arming < 0 || arming >= armings.length || sensorCount < 0 || nameBytes < 0
+                || zoneBytes < 0 || (long) HEADER_BYTES + (long) sensorCount * recordBytes + nameBytes + zoneBytes != buffer.capacity()) {
+            throw new IOException("Snapshot header is inconsistent with its size");
+        }
+        alarmStatus = alarms[alarm];
+        armingStatus = armings[arming];
+        namesStart = HEADER_BYTES + sensorCount * recordBytes;
+        bodyCrc = buffer.getInt(20);
+        zones = readZones(buffer, namesStart + nameBytes, zoneCount);
+    }
+
+    /**
+     * Reads the zone table, which is small enough to keep in memory as strings.
+     */
+    private static String[] readZones(ByteBuffer buffer, int position, int count) throws IOException {
+        String[] zones = new String[count + 1];
+        for (int i = 1; i <= count; i++) {
+            if (position + 2 > buffer.capacity()) {
+                throw new IOException("Snapshot zone table is corrupt");
+            }
+            int length = buffer.getShort(position) & 0xFFFF;
+            position += 2;
+            if (position + length > buffer.capacity()) {
+                throw new IOException("Snapshot zone table is corrupt");
+            }
+            byte[] name = new byte[length];
+            buffer.duplicate().position(position).get(name);
+            zones[i] = new String(name, StandardCharsets.UTF_8);
+            position += length;
+        }
+        return zones;
+    }
+
+    /**
+     * Maps a snapshot file and checks its header.
+     *
+     * @return the snapshot, or null if there is no file
+     * @throws IOException if the file can't be read or isn't a valid snapshot
+     */
+    static RepositorySnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //the mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new RepositorySnapshot(mapped);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    int size() {
+        return sensorCount;
+    }
+
+    /**
+     * Binary searches the records for a sensor id.
+     *
+     * @return the record index, or -1 if the sensor isn't in the snapshot
+     */
+    int indexOf(long sensorIdHigh, long sensorIdLow) {
+        int low = 0;
+        int high = sensorCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = HEADER_BYTES + mid * recordBytes;
+            int cmp = Long.compare(buffer.getLong(record), sensorIdHigh);
+            if (cmp == 0) {
+                cmp = Long.compare(buffer.getLong(record + 8), sensorIdLow);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    long sensorIdHigh(int index) {
+        return buffer.getLong(HEADER_BYTES + index * recordBytes);
+    }
+
+    long sensorIdLow(int index) {
+        return buffer.getLong(HEADER_BYTES + index * recordBytes + 8);
+    }
+
+    /**
+     * Reads only the active flag of a record, without building the sensor.
+     */
+    boolean isActive(int index) {
+        return buffer.get(HEADER_BYTES + index * recordBytes + 23) != 0;
+    }
+
+    /**
+     * Builds a new sensor object from a record.
+     */
+    Sensor sensorAt(int index) {
+        int record = HEADER_BYTES + index * recordBytes;
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(buffer.getLong(record), buffer.getLong(record + 8)));
+        int nameOffset = buffer.getInt(record + 16);
+        int nameLength = buffer.getShort(record + 20) & 0xFFFF;
+        byte[] name = new byte[nameLength];
+        buffer.duplicate().position(namesStart + nameOffset).get(name);
+        sensor.setName(new String(name, StandardCharsets.UTF_8));
+        sensor.setSensorType(SensorType.values()[buffer.get(record + 22)]);
+        sensor.setActive(buffer.get(record + 23) != 0);
+        if (recordBytes == RECORD_BYTES) {
+            int zone = buffer.getShort(record + 24) & 0xFFFF;
+            if (zone >= zones.length) {
+                throw new IllegalStateException("Snapshot record " + index + " has no zone " + zone);
+            }
+            sensor.setZone(zones[zone]);
+        }
+        return sensor;
+    }
+
+    boolean matches(int index, Sensor sensor) {
+        Sensor stored = sensorAt(index);
+        return stored.getName().equals(sensor.getName()) && stored.getSensorType() == sensor.getSensorType()
+                && stored.getZone().equals(sensor.getZone());
+    }
+
+    /**
+     * Checks the records and names against the stored checksum. Only the first call reads
+     * the whole file.
+     */
+    void verify() throws IOException {
+        if (bodyVerified) {
+            return;
+        }
+        if (crc(buffer, HEADER_BYTES, buffer.capacity() - HEADER_BYTES) != bodyCrc) {
+            throw new IOException("Snapshot sensor data is corrupt");
+        }
+        bodyVerified = true;
+    }
+
+    /**
+     * Copies the snapshot out of its file mapping and unmaps the file, so that the file can be
+     * replaced. Does nothing if that has already happened. Callers make sure no other thread
+     * reads records meanwhile.
+     */
+    synchronized void copyToHeap() {
+        if (!(buffer instanceof MappedByteBuffer)) {
+            return;
+        }
+        MappedByteBuffer mapped = (MappedByteBuffer) buffer;
+        ByteBuffer copy = ByteBuffer.allocate(mapped.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        copy.put(mapped.duplicate().clear());
+        buffer = copy.clear();
+        unmap(mapped);
+    }
+
+    /**
+     * Releases a mapping now rather than whenever the buffer is garbage collected. Must not be
+     * called while anything can still read the buffer.
+     */
+    private static void unmap(MappedByteBuffer mapped) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), mapped);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            //not available on this JVM; the mapping goes when the buffer is collected
+        }
+    }
+
+    /**
+     * Builds sensor objects for every record, in id order.
+     */
+    List<Sensor> readSensors() throws IOException {
+        verify();
+        List<Sensor> sensors = new ArrayList<>(sensorCount);
+        for (int i = 0; i < sensorCount; i++) {
+            sensors.add(sensorAt(i));
+        }
+        return sensors;
+    }
+
+    /**
+     * Writes a snapshot of the given state. The file is replaced atomically, so readers and a
+     * crash mid-write only ever see the old or the new snapshot.
+     */
+    public static void write(Path file, AlarmStatus alarmStatus, ArmingStatus armingStatus, Collection<Sensor> sensors) throws IOException {
+        write(file, alarmStatus, armingStatus, sensors, false);
+    }
+
+    /**
+     * Writes a snapshot, optionally forcing it to disk before it replaces the old one.
+     */
+    static void write(Path file, AlarmStatus alarmStatus, ArmingStatus armingStatus, Collection<Sensor> sensors, boolean force) throws IOException {
+        List<Sensor> sorted = new ArrayList<>(sensors);
+        sorted.sort(BY_ID);
+        byte[][] names = new byte[sorted.size()][];
+        int nameBytes = 0;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = sorted.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > 0xFFFF) {
+                throw new IllegalArgumentException("Sensor name is too long: " + sorted.get(i).getSensorId());
+            }
+            nameBytes += names[i].length;
+        }
+
+        //zones are few, so each name is stored once and records refer to it by number
+        Map<String, Integer> zoneNumbers = new LinkedHashMap<>();
+        List<byte[]> zoneNames = new ArrayList<>();
+        int[] sensorZones = new int[names.length];
+        int zoneBytes = 0;
+        for (int i = 0; i < names.length; i++) {
+            String zone = sorted.get(i).getZone();
+            if (!Sensor.DEFAULT_ZONE.equals(zone)) {
+                Integer number = zoneNumbers.get(zone);
+                if (number == null) {
+                    byte[] name = zone.getBytes(StandardCharsets.UTF_8);
+                    if (name.length > 0xFFFF || zoneNames.size() == 0xFFFF) {
+                        throw new IllegalArgumentException("Too many zones, or a zone name is too long: " + zone);
+                    }
+                    zoneNames.add(name);
+                    zoneBytes += 2 + name.length;
+                    number = zoneNames.size();
+                    zoneNumbers.put(zone, number);
+                }
+                sensorZones[i] = number;
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + sorted.size() * RECORD_BYTES + nameBytes + zoneBytes).order(ByteOrder.LITTLE_ENDIAN);
+        int namesStart = HEADER_BYTES + sorted.size() * RECORD_BYTES;
+        int nameOffset = 0;
+        for (int i = 0; i < names.length; i++) {
+            Sensor sensor = sorted.get(i);
+            out.position(HEADER_BYTES + i * RECORD_BYTES);
+            putRecord(out, sensor, nameOffset, names[i].length, Boolean.TRUE.equals(sensor.getActive()), sensorZones[i]);
+            out.position(namesStart + nameOffset);
+            out.put(names[i]);
+            nameOffset += names[i].length;
+        }
+        out.position(namesStart + nameBytes);
+        for (byte[] name : zoneNames) {
+            out.putShort((short) name.length);
+            out.put(name);
+        }
+        putHeader(out, VERSION, alarmStatus, armingStatus, sorted.size(), nameBytes, zoneNames.size(), zoneBytes);
+        replace(file, out, force);
+    }
+
+    /**
+     * Writes a copy of this snapshot with new statuses, and with the active flags of the given
+     * sensors changed. Every changed sensor must already be in this snapshot with the same name
+     * type and zone; see {@link #matches(int, Sensor)}. The copy keeps this snapshot's version.
+     */
+    synchronized void writeWith(Path file, AlarmStatus alarmStatus, ArmingStatus armingStatus, Collection<Sensor> changed, boolean force) throws IOException {
+        //don't carry damaged records into a file with a fresh checksum
+        verify();
+        ByteBuffer out = ByteBuffer.allocate(buffer.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(buffer.duplicate().clear());
+        for (Sensor sensor : changed) {
+            int index = indexOf(sensor.getSensorId().getMostSignificantBits(), sensor.getSensorId().getLeastSignificantBits());
+            out.put(HEADER_BYTES + index * recordBytes + 23, (byte) (sensor.getActive() ? 1 : 0));
+        }
+        putHeader(out, version, alarmStatus, armingStatus, sensorCount, buffer.capacity() - namesStart - zoneBytes,
+                zones.length - 1, zoneBytes);
+        replace(file, out, force);
+    }
+
+    private static void putRecord(ByteBuffer out, Sensor sensor, int nameOffset, int nameLength, boolean active, int zone) {
+        out.putLong(sensor.getSensorId().getMostSignificantBits());
+        out.putLong(sensor.getSensorId().getLeastSignificantBits());
+        out.putInt(nameOffset);
+        out.putShort((short) nameLength);
+        out.put((byte) sensor.getSensorType().ordinal());
+        out.put((byte) (active ? 1 : 0));
+        out.putShort((short) zone);
+        out.putShort((short) 0);
+    }
+
+    private static void putHeader(ByteBuffer out, short version, AlarmStatus alarmStatus, ArmingStatus armingStatus,
+                                  int sensorCount, int nameBytes, int zoneCount, int zoneBytes) {
+        out.putInt(0, MAGIC);
+        out.putShort(4, version);
+        out.putShort(6, (short) 0);
+        out.put(8, (byte) alarmStatus.ordinal());
+        out.put(9, (byte) armingStatus.ordinal());
+        out.putShort(10, (short) zoneCount);
+        out.putInt(12, sensorCount);
+        out.putInt(16, nameBytes);
+        out.putInt(20, crc(out, HEADER_BYTES, out.capacity() - HEADER_BYTES));
+        out.putInt(24, zoneBytes);
+        out.putInt(HEADER_BYTES - 4, crc(out, 0, HEADER_BYTES - 4));
+    }
+
+    private static void replace(Path file, ByteBuffer contents, boolean force) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                contents.clear();
+                while (contents.hasRemaining()) {
+                    channel.write(contents);
+                }
+                if (force) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(offset).limit(offset + length));
+        return (int) crc.getValue();
+    }
+}
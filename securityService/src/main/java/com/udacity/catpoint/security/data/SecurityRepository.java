@@ -1,6 +1,9 @@
 package com.udacity.catpoint.security.data;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -15,5 +18,78 @@ public interface SecurityRepository {
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
+    /**
+     * Updates many sensors at once. Repositories that can write them in one go should override this.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
 
+    /**
+     * Stores both statuses together, as when disarming clears the alarm. Repositories that can
+     * store them in one write should override this, so a failure leaves both as they were.
+     */
+    default void setAlarmAndArmingStatus(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        setAlarmStatus(alarmStatus);
+        setArmingStatus(armingStatus);
+    }
+
+    /**
+     * Stores a sensor under a new name and type, along with any other changes made to it. Name
+     * and type decide where a sensor sorts, so by default it is taken out under the old ones and
+     * put back under the new; repositories that can store this in one write should override it.
+     */
+    default void renameSensor(Sensor sensor, String name, SensorType sensorType) {
+        removeSensor(sensor);
+        sensor.setName(name);
+        sensor.setSensorType(sensorType);
+        addSensor(sensor);
+    }
+
+    /**
+     * Repositories that can count their sensors without loading them all should override this.
+     */
+    default int getSensorCount() {
+        return getSensors().size();
+    }
+
+    /**
+     * Asked on every alarm status change, so repositories that can answer without loading
+     * every sensor should override this.
+     */
+    default int getActiveSensorCount() {
+        int active = 0;
+        for (Sensor sensor : getSensors()) {
+            if (sensor.getActive()) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    default Set<Sensor> getSensorsOfType(SensorType sensorType) {
+        Set<Sensor> sensors = new TreeSet<>();
+        for (Sensor sensor : getSensors()) {
+            if (sensor.getSensorType() == sensorType) {
+                sensors.add(sensor);
+            }
+        }
+        return sensors;
+    }
+
+    /**
+     * Looks up a sensor by the two halves of its id, so callers decoding ids off the wire
+     * don't need to build a {@link java.util.UUID} first.
+     *
+     * @return the sensor, or null if there is no such sensor
+     */
+    default Sensor findSensor(long sensorIdHigh, long sensorIdLow) {
+        for (Sensor sensor : getSensors()) {
+            UUID id = sensor.getSensorId();
+            if (id.getMostSignificantBits() == sensorIdHigh && id.getLeastSignificantBits() == sensorIdLow) {
+                return sensor;
+            }
+        }
+        return null;
+    }
 }
@@ -8,12 +8,24 @@ import java.util.UUID;
 
 /**
  * Sensor POJO. Needs to know how to sort itself for display purposes.
+ * <p>
+ * Every sensor belongs to a zone, such as a perimeter or an upstairs, which can be armed on its
+ * own. Sensors that were never given one are in {@link #DEFAULT_ZONE}.
  */
 public class Sensor implements Comparable<Sensor> {
+
+    /**
+     * Zone of sensors that were not put in any other zone.
+     */
+    public static final String DEFAULT_ZONE = "default";
+
     private UUID sensorId;
     private String name;
-    private Boolean active;
+    //primitive so toggling never boxes; the Boolean accessors stay for existing callers and Gson
+    private boolean active;
     private SensorType sensorType;
+    //null for the default zone, so sensors stored before zones existed read back unchanged
+    private String zone;
 
     public Sensor() {
 
@@ -22,7 +34,6 @@ public class Sensor implements Comparable<Sensor> {
         this.name = name;
         this.sensorType = sensorType;
         this.sensorId = UUID.randomUUID();
-        this.active = Boolean.FALSE;
     }
 
     @Override
@@ -35,7 +46,7 @@ public class Sensor implements Comparable<Sensor> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(sensorId);
+        return Objects.hashCode(sensorId);
     }
 
     public String getName() {
@@ -51,7 +62,7 @@ public class Sensor implements Comparable<Sensor> {
     }
 
     public void setActive(Boolean active) {
-        this.active = active;
+        this.active = Boolean.TRUE.equals(active);
     }
 
     public SensorType getSensorType() {
@@ -62,6 +73,14 @@ public class Sensor implements Comparable<Sensor> {
         this.sensorType = sensorType;
     }
 
+    public String getZone() {
+        return zone == null ? DEFAULT_ZONE : zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone == null || zone.isEmpty() || DEFAULT_ZONE.equals(zone) ? null : zone;
+    }
+
     public UUID getSensorId() {
         return sensorId;
     }
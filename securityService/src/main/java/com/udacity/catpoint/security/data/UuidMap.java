@@ -0,0 +1,190 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Values keyed directly by the two halves of a {@link UUID}, so that a lookup allocates
+ * nothing: no {@link UUID}, no boxed keys, no map entries.
+ * <p>
+ * Open addressing with linear probing over parallel arrays, kept at most half full. Removal
+ * shifts later entries of the same run back instead of leaving tombstones, so lookups stay
+ * short however many keys come and go. Not thread safe.
+ *
+ * @param <V> the values; null is not a value
+ */
+public class UuidMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    //the two halves of the key in slot i are at 2i and 2i + 1, so a probe touches one cache line
+    private long[] ids;
+    //null marks an empty slot
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public UuidMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public UuidMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value, or null if there is none for this key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long high, long low) {
+        int slot = slotOf(high, low);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public V get(UUID key) {
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Adds a value, replacing any value with the same key.
+     *
+     * @return the value replaced, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long high, long low, V value) {
+        int slot = hash(high, low) & mask;
+        while (values[slot] != null) {
+            if (ids[2 * slot] == high && ids[2 * slot + 1] == low) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ids[2 * slot] = high;
+        ids[2 * slot + 1] = low;
+        values[slot] = value;
+        if (++size * 2 > values.length) {
+            resize(values.length * 2);
+        }
+        return null;
+    }
+
+    public V put(UUID key, V value) {
+        return put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+    }
+
+    /**
+     * @return the value removed, or null if there was none for this key
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long high, long low) {
+        int slot = slotOf(high, low);
+        if (slot < 0) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        //shift back any later entries of the run that would no longer be reachable
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(ids[2 * next], ids[2 * next + 1]) & mask;
+            //move the entry unless its home lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                ids[2 * hole] = ids[2 * next];
+                ids[2 * hole + 1] = ids[2 * next + 1];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    public V remove(UUID key) {
+        return remove(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    public List<V> values() {
+        List<V> list = new ArrayList<>(size);
+        forEach(list::add);
+        return list;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    private int slotOf(long high, long low) {
+        int slot = hash(high, low) & mask;
+        while (values[slot] != null) {
+            if (ids[2 * slot] == high && ids[2 * slot + 1] == low) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Random ids are already well mixed, but ids from other sources may not be, so the halves
+     * go through a multiply-shift mix before picking a slot.
+     */
+    private static int hash(long high, long low) {
+        long h = (high ^ Long.rotateLeft(low, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void resize(int capacity) {
+        long[] oldIds = ids;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldIds[2 * i], oldIds[2 * i + 1]) & mask;
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                ids[2 * slot] = oldIds[2 * i];
+                ids[2 * slot + 1] = oldIds[2 * i + 1];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[2 * capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
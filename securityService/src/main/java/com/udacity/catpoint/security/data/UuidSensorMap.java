@@ -0,0 +1,40 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * Sensors by id, keyed directly by the two halves of the id so that looking a sensor up or
+ * toggling it allocates nothing: no {@link java.util.UUID}, no boxed keys, no map entries.
+ * Not thread safe.
+ */
+public class UuidSensorMap extends UuidMap<Sensor> {
+
+    public UuidSensorMap() {
+        super();
+    }
+
+    public UuidSensorMap(int expectedSize) {
+        super(expectedSize);
+    }
+
+    /**
+     * Adds a sensor, replacing any sensor with the same id.
+     *
+     * @return the sensor replaced, or null
+     */
+    public Sensor put(Sensor sensor) {
+        return put(sensor.getSensorId(), sensor);
+    }
+
+    /**
+     * Sets the active state of a sensor in place.
+     *
+     * @return false if there is no sensor with this id
+     */
+    public boolean setActive(long sensorIdHigh, long sensorIdLow, boolean active) {
+        Sensor sensor = get(sensorIdHigh, sensorIdLow);
+        if (sensor == null) {
+            return false;
+        }
+        sensor.setActive(active);
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package com.udacity.catpoint.security.notification;
+
+/**
+ * One notification on its way to one subscriber.
+ */
+public class Delivery {
+
+    private final Subscriber subscriber;
+    private final Notification notification;
+    //only touched by the sink's worker thread
+    private int attempts;
+    private long dueNanos;
+    //set once the worker gives up on it or drops it, so it never counts as sent
+    private volatile boolean abandoned;
+
+    Delivery(Subscriber subscriber, Notification notification) {
+        this.subscriber = subscriber;
+        this.notification = notification;
+    }
+
+    public Subscriber getSubscriber() {
+        return subscriber;
+    }
+
+    public Notification getNotification() {
+        return notification;
+    }
+
+    /**
+     * @return failed attempts so far
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    int failed() {
+        return ++attempts;
+    }
+
+    boolean isAbandoned() {
+        return abandoned;
+    }
+
+    void abandon() {
+        abandoned = true;
+    }
+
+    long getDueNanos() {
+        return dueNanos;
+    }
+
+    void setDueNanos(long dueNanos) {
+        this.dueNanos = dueNanos;
+    }
+}
@@ -0,0 +1,25 @@
+package com.udacity.catpoint.security.notification;
+
+import java.util.List;
+
+/**
+ * Thrown by a sink when some deliveries of a batch did not get through. Those are retried, the
+ * rest of the batch counts as delivered.
+ */
+public class DeliveryException extends Exception {
+
+    private final List<Delivery> failed;
+
+    public DeliveryException(String message, List<Delivery> failed, Throwable cause) {
+        super(message, cause);
+        this.failed = failed;
+    }
+
+    public DeliveryException(String message, List<Delivery> failed) {
+        this(message, failed, null);
+    }
+
+    public List<Delivery> getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,34 @@
+package com.udacity.catpoint.security.notification;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Writes notifications to the application log, urgent ones as warnings. The subscriber's
+ * address is included so that log-based alerting can route on it.
+ */
+public class LogSink implements NotificationSink {
+
+    public static final String NAME = "log";
+
+    private Logger log = LoggerFactory.getLogger(LogSink.class);
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void deliver(List<Delivery> batch) {
+        for (Delivery delivery : batch) {
+            Notification notification = delivery.getNotification();
+            if (notification.isUrgent()) {
+                log.warn("[{}] {}", delivery.getSubscriber().getAddress(), notification);
+            } else {
+                log.info("[{}] {}", delivery.getSubscriber().getAddress(), notification);
+            }
+        }
+    }
+}
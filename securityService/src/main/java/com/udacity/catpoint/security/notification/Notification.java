@@ -0,0 +1,56 @@
+package com.udacity.catpoint.security.notification;
+
+/**
+ * Something subscribers should hear about, such as the alarm going off.
+ */
+public class Notification {
+
+    private final String type;
+    private final String message;
+    private final boolean urgent;
+    private final long timestamp;
+    private final long createdNanos;
+
+    /**
+     * @param type      what happened, e.g. ALARM; subscribers are not sent the same type and
+     *                  message twice in a row within the dedupe window
+     * @param urgent    true if the notification must not be held back by rate limits
+     * @param timestamp when it happened, in epoch milliseconds
+     */
+    public Notification(String type, String message, boolean urgent, long timestamp) {
+        this.type = type;
+        this.message = message;
+        this.urgent = urgent;
+        this.timestamp = timestamp;
+        this.createdNanos = System.nanoTime();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isUrgent() {
+        return urgent;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    boolean isSameAs(Notification other) {
+        return other != null && type.equals(other.type) && message.equals(other.message);
+    }
+
+    @Override
+    public String toString() {
+        return type + ": " + message;
+    }
+}
@@ -0,0 +1,278 @@
+package com.udacity.catpoint.security.notification;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tells subscribers about alarms and other changes to the system, through sinks such as
+ * webhooks and SMS. Register it as a {@link StatusListener} of the SecurityService.
+ * <p>
+ * Listener calls only put a notification on a bounded queue, so a slow or failing sink never
+ * holds up the alarm state machine. A dispatcher thread fans each notification out to every
+ * subscriber. A notification is skipped for subscribers who were just sent the same one within
+ * the dedupe window, with nothing else published in between, and for subscribers who have used
+ * up their rate limit. Urgent notifications are never skipped. Each sink then sends its deliveries in batches from a queue of its
+ * own, retrying failures with backoff; see {@link SinkWorker}.
+ */
+public class NotificationService implements StatusListener, Closeable {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    private static final Duration DEFAULT_LINGER = Duration.ofMillis(20);
+    private static final Duration DEFAULT_DEDUPE_WINDOW = Duration.ofMinutes(5);
+    private static final int DEFAULT_MAX_PER_SUBSCRIBER_PER_MINUTE = 10;
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(500);
+
+    private Logger log = LoggerFactory.getLogger(NotificationService.class);
+
+    private final int queueCapacity;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final long dedupeWindowNanos;
+    private final double permitsPerNano;
+    private final double maxPermits;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+
+    private final BlockingQueue<Notification> notifications;
+    private final Map<String, SinkWorker> workers = new ConcurrentHashMap<>();
+    private final Map<String, SubscriberState> subscribers = new ConcurrentHashMap<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private volatile AlarmStatus lastAlarmStatus = AlarmStatus.NO_ALARM;
+
+    private final Counter published;
+    private final Counter deduplicated;
+    private final Counter rateLimited;
+    private final Counter dropped;
+
+    /**
+     * What the dispatcher remembers about a subscriber. Only touched by the dispatcher thread.
+     */
+    private static class SubscriberState {
+        final Subscriber subscriber;
+        final SinkWorker worker;
+        //the last notification fanned out to the subscriber, whether or not it was sent
+        Notification lastPublished;
+        Delivery lastDelivery;
+        double permits;
+        long refilledNanos;
+
+        SubscriberState(Subscriber subscriber, SinkWorker worker, double permits) {
+            this.subscriber = subscriber;
+            this.worker = worker;
+            this.permits = permits;
+            this.refilledNanos = System.nanoTime();
+        }
+    }
+
+    public NotificationService() {
+        this(DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_LINGER, DEFAULT_DEDUPE_WINDOW,
+                DEFAULT_MAX_PER_SUBSCRIBER_PER_MINUTE, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF);
+    }
+
+    /**
+     * @param queueCapacity              notifications waiting to be fanned out, and deliveries
+     *                                   waiting in each sink, before the oldest are dropped
+     * @param maxBatchSize               deliveries handed to a sink at once
+     * @param linger                     how long a delivery may wait for others to batch with
+     * @param dedupeWindow               how long a repeat of a subscriber's last notification is skipped
+     * @param maxPerSubscriberPerMinute  notifications a subscriber gets per minute, not counting urgent ones
+     * @param maxAttempts                attempts at a delivery before giving up on it
+     * @param initialBackoff             wait before the first retry, doubled for every one after
+     */
+    public NotificationService(int queueCapacity, int maxBatchSize, Duration linger, Duration dedupeWindow,
+                               int maxPerSubscriberPerMinute, int maxAttempts, Duration initialBackoff) {
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = linger.toNanos();
+        this.dedupeWindowNanos = dedupeWindow.toNanos();
+        this.permitsPerNano = maxPerSubscriberPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.maxPermits = maxPerSubscriberPerMinute;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.notifications = new ArrayBlockingQueue<>(queueCapacity);
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        published = metrics.counter("notifications.published");
+        deduplicated = metrics.counter("notifications.deduplicated");
+        rateLimited = metrics.counter("notifications.rateLimited");
+        dropped = metrics.counter("notifications.dropped");
+        metrics.gauge("notifications.queued", () -> notifications.size()
+                + workers.values().stream().mapToLong(SinkWorker::size).sum());
+        metrics.gauge("notifications.subscribers", subscribers::size);
+
+        dispatcher = new Thread(this::dispatch, "notification-dispatch");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Starts sending through the sink. Subscribers pick it by its name.
+     */
+    public void addSink(NotificationSink sink) {
+        SinkWorker worker = new SinkWorker(sink, queueCapacity, maxBatchSize, lingerNanos, maxAttempts, initialBackoffNanos);
+        if (workers.putIfAbsent(sink.getName(), worker) != null) {
+            throw new IllegalArgumentException("There already is a sink named " + sink.getName());
+        }
+        worker.start();
+    }
+
+    /**
+     * Adds a subscriber, or replaces the one with the same id.
+     *
+     * @throws IllegalArgumentException if there is no sink with the name the subscriber asks for
+     */
+    public void subscribe(Subscriber subscriber) {
+        SinkWorker worker = workers.get(subscriber.getSink());
+        if (worker == null) {
+            throw new IllegalArgumentException("No sink named " + subscriber.getSink() + " for " + subscriber.getId());
+        }
+        subscribers.put(subscriber.getId(), new SubscriberState(subscriber, worker, maxPermits));
+    }
+
+    public void unsubscribe(String subscriberId) {
+        subscribers.remove(subscriberId);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Queues a notification for every subscriber. Never blocks; if the queue is full the
+     * notification is dropped.
+     */
+    public void publish(Notification notification) {
+        if (!notifications.offer(notification)) {
+            dropped.increment();
+            log.warn("Notification queue full, dropped {}", notification);
+            return;
+        }
+        published.increment();
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        AlarmStatus previous = lastAlarmStatus;
+        lastAlarmStatus = status;
+        if (status == previous) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        switch (status) {
+            case ALARM -> publish(new Notification("ALARM", "The alarm is sounding", true, now));
+            case PENDING_ALARM -> publish(new Notification("PENDING_ALARM", "A sensor was activated while the system is armed", false, now));
+            case NO_ALARM -> publish(new Notification("ALARM_CLEARED", "The alarm was cleared", false, now));
+        }
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+    }
+
+    @Override
+    public void sensorsStaleChanged(List<Sensor> stale, List<Sensor> recovered) {
+        long now = System.currentTimeMillis();
+        if (!stale.isEmpty()) {
+            publish(new Notification("SENSORS_STALE", "No signal from " + namesOf(stale), false, now));
+        }
+        if (!recovered.isEmpty()) {
+            publish(new Notification("SENSORS_RECOVERED", "Signal restored from " + namesOf(recovered), false, now));
+        }
+    }
+
+    private static String namesOf(List<Sensor> sensors) {
+        return sensors.stream().map(Sensor::getName).sorted().collect(Collectors.joining(", "));
+    }
+
+    private void dispatch() {
+        while (running) {
+            Notification notification;
+            try {
+                notification = notifications.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (notification != null) {
+                fanOut(notification);
+            }
+        }
+    }
+
+    private void fanOut(Notification notification) {
+        long now = System.nanoTime();
+        for (SubscriberState state : subscribers.values()) {
+            Notification previous = state.lastPublished;
+            state.lastPublished = notification;
+            if (isRepeat(notification, previous, state.lastDelivery, now)) {
+                deduplicated.increment();
+                continue;
+            }
+            state.permits = Math.min(maxPermits, state.permits + (now - state.refilledNanos) * permitsPerNano);
+            state.refilledNanos = now;
+            if (!notification.isUrgent()) {
+                if (state.permits < 1) {
+                    rateLimited.increment();
+                    continue;
+                }
+                state.permits--;
+            }
+            Delivery delivery = new Delivery(state.subscriber, notification);
+            state.lastDelivery = delivery;
+            state.worker.offer(delivery);
+        }
+    }
+
+    /**
+     * A repeat directly follows its twin, which was sent or is still on its way. Anything
+     * published in between, even if it was rate limited away, means the subscriber may have
+     * missed a change, and an urgent notification always goes out: after a clear that was held
+     * back, a second alarm must still reach the subscriber.
+     */
+    private boolean isRepeat(Notification notification, Notification previous, Delivery last, long now) {
+        return !notification.isUrgent() && notification.isSameAs(previous)
+                && last != null && !last.isAbandoned() && notification.isSameAs(last.getNotification())
+                && now - last.getNotification().getCreatedNanos() < dedupeWindowNanos;
+    }
+
+    /**
+     * Stops fanning out and gives each sink a moment to finish the batch it is sending.
+     */
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        for (SinkWorker worker : workers.values()) {
+            try {
+                int undelivered = worker.close(1000);
+                if (undelivered > 0) {
+                    log.warn("Closed with {} notifications undelivered", undelivered);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
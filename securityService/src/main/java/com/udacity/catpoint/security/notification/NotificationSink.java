@@ -0,0 +1,22 @@
+package com.udacity.catpoint.security.notification;
+
+import java.util.List;
+
+/**
+ * A channel notifications go out through. Each sink gets its own worker thread, which hands it
+ * batches, so a sink may block for as long as a delivery takes.
+ */
+public interface NotificationSink {
+
+    /**
+     * @return the name subscribers use to pick this sink
+     */
+    String getName();
+
+    /**
+     * Delivers a batch, which may hold notifications for many subscribers.
+     *
+     * @throws DeliveryException naming the deliveries to retry
+     */
+    void deliver(List<Delivery> batch) throws DeliveryException;
+}
@@ -0,0 +1,58 @@
+package com.udacity.catpoint.security.notification;
+
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stands in for an SMS gateway until a real one is contracted: logs each text message instead
+ * of sending it, after the delay a gateway round trip would take. Messages are cut to the
+ * length of a single SMS, as a gateway would bill anything longer as several.
+ */
+public class SimulatedSmsSink implements NotificationSink {
+
+    public static final String NAME = "sms";
+    static final int MAX_MESSAGE_LENGTH = 160;
+
+    private Logger log = LoggerFactory.getLogger(SimulatedSmsSink.class);
+
+    private final long latencyNanos;
+    private final Counter sent = MetricsRegistry.getDefault().counter("notifications.sms.sent");
+
+    /**
+     * @param latencyPerBatch how long each call to the gateway takes
+     */
+    public SimulatedSmsSink(Duration latencyPerBatch) {
+        this.latencyNanos = latencyPerBatch.toNanos();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void deliver(List<Delivery> batch) {
+        if (latencyNanos > 0) {
+            long deadline = System.nanoTime() + latencyNanos;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+        for (Delivery delivery : batch) {
+            log.info("SMS to {}: {}", delivery.getSubscriber().getAddress(), textOf(delivery.getNotification()));
+        }
+        sent.add(batch.size());
+    }
+
+    static String textOf(Notification notification) {
+        String text = "Catpoint " + notification;
+        return text.length() <= MAX_MESSAGE_LENGTH ? text : text.substring(0, MAX_MESSAGE_LENGTH - 3) + "...";
+    }
+}
@@ -0,0 +1,220 @@
+package com.udacity.catpoint.security.notification;
+
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds one sink from a bounded queue on a thread of its own. Deliveries wait up to the linger
+ * time for company, so that a burst goes out in a few full batches. Failed deliveries come back
+ * after an exponential backoff with jitter, until they run out of attempts.
+ * <p>
+ * Queued and retrying deliveries share the capacity. When it is exhausted the oldest queued
+ * delivery is dropped, so a sink that is down cannot hold more than its share of memory.
+ */
+class SinkWorker {
+
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private Logger log = LoggerFactory.getLogger(SinkWorker.class);
+
+    private final NotificationSink sink;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+
+    //guarded by this; a pending delivery's due time is when its linger ends
+    private final ArrayDeque<Delivery> pending = new ArrayDeque<>();
+    private final PriorityQueue<Delivery> retries = new PriorityQueue<>(Comparator.comparingLong(Delivery::getDueNanos));
+    private boolean running = true;
+
+    private final Thread thread;
+    private final Counter delivered;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter dropped;
+    private final LatencyHistogram batchLatency;
+    private final LatencyHistogram deliveryLatency;
+
+    SinkWorker(NotificationSink sink, int capacity, int maxBatchSize, long lingerNanos, int maxAttempts, long initialBackoffNanos) {
+        this.sink = sink;
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = lingerNanos;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoffNanos;
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        delivered = metrics.counter("notifications.delivered");
+        retried = metrics.counter("notifications.retried");
+        failed = metrics.counter("notifications.failed");
+        dropped = metrics.counter("notifications.dropped");
+        batchLatency = metrics.histogram("notifications." + sink.getName() + ".batch");
+        deliveryLatency = metrics.histogram("notifications.deliveryLatency");
+
+        thread = new Thread(this::run, "notification-sink-" + sink.getName());
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Queues a delivery. Never blocks.
+     */
+    synchronized void offer(Delivery delivery) {
+        if (pending.size() + retries.size() >= capacity) {
+            Delivery oldest = pending.pollFirst();
+            if (oldest == null) {
+                oldest = retries.poll();
+            }
+            oldest.abandon();
+            dropped.increment();
+        }
+        delivery.setDueNanos(System.nanoTime() + lingerNanos);
+        pending.addLast(delivery);
+        //wake the worker to start a linger or to send a full batch
+        if (pending.size() == 1 || pending.size() == maxBatchSize) {
+            notifyAll();
+        }
+    }
+
+    synchronized int size() {
+        return pending.size() + retries.size();
+    }
+
+    /**
+     * Stops the worker, waiting up to the timeout for the batch in flight.
+     *
+     * @return deliveries left undelivered
+     */
+    int close(long timeoutMillis) throws InterruptedException {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        thread.join(timeoutMillis);
+        return size();
+    }
+
+    private void run() {
+        try {
+            List<Delivery> batch;
+            while ((batch = nextBatch()) != null) {
+                deliver(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until a full batch is queued, the oldest queued delivery has lingered long enough
+     * or a retry is due.
+     *
+     * @return the batch, or null once closed
+     */
+    private synchronized List<Delivery> nextBatch() throws InterruptedException {
+        while (running) {
+            long now = System.nanoTime();
+            long due = Long.MAX_VALUE;
+            boolean ready = pending.size() >= maxBatchSize;
+            if (!pending.isEmpty()) {
+                due = pending.peekFirst().getDueNanos();
+            }
+            if (!retries.isEmpty() && (due == Long.MAX_VALUE || retries.peek().getDueNanos() - due < 0)) {
+                due = retries.peek().getDueNanos();
+            }
+            if (ready || (due != Long.MAX_VALUE && due - now <= 0)) {
+                List<Delivery> batch = new ArrayList<>(Math.min(maxBatchSize, size()));
+                while (batch.size() < maxBatchSize && !retries.isEmpty() && retries.peek().getDueNanos() - now <= 0) {
+                    batch.add(retries.poll());
+                }
+                while (batch.size() < maxBatchSize && !pending.isEmpty()) {
+                    batch.add(pending.pollFirst());
+                }
+                return batch;
+            }
+            if (due == Long.MAX_VALUE) {
+                wait();
+            } else {
+                TimeUnit.NANOSECONDS.timedWait(this, due - now);
+            }
+        }
+        return null;
+    }
+
+    private void deliver(List<Delivery> batch) {
+        long start = System.nanoTime();
+        List<Delivery> failures = Collections.emptyList();
+        Throwable cause = null;
+        try {
+            sink.deliver(batch);
+        } catch (DeliveryException e) {
+            failures = e.getFailed();
+            cause = e;
+        } catch (RuntimeException e) {
+            failures = batch;
+            cause = e;
+        }
+        long now = System.nanoTime();
+        batchLatency.record(now - start);
+
+        Set<Delivery> failedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        failedSet.addAll(failures);
+        for (Delivery delivery : batch) {
+            if (!failedSet.contains(delivery)) {
+                deliveryLatency.record(now - delivery.getNotification().getCreatedNanos());
+            }
+        }
+        delivered.add(batch.size() - failedSet.size());
+        if (failedSet.isEmpty()) {
+            return;
+        }
+
+        log.warn("{} of {} deliveries through {} failed: {}", failedSet.size(), batch.size(), sink.getName(), cause.toString());
+        synchronized (this) {
+            for (Delivery delivery : failedSet) {
+                int attempts = delivery.failed();
+                if (attempts >= maxAttempts) {
+                    delivery.abandon();
+                    failed.increment();
+                    log.error("Giving up on {} to {} after {} attempts", delivery.getNotification(), delivery.getSubscriber(), attempts);
+                } else if (pending.size() + retries.size() >= capacity) {
+                    delivery.abandon();
+                    dropped.increment();
+                } else {
+                    delivery.setDueNanos(now + backoffNanos(attempts));
+                    retries.add(delivery);
+                    retried.increment();
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Doubles with every attempt, with up to half of it random so that retries of a batch that
+     * failed together spread out.
+     */
+    private long backoffNanos(int attempts) {
+        long backoff = Math.min(MAX_BACKOFF_NANOS, initialBackoffNanos << Math.min(attempts - 1, 30));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+}
@@ -0,0 +1,48 @@
+package com.udacity.catpoint.security.notification;
+
+/**
+ * Someone to notify, and how: the name of the sink that reaches them and their address in that
+ * sink, such as a webhook URL or a phone number.
+ */
+public class Subscriber {
+
+    private final String id;
+    private final String sink;
+    private final String address;
+
+    public Subscriber(String id, String sink, String address) {
+        this.id = id;
+        this.sink = sink;
+        this.address = address;
+    }
+
+    /**
+     * Parses a subscriber written as id,sink,address.
+     *
+     * @throws IllegalArgumentException if the line has fewer than three fields
+     */
+    public static Subscriber parse(String line) {
+        String[] fields = line.split(",", 3);
+        if (fields.length < 3) {
+            throw new IllegalArgumentException("Expected id,sink,address but got " + line);
+        }
+        return new Subscriber(fields[0].trim(), fields[1].trim(), fields[2].trim());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSink() {
+        return sink;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public String toString() {
+        return id + " via " + sink + " at " + address;
+    }
+}
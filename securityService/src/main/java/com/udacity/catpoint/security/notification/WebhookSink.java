@@ -0,0 +1,100 @@
+package com.udacity.catpoint.security.notification;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * POSTs notifications as JSON to each subscriber's URL. The deliveries of a batch that go to
+ * the same URL are sent together as one array, and the requests for different URLs are sent
+ * concurrently over a shared client that keeps connections alive between batches.
+ * <pre>
+ * [{"subscriber":"...","type":"ALARM","message":"...","urgent":true,"timestamp":1600000000000}]
+ * </pre>
+ * Any response other than 2xx fails every delivery in that request.
+ */
+public class WebhookSink implements NotificationSink {
+
+    public static final String NAME = "webhook";
+
+    private final HttpClient client;
+    private final Duration timeout;
+
+    public WebhookSink(Duration timeout) {
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void deliver(List<Delivery> batch) throws DeliveryException {
+        Map<String, List<Delivery>> byUrl = new LinkedHashMap<>();
+        for (Delivery delivery : batch) {
+            byUrl.computeIfAbsent(delivery.getSubscriber().getAddress(), url -> new ArrayList<>()).add(delivery);
+        }
+
+        List<CompletableFuture<Boolean>> requests = new ArrayList<>(byUrl.size());
+        for (Map.Entry<String, List<Delivery>> entry : byUrl.entrySet()) {
+            requests.add(post(entry.getKey(), entry.getValue()));
+        }
+
+        List<Delivery> failed = new ArrayList<>();
+        Throwable cause = null;
+        int i = 0;
+        for (List<Delivery> deliveries : byUrl.values()) {
+            try {
+                if (!requests.get(i).join()) {
+                    failed.addAll(deliveries);
+                }
+            } catch (CompletionException e) {
+                failed.addAll(deliveries);
+                cause = e.getCause();
+            }
+            i++;
+        }
+        if (!failed.isEmpty()) {
+            throw new DeliveryException(failed.size() + " of " + batch.size() + " webhook deliveries failed", failed, cause);
+        }
+    }
+
+    private CompletableFuture<Boolean> post(String url, List<Delivery> deliveries) {
+        JsonArray body = new JsonArray(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            Notification notification = delivery.getNotification();
+            JsonObject json = new JsonObject();
+            json.addProperty("subscriber", delivery.getSubscriber().getId());
+            json.addProperty("type", notification.getType());
+            json.addProperty("message", notification.getMessage());
+            json.addProperty("urgent", notification.isUrgent());
+            json.addProperty("timestamp", notification.getTimestamp());
+            body.add(json);
+        }
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> response.statusCode() / 100 == 2);
+    }
+}
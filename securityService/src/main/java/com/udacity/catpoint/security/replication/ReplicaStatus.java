@@ -0,0 +1,52 @@
+package com.udacity.catpoint.security.replication;
+
+import java.net.SocketAddress;
+
+/**
+ * How far a connected replica is behind its primary.
+ */
+public class ReplicaStatus {
+
+    private final SocketAddress address;
+    private final long appliedSeq;
+    private final long lagEntries;
+    private final long lagMillis;
+
+    ReplicaStatus(SocketAddress address, long appliedSeq, long lagEntries, long lagMillis) {
+        this.address = address;
+        this.appliedSeq = appliedSeq;
+        this.lagEntries = lagEntries;
+        this.lagMillis = lagMillis;
+    }
+
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * @return the last mutation the replica confirmed applying
+     */
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    /**
+     * @return the mutations applied on the primary but not yet confirmed by the replica
+     */
+    public long getLagEntries() {
+        return lagEntries;
+    }
+
+    /**
+     * @return how long ago the oldest unconfirmed mutation was applied on the primary, or 0 if
+     * the replica is up to date
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return address + " at " + appliedSeq + ", " + lagEntries + " behind (" + lagMillis + "ms)";
+    }
+}
@@ -0,0 +1,407 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the repositories of two or more nodes at a site in step, so that another node can take
+ * over when one fails.
+ * <p>
+ * One node is the primary. It applies writes to its local repository and appends them to a
+ * log, from which they are streamed to every replica over TCP in compressed batches. A replica
+ * applies what it receives to its own local repository, and rejects writes of its own. Reads
+ * always come from the local repository.
+ * <p>
+ * A replica that connects with nothing, or that has fallen further behind than the log
+ * reaches, is first sent a snapshot of the whole state; one that reconnects within reach of
+ * the log is only sent the mutations it missed. The primary sends a heartbeat whenever it has
+ * been idle for the heartbeat interval. A replica that hears nothing for the failover timeout
+ * tries once to reconnect, and promotes itself to primary if that fails too. With the default
+ * settings this happens within 750ms, or straight away if the primary's process exits.
+ * <p>
+ * Each node is given the address it listens on as primary and the address of its peer. On
+ * start it follows the peer if the peer is a primary, and otherwise becomes the primary
+ * itself, so nodes should be started one after the other. A restarted former primary finds
+ * the promoted replica and follows it.
+ * <p>
+ * Every time a node becomes primary it takes an epoch one past the newest it has seen, so a
+ * promoted replica outranks the primary it replaced. Two rules keep a cut-off primary from
+ * taking writes alongside its successor:
+ * <ul>
+ * <li>Once a replica has followed it, a primary holds a lease that each ack renews. Once no
+ * replica has acked for the failover timeout, it rejects writes, since a replica that heard
+ * nothing for that long may be taking over. The replica needs half as long again to take over,
+ * so the two never take writes at once. A replica that shuts down says goodbye, and the primary
+ * stops needing it.</li>
+ * <li>A primary that is not being acked asks its peer for its epoch every failover timeout.
+ * When two primaries find each other, the one with the older epoch steps down and follows the
+ * other. Writes it took while the two could not reach each other are replaced by the other's
+ * state.</li>
+ * </ul>
+ * A primary cut off from a replica that has really gone takes no writes until the replica is
+ * back or the primary is restarted, because from the primary's side the two look the same.
+ * Epochs are kept in memory only; a restarted node learns the current one from its peer.
+ */
+public class ReplicatedSecurityRepository implements SecurityRepository, Closeable {
+
+    public enum Role { PRIMARY, REPLICA }
+
+    private static final Duration DEFAULT_HEARTBEAT_INTERVAL = Duration.ofMillis(100);
+    private static final Duration DEFAULT_FAILOVER_TIMEOUT = Duration.ofMillis(500);
+    private static final int DEFAULT_LOG_CAPACITY = 100_000;
+
+    private Logger log = LoggerFactory.getLogger(ReplicatedSecurityRepository.class);
+
+    private final SecurityRepository local;
+    private final InetSocketAddress listenAddress;
+    private final InetSocketAddress peerAddress;
+    private final long heartbeatMillis;
+    private final long failoverMillis;
+    private final int logCapacity;
+    private final long nodeId = ThreadLocalRandom.current().nextLong();
+
+    //guarded by this
+    private volatile Role role;
+    private volatile long epoch;
+    private ReplicationLog replicationLog;
+    private ReplicationServer server;
+    private ReplicationClient client;
+    private ScheduledExecutorService prober;
+    private boolean closed;
+
+    public ReplicatedSecurityRepository(SecurityRepository local, InetSocketAddress listenAddress, InetSocketAddress peerAddress) {
+        this(local, listenAddress, peerAddress, DEFAULT_HEARTBEAT_INTERVAL, DEFAULT_FAILOVER_TIMEOUT, DEFAULT_LOG_CAPACITY);
+    }
+
+    /**
+     * @param peerAddress       where the other node listens, or null to always start as primary
+     * @param heartbeatInterval how long a primary stays silent at most; well below the failover timeout
+     * @param failoverTimeout   how long a replica waits to hear from its primary
+     * @param logCapacity       mutations kept for replicas that reconnect
+     */
+    public ReplicatedSecurityRepository(SecurityRepository local, InetSocketAddress listenAddress, InetSocketAddress peerAddress,
+                                        Duration heartbeatInterval, Duration failoverTimeout, int logCapacity) {
+        if (heartbeatInterval.compareTo(failoverTimeout) >= 0) {
+            throw new IllegalArgumentException("The heartbeat interval must be shorter than the failover timeout");
+        }
+        this.local = local;
+        this.listenAddress = listenAddress;
+        this.peerAddress = peerAddress;
+        this.heartbeatMillis = Math.max(1, heartbeatInterval.toMillis());
+        this.failoverMillis = Math.max(2, failoverTimeout.toMillis());
+        this.logCapacity = logCapacity;
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.gauge("replication.role", () -> role == null ? -1 : role.ordinal());
+        metrics.gauge("replication.epoch", () -> epoch);
+        metrics.gauge("replication.replicas", () -> getReplicaStatus().size());
+        metrics.gauge("replication.lagEntries", this::maxLagEntries);
+        metrics.gauge("replication.lagMillis", () -> getReplicaStatus().stream().mapToLong(ReplicaStatus::getLagMillis).max().orElse(0));
+    }
+
+    /**
+     * Follows the peer if it is a primary, otherwise starts serving replicas.
+     *
+     * @throws IOException if this node has to be the primary but cannot listen
+     */
+    public synchronized void start() throws IOException {
+        if (peerAddress == null || !follow()) {
+            becomePrimary();
+        }
+    }
+
+    /**
+     * Starts following the peer if it is a primary this node may follow.
+     */
+    private boolean follow() {
+        ReplicationClient candidate = new ReplicationClient(peerAddress, local, this, failoverMillis, epoch, nodeId, this::promote);
+        if (!candidate.connect((int) failoverMillis)) {
+            return false;
+        }
+        client = candidate;
+        epoch = candidate.getPrimaryEpoch();
+        role = Role.REPLICA;
+        client.start();
+        log.info("Replicating from primary {} of epoch {}", peerAddress, epoch);
+        return true;
+    }
+
+    private void becomePrimary() throws IOException {
+        epoch++;
+        replicationLog = new ReplicationLog(logCapacity);
+        role = Role.PRIMARY;
+        server = new ReplicationServer(listenAddress, replicationLog, this::takeSnapshot, heartbeatMillis, epoch, nodeId, this::outranked);
+        server.start();
+        if (peerAddress != null && prober == null) {
+            prober = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "replication-probe");
+                t.setDaemon(true);
+                return t;
+            });
+            prober.scheduleWithFixedDelay(this::probePeer, failoverMillis, failoverMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Called by the client once the primary is gone.
+     */
+    private synchronized void promote() {
+        if (closed || role == Role.PRIMARY) {
+            return;
+        }
+        epoch = Math.max(epoch, client.getPrimaryEpoch());
+        client = null;
+        try {
+            becomePrimary();
+            log.warn("Lost primary {}, this node is now the primary of epoch {}", peerAddress, epoch);
+        } catch (IOException e) {
+            log.error("Promoted to primary but cannot listen on {} for replicas", listenAddress, e);
+        }
+    }
+
+    /**
+     * Runs on the probe thread while this node is a primary that no replica is acking, so that
+     * two primaries that could not reach each other find out once they can.
+     */
+    private void probePeer() {
+        long ownEpoch;
+        synchronized (this) {
+            if (closed || role != Role.PRIMARY || server == null || server.isAcked(leaseNanos())) {
+                return;
+            }
+            ownEpoch = epoch;
+        }
+        long[] peer = ReplicationClient.probe(peerAddress, (int) failoverMillis, ownEpoch, nodeId);
+        if (peer != null && ReplicationCodec.outranks(peer[0], peer[1], ownEpoch, nodeId)) {
+            log.warn("Peer {} is the primary of epoch {}, which outranks this one of epoch {}", peerAddress, peer[0], ownEpoch);
+            stepDown(peer[0]);
+        }
+    }
+
+    /**
+     * Called by the server, on one of its threads, when a primary that outranks this one says
+     * hello; the step down happens on the probe thread so the server can close.
+     */
+    private void outranked(long peerEpoch) {
+        synchronized (this) {
+            if (prober != null && !closed) {
+                prober.execute(() -> stepDown(peerEpoch));
+                return;
+            }
+        }
+        stepDown(peerEpoch);
+    }
+
+    private synchronized void stepDown(long peerEpoch) {
+        if (closed || role != Role.PRIMARY) {
+            return;
+        }
+        epoch = Math.max(epoch, peerEpoch);
+        role = Role.REPLICA;
+        server.close();
+        server = null;
+        replicationLog = null;
+        if (peerAddress == null || !follow()) {
+            //the other primary is already out of reach, so carry on as a newer one
+            try {
+                becomePrimary();
+                log.warn("Could not follow {} after stepping down, this node is the primary again at epoch {}", peerAddress, epoch);
+            } catch (IOException e) {
+                log.error("Stepped down but cannot listen on {} for replicas", listenAddress, e);
+            }
+        }
+    }
+
+    private long leaseNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(failoverMillis);
+    }
+
+    private synchronized ReplicationServer.Snapshot takeSnapshot() {
+        return new ReplicationServer.Snapshot(replicationLog.getHeadSeq(),
+                ReplicationCodec.state(local.getAlarmStatus(), local.getArmingStatus(), local.getSensors()));
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    /**
+     * @return the epoch of this node as primary, or of the primary it follows
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return the port replicas connect to, or -1 when not the primary
+     */
+    public synchronized int getReplicationPort() {
+        return role == Role.PRIMARY && server != null ? server.getPort() : -1;
+    }
+
+    /**
+     * @return on the primary, how far behind each connected replica is; empty on a replica
+     */
+    public synchronized List<ReplicaStatus> getReplicaStatus() {
+        return role == Role.PRIMARY && server != null ? server.getReplicaStatus() : Collections.emptyList();
+    }
+
+    /**
+     * @return on a replica, the last mutation of the primary applied here
+     */
+    public synchronized long getAppliedSeq() {
+        return client != null ? client.getAppliedSeq() : -1;
+    }
+
+    private synchronized long maxLagEntries() {
+        if (client != null) {
+            return client.getLagEntries();
+        }
+        return getReplicaStatus().stream().mapToLong(ReplicaStatus::getLagEntries).max().orElse(0);
+    }
+
+    private void replicate(byte[] mutation) {
+        replicationLog.append(mutation);
+    }
+
+    private void checkPrimary() {
+        if (role != Role.PRIMARY) {
+            throw new IllegalStateException("This node replicates " + peerAddress + ", write to the primary instead");
+        }
+        if (server != null && !server.holdsLease(leaseNanos())) {
+            throw new IllegalStateException("No replica has acked for " + failoverMillis
+                    + "ms and one may be taking over, so this primary takes no writes until it hears from one");
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        checkPrimary();
+        local.addSensor(sensor);
+        replicate(ReplicationCodec.sensorPut(sensor));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        checkPrimary();
+        local.removeSensor(sensor);
+        replicate(ReplicationCodec.sensorRemove(sensor));
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        checkPrimary();
+        local.updateSensor(sensor);
+        replicate(ReplicationCodec.sensorPut(sensor));
+    }
+
+    /**
+     * Replicas are sent a single put, which they apply as a rename.
+     */
+    @Override
+    public synchronized void renameSensor(Sensor sensor, String name, SensorType sensorType) {
+        checkPrimary();
+        local.renameSensor(sensor, name, sensorType);
+        replicate(ReplicationCodec.sensorPut(sensor));
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        checkPrimary();
+        local.updateSensors(sensors);
+        for (Sensor sensor : sensors) {
+            replicate(ReplicationCodec.sensorPut(sensor));
+        }
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        checkPrimary();
+        local.setAlarmStatus(alarmStatus);
+        replicate(ReplicationCodec.alarmStatus(alarmStatus));
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        checkPrimary();
+        local.setArmingStatus(armingStatus);
+        replicate(ReplicationCodec.armingStatus(armingStatus));
+    }
+
+    /**
+     * Stored together locally; replicas are sent the two changes back to back.
+     */
+    @Override
+    public synchronized void setAlarmAndArmingStatus(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        checkPrimary();
+        local.setAlarmAndArmingStatus(alarmStatus, armingStatus);
+        replicate(ReplicationCodec.alarmStatus(alarmStatus));
+        replicate(ReplicationCodec.armingStatus(armingStatus));
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return local.getSensors();
+    }
+
+    @Override
+    public int getSensorCount() {
+        return local.getSensorCount();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return local.getActiveSensorCount();
+    }
+
+    @Override
+    public Sensor findSensor(long sensorIdHigh, long sensorIdLow) {
+        return local.findSensor(sensorIdHigh, sensorIdLow);
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return local.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return local.getArmingStatus();
+    }
+
+    /**
+     * Stops replicating. Closing the primary disconnects its replicas, which then fail over.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+        if (server != null) {
+            server.close();
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.SecurityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.zip.Inflater;
+
+/**
+ * Replica side of the replication link: applies the primary's snapshot and batches to the
+ * local repository and acks them. The primary sends at least a heartbeat every heartbeat
+ * interval, so a read that times out means the primary is gone. The client then tries once to
+ * reconnect, resuming from the last mutation it applied, and reports the primary lost if that
+ * fails too. A primary of an older epoch than one already followed is treated as no primary,
+ * since a newer one has taken over from it.
+ */
+class ReplicationClient implements Closeable {
+
+    private Logger log = LoggerFactory.getLogger(ReplicationClient.class);
+
+    private final InetSocketAddress primaryAddress;
+    private final SecurityRepository local;
+    //held while applying, so nothing else changes the local repository halfway through a frame
+    private final Object applyLock;
+    private final int failoverMillis;
+    private final long nodeId;
+    private final Runnable onPrimaryLost;
+    private final Inflater inflater = new Inflater();
+
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private long logId;
+    private volatile long primaryEpoch;
+    private volatile long appliedSeq;
+    private volatile long primarySeq;
+    private volatile boolean closed;
+
+    /**
+     * @param minEpoch the epoch of the newest primary this node has seen; older ones are not followed
+     */
+    ReplicationClient(InetSocketAddress primaryAddress, SecurityRepository local, Object applyLock,
+                      long failoverMillis, long minEpoch, long nodeId, Runnable onPrimaryLost) {
+        this.primaryAddress = primaryAddress;
+        this.local = local;
+        this.applyLock = applyLock;
+        this.failoverMillis = (int) failoverMillis;
+        this.primaryEpoch = minEpoch;
+        this.nodeId = nodeId;
+        this.onPrimaryLost = onPrimaryLost;
+    }
+
+    /**
+     * Asks whoever is at the address for its epoch, without following it.
+     *
+     * @return the epoch and node id of the primary there, or null if there is none
+     */
+    static long[] probe(InetSocketAddress address, int timeoutMillis, long epoch, long nodeId) {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeHello(out, 0, 0, epoch, nodeId);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            return new long[]{in.readLong(), in.readLong()};
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Connects and applies the primary's first frame, giving up if either takes longer than
+     * the timeout.
+     *
+     * @return false if there is no primary answering at the address
+     */
+    boolean connect(int connectTimeoutMillis) {
+        try {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(primaryAddress, connectTimeoutMillis);
+            //a primary that accepts but never answers counts as no primary
+            socket.setSoTimeout(connectTimeoutMillis);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeHello(out, logId, appliedSeq, 0, nodeId);
+            long epoch = in.readLong();
+            in.readLong();
+            if (epoch < primaryEpoch) {
+                log.warn("Not following {}: its epoch {} is older than epoch {} seen before", primaryAddress, epoch, primaryEpoch);
+                closeSocket();
+                return false;
+            }
+            primaryEpoch = epoch;
+            readFrame();
+            socket.setSoTimeout(failoverMillis);
+            return true;
+        } catch (IOException e) {
+            log.debug("No primary at {}: {}", primaryAddress, e.toString());
+            closeSocket();
+            return false;
+        }
+    }
+
+    /**
+     * Follows the primary on a daemon thread until the primary is lost or the client closed.
+     */
+    void start() {
+        Thread thread = new Thread(this::followPrimary, "replication-replica");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void followPrimary() {
+        while (!closed) {
+            try {
+                readFrame();
+            } catch (IOException e) {
+                if (closed) {
+                    break;
+                }
+                log.warn("Lost primary {}: {}", primaryAddress, e.toString());
+                closeSocket();
+                //half the timeout, so losing the primary is decided within one and a half timeouts
+                if (!connect(Math.max(1, failoverMillis / 2))) {
+                    if (!closed) {
+                        onPrimaryLost.run();
+                    }
+                    break;
+                }
+            }
+        }
+        inflater.end();
+    }
+
+    private void readFrame() throws IOException {
+        byte kind = in.readByte();
+        int length = in.readInt();
+        switch (kind) {
+            case ReplicationCodec.SNAPSHOT -> {
+                long snapshotLogId = in.readLong();
+                long seq = in.readLong();
+                int rawLength = in.readInt();
+                byte[] state = ReplicationCodec.inflate(inflater, readBytes(length - 20), rawLength);
+                synchronized (applyLock) {
+                    ReplicationCodec.applyState(state, local);
+                }
+                logId = snapshotLogId;
+                appliedSeq = seq;
+                log.info("Applied snapshot at {} from {}", seq, primaryAddress);
+            }
+            case ReplicationCodec.BATCH -> {
+                long firstSeq = in.readLong();
+                int count = in.readInt();
+                int rawLength = in.readInt();
+                if (firstSeq != appliedSeq + 1) {
+                    throw new IOException("Expected mutation " + (appliedSeq + 1) + " but got " + firstSeq);
+                }
+                byte[] mutations = ReplicationCodec.inflate(inflater, readBytes(length - 16), rawLength);
+                synchronized (applyLock) {
+                    ReplicationCodec.applyMutations(mutations, count, local);
+                }
+                appliedSeq = firstSeq + count - 1;
+            }
+            case ReplicationCodec.HEARTBEAT -> primarySeq = in.readLong();
+            default -> throw new IOException("Unknown replication frame " + kind);
+        }
+        primarySeq = Math.max(primarySeq, appliedSeq);
+        ack(appliedSeq);
+    }
+
+    //the follower thread acks, and close says goodbye from another
+    private synchronized void ack(long seq) throws IOException {
+        out.writeLong(seq);
+        out.flush();
+    }
+
+    private static void writeHello(DataOutputStream out, long logId, long appliedSeq, long epoch, long nodeId) throws IOException {
+        out.writeInt(ReplicationCodec.MAGIC);
+        out.writeLong(logId);
+        out.writeLong(appliedSeq);
+        out.writeLong(epoch);
+        out.writeLong(nodeId);
+        out.flush();
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    /**
+     * @return the epoch of the primary followed, or of the newest one seen before
+     */
+    long getPrimaryEpoch() {
+        return primaryEpoch;
+    }
+
+    /**
+     * @return mutations the primary has announced that are not applied here yet
+     */
+    long getLagEntries() {
+        return primarySeq - appliedSeq;
+    }
+
+    /**
+     * Stops following, telling the primary this replica is going rather than cut off, so the
+     * primary goes on taking writes without it.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (out != null) {
+            try {
+                ack(ReplicationCodec.GOODBYE);
+            } catch (IOException e) {
+                log.debug("Could not say goodbye to {}", primaryAddress, e);
+            }
+        }
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Error closing replication connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wire format of the replication link. The primary answers the replica's hello with its epoch,
+ * then sends frames of {@code [byte kind][int length][payload]}, and the replica answers each
+ * frame it applied with the sequence number it has reached.
+ * <pre>
+ *      hello      replica to primary: int MAGIC, long logId, long appliedSeq, long epoch, long nodeId
+ *      welcome    primary to replica: long epoch, long nodeId
+ *      ack        replica to primary: long appliedSeq, or GOODBYE when the replica shuts down
+ *      SNAPSHOT   long logId, long seq, int rawLength, deflated [byte alarm, byte arming, int count, count x sensor]
+ *      BATCH      long firstSeq, int count, int rawLength, deflated count x mutation
+ *      HEARTBEAT  long headSeq
+ * </pre>
+ * A mutation is a byte op followed by its fields: a sensor put carries the id halves, name,
+ * type, active flag and zone, a removal only the id halves, and status changes one ordinal byte.
+ * <p>
+ * A replica says hello with epoch 0. A primary looking for another primary says hello with its
+ * own epoch; the other answers with its welcome and hangs up, and whichever is outranked steps
+ * down.
+ */
+final class ReplicationCodec {
+
+    //sensors gained zones in version 2 and the hello gained epochs in version 3, which older peers can't read
+    static final int MAGIC = 0x43505233; //"CPR3"
+
+    //ack of a replica that is shutting down, and so will not take over
+    static final long GOODBYE = -1;
+
+    static final byte SNAPSHOT = 1;
+    static final byte BATCH = 2;
+    static final byte HEARTBEAT = 3;
+
+    private static final byte SENSOR_PUT = 1;
+    private static final byte SENSOR_REMOVE = 2;
+    private static final byte ALARM_STATUS = 3;
+    private static final byte ARMING_STATUS = 4;
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private ReplicationCodec() {
+    }
+
+    /**
+     * Orders primaries by epoch, breaking ties between primaries that started without seeing
+     * each other by node id.
+     *
+     * @return true if the first primary outranks the second
+     */
+    static boolean outranks(long epoch, long nodeId, long otherEpoch, long otherNodeId) {
+        return epoch != otherEpoch ? epoch > otherEpoch : nodeId > otherNodeId;
+    }
+
+    static byte[] sensorPut(Sensor sensor) {
+        return encode(out -> {
+            out.writeByte(SENSOR_PUT);
+            writeSensor(out, sensor);
+        });
+    }
+
+    static byte[] sensorRemove(Sensor sensor) {
+        return encode(out -> {
+            out.writeByte(SENSOR_REMOVE);
+            out.writeLong(sensor.getSensorId().getMostSignificantBits());
+            out.writeLong(sensor.getSensorId().getLeastSignificantBits());
+        });
+    }
+
+    static byte[] alarmStatus(AlarmStatus alarmStatus) {
+        return new byte[]{ALARM_STATUS, (byte) alarmStatus.ordinal()};
+    }
+
+    static byte[] armingStatus(ArmingStatus armingStatus) {
+        return new byte[]{ARMING_STATUS, (byte) armingStatus.ordinal()};
+    }
+
+    /**
+     * Encodes the whole state of a repository, uncompressed.
+     */
+    static byte[] state(AlarmStatus alarmStatus, ArmingStatus armingStatus, Set<Sensor> sensors) {
+        return encode(out -> {
+            out.writeByte(alarmStatus.ordinal());
+            out.writeByte(armingStatus.ordinal());
+            out.writeInt(sensors.size());
+            for (Sensor sensor : sensors) {
+                writeSensor(out, sensor);
+            }
+        });
+    }
+
+    /**
+     * Makes a repository match an encoded state, removing any sensors the state lacks.
+     */
+    static void applyState(byte[] state, SecurityRepository repository) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+        AlarmStatus alarmStatus = ALARM_STATUSES[in.readUnsignedByte()];
+        ArmingStatus armingStatus = ARMING_STATUSES[in.readUnsignedByte()];
+        int count = in.readInt();
+        Set<UUID> kept = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            kept.add(putSensor(readSensor(in), repository));
+        }
+        for (Sensor sensor : repository.getSensors().toArray(new Sensor[0])) {
+            if (!kept.contains(sensor.getSensorId())) {
+                repository.removeSensor(sensor);
+            }
+        }
+        repository.setAlarmAndArmingStatus(alarmStatus, armingStatus);
+    }
+
+    /**
+     * Applies the given number of encoded mutations, in order.
+     */
+    static void applyMutations(byte[] mutations, int count, SecurityRepository repository) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(mutations));
+        for (int i = 0; i < count; i++) {
+            byte op = in.readByte();
+            switch (op) {
+                case SENSOR_PUT -> putSensor(readSensor(in), repository);
+                case SENSOR_REMOVE -> {
+                    Sensor existing = repository.findSensor(in.readLong(), in.readLong());
+                    if (existing != null) {
+                        repository.removeSensor(existing);
+                    }
+                }
+                case ALARM_STATUS -> repository.setAlarmStatus(ALARM_STATUSES[in.readUnsignedByte()]);
+                case ARMING_STATUS -> repository.setArmingStatus(ARMING_STATUSES[in.readUnsignedByte()]);
+                default -> throw new IOException("Unknown replication op " + op);
+            }
+        }
+    }
+
+    /**
+     * Adds or updates a sensor, changing the object the repository already holds when only its
+     * state differs, so the repository's cheap update path is used.
+     */
+    private static UUID putSensor(Sensor sensor, SecurityRepository repository) {
+        UUID id = sensor.getSensorId();
+        Sensor existing = repository.findSensor(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (existing == null) {
+            repository.addSensor(sensor);
+        } else if (existing.getName().equals(sensor.getName()) && existing.getSensorType() == sensor.getSensorType()) {
+            if (!existing.getActive().equals(sensor.getActive()) || !existing.getZone().equals(sensor.getZone())) {
+                existing.setActive(sensor.getActive());
+                existing.setZone(sensor.getZone());
+                repository.updateSensor(existing);
+            }
+        } else {
+            existing.setActive(sensor.getActive());
+            existing.setZone(sensor.getZone());
+            repository.renameSensor(existing, sensor.getName(), sensor.getSensorType());
+        }
+        return id;
+    }
+
+    private static void writeSensor(DataOutputStream out, Sensor sensor) throws IOException {
+        out.writeLong(sensor.getSensorId().getMostSignificantBits());
+        out.writeLong(sensor.getSensorId().getLeastSignificantBits());
+        out.writeUTF(sensor.getName());
+        out.writeByte(sensor.getSensorType().ordinal());
+        out.writeBoolean(sensor.getActive());
+        out.writeUTF(sensor.getZone());
+    }
+
+    private static Sensor readSensor(DataInputStream in) throws IOException {
+        Sensor sensor = new Sensor();
+        sensor.setSensorId(new UUID(in.readLong(), in.readLong()));
+        sensor.setName(in.readUTF());
+        sensor.setSensorType(SENSOR_TYPES[in.readUnsignedByte()]);
+        sensor.setActive(in.readBoolean());
+        sensor.setZone(in.readUTF());
+        return sensor;
+    }
+
+    static byte[] deflate(Deflater deflater, byte[] raw, int length) {
+        deflater.reset();
+        deflater.setInput(raw, 0, length);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 2));
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] inflate(Inflater inflater, byte[] compressed, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        try {
+            int read = 0;
+            while (read < rawLength) {
+                int n = inflater.inflate(raw, read, rawLength - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException("Replication frame shorter than announced");
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt replication frame", e);
+        }
+        return raw;
+    }
+
+    private interface Encoder {
+        void encode(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(Encoder encoder) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            encoder.encode(out);
+        } catch (IOException e) {
+            //cannot happen writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,86 @@
+package com.udacity.catpoint.security.replication;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The most recent mutations of a primary, numbered from 1 in the order they were applied.
+ * Older mutations are overwritten once the log is full, after which replicas that have not
+ * seen them are sent a snapshot instead. Senders wait on the log for new mutations.
+ */
+class ReplicationLog {
+
+    //identifies this log, so replicas never resume from a sequence number of another primary
+    private final long logId = ThreadLocalRandom.current().nextLong();
+    private final byte[][] records;
+    private final long[] appendNanos;
+    private long headSeq;
+
+    ReplicationLog(int capacity) {
+        records = new byte[capacity][];
+        appendNanos = new long[capacity];
+    }
+
+    long getLogId() {
+        return logId;
+    }
+
+    synchronized long getHeadSeq() {
+        return headSeq;
+    }
+
+    /**
+     * @return the oldest sequence number still in the log
+     */
+    synchronized long getOldestSeq() {
+        return Math.max(1, headSeq - records.length + 1);
+    }
+
+    synchronized long append(byte[] record) {
+        headSeq++;
+        int slot = (int) (headSeq % records.length);
+        records[slot] = record;
+        appendNanos[slot] = System.nanoTime();
+        notifyAll();
+        return headSeq;
+    }
+
+    /**
+     * @return when the mutation was appended, or -1 if it is no longer in the log
+     */
+    synchronized long appendNanosOf(long seq) {
+        if (seq < getOldestSeq() || seq > headSeq) {
+            return -1;
+        }
+        return appendNanos[(int) (seq % records.length)];
+    }
+
+    /**
+     * Copies mutations following afterSeq into out, stopping at the head or once maxBytes have
+     * been copied.
+     *
+     * @return the number of mutations copied, or -1 if some following afterSeq were overwritten
+     */
+    synchronized int copyAfter(long afterSeq, ByteArrayOutputStream out, int maxBytes) {
+        if (afterSeq + 1 < getOldestSeq()) {
+            return -1;
+        }
+        int count = 0;
+        for (long seq = afterSeq + 1; seq <= headSeq && out.size() < maxBytes; seq++) {
+            byte[] record = records[(int) (seq % records.length)];
+            out.write(record, 0, record.length);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Waits until the log is past the given sequence number or the timeout passes.
+     */
+    synchronized void awaitAfter(long seq, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (long remaining = timeoutMillis; headSeq <= seq && remaining > 0; remaining = deadline - System.currentTimeMillis()) {
+            wait(remaining);
+        }
+    }
+}
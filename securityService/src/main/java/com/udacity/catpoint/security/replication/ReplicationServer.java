@@ -0,0 +1,319 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+import java.util.zip.Deflater;
+
+/**
+ * Primary side of the replication link. Each replica gets a sender thread, which sends a
+ * snapshot or the log tail the replica is missing and then every new mutation, and a thread
+ * reading the replica's acks. Mutations that pile up while a batch is being sent go out
+ * together in the next one, so batches grow with the write rate.
+ * <p>
+ * Acks also keep the primary's lease: once a replica has followed it, the primary may only take
+ * writes while some replica has acked within the lease, since a replica that hears nothing
+ * takes over. A replica that says goodbye is not waited for.
+ */
+class ReplicationServer implements Closeable {
+
+    private static final int MAX_BATCH_BYTES = 256 * 1024;
+
+    /**
+     * A consistent copy of the primary's state and the last mutation it includes.
+     */
+    static class Snapshot {
+        final long seq;
+        final byte[] state;
+
+        Snapshot(long seq, byte[] state) {
+            this.seq = seq;
+            this.state = state;
+        }
+    }
+
+    interface SnapshotSource {
+        Snapshot takeSnapshot();
+    }
+
+    private Logger log = LoggerFactory.getLogger(ReplicationServer.class);
+
+    private final InetSocketAddress address;
+    private final ReplicationLog replicationLog;
+    private final SnapshotSource snapshots;
+    private final long heartbeatMillis;
+    private final long epoch;
+    private final long nodeId;
+    private final LongConsumer onOutranked;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+    private final Counter batches;
+    private final Counter snapshotsSent;
+    private final Counter rawBytes;
+    private final Counter sentBytes;
+
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+    private volatile boolean followed;
+    private volatile long lastAckNanos;
+
+    /**
+     * @param epoch       the epoch of this primary, sent to everyone who says hello
+     * @param onOutranked called with the epoch of a primary that said hello and outranks this one
+     */
+    ReplicationServer(InetSocketAddress address, ReplicationLog replicationLog, SnapshotSource snapshots, long heartbeatMillis,
+                      long epoch, long nodeId, LongConsumer onOutranked) {
+        this.address = address;
+        this.replicationLog = replicationLog;
+        this.snapshots = snapshots;
+        this.heartbeatMillis = heartbeatMillis;
+        this.epoch = epoch;
+        this.nodeId = nodeId;
+        this.onOutranked = onOutranked;
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        batches = metrics.counter("replication.batches");
+        snapshotsSent = metrics.counter("replication.snapshots");
+        rawBytes = metrics.counter("replication.bytesRaw");
+        sentBytes = metrics.counter("replication.bytesSent");
+    }
+
+    void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address);
+        running = true;
+        Thread acceptThread = new Thread(this::acceptLoop, "replication-accept-" + getPort());
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log.info("Replication primary listening on {}", serverSocket.getLocalSocketAddress());
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return true unless a replica has followed this primary and none has acked within the lease
+     */
+    boolean holdsLease(long leaseNanos) {
+        return !followed || isAcked(leaseNanos);
+    }
+
+    /**
+     * @return true if a replica has acked within the lease
+     */
+    boolean isAcked(long leaseNanos) {
+        return followed && System.nanoTime() - lastAckNanos <= leaseNanos;
+    }
+
+    List<ReplicaStatus> getReplicaStatus() {
+        long head = replicationLog.getHeadSeq();
+        List<ReplicaStatus> statuses = new ArrayList<>();
+        for (Session session : sessions) {
+            long acked = session.ackedSeq;
+            long lagMillis = 0;
+            if (acked < head) {
+                long appended = replicationLog.appendNanosOf(acked + 1);
+                //if the mutation has already left the log, the replica is at least a log behind
+                lagMillis = appended < 0 ? Long.MAX_VALUE : (System.nanoTime() - appended) / 1_000_000;
+            }
+            statuses.add(new ReplicaStatus(session.remoteAddress, acked, head - acked, lagMillis));
+        }
+        return statuses;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            log.debug("Error closing replication socket", e);
+        }
+        sessions.forEach(Session::close);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                sessions.add(session);
+                Thread sender = new Thread(session::send, "replication-send-" + socket.getRemoteSocketAddress());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Replication accept failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * One connected replica. The sender thread owns the output stream, the ack thread the input.
+     */
+    private class Session {
+        private final Socket socket;
+        private final SocketAddress remoteAddress;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * 1024);
+        private DataOutputStream out;
+        private DataInputStream in;
+        private long sentSeq;
+        private volatile long ackedSeq;
+        private volatile boolean following;
+
+        Session(Socket socket) {
+            this.socket = socket;
+            this.remoteAddress = socket.getRemoteSocketAddress();
+        }
+
+        private void send() {
+            try {
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                if (in.readInt() != ReplicationCodec.MAGIC) {
+                    throw new IOException("Not a replication client");
+                }
+                long replicaLogId = in.readLong();
+                long replicaSeq = in.readLong();
+                long peerEpoch = in.readLong();
+                long peerNodeId = in.readLong();
+                out.writeLong(epoch);
+                out.writeLong(nodeId);
+                out.flush();
+                if (peerEpoch > 0) {
+                    //another primary looking for its peer
+                    if (ReplicationCodec.outranks(peerEpoch, peerNodeId, epoch, nodeId)) {
+                        log.warn("Primary {} of epoch {} outranks this one of epoch {}", remoteAddress, peerEpoch, epoch);
+                        onOutranked.accept(peerEpoch);
+                    }
+                    return;
+                }
+                if (replicaLogId == replicationLog.getLogId() && replicaSeq >= replicationLog.getOldestSeq() - 1
+                        && replicaSeq <= replicationLog.getHeadSeq()) {
+                    //the replica only needs the tail
+                    sentSeq = replicaSeq;
+                    ackedSeq = replicaSeq;
+                    log.info("Replica {} resuming after {}", remoteAddress, replicaSeq);
+                } else {
+                    sendSnapshot();
+                }
+                Thread ackReader = new Thread(this::readAcks, "replication-ack-" + remoteAddress);
+                ackReader.setDaemon(true);
+                ackReader.start();
+
+                while (running && !socket.isClosed()) {
+                    replicationLog.awaitAfter(sentSeq, heartbeatMillis);
+                    if (replicationLog.getHeadSeq() > sentSeq) {
+                        sendBatch();
+                    } else {
+                        out.writeByte(ReplicationCodec.HEARTBEAT);
+                        out.writeInt(8);
+                        out.writeLong(sentSeq);
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.info("Replica {} disconnected: {}", remoteAddress, e.toString());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+                deflater.end();
+            }
+        }
+
+        private void sendSnapshot() throws IOException {
+            Snapshot snapshot = snapshots.takeSnapshot();
+            byte[] compressed = ReplicationCodec.deflate(deflater, snapshot.state, snapshot.state.length);
+            out.writeByte(ReplicationCodec.SNAPSHOT);
+            out.writeInt(8 + 8 + 4 + compressed.length);
+            out.writeLong(replicationLog.getLogId());
+            out.writeLong(snapshot.seq);
+            out.writeInt(snapshot.state.length);
+            out.write(compressed);
+            out.flush();
+            sentSeq = snapshot.seq;
+            snapshotsSent.increment();
+            rawBytes.add(snapshot.state.length);
+            sentBytes.add(compressed.length);
+            log.info("Sent replica {} a snapshot at {} ({} bytes)", remoteAddress, snapshot.seq, compressed.length);
+        }
+
+        private void sendBatch() throws IOException {
+            batch.reset();
+            int count = replicationLog.copyAfter(sentSeq, batch, MAX_BATCH_BYTES);
+            if (count < 0) {
+                //fell further behind than the log reaches
+                sendSnapshot();
+                return;
+            }
+            byte[] compressed = ReplicationCodec.deflate(deflater, batch.toByteArray(), batch.size());
+            out.writeByte(ReplicationCodec.BATCH);
+            out.writeInt(8 + 4 + 4 + compressed.length);
+            out.writeLong(sentSeq + 1);
+            out.writeInt(count);
+            out.writeInt(batch.size());
+            out.write(compressed);
+            out.flush();
+            sentSeq += count;
+            batches.increment();
+            rawBytes.add(batch.size());
+            sentBytes.add(compressed.length);
+        }
+
+        private void readAcks() {
+            try {
+                while (true) {
+                    long seq = in.readLong();
+                    if (seq == ReplicationCodec.GOODBYE) {
+                        log.info("Replica {} is shutting down", remoteAddress);
+                        following = false;
+                        close();
+                        followed = sessions.stream().anyMatch(session -> session.following);
+                        return;
+                    }
+                    ackedSeq = seq;
+                    lastAckNanos = System.nanoTime();
+                    following = true;
+                    followed = true;
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            sessions.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Error closing replica connection", e);
+            }
+        }
+    }
+}
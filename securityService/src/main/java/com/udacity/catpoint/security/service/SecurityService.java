@@ -6,10 +6,27 @@ import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.telemetry.events.AlarmTransitionEvent;
+import com.udacity.catpoint.telemetry.events.ArmingChangeEvent;
+import com.udacity.catpoint.telemetry.events.ProcessImageEvent;
+import com.udacity.catpoint.telemetry.events.SensorChangeEvent;
+import com.udacity.catpoint.telemetry.logging.EventType;
+import com.udacity.catpoint.telemetry.logging.LogRecord;
+import com.udacity.catpoint.telemetry.logging.StructuredLog;
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
 
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.stream.Collectors;
 
 /**
@@ -18,17 +35,89 @@ import java.util.stream.Collectors;
  * <p>
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ * <p>
+ * A home can be split into zones, e.g. a perimeter that stays armed while the rest is disarmed.
+ * Until a zone is armed on its own, or {@link #enableZones()} is called, sensor events are
+ * evaluated against the whole home as they always were. From then on each event is evaluated
+ * against its sensor's zone only: the zone's arming status, its active sensors and its alarm.
+ * The home's alarm status follows the most serious zone alarm, and arming or disarming the whole
+ * home still applies to every zone.
+ * <p>
+ * Thread safe. Besides the GUI, the HTTP API, sensor ingest, the camera pipeline and the
+ * heartbeat sweeper all call in from their own threads, so every change is made while holding
+ * this object's monitor. Image classification runs outside it. Listeners are called on the
+ * thread that made the change, with the monitor held; Swing listeners hand over to the EDT.
  */
 public class SecurityService {
 
     private ImageService imageService;
     private SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
-    private static boolean isCatDetected = false;
+    //listeners can be added while other threads are notifying them
+    private final Set<StatusListener> statusListeners = new CopyOnWriteArraySet<>();
+    //cameras whose latest frame showed a cat; the system sees a cat while any camera does
+    private final Set<String> camerasSeeingCat = ConcurrentHashMap.newKeySet();
+    private volatile boolean isCatDetected = false;
+
+    /**
+     * Camera id used for images submitted through {@link #processImage(BufferedImage)}.
+     */
+    public static final String DEFAULT_CAMERA = "default";
+
+    //structured events, written asynchronously if catpoint.events.target is configured
+    private static final EventType ALARM_CHANGED = StructuredLog.getDefault().event("alarm.changed");
+    private static final EventType ARMING_CHANGED = StructuredLog.getDefault().event("arming.changed");
+    private static final EventType SENSOR_CHANGED = StructuredLog.getDefault().event("sensor.changed");
+    private static final EventType IMAGE_VERDICT = StructuredLog.getDefault().event("image.verdict");
+    private static final EventType ZONE_CHANGED = StructuredLog.getDefault().event("zone.changed");
+
+    //metrics are resolved once here so the hot paths only touch the counters themselves
+    private final LatencyHistogram setArmingStatusLatency;
+    private final LatencyHistogram setAlarmStatusLatency;
+    private final LatencyHistogram changeSensorActivationLatency;
+    private final LatencyHistogram processImageLatency;
+    private final LatencyHistogram addSensorLatency;
+    private final LatencyHistogram removeSensorLatency;
+    private final LatencyHistogram updateSensorLatency;
+    private final Map<AlarmStatus, Counter> alarmTransitions = new EnumMap<>(AlarmStatus.class);
+    private volatile SensorHeartbeatTracker heartbeatTracker;
+    private volatile SensorCapacityPolicy capacityPolicy = SensorCapacityPolicy.UNLIMITED;
+    //null until zones are in use
+    private SecurityZones zones;
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        setArmingStatusLatency = metrics.histogram("security.setArmingStatus");
+        setAlarmStatusLatency = metrics.histogram("security.setAlarmStatus");
+        changeSensorActivationLatency = metrics.histogram("security.changeSensorActivationStatus");
+        processImageLatency = metrics.histogram("security.processImage");
+        addSensorLatency = metrics.histogram("security.addSensor");
+        removeSensorLatency = metrics.histogram("security.removeSensor");
+        updateSensorLatency = metrics.histogram("security.updateSensor");
+        for (AlarmStatus status : AlarmStatus.values()) {
+            alarmTransitions.put(status, metrics.counter("security.alarmTransitions." + status.name()));
+        }
+    }
+
+    /**
+     * Reports this service's state as gauges. Latencies and transition counts are shared by
+     * every service in the process, but gauges describe one service, so only the one the
+     * application runs should register them; another service registering later would take
+     * the names over.
+     *
+     * @param metrics
+     */
+    public void registerGauges(MetricsRegistry metrics) {
+        metrics.gauge("security.alarmStatus", () -> getAlarmStatus().ordinal());
+        metrics.gauge("security.armingStatus", () -> getArmingStatus().ordinal());
+        metrics.gauge("security.sensors", this::getSensorCount);
+        metrics.gauge("security.catDetected", () -> isCatDetected ? 1 : 0);
+        metrics.gauge("security.staleSensors", () -> {
+            SensorHeartbeatTracker tracker = heartbeatTracker;
+            return tracker == null ? 0 : tracker.getStaleCount();
+        });
     }
 
     /**
@@ -37,16 +126,31 @@ public class SecurityService {
      *
      * @param armingStatus
      */
-    public void setArmingStatus(ArmingStatus armingStatus) {
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        long start = System.nanoTime();
         if (armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+            //stored in one write, so a failure can't leave the home disarmed with the alarm still on
+            long alarmStart = System.nanoTime();
+            securityRepository.setAlarmAndArmingStatus(AlarmStatus.NO_ALARM, armingStatus);
+            alarmStatusChanged(AlarmStatus.NO_ALARM, AlarmStatus.NO_ALARM, alarmStart);
         } else if (armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY) {
             if (isCatDetected) {
                 setAlarmStatus(AlarmStatus.ALARM);
             }
             changeActivationForSensors();
         }
-        securityRepository.setArmingStatus(armingStatus);
+        if (zones != null) {
+            zones.setAllArmingStatus(armingStatus).forEach(this::zoneStatusChanged);
+        }
+        if (armingStatus != ArmingStatus.DISARMED) {
+            securityRepository.setArmingStatus(armingStatus);
+        }
+        LogRecord record = ARMING_CHANGED.begin();
+        if (record != null) {
+            record.with("status", armingStatus).commit();
+        }
+        ArmingChangeEvent.emit(armingStatus);
+        setArmingStatusLatency.recordSince(start);
     }
 
     private void changeActivationForSensors() {
@@ -54,7 +158,8 @@ public class SecurityService {
             sensor.setActive(false);
             return sensor;
         }).collect(Collectors.toSet());
-        sensors.forEach(sensor -> securityRepository.updateSensor(sensor));
+        //one batch, so a database repository commits once rather than once per sensor
+        securityRepository.updateSensors(sensors);
     }
 
     /**
@@ -67,13 +172,17 @@ public class SecurityService {
         if (cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
             setAlarmStatus(AlarmStatus.ALARM);
         } else if (allSensorsInActive(false)) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+            //a zone's alarm lasts until the zone is disarmed
+            setAlarmStatus(zones != null ? zones.getWorstAlarmStatus() : AlarmStatus.NO_ALARM);
         }
         statusListeners.forEach(sl -> sl.catDetected(cat));
     }
 
     private boolean allSensorsInActive(boolean activeState) {
-        return getSensors().stream().noneMatch(Sensor::getActive);
+        if (zones != null) {
+            return zones.getActiveCount() == 0;
+        }
+        return securityRepository.getActiveSensorCount() == 0;
     }
 
     /**
@@ -89,19 +198,52 @@ public class SecurityService {
         statusListeners.remove(statusListener);
     }
 
+    /**
+     * Track sensor heartbeats with the given tracker. Every sensor counts as heard from when it
+     * changes state, and listeners are told when sensors go silent.
+     *
+     * @param heartbeatTracker
+     */
+    public synchronized void setHeartbeatTracker(SensorHeartbeatTracker heartbeatTracker) {
+        this.heartbeatTracker = heartbeatTracker;
+        getSensors().forEach(heartbeatTracker::track);
+        heartbeatTracker.start(this::sensorsStaleChanged);
+    }
+
+    /**
+     * Called on the tracker's sweep thread, and synchronized like every other notification, so
+     * listeners never see a sweep's result interleaved with a sensor or alarm change. The
+     * tracker calls this outside its own lock, so the sweep can't deadlock with a sensor event.
+     */
+    private synchronized void sensorsStaleChanged(List<Sensor> stale, List<Sensor> recovered) {
+        statusListeners.forEach(sl -> sl.sensorsStaleChanged(stale, recovered));
+    }
+
     /**
      * Change the alarm status of the system and notify all listeners.
      *
      * @param status
      */
-    public void setAlarmStatus(AlarmStatus status) {
+    public synchronized void setAlarmStatus(AlarmStatus status) {
+        long start = System.nanoTime();
+        AlarmStatus applied = status;
         if (allSensorsInActive(false)
                 && AlarmStatus.PENDING_ALARM.equals(securityRepository.getAlarmStatus())) {
-            securityRepository.setAlarmStatus(AlarmStatus.NO_ALARM);
-        } else {
-            securityRepository.setAlarmStatus(status);
+            applied = AlarmStatus.NO_ALARM;
+        }
+        securityRepository.setAlarmStatus(applied);
+        alarmStatusChanged(status, applied, start);
+    }
+
+    private void alarmStatusChanged(AlarmStatus status, AlarmStatus applied, long start) {
+        alarmTransitions.get(applied).increment();
+        LogRecord record = ALARM_CHANGED.begin();
+        if (record != null) {
+            record.with("status", applied).with("requested", status).commit();
         }
+        AlarmTransitionEvent.emit(status, applied);
         statusListeners.forEach(sl -> sl.notify(status));
+        setAlarmStatusLatency.recordSince(start);
     }
 
     /**
@@ -135,8 +277,14 @@ public class SecurityService {
      * @param sensor
      * @param active
      */
-    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        if (!sensor.getActive() && active) {
+    public synchronized void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        long start = System.nanoTime();
+        AlarmStatus zoneAlarm = null;
+        SecurityZones.Zone zone = null;
+        if (zones != null) {
+            zone = zones.zone(sensor.getZone());
+            zoneAlarm = zones.sensorChanged(zone, sensor, active);
+        } else if (!sensor.getActive() && active) {
             handleSensorActivated();
         } else if (sensor.getActive() && !active) {
             handleSensorDeactivated();
@@ -145,36 +293,330 @@ public class SecurityService {
         }
         sensor.setActive(active);
         securityRepository.updateSensor(sensor);
+        if (zoneAlarm != null) {
+            setZoneAlarmStatus(zone, zoneAlarm);
+        }
+        LogRecord record = SENSOR_CHANGED.begin();
+        if (record != null) {
+            record.with("sensor", sensor.getSensorId()).with("active", active.booleanValue()).with("zone", sensor.getZone()).commit();
+        }
+        SensorChangeEvent.emit(sensor.getSensorId(), sensor.getName(), active);
+        if (heartbeatTracker != null) {
+            heartbeatTracker.heartbeat(sensor);
+        }
+        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        changeSensorActivationLatency.recordSince(start);
+    }
+
+    /**
+     * Change the activation status for the sensor with the given id. Used by high-rate ingest
+     * paths that carry raw sensor ids rather than {@link Sensor} objects.
+     *
+     * @param sensorIdHigh most significant bits of the sensor id
+     * @param sensorIdLow least significant bits of the sensor id
+     * @param active
+     * @return false if there is no such sensor
+     */
+    public synchronized boolean changeSensorActivationStatus(long sensorIdHigh, long sensorIdLow, boolean active) {
+        Sensor sensor = securityRepository.findSensor(sensorIdHigh, sensorIdLow);
+        if (sensor == null) {
+            return false;
+        }
+        changeSensorActivationStatus(sensor, active);
+        return true;
+    }
+
+    /**
+     * Records that the sensor with the given id is alive without changing its state, for
+     * sensors that report in periodically whether or not anything happened. Only touches the
+     * heartbeat tracker, so heartbeats do not wait for other calls.
+     *
+     * @param sensorIdHigh most significant bits of the sensor id
+     * @param sensorIdLow least significant bits of the sensor id
+     * @return false if there is no such sensor
+     */
+    public boolean sensorHeartbeat(long sensorIdHigh, long sensorIdLow) {
+        SensorHeartbeatTracker tracker = heartbeatTracker;
+        if (tracker == null) {
+            return findSensor(sensorIdHigh, sensorIdLow) != null;
+        }
+        return tracker.heartbeat(sensorIdHigh, sensorIdLow);
     }
 
     /**
      * Send an image to the SecurityService for processing. The securityService will use its provided
      * ImageService to analyze the image for cats and update the alarm status accordingly.
+     * Other calls are not held up while the image is classified.
      *
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        isCatDetected = imageService.imageContainsCat(currentCameraImage, 50.0f);
+        long start = System.nanoTime();
+        ProcessImageEvent event = ProcessImageEvent.start();
+        boolean cat = imageService.imageContainsCat(currentCameraImage, 50.0f);
+        applyImageVerdict(DEFAULT_CAMERA, cat);
+        event.finish(DEFAULT_CAMERA, cat);
+        processImageLatency.recordSince(start);
+    }
+
+    /**
+     * Record whether the latest frame from a camera showed a cat, for images that were classified
+     * outside the SecurityService, e.g. by a camera pipeline. A cat is considered present while
+     * any camera reports one.
+     *
+     * @param cameraId id of the camera the frame came from
+     * @param cat True if the frame contains a cat, otherwise false.
+     */
+    public synchronized void applyImageVerdict(String cameraId, boolean cat) {
+        if (cat) {
+            camerasSeeingCat.add(cameraId);
+        } else {
+            camerasSeeingCat.remove(cameraId);
+        }
+        isCatDetected = !camerasSeeingCat.isEmpty();
+        LogRecord record = IMAGE_VERDICT.begin();
+        if (record != null) {
+            record.with("camera", cameraId).with("cat", cat).commit();
+        }
+        statusListeners.forEach(sl -> sl.catDetected(cameraId, cat));
         catDetected(isCatDetected);
     }
 
-    public AlarmStatus getAlarmStatus() {
+    public synchronized AlarmStatus getAlarmStatus() {
         return securityRepository.getAlarmStatus();
     }
 
-    public Set<Sensor> getSensors() {
+    public synchronized Set<Sensor> getSensors() {
         return securityRepository.getSensors();
     }
 
-    public void addSensor(Sensor sensor) {
+    /**
+     * Adds a sensor, or does nothing if it is already there.
+     *
+     * @throws SensorCapacityExceededException if the home already has as many sensors as its
+     * {@link SensorCapacityPolicy} allows
+     */
+    public synchronized void addSensor(Sensor sensor) {
+        long start = System.nanoTime();
+        if (!capacityPolicy.isUnlimited() && !capacityPolicy.allowsAnother(securityRepository.getSensorCount())) {
+            UUID id = sensor.getSensorId();
+            if (securityRepository.findSensor(id.getMostSignificantBits(), id.getLeastSignificantBits()) == null) {
+                throw new SensorCapacityExceededException(capacityPolicy);
+            }
+        }
         securityRepository.addSensor(sensor);
+        if (zones != null) {
+            zones.add(sensor);
+        }
+        if (heartbeatTracker != null) {
+            heartbeatTracker.track(sensor);
+        }
+        addSensorLatency.recordSince(start);
     }
 
-    public void removeSensor(Sensor sensor) {
+    public synchronized void removeSensor(Sensor sensor) {
+        long start = System.nanoTime();
         securityRepository.removeSensor(sensor);
+        if (zones != null) {
+            leaveZone(sensor);
+        }
+        if (heartbeatTracker != null) {
+            heartbeatTracker.untrack(sensor);
+        }
+        removeSensorLatency.recordSince(start);
+    }
+
+    public synchronized int getSensorCount() {
+        return securityRepository.getSensorCount();
+    }
+
+    /**
+     * Looks up a sensor by the two halves of its id, without going through every sensor.
+     *
+     * @return the sensor, or null if there is no such sensor
+     */
+    public synchronized Sensor findSensor(long sensorIdHigh, long sensorIdLow) {
+        return securityRepository.findSensor(sensorIdHigh, sensorIdLow);
     }
 
-    public ArmingStatus getArmingStatus() {
+    /**
+     * Limits how many sensors may be added. There is no limit until a policy is set.
+     *
+     * @param capacityPolicy
+     */
+    public void setCapacityPolicy(SensorCapacityPolicy capacityPolicy) {
+        this.capacityPolicy = capacityPolicy;
+    }
+
+    public SensorCapacityPolicy getCapacityPolicy() {
+        return capacityPolicy;
+    }
+
+    public synchronized ArmingStatus getArmingStatus() {
         return securityRepository.getArmingStatus();
     }
+
+    /**
+     * Evaluates sensor events zone by zone from now on. Every zone starts out with the arming
+     * status of the home. Reads every sensor once; does nothing if zones are already in use.
+     */
+    public synchronized void enableZones() {
+        if (zones == null) {
+            SecurityZones created = new SecurityZones(getArmingStatus());
+            getSensors().forEach(created::add);
+            zones = created;
+        }
+    }
+
+    public synchronized boolean isZoned() {
+        return zones != null;
+    }
+
+    /**
+     * Arms or disarms one zone, leaving the others as they are. Arming a zone resets its active
+     * sensors; disarming it clears its alarm. Zones are enabled by the first call.
+     *
+     * @param zone name of the zone, which doesn't need any sensors yet
+     * @param armingStatus
+     */
+    public synchronized void setZoneArmingStatus(String zone, ArmingStatus armingStatus) {
+        enableZones();
+        SecurityZones.Zone state = zones.zone(zone);
+        List<Sensor> reset = zones.setArmingStatus(state, armingStatus);
+        if (!reset.isEmpty()) {
+            securityRepository.updateSensors(reset);
+        }
+        if (armingStatus == ArmingStatus.DISARMED && state.getAlarmStatus() != AlarmStatus.NO_ALARM) {
+            zones.setAlarmStatus(state, AlarmStatus.NO_ALARM);
+            //the zone may have been the only reason for the alarm
+            AlarmStatus worst = zones.getWorstAlarmStatus();
+            if (worst.compareTo(getAlarmStatus()) < 0 && !(isCatDetected && getArmingStatus() != ArmingStatus.DISARMED)) {
+                setAlarmStatus(worst);
+            }
+        }
+        zoneStatusChanged(state);
+    }
+
+    /**
+     * @return the zone's arming status, or the home's while zones are not in use
+     */
+    public synchronized ArmingStatus getZoneArmingStatus(String zone) {
+        SecurityZones.Zone state = zones != null ? zones.find(zone) : null;
+        return state != null ? state.getArmingStatus() : getArmingStatus();
+    }
+
+    /**
+     * @return the zone's alarm status, or the home's while zones are not in use
+     */
+    public synchronized AlarmStatus getZoneAlarmStatus(String zone) {
+        if (zones == null) {
+            return getAlarmStatus();
+        }
+        SecurityZones.Zone state = zones.find(zone);
+        return state != null ? state.getAlarmStatus() : AlarmStatus.NO_ALARM;
+    }
+
+    /**
+     * @return how many sensors in the zone are active; counts them while zones are not in use
+     */
+    public synchronized int getZoneActiveCount(String zone) {
+        if (zones == null) {
+            return (int) getSensors().stream().filter(s -> s.getActive() && s.getZone().equals(zone)).count();
+        }
+        SecurityZones.Zone state = zones.find(zone);
+        return state != null ? state.getActiveCount() : 0;
+    }
+
+    /**
+     * @return names of the zones that have sensors or have been armed, in order
+     */
+    public synchronized Set<String> getZones() {
+        if (zones == null) {
+            return getSensors().stream().map(Sensor::getZone).collect(Collectors.toCollection(TreeSet::new));
+        }
+        return zones.getNames();
+    }
+
+    /**
+     * Moves a sensor to another zone. Moving isn't a sensor event, so it doesn't raise an alarm
+     * in the new zone, but it may clear a pending alarm in the old one.
+     *
+     * @param sensor
+     * @param zone name of the zone, or null for the default zone
+     */
+    public synchronized void setSensorZone(Sensor sensor, String zone) {
+        if (zones != null) {
+            leaveZone(sensor);
+        }
+        sensor.setZone(zone);
+        securityRepository.updateSensor(sensor);
+        if (zones != null) {
+            zoneStatusChanged(zones.add(sensor));
+        }
+    }
+
+    /**
+     * Renames, retypes or moves a sensor in one step. It keeps its state and its heartbeat, and
+     * the alarms of its zones are left alone unless it actually moves, as for
+     * {@link #setSensorZone(Sensor, String)}.
+     *
+     * @param sensor
+     * @param name new name, or null to keep the current one
+     * @param sensorType new type, or null to keep the current one
+     * @param zone name of the zone, or null for the default zone
+     */
+    public synchronized void updateSensor(Sensor sensor, String name, SensorType sensorType, String zone) {
+        long start = System.nanoTime();
+        String currentZone = sensor.getZone();
+        sensor.setZone(zone);
+        boolean moved = zones != null && !currentZone.equals(sensor.getZone());
+        if (moved) {
+            //leaves the zone it was added to
+            sensor.setZone(currentZone);
+            leaveZone(sensor);
+            sensor.setZone(zone);
+        }
+        String newName = name != null ? name : sensor.getName();
+        SensorType newType = sensorType != null ? sensorType : sensor.getSensorType();
+        if (!newName.equals(sensor.getName()) || newType != sensor.getSensorType()) {
+            securityRepository.renameSensor(sensor, newName, newType);
+        } else {
+            securityRepository.updateSensor(sensor);
+        }
+        if (moved) {
+            zoneStatusChanged(zones.add(sensor));
+        }
+        updateSensorLatency.recordSince(start);
+    }
+
+    private void leaveZone(Sensor sensor) {
+        SecurityZones.Zone zone = zones.remove(sensor);
+        AlarmStatus alarm = zones.alarmAfterDeactivation(zone);
+        if (alarm != null) {
+            setZoneAlarmStatus(zone, alarm);
+        }
+    }
+
+    /**
+     * Changes a zone's alarm, and brings the home's alarm in line: raised if the zone's is now
+     * the most serious, and a pending alarm cleared once no zone has one.
+     */
+    private void setZoneAlarmStatus(SecurityZones.Zone zone, AlarmStatus alarmStatus) {
+        zones.setAlarmStatus(zone, alarmStatus);
+        zoneStatusChanged(zone);
+        AlarmStatus current = getAlarmStatus();
+        AlarmStatus worst = zones.getWorstAlarmStatus();
+        if (worst.compareTo(current) > 0
+                || (current == AlarmStatus.PENDING_ALARM && worst == AlarmStatus.NO_ALARM)) {
+            setAlarmStatus(worst);
+        }
+    }
+
+    private void zoneStatusChanged(SecurityZones.Zone zone) {
+        LogRecord record = ZONE_CHANGED.begin();
+        if (record != null) {
+            record.with("zone", zone.getName()).with("arming", zone.getArmingStatus()).with("alarm", zone.getAlarmStatus()).commit();
+        }
+        statusListeners.forEach(sl -> sl.zoneStatusChanged(zone.getName(), zone.getArmingStatus(), zone.getAlarmStatus()));
+    }
 }
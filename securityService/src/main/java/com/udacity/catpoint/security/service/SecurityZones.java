@@ -0,0 +1,215 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Arming status, alarm status and active sensors of each zone of a home, kept up to date as
+ * sensors change so that evaluating a sensor event only looks at the state of its own zone.
+ * <p>
+ * A zone only remembers its active sensors, not all of them: arming a zone has to reset just
+ * those, and an inactive sensor costs nothing here. The number of zones in each alarm status is
+ * counted as well, so the worst alarm across the home is known without visiting every zone.
+ * Zones come into being when a sensor is put in them or they are armed, and stay after that.
+ * <p>
+ * Not thread safe; only used while holding the monitor of the {@link SecurityService} that owns it.
+ */
+class SecurityZones {
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+
+    static class Zone {
+        private final String name;
+        private ArmingStatus armingStatus;
+        private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+        private final Set<Sensor> active = new HashSet<>();
+
+        private Zone(String name, ArmingStatus armingStatus) {
+            this.name = name;
+            this.armingStatus = armingStatus;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+
+        AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        int getActiveCount() {
+            return active.size();
+        }
+    }
+
+    private final Map<String, Zone> zones = new HashMap<>();
+    private final int[] zonesInStatus = new int[ALARM_STATUSES.length];
+    //armed status of zones created from now on
+    private ArmingStatus armingStatus;
+    private int activeSensors;
+
+    /**
+     * @param armingStatus the status new zones start out with
+     */
+    SecurityZones(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    Zone zone(String name) {
+        Zone zone = zones.get(name);
+        if (zone == null) {
+            zone = new Zone(name, armingStatus);
+            zones.put(name, zone);
+            zonesInStatus[AlarmStatus.NO_ALARM.ordinal()]++;
+        }
+        return zone;
+    }
+
+    /**
+     * @return the zone, or null if no sensor has been in it and it was never armed
+     */
+    Zone find(String name) {
+        return zones.get(name);
+    }
+
+    Set<String> getNames() {
+        return new TreeSet<>(zones.keySet());
+    }
+
+    /**
+     * Starts tracking a sensor in its current zone and state.
+     */
+    Zone add(Sensor sensor) {
+        Zone zone = zone(sensor.getZone());
+        if (sensor.getActive() && zone.active.add(sensor)) {
+            activeSensors++;
+        }
+        return zone;
+    }
+
+    /**
+     * Stops tracking a sensor, which must still be in the zone it was added to.
+     */
+    Zone remove(Sensor sensor) {
+        Zone zone = zone(sensor.getZone());
+        if (zone.active.remove(sensor)) {
+            activeSensors--;
+        }
+        return zone;
+    }
+
+    /**
+     * Records a sensor's new state and works out what it means for its zone.
+     *
+     * @return the alarm status the zone should change to, or null if it stays as it is
+     */
+    AlarmStatus sensorChanged(Zone zone, Sensor sensor, boolean active) {
+        boolean wasActive = !active ? zone.active.remove(sensor) : !zone.active.add(sensor);
+        if (active != wasActive) {
+            activeSensors += active ? 1 : -1;
+        }
+        if (zone.armingStatus == ArmingStatus.DISARMED) {
+            return null;
+        }
+        if (active && !wasActive) {
+            switch (zone.alarmStatus) {
+                case NO_ALARM:
+                    return AlarmStatus.PENDING_ALARM;
+                case PENDING_ALARM:
+                    return AlarmStatus.ALARM;
+                default:
+                    return null;
+            }
+        } else if (active) {
+            //activated again while already active counts as a deactivation, as it does for the
+            //home without zones, which clears a pending alarm
+            return zone.alarmStatus == AlarmStatus.PENDING_ALARM ? AlarmStatus.NO_ALARM : null;
+        }
+        return wasActive ? alarmAfterDeactivation(zone) : null;
+    }
+
+    /**
+     * @return the alarm status a zone should change to now that it may have no active sensors
+     * left, or null if it stays as it is
+     */
+    AlarmStatus alarmAfterDeactivation(Zone zone) {
+        return zone.alarmStatus == AlarmStatus.PENDING_ALARM && zone.active.isEmpty() ? AlarmStatus.NO_ALARM : null;
+    }
+
+    void setAlarmStatus(Zone zone, AlarmStatus alarmStatus) {
+        zonesInStatus[zone.alarmStatus.ordinal()]--;
+        zonesInStatus[alarmStatus.ordinal()]++;
+        zone.alarmStatus = alarmStatus;
+    }
+
+    /**
+     * Sets a zone's arming status. Arming a zone resets its active sensors, like arming the
+     * whole home resets all of them.
+     *
+     * @return the sensors that were reset, which the caller has to store
+     */
+    List<Sensor> setArmingStatus(Zone zone, ArmingStatus armingStatus) {
+        zone.armingStatus = armingStatus;
+        if (armingStatus == ArmingStatus.DISARMED || zone.active.isEmpty()) {
+            return List.of();
+        }
+        List<Sensor> reset = new ArrayList<>(zone.active);
+        reset.forEach(sensor -> sensor.setActive(false));
+        activeSensors -= zone.active.size();
+        zone.active.clear();
+        return reset;
+    }
+
+    /**
+     * Gives every zone, and zones created later, the arming status of the whole home. The
+     * caller resets the sensors themselves.
+     *
+     * @return zones whose alarm was cleared by disarming
+     */
+    List<Zone> setAllArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+        List<Zone> cleared = new ArrayList<>();
+        for (Zone zone : zones.values()) {
+            zone.armingStatus = armingStatus;
+            if (armingStatus != ArmingStatus.DISARMED) {
+                zone.active.clear();
+            } else if (zone.alarmStatus != AlarmStatus.NO_ALARM) {
+                setAlarmStatus(zone, AlarmStatus.NO_ALARM);
+                cleared.add(zone);
+            }
+        }
+        if (armingStatus != ArmingStatus.DISARMED) {
+            activeSensors = 0;
+        }
+        return cleared;
+    }
+
+    /**
+     * @return the most serious alarm status of any zone
+     */
+    AlarmStatus getWorstAlarmStatus() {
+        for (int i = ALARM_STATUSES.length - 1; i > 0; i--) {
+            if (zonesInStatus[i] > 0) {
+                return ALARM_STATUSES[i];
+            }
+        }
+        return AlarmStatus.NO_ALARM;
+    }
+
+    int getActiveCount() {
+        return activeSensors;
+    }
+}
@@ -0,0 +1,18 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * Thrown when adding a sensor would take a home past its {@link SensorCapacityPolicy}.
+ */
+public class SensorCapacityExceededException extends RuntimeException {
+
+    private final SensorCapacityPolicy policy;
+
+    public SensorCapacityExceededException(SensorCapacityPolicy policy) {
+        super("The " + policy.getTier() + " plan allows at most " + policy.getMaxSensors() + " sensors");
+        this.policy = policy;
+    }
+
+    public SensorCapacityPolicy getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,82 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.Locale;
+
+/**
+ * How many sensors one home may have. The tiers are the sizes the whole stack has been tested
+ * at; a custom maximum can be set with catpoint.sensors.max.
+ * <pre>
+ * catpoint.sensors.tier=[basic (4), premium (10,000) or enterprise (1,000,000), default basic]
+ * catpoint.sensors.max=[overrides the tier's maximum]
+ * </pre>
+ */
+public final class SensorCapacityPolicy {
+
+    public static final SensorCapacityPolicy BASIC = new SensorCapacityPolicy("Basic", 4);
+    public static final SensorCapacityPolicy PREMIUM = new SensorCapacityPolicy("Premium", 10_000);
+    public static final SensorCapacityPolicy ENTERPRISE = new SensorCapacityPolicy("Enterprise", 1_000_000);
+    public static final SensorCapacityPolicy UNLIMITED = new SensorCapacityPolicy("Unlimited", Integer.MAX_VALUE);
+
+    private final String tier;
+    private final int maxSensors;
+
+    public SensorCapacityPolicy(String tier, int maxSensors) {
+        if (maxSensors < 0) {
+            throw new IllegalArgumentException("maxSensors must not be negative");
+        }
+        this.tier = tier;
+        this.maxSensors = maxSensors;
+    }
+
+    /**
+     * @return the tier with this name, ignoring case
+     * @throws IllegalArgumentException if there is no such tier
+     */
+    public static SensorCapacityPolicy forTier(String tier) {
+        switch (tier.toLowerCase(Locale.ROOT)) {
+            case "basic":
+                return BASIC;
+            case "premium":
+                return PREMIUM;
+            case "enterprise":
+                return ENTERPRISE;
+            case "unlimited":
+                return UNLIMITED;
+            default:
+                throw new IllegalArgumentException("Unknown sensor tier " + tier);
+        }
+    }
+
+    /**
+     * @return the policy configured by the catpoint.sensors system properties
+     */
+    public static SensorCapacityPolicy fromSystemProperties() {
+        SensorCapacityPolicy policy = forTier(System.getProperty("catpoint.sensors.tier", "basic"));
+        Integer max = Integer.getInteger("catpoint.sensors.max");
+        return max == null ? policy : new SensorCapacityPolicy(policy.getTier(), max);
+    }
+
+    /**
+     * @return true if a home that has this many sensors may add another
+     */
+    public boolean allowsAnother(int sensorCount) {
+        return sensorCount < maxSensors;
+    }
+
+    public boolean isUnlimited() {
+        return maxSensors == Integer.MAX_VALUE;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public int getMaxSensors() {
+        return maxSensors;
+    }
+
+    @Override
+    public String toString() {
+        return isUnlimited() ? tier : String.format("%s (up to %,d sensors)", tier, maxSensors);
+    }
+}
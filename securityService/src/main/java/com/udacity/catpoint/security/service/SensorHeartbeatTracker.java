@@ -0,0 +1,327 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.UuidMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers when each sensor was last heard from, so that a sensor that has gone silent can be
+ * told apart from one that is simply inactive.
+ * <p>
+ * Every tracked sensor has a slot in a set of primitive columns: its last-seen time in a
+ * {@code long[]}, and its place in a timing wheel. The wheel has one bucket per tick of the
+ * sweep resolution, and a sensor sits in the bucket of the tick in which it would go stale.
+ * A heartbeat moves the sensor to a later bucket, which only costs anything when the new
+ * deadline falls into a different tick. A sweep then only empties the buckets whose tick has
+ * passed, which hold exactly the sensors that went stale, so its cost grows with the number of
+ * stale sensors rather than with the number tracked.
+ * <p>
+ * Sensors are reported stale at most one resolution after the stale timeout, and reported
+ * again once a heartbeat arrives. Thread safe.
+ */
+public class SensorHeartbeatTracker implements Closeable {
+
+    /**
+     * Receives the result of each sweep that found something, on the sweep thread.
+     */
+    public interface Listener {
+        /**
+         * @param stale     sensors that went silent since the last sweep
+         * @param recovered stale sensors that have been heard from again
+         */
+        void sensorsStaleChanged(List<Sensor> stale, List<Sensor> recovered);
+    }
+
+    private static final int MIN_CAPACITY = 16;
+    //bucketOf values for slots that are not in the wheel
+    private static final int FREE = -1;
+    private static final int STALE = -2;
+
+    private Logger log = LoggerFactory.getLogger(SensorHeartbeatTracker.class);
+
+    private final long staleAfterMillis;
+    private final long resolutionMillis;
+    private final LongSupplier clock;
+
+    //per slot
+    private long[] lastSeen;
+    private Sensor[] sensors;
+    private int[] next;
+    private int[] prev;
+    private int[] bucketOf;
+    private int freeSlots = -1;
+    private int usedSlots;
+
+    //first slot of each bucket, or -1
+    private final int[] heads;
+    private long sweptTick;
+    private int tracked;
+    private int staleCount;
+    private List<Sensor> recovered = new ArrayList<>();
+
+    private final UuidMap<Integer> slotsById = new UuidMap<>();
+
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Sweeps at a resolution of an eighth of the stale timeout, but at least once a second.
+     */
+    public SensorHeartbeatTracker(Duration staleAfter) {
+        this(staleAfter, Duration.ofMillis(Math.max(1, Math.min(1000, staleAfter.toMillis() / 8))), System::currentTimeMillis);
+    }
+
+    /**
+     * @param resolution how often to sweep, and how late a sensor may be reported stale
+     * @param clock      current time in milliseconds
+     */
+    SensorHeartbeatTracker(Duration staleAfter, Duration resolution, LongSupplier clock) {
+        this.staleAfterMillis = staleAfter.toMillis();
+        this.resolutionMillis = Math.max(1, resolution.toMillis());
+        this.clock = clock;
+        //a deadline is never more than the stale timeout ahead, so a full lap covers every deadline
+        heads = new int[Integer.highestOneBit((int) (staleAfterMillis / resolutionMillis + 2)) * 2];
+        Arrays.fill(heads, -1);
+        sweptTick = tickOf(clock.getAsLong()) - 1;
+        allocateSlots(MIN_CAPACITY);
+    }
+
+    /**
+     * Starts tracking a sensor as if it had just been heard from. Does nothing if the sensor is
+     * already tracked.
+     */
+    public synchronized void track(Sensor sensor) {
+        long high = sensor.getSensorId().getMostSignificantBits();
+        long low = sensor.getSensorId().getLeastSignificantBits();
+        if (slotOf(high, low) >= 0) {
+            return;
+        }
+        if (freeSlots < 0 && usedSlots == sensors.length) {
+            growSlots();
+        }
+        int slot;
+        if (freeSlots >= 0) {
+            slot = freeSlots;
+            freeSlots = next[slot];
+        } else {
+            slot = usedSlots++;
+        }
+        sensors[slot] = sensor;
+        lastSeen[slot] = clock.getAsLong();
+        link(slot, bucketFor(lastSeen[slot]));
+        slotsById.put(high, low, slot);
+        tracked++;
+    }
+
+    /**
+     * Stops tracking a sensor, for instance because it was removed.
+     */
+    public synchronized void untrack(Sensor sensor) {
+        long high = sensor.getSensorId().getMostSignificantBits();
+        long low = sensor.getSensorId().getLeastSignificantBits();
+        int slot = slotOf(high, low);
+        if (slot < 0) {
+            return;
+        }
+        slotsById.remove(high, low);
+        if (bucketOf[slot] == STALE) {
+            staleCount--;
+        } else {
+            unlink(slot);
+        }
+        recovered.remove(sensors[slot]);
+        sensors[slot] = null;
+        bucketOf[slot] = FREE;
+        next[slot] = freeSlots;
+        freeSlots = slot;
+        tracked--;
+    }
+
+    /**
+     * Records that the sensor with this id was heard from just now.
+     *
+     * @return false if the sensor is not tracked
+     */
+    public synchronized boolean heartbeat(long sensorIdHigh, long sensorIdLow) {
+        int slot = slotOf(sensorIdHigh, sensorIdLow);
+        if (slot < 0) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        lastSeen[slot] = now;
+        int bucket = bucketFor(now);
+        if (bucketOf[slot] == STALE) {
+            staleCount--;
+            recovered.add(sensors[slot]);
+            link(slot, bucket);
+        } else if (bucketOf[slot] != bucket) {
+            unlink(slot);
+            link(slot, bucket);
+        }
+        return true;
+    }
+
+    public boolean heartbeat(Sensor sensor) {
+        return heartbeat(sensor.getSensorId().getMostSignificantBits(), sensor.getSensorId().getLeastSignificantBits());
+    }
+
+    /**
+     * @return when the sensor was last heard from in epoch milliseconds, or -1 if it is not tracked
+     */
+    public synchronized long getLastSeen(Sensor sensor) {
+        int slot = slotOf(sensor.getSensorId().getMostSignificantBits(), sensor.getSensorId().getLeastSignificantBits());
+        return slot < 0 ? -1 : lastSeen[slot];
+    }
+
+    /**
+     * @return true if the sensor has been reported stale and not heard from since
+     */
+    public synchronized boolean isStale(Sensor sensor) {
+        int slot = slotOf(sensor.getSensorId().getMostSignificantBits(), sensor.getSensorId().getLeastSignificantBits());
+        return slot >= 0 && bucketOf[slot] == STALE;
+    }
+
+    public synchronized int getStaleCount() {
+        return staleCount;
+    }
+
+    public synchronized int getTrackedCount() {
+        return tracked;
+    }
+
+    /**
+     * Marks every sensor whose deadline has passed as stale, and tells the listener about them
+     * and about stale sensors heard from since the last sweep. The listener is not called if
+     * there is nothing to report.
+     */
+    public void sweep(Listener listener) {
+        List<Sensor> stale = new ArrayList<>();
+        List<Sensor> recoveredSinceLastSweep;
+        synchronized (this) {
+            long nowTick = tickOf(clock.getAsLong());
+            //every deadline in a tick before this one has passed
+            long lastTick = nowTick - 1;
+            long firstTick = Math.max(sweptTick + 1, lastTick - heads.length + 1);
+            for (long tick = firstTick; tick <= lastTick; tick++) {
+                int bucket = (int) (tick & (heads.length - 1));
+                int slot = heads[bucket];
+                while (slot >= 0) {
+                    int following = next[slot];
+                    //after a missed lap the bucket can also hold deadlines a lap later
+                    if (tickOf(lastSeen[slot] + staleAfterMillis) < nowTick) {
+                        unlink(slot);
+                        bucketOf[slot] = STALE;
+                        staleCount++;
+                        stale.add(sensors[slot]);
+                    }
+                    slot = following;
+                }
+            }
+            sweptTick = Math.max(sweptTick, lastTick);
+            recoveredSinceLastSweep = recovered.isEmpty() ? Collections.emptyList() : recovered;
+            if (!recovered.isEmpty()) {
+                recovered = new ArrayList<>();
+            }
+        }
+        if (!stale.isEmpty() || !recoveredSinceLastSweep.isEmpty()) {
+            listener.sensorsStaleChanged(stale, recoveredSinceLastSweep);
+        }
+    }
+
+    /**
+     * Sweeps once per resolution on a daemon thread until closed.
+     */
+    public synchronized void start(Listener listener) {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sensor-heartbeat-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep(listener);
+            } catch (RuntimeException e) {
+                log.error("Sensor heartbeat sweep failed", e);
+            }
+        }, resolutionMillis, resolutionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    private long tickOf(long millis) {
+        return Math.floorDiv(millis, resolutionMillis);
+    }
+
+    private int bucketFor(long seenAt) {
+        return (int) (tickOf(seenAt + staleAfterMillis) & (heads.length - 1));
+    }
+
+    private void link(int slot, int bucket) {
+        int head = heads[bucket];
+        next[slot] = head;
+        prev[slot] = -1;
+        if (head >= 0) {
+            prev[head] = slot;
+        }
+        heads[bucket] = slot;
+        bucketOf[slot] = bucket;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before >= 0) {
+            next[before] = after;
+        } else {
+            heads[bucketOf[slot]] = after;
+        }
+        if (after >= 0) {
+            prev[after] = before;
+        }
+    }
+
+    private void allocateSlots(int capacity) {
+        lastSeen = new long[capacity];
+        sensors = new Sensor[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        bucketOf = new int[capacity];
+        Arrays.fill(bucketOf, FREE);
+    }
+
+    private void growSlots() {
+        int capacity = sensors.length * 2;
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        sensors = Arrays.copyOf(sensors, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        int used = bucketOf.length;
+        bucketOf = Arrays.copyOf(bucketOf, capacity);
+        Arrays.fill(bucketOf, used, capacity, FREE);
+    }
+
+    private int slotOf(long high, long low) {
+        Integer slot = slotsById.get(high, low);
+        return slot == null ? -1 : slot;
+    }
+}
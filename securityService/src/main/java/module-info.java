@@ -5,10 +5,19 @@ module com.udacity.catpoint.security.securityService {
     requires transitive gson;
     requires transitive com.google.common;
     requires transitive com.udacity.catpoint.image.imageService;
+    requires transitive com.udacity.catpoint.telemetry.telemetryService;
     requires transitive java.sql;
+    requires java.net.http;
+    requires com.h2database;
+    //sun.misc.Unsafe.invokeCleaner, to unmap repository snapshots before replacing them
+    requires jdk.unsupported;
     opens com.udacity.catpoint.security.data to gson;
     exports com.udacity.catpoint.security.service;
     exports com.udacity.catpoint.security.application;
     exports com.udacity.catpoint.security.data;
+    exports com.udacity.catpoint.security.api;
+    exports com.udacity.catpoint.security.camera;
+    exports com.udacity.catpoint.security.replication;
+    exports com.udacity.catpoint.security.notification;
     opens com.udacity.catpoint.security.service;
 }
\ No newline at end of file
@@ -0,0 +1,249 @@
+package com.udacity.catpoint.security.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpApiServerTest {
+
+    private static final Gson gson = new Gson();
+    //one core sustains 7,000 to 10,000 a second with every request going through the service
+    // worker; half of the usual 10,000 leaves room for a noisy build machine
+    private static final double MIN_PIPELINED_EVENTS_PER_SECOND = 5_000;
+
+    private SecurityService securityService;
+    private HttpApiServer server;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        securityService = new SecurityService(new FakeSecurityRepository(), (image, confidence) -> false);
+        server = new HttpApiServer(new InetSocketAddress("localhost", 0), new SecurityApiHandler(securityService));
+        server.start();
+        securityService.addStatusListener(new StatusEventPublisher(server, securityService));
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void sensorCrudAndActivation() throws IOException {
+        try (Socket socket = connect()) {
+            Response created = send(socket, "POST", "/sensors", "{\"name\":\"Front\",\"sensorType\":\"DOOR\"}");
+            assertEquals(201, created.status);
+            String id = gson.fromJson(created.body, JsonObject.class).get("sensorId").getAsString();
+
+            send(socket, "PUT", "/arming", "{\"armingStatus\":\"ARMED_AWAY\"}");
+            Response activated = send(socket, "POST", "/sensors/" + id + "/activation", "{\"active\":true}");
+            assertEquals(200, activated.status);
+            assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+
+            assertEquals(204, send(socket, "POST", "/sensors/" + id + "/heartbeat", null).status);
+            assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+
+            Response renamed = send(socket, "PUT", "/sensors/" + id, "{\"name\":\"Back\"}");
+            assertEquals("Back", gson.fromJson(renamed.body, JsonObject.class).get("name").getAsString());
+
+            assertEquals(204, send(socket, "DELETE", "/sensors/" + id, null).status);
+            assertEquals(404, send(socket, "GET", "/sensors/" + id, null).status);
+            assertTrue(securityService.getSensors().isEmpty());
+        }
+    }
+
+    @Test
+    public void pipelinedRequestsAnsweredInOrder() throws IOException {
+        try (Socket socket = connect()) {
+            String pipeline = request("PUT", "/arming", "{\"armingStatus\":\"ARMED_HOME\"}")
+                    + request("GET", "/arming", null)
+                    + request("GET", "/nowhere", null)
+                    + request("GET", "/alarm", null);
+            socket.getOutputStream().write(pipeline.getBytes(StandardCharsets.UTF_8));
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            assertEquals(200, readResponse(in).status);
+            assertEquals("\"ARMED_HOME\"", readResponse(in).body);
+            assertEquals(404, readResponse(in).status);
+            assertEquals("\"NO_ALARM\"", readResponse(in).body);
+        }
+    }
+
+    @Test
+    public void eventStreamReceivesStatusChanges() throws IOException {
+        try (Socket events = connect(); Socket control = connect()) {
+            events.getOutputStream().write(request("GET", "/events", null).getBytes(StandardCharsets.UTF_8));
+            InputStream in = new BufferedInputStream(events.getInputStream());
+            assertTrue(readLine(in).startsWith("HTTP/1.1 200"));
+            while (!readLine(in).isEmpty()) {
+                //skip headers
+            }
+
+            send(control, "PUT", "/arming", "{\"armingStatus\":\"DISARMED\"}");
+            assertEquals("event: alarm", readLine(in));
+            assertTrue(readLine(in).contains("\"armingStatus\""));
+        }
+    }
+
+    @Test
+    public void missingFieldsAreRejected() throws IOException {
+        try (Socket socket = connect()) {
+            assertEquals(400, send(socket, "POST", "/sensors", "{\"name\":\"Front\"}").status);
+            assertEquals(400, send(socket, "PUT", "/arming", "{}").status);
+            String id = gson.fromJson(send(socket, "POST", "/sensors", "{\"name\":\"Front\",\"sensorType\":\"DOOR\"}").body,
+                    JsonObject.class).get("sensorId").getAsString();
+            assertEquals(400, send(socket, "POST", "/sensors/" + id + "/activation", "{\"active\":\"yes\"}").status);
+        }
+    }
+
+    @Test
+    public void imageClassificationDoesNotStallOtherConnections() throws Exception {
+        CountDownLatch classifying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SecurityService slowService = new SecurityService(new FakeSecurityRepository(), (image, confidence) -> {
+            classifying.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        });
+        try (HttpApiServer slowServer = new HttpApiServer(new InetSocketAddress("localhost", 0), new SecurityApiHandler(slowService))) {
+            slowServer.start();
+            try (Socket upload = connect(slowServer); Socket other = connect(slowServer)) {
+                ByteArrayOutputStream png = new ByteArrayOutputStream();
+                ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", png);
+                upload.getOutputStream().write(("POST /images HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + png.size() + "\r\n\r\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                png.writeTo(upload.getOutputStream());
+                //a request pipelined behind the upload waits for it
+                upload.getOutputStream().write(request("GET", "/alarm", null).getBytes(StandardCharsets.UTF_8));
+                assertTrue(classifying.await(10, TimeUnit.SECONDS));
+
+                assertEquals(200, send(other, "GET", "/arming", null).status);
+
+                release.countDown();
+                InputStream in = new BufferedInputStream(upload.getInputStream());
+                assertEquals(200, readResponse(in).status);
+                assertEquals(200, readResponse(in).status);
+            }
+        }
+    }
+
+    @Test
+    public void sustainsPipelinedActivationLoad() throws Exception {
+        int events = 20_000;
+        try (Socket socket = connect()) {
+            String id = gson.fromJson(send(socket, "POST", "/sensors", "{\"name\":\"Load\",\"sensorType\":\"MOTION\"}").body,
+                    JsonObject.class).get("sensorId").getAsString();
+            UUID sensorId = UUID.fromString(id);
+            StringBuilder pipeline = new StringBuilder();
+            for (int i = 0; i < events; i++) {
+                pipeline.append(request("POST", "/sensors/" + id + "/activation", "{\"active\":" + (i % 2 == 0) + "}"));
+            }
+
+            long start = System.nanoTime();
+            OutputStream out = socket.getOutputStream();
+            //the server reads no more than it can answer, so the whole pipeline is written while responses are read
+            FutureTask<Void> writer = new FutureTask<>(() -> {
+                out.write(pipeline.toString().getBytes(StandardCharsets.UTF_8));
+                return null;
+            });
+            new Thread(writer, "pipeline-writer").start();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            Response[] responses = new Response[events];
+            for (int i = 0; i < events; i++) {
+                responses[i] = readResponse(in);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            writer.get(10, TimeUnit.SECONDS);
+
+            //checked after the clock stops, since the client shares the core with the server
+            for (int i = 0; i < events; i++) {
+                assertEquals(200, responses[i].status, "response " + i);
+                JsonObject sensor = gson.fromJson(responses[i].body, JsonObject.class);
+                assertEquals(id, sensor.get("sensorId").getAsString());
+                assertEquals(i % 2 == 0, sensor.get("active").getAsBoolean(), "response " + i);
+            }
+            assertTrue(events / seconds >= MIN_PIPELINED_EVENTS_PER_SECOND,
+                    String.format("%d pipelined activation events took %.2fs", events, seconds));
+            assertFalse(securityService.findSensor(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits()).getActive());
+        }
+    }
+
+    private Socket connect() throws IOException {
+        return connect(server);
+    }
+
+    private static Socket connect(HttpApiServer server) throws IOException {
+        Socket socket = new Socket("localhost", server.getPort());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static Response send(Socket socket, String method, String path, String body) throws IOException {
+        socket.getOutputStream().write(request(method, path, body).getBytes(StandardCharsets.UTF_8));
+        return readResponse(new BufferedInputStream(socket.getInputStream(), 1));
+    }
+
+    private static String request(String method, String path, String body) {
+        byte[] bytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        return method + " " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + bytes.length + "\r\n\r\n"
+                + (body == null ? "" : body);
+    }
+
+    private static Response readResponse(InputStream in) throws IOException {
+        Response response = new Response();
+        response.status = Integer.parseInt(readLine(in).split(" ")[1]);
+        int length = 0;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        response.body = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+        return response;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static class Response {
+        private int status;
+        private String body;
+    }
+}
@@ -0,0 +1,198 @@
+package com.udacity.catpoint.security.api;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorHeartbeatTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorEventIngestServerTest {
+
+    //a single core does over 200k/s; falling below this means something went per-event blocking
+    private static final double MIN_INGEST_EVENTS_PER_SECOND = 20_000;
+
+    private SecurityService securityService;
+    private SensorEventIngestServer server;
+    private Sensor sensor;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        securityService = new SecurityService(new FakeSecurityRepository(), (image, confidence) -> false);
+        sensor = new Sensor("Front", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        server = new SensorEventIngestServer(new InetSocketAddress("localhost", 0), securityService);
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void framesAreAppliedAndAckedCumulatively() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            ByteBuffer out = ByteBuffer.allocate(SensorEventCodec.FRAME_BYTES * 3);
+            SensorEventCodec.encode(out, sensor.getSensorId(), true, System.currentTimeMillis());
+            SensorEventCodec.encode(out, UUID.randomUUID(), true, System.currentTimeMillis());
+            SensorEventCodec.encode(out, sensor.getSensorId(), false, System.currentTimeMillis());
+            out.flip();
+
+            //split a frame across writes to exercise partial-frame handling
+            out.limit(30);
+            channel.write(out);
+            out.limit(out.capacity());
+            channel.write(out);
+
+            long[] totals = readAcksUntil(channel, 3);
+            assertEquals(2, totals[0]);
+            assertEquals(1, totals[1]);
+        }
+        assertFalse(sensor.getActive());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void heartbeatsAreAckedWithoutChangingState() throws IOException {
+        try (SensorHeartbeatTracker tracker = new SensorHeartbeatTracker(Duration.ofMinutes(1));
+             SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            securityService.setHeartbeatTracker(tracker);
+            long before = System.currentTimeMillis();
+            ByteBuffer out = ByteBuffer.allocate(SensorEventCodec.FRAME_BYTES * 2);
+            SensorEventCodec.encodeHeartbeat(out, sensor.getSensorId(), before);
+            SensorEventCodec.encodeHeartbeat(out, UUID.randomUUID(), before);
+            out.flip();
+            channel.write(out);
+
+            long[] totals = readAcksUntil(channel, 2);
+            assertEquals(1, totals[0]);
+            assertEquals(1, totals[1]);
+            assertTrue(tracker.getLastSeen(sensor) >= before);
+        }
+        assertFalse(sensor.getActive());
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void unknownStatesAndStaleEventsAreRejected() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            long now = System.currentTimeMillis();
+            ByteBuffer out = ByteBuffer.allocate(SensorEventCodec.FRAME_BYTES * 3);
+            SensorEventCodec.encode(out, sensor.getSensorId(), true, now);
+            //the state byte of the first frame, which no version of the protocol defines
+            out.put(16, (byte) 7);
+            SensorEventCodec.encode(out, sensor.getSensorId(), true, now - Duration.ofMinutes(5).toMillis());
+            SensorEventCodec.encode(out, sensor.getSensorId(), true, now);
+            out.flip();
+            channel.write(out);
+
+            long[] totals = readAcksUntil(channel, 3);
+            assertEquals(1, totals[0]);
+            assertEquals(2, totals[1]);
+        }
+        assertTrue(sensor.getActive());
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void sinkFailuresRejectOnlyTheirOwnEvent() throws IOException {
+        UUID failing = UUID.randomUUID();
+        SensorEventCodec.SensorEventSink sink = new SensorEventCodec.SensorEventSink() {
+            @Override
+            public boolean onSensorEvent(long sensorIdHigh, long sensorIdLow, boolean active, long timestamp) {
+                if (sensorIdLow == failing.getLeastSignificantBits()) {
+                    throw new IllegalStateException("Writes go to the primary");
+                }
+                return securityService.changeSensorActivationStatus(sensorIdHigh, sensorIdLow, active);
+            }
+
+            @Override
+            public boolean onSensorHeartbeat(long sensorIdHigh, long sensorIdLow, long timestamp) {
+                return true;
+            }
+        };
+        try (SensorEventIngestServer failingServer = new SensorEventIngestServer(new InetSocketAddress("localhost", 0), sink)) {
+            failingServer.start();
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", failingServer.getPort()))) {
+                ByteBuffer out = ByteBuffer.allocate(SensorEventCodec.FRAME_BYTES * 2);
+                SensorEventCodec.encode(out, failing, true, System.currentTimeMillis());
+                SensorEventCodec.encode(out, sensor.getSensorId(), true, System.currentTimeMillis());
+                out.flip();
+                channel.write(out);
+                long[] totals = readAcksUntil(channel, 2);
+                assertEquals(1, totals[0]);
+                assertEquals(1, totals[1]);
+
+                //the connection is still served
+                out.clear();
+                SensorEventCodec.encode(out, sensor.getSensorId(), false, System.currentTimeMillis());
+                out.flip();
+                channel.write(out);
+                assertEquals(2, readAcksUntil(channel, 3)[0]);
+            }
+        }
+        assertFalse(sensor.getActive());
+    }
+
+    @Test
+    public void sustainsHighRateIngest() throws IOException {
+        int events = 200_000;
+        long now = System.currentTimeMillis();
+        ByteBuffer out = ByteBuffer.allocateDirect(SensorEventCodec.FRAME_BYTES * events);
+        for (int i = 0; i < events; i++) {
+            SensorEventCodec.encode(out, sensor.getSensorId(), i % 2 == 0, now);
+        }
+        out.flip();
+
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            long start = System.nanoTime();
+            Thread writer = new Thread(() -> {
+                try {
+                    while (out.hasRemaining()) {
+                        channel.write(out);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+            long[] totals = readAcksUntil(channel, events);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            assertEquals(events, totals[0]);
+            assertTrue(events / seconds >= MIN_INGEST_EVENTS_PER_SECOND,
+                    String.format("%d events took %.2fs", events, seconds));
+        }
+    }
+
+    private static long[] readAcksUntil(SocketChannel channel, long events) throws IOException {
+        ByteBuffer ack = ByteBuffer.allocate(SensorEventCodec.ACK_BYTES);
+        long[] totals = new long[2];
+        while (totals[0] + totals[1] < events) {
+            ack.clear();
+            while (ack.hasRemaining()) {
+                if (channel.read(ack) < 0) {
+                    throw new IOException("Connection closed");
+                }
+            }
+            ack.flip();
+            totals[0] = ack.getLong();
+            totals[1] = ack.getLong();
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,65 @@
+package com.udacity.catpoint.security.application;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CameraGridPanelTest {
+
+    @Test
+    public void framesForHiddenTilesAreNeverDecoded() throws Exception {
+        CameraGridPanel grid = new CameraGridPanel();
+        byte[] frame = jpeg();
+        for (int camera = 0; camera < 50; camera++) {
+            grid.onFrame("camera-" + camera, frame);
+        }
+        //tiles are created on the EDT, then a refresh finds them off screen
+        SwingUtilities.invokeAndWait(grid::refresh);
+        for (int camera = 0; camera < 50; camera++) {
+            grid.onFrame("camera-" + camera, frame);
+        }
+        SwingUtilities.invokeAndWait(grid::refresh);
+
+        //a decode would still be running or would have been counted by now
+        AtomicInteger decoding = new AtomicInteger();
+        SwingUtilities.invokeAndWait(() -> decoding.set(grid.getDecodingTiles()));
+        assertEquals(0, decoding.get());
+        assertEquals(0, grid.getDecodedFrames());
+    }
+
+    @Test
+    public void tileOverlayFollowsItsCamera() throws Exception {
+        CameraGridPanel grid = new CameraGridPanel();
+        grid.catDetected("porch", true);
+        grid.catDetected("garage", false);
+        SwingUtilities.invokeAndWait(() -> { });
+
+        assertTrue(containsLabel(grid, "porch - CAT DETECTED"));
+        assertTrue(containsLabel(grid, "garage"));
+    }
+
+    private static boolean containsLabel(java.awt.Container container, String text) {
+        for (java.awt.Component child : container.getComponents()) {
+            if (child instanceof JLabel && text.equals(((JLabel) child).getText())) {
+                return true;
+            }
+            if (child instanceof java.awt.Container && containsLabel((java.awt.Container) child, text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] jpeg() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,64 @@
+package com.udacity.catpoint.security.application;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CameraPreviewTest {
+
+    @Test
+    public void fitKeepsAspectRatio() {
+        assertEquals(new Dimension(300, 169), CameraPreview.fit(1920, 1080, new Dimension(300, 225)));
+        assertEquals(new Dimension(127, 225), CameraPreview.fit(1080, 1920, new Dimension(300, 225)));
+    }
+
+    @Test
+    public void changedRegionCoversOnlyChangedTiles() {
+        BufferedImage before = new BufferedImage(100, 80, BufferedImage.TYPE_INT_RGB);
+        BufferedImage after = new BufferedImage(100, 80, BufferedImage.TYPE_INT_RGB);
+        assertTrue(CameraPreview.changedRegion(before, after).isEmpty());
+
+        after.setRGB(20, 5, 0xFFFFFF);
+        after.setRGB(40, 40, 0xFFFFFF);
+        assertEquals(new Rectangle(16, 0, 32, 48), CameraPreview.changedRegion(before, after));
+
+        after.setRGB(99, 79, 0xFFFFFF);
+        assertEquals(new Rectangle(16, 0, 84, 80), CameraPreview.changedRegion(before, after));
+    }
+
+    @Test
+    public void scalesLargeImagesOffTheEdt() throws Exception {
+        CameraPreview preview = new CameraPreview(300, 225);
+        BufferedImage large = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = large.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 4000, 3000);
+        g.dispose();
+
+        preview.setImage(large);
+        BufferedImage shown = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (shown == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            BufferedImage[] rendered = new BufferedImage[1];
+            SwingUtilities.invokeAndWait(() -> {
+                rendered[0] = new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB);
+                Graphics2D rg = rendered[0].createGraphics();
+                preview.setSize(300, 225);
+                preview.paint(rg);
+                rg.dispose();
+            });
+            if ((rendered[0].getRGB(150, 112) >> 16 & 0xFF) > 200) {
+                shown = rendered[0];
+            }
+        }
+        assertNotNull(shown);
+        //white letterbox would appear if the aspect ratio were wrong; 4:3 fills 300x225 exactly
+        assertTrue((shown.getRGB(1, 1) >> 16 & 0xFF) > 200);
+    }
+}
@@ -0,0 +1,208 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Durability;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.RepositorySnapshot;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorCapacityExceededException;
+import com.udacity.catpoint.security.service.SensorCapacityPolicy;
+import com.udacity.catpoint.telemetry.metrics.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fills a home with sensors through the whole stack (SecurityService, the snapshot repository,
+ * its file and the sensor table) and bounds memory per sensor and latency per event. Homes of
+ * 10,000 sensors are checked on every build; the scalability profile adds 1,000,000:
+ * <pre>
+ * mvn -pl securityService -am -Pscalability test -Dtest=SensorScalabilityTest
+ * </pre>
+ */
+public class SensorScalabilityTest {
+
+    private static final int EVENTS = 100_000;
+    private static final int ALARM_TRANSITIONS = 20;
+    //bounds allow this many times the README figures: sizes barely move between runs, timings
+    //move with whatever else the build machine is doing
+    private static final int SIZE_MARGIN = 2;
+    private static final int TIME_MARGIN = 3;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void homesScaleToConfiguredSensorCounts() throws Exception {
+        for (String count : System.getProperty("catpoint.scale.sensors", "10000").split(",")) {
+            measure(Integer.parseInt(count.trim()));
+        }
+    }
+
+    @Test
+    public void capacityPolicyLimitsSensors() throws Exception {
+        Path file = emptySnapshot("limited.snapshot");
+        try (PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(file)) {
+            SecurityService securityService = new SecurityService(repository, (image, confidence) -> false);
+            securityService.setCapacityPolicy(SensorCapacityPolicy.BASIC);
+            Sensor first = new Sensor("Sensor 0", SensorType.DOOR);
+            securityService.addSensor(first);
+            for (int i = 1; i < 4; i++) {
+                securityService.addSensor(new Sensor("Sensor " + i, SensorType.DOOR));
+            }
+
+            SensorCapacityExceededException e = assertThrows(SensorCapacityExceededException.class,
+                    () -> securityService.addSensor(new Sensor("Sensor 4", SensorType.DOOR)));
+            assertEquals(SensorCapacityPolicy.BASIC, e.getPolicy());
+            //adding a sensor that is already there is not growing the home
+            securityService.addSensor(first);
+            assertEquals(4, securityService.getSensorCount());
+
+            securityService.setCapacityPolicy(SensorCapacityPolicy.forTier("premium"));
+            securityService.addSensor(new Sensor("Sensor 4", SensorType.DOOR));
+            assertEquals(5, securityService.getSensorCount());
+        }
+    }
+
+    private void measure(int sensors) throws Exception {
+        Path file = emptySnapshot("home-" + sensors + ".snapshot");
+        long heapBefore = usedHeapAfterGc();
+
+        //write-behind with a long interval, so the bulk add measures the service and not the disk
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                file, Durability.WRITE_BEHIND, Duration.ofHours(1), Integer.MAX_VALUE);
+        SecurityService securityService = new SecurityService(repository, (image, confidence) -> false);
+        securityService.setCapacityPolicy(new SensorCapacityPolicy("Test", sensors));
+        long[] idHigh = new long[sensors];
+        long[] idLow = new long[sensors];
+        SensorType[] types = SensorType.values();
+        long start = System.nanoTime();
+        for (int i = 0; i < sensors; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, types[i % types.length]);
+            securityService.addSensor(sensor);
+            idHigh[i] = sensor.getSensorId().getMostSignificantBits();
+            idLow[i] = sensor.getSensorId().getLeastSignificantBits();
+        }
+        long addNanos = System.nanoTime() - start;
+        assertThrows(SensorCapacityExceededException.class,
+                () -> securityService.addSensor(new Sensor("One too many", SensorType.DOOR)));
+        long bytesPerSensor = (usedHeapAfterGc() - heapBefore) / sensors;
+
+        //sensor events while disarmed, the steady state of a busy home
+        SplittableRandom random = new SplittableRandom(42);
+        LatencyHistogram eventLatency = new LatencyHistogram();
+        for (int i = 0; i < EVENTS; i++) {
+            int index = random.nextInt(sensors);
+            long eventStart = System.nanoTime();
+            assertTrue(securityService.changeSensorActivationStatus(idHigh[index], idLow[index], random.nextBoolean()));
+            eventLatency.recordSince(eventStart);
+        }
+        LatencyHistogram.Snapshot events = eventLatency.snapshot();
+
+        //alarm transitions ask the repository whether any sensor is active
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        LatencyHistogram transitionLatency = new LatencyHistogram();
+        for (int i = 0; i < ALARM_TRANSITIONS; i++) {
+            int index = random.nextInt(sensors);
+            long transitionStart = System.nanoTime();
+            securityService.changeSensorActivationStatus(idHigh[index], idLow[index], true);
+            securityService.changeSensorActivationStatus(idHigh[index], idLow[index], false);
+            transitionLatency.recordSince(transitionStart);
+            assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        }
+
+        //with zones, the same transitions only look at the state of the sensor's zone
+        securityService.enableZones();
+        LatencyHistogram zonedLatency = new LatencyHistogram();
+        for (int i = 0; i < ALARM_TRANSITIONS; i++) {
+            int index = random.nextInt(sensors);
+            long transitionStart = System.nanoTime();
+            securityService.changeSensorActivationStatus(idHigh[index], idLow[index], true);
+            securityService.changeSensorActivationStatus(idHigh[index], idLow[index], false);
+            zonedLatency.recordSince(transitionStart);
+            assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        }
+
+        start = System.nanoTime();
+        repository.flush();
+        long flushNanos = System.nanoTime() - start;
+        long fileBytes = Files.size(file);
+
+        SensorTableModel table = new SensorTableModel();
+        start = System.nanoTime();
+        table.reload(securityService.getSensors());
+        for (int row = 0; row < 50; row++) {
+            table.getValueAt(row % table.getRowCount(), 2);
+        }
+        long tableNanos = System.nanoTime() - start;
+        assertEquals(sensors, table.getRowCount());
+        repository.close();
+
+        start = System.nanoTime();
+        try (PretendDatabaseSecurityRepositoryImpl reopened = new PretendDatabaseSecurityRepositoryImpl(file)) {
+            assertEquals(sensors, reopened.getSensorCount());
+            assertNotNull(reopened.findSensor(idHigh[sensors / 2], idLow[sensors / 2]));
+        }
+        long reopenNanos = System.nanoTime() - start;
+
+        //the figures in README.md, from the slower end of each range
+        assertAtMost(bytesPerSensor, SIZE_MARGIN * figure(sensors, 240, 220), "heap bytes per sensor");
+        assertAtMost(fileBytes / sensors, SIZE_MARGIN * figure(sensors, 38, 40), "file bytes per sensor");
+        assertAtMost(addNanos / sensors, TIME_MARGIN * figure(sensors, 30_000, 2_200), "add");
+        assertAtMost(events.getValueAtPercentile(50), TIME_MARGIN * figure(sensors, 1_500, 900), "event p50");
+        assertAtMost(events.getValueAtPercentile(99), TIME_MARGIN * figure(sensors, 4_000, 1_600), "event p99");
+        //the repository counts active sensors, so unzoned transitions no longer grow with the home
+        assertAtMost(transitionLatency.snapshot().getValueAtPercentile(50), TIME_MARGIN * figure(sensors, 9_000, 5_000), "transition pair p50");
+        assertAtMost(zonedLatency.snapshot().getValueAtPercentile(50), TIME_MARGIN * figure(sensors, 10_000, 7_500), "zoned transition pair p50");
+        //whole-home operations are per sensor, so other sizes can be checked too
+        assertAtMost(flushNanos / sensors, TIME_MARGIN * figure(sensors, 105_000_000 / 10_000, 1_400_000_000 / 1_000_000), "snapshot write per sensor");
+        assertAtMost(tableNanos / sensors, TIME_MARGIN * figure(sensors, 9_000_000 / 10_000, 450_000_000 / 1_000_000), "table reload per sensor");
+        assertAtMost(reopenNanos, TIME_MARGIN * figure(sensors, 5_000_000, 1_000_000), "reopen");
+    }
+
+    /**
+     * Picks the README column for a home of this size: the 1,000,000 column for homes that
+     * large, otherwise the 10,000 column.
+     */
+    private static long figure(int sensors, long tenThousand, long million) {
+        return sensors < 1_000_000 ? tenThousand : million;
+    }
+
+    private static void assertAtMost(long measured, long bound, String what) {
+        assertTrue(measured <= bound, what + " " + measured + ", expected at most " + bound);
+    }
+
+    private Path emptySnapshot(String name) throws Exception {
+        Path file = dir.resolve(name);
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, Collections.emptyList());
+        return file;
+    }
+
+    /**
+     * Collects until the heap stops shrinking, so garbage left by earlier tests doesn't count.
+     */
+    private static long usedHeapAfterGc() throws InterruptedException {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long now = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            if (now > used - used / 100) {
+                return Math.min(now, used);
+            }
+            used = now;
+        }
+        return used;
+    }
+}
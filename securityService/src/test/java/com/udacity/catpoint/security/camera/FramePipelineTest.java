@@ -0,0 +1,241 @@
+package com.udacity.catpoint.security.camera;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FramePipelineTest {
+
+    //the fake classifier sees a cat in any frame whose top-left pixel is mostly red
+    private static final ImageService RED_IS_CAT = (image, confidence) -> (image.getRGB(0, 0) >> 16 & 0xFF) > 200;
+
+    private final AtomicInteger classified = new AtomicInteger();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final ImageService countingRedIsCat = (image, confidence) -> {
+        classified.incrementAndGet();
+        return RED_IS_CAT.imageContainsCat(image, confidence);
+    };
+
+    private SecurityService securityService = new SecurityService(new FakeSecurityRepository(), countingRedIsCat);
+    private FramePipeline pipeline = new FramePipeline(securityService, countingRedIsCat, 2, 4, 64);
+    private ServerSocket mjpegServer;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        pipeline.close();
+        if (mjpegServer != null) {
+            mjpegServer.close();
+        }
+    }
+
+    @Test
+    public void directoryFramesRaiseAlarmWhenArmedHome() throws Exception {
+        Path root = Files.createTempDirectory("cameras");
+        Path porch = Files.createDirectory(root.resolve("porch"));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        pipeline.start();
+        pipeline.addSource(new DirectoryCameraSource(root));
+
+        Path partial = porch.resolve(".frame-1.jpg");
+        Files.write(partial, jpeg(Color.RED));
+        Files.move(partial, porch.resolve("frame-1.jpg"), StandardCopyOption.ATOMIC_MOVE);
+
+        awaitTrue(() -> securityService.getAlarmStatus() == AlarmStatus.ALARM);
+    }
+
+    @Test
+    public void directorySourcePicksUpNewCameras() throws Exception {
+        Path root = Files.createTempDirectory("cameras");
+        pipeline.start();
+        pipeline.addSource(new DirectoryCameraSource(root));
+
+        //written straight away, racing the watcher registering the new camera directory
+        Path garage = Files.createDirectory(root.resolve("garage"));
+        Path partial = garage.resolve("frame-1.jpg.tmp");
+        Files.write(partial, jpeg(Color.BLUE));
+        Files.move(partial, garage.resolve("frame-1.jpg"), StandardCopyOption.ATOMIC_MOVE);
+
+        awaitTrue(() -> classified.get() == 1);
+    }
+
+    @Test
+    public void catStaysDetectedWhileAnyCameraSeesOne() {
+        securityService.applyImageVerdict("porch", true);
+        securityService.applyImageVerdict("garage", true);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        securityService.applyImageVerdict("porch", false);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        securityService.applyImageVerdict("garage", false);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void frameRateCapDropsExcessFrames() throws Exception {
+        byte[][] frames = {jpeg(Color.BLUE), jpeg(Color.GREEN)};
+        long rateLimited = count("camera.framesRateLimited");
+        pipeline.setMaxFramesPerSecond("porch", 2);
+        pipeline.start();
+        for (int i = 0; i < 50; i++) {
+            pipeline.onFrame("porch", frames[i % 2]);
+        }
+
+        //the cap is applied as frames arrive, so only the first one is still in the pipeline
+        assertEquals(49, count("camera.framesRateLimited") - rateLimited);
+        awaitTrue(() -> classified.get() == 1);
+    }
+
+    @Test
+    public void stillFramesAreNotReclassified() throws Exception {
+        long rateLimited = count("camera.framesRateLimited");
+        long still = count("camera.framesStill");
+        long updated = updated();
+        //every frame sent ends up rate limited, judged still or through the update stage
+        BooleanSupplier settled = () -> count("camera.framesRateLimited") - rateLimited
+                + count("camera.framesStill") - still + updated() - updated == sent.get();
+        pipeline.setDefaultMaxFramesPerSecond(1000);
+        pipeline.start();
+        byte[] frame = jpeg(Color.BLUE);
+        for (int i = 0; i < 20; i++) {
+            send("porch", frame);
+            //one at a time, so the decode threads cannot reorder them
+            awaitTrue(settled);
+        }
+        send("porch", jpeg(Color.RED));
+
+        awaitTrue(settled);
+        assertEquals(2, classified.get());
+    }
+
+    @Test
+    public void mjpegStreamFramesAreClassified() throws Exception {
+        byte[][] frames = {jpeg(Color.BLUE), jpeg(Color.GREEN), jpeg(Color.RED)};
+        URI uri = serveMjpeg(frames);
+        pipeline.setDefaultMaxFramesPerSecond(1000);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        pipeline.start();
+        pipeline.addSource(new MjpegCameraSource("porch", uri));
+
+        awaitTrue(() -> securityService.getAlarmStatus() == AlarmStatus.ALARM);
+        assertEquals(3, classified.get());
+    }
+
+    @Test
+    public void dropOldestQueueKeepsNewestItems() throws InterruptedException {
+        DropOldestQueue<Integer> queue = new DropOldestQueue<>(3);
+        for (int i = 1; i <= 5; i++) {
+            queue.offer(i);
+        }
+        assertEquals(2, queue.getDropped());
+        assertEquals(Integer.valueOf(3), queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(Integer.valueOf(4), queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(Integer.valueOf(5), queue.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void dropOldestQueueHandsOverWhatItDrops() {
+        List<Integer> dropped = new ArrayList<>();
+        DropOldestQueue<Integer> queue = new DropOldestQueue<>(2, dropped::add);
+        for (int i = 1; i <= 5; i++) {
+            queue.offer(i);
+        }
+        assertEquals(List.of(1, 2, 3), dropped);
+    }
+
+    /**
+     * Serves the frames once as a multipart/x-mixed-replace stream, the last one without a
+     * Content-Length header, then keeps the connection open.
+     */
+    private URI serveMjpeg(byte[][] frames) throws IOException {
+        mjpegServer = new ServerSocket(0, 5, InetAddress.getLoopbackAddress());
+        Thread server = new Thread(() -> {
+            try (Socket socket = mjpegServer.accept()) {
+                socket.getInputStream().read(new byte[4096]);
+                OutputStream out = socket.getOutputStream();
+                out.write(("HTTP/1.1 200 OK\r\n"
+                        + "Content-Type: multipart/x-mixed-replace; boundary=frame\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                for (int i = 0; i < frames.length; i++) {
+                    String headers = "--frame\r\nContent-Type: image/jpeg\r\n"
+                            + (i < frames.length - 1 ? "Content-Length: " + frames[i].length + "\r\n" : "") + "\r\n";
+                    out.write(headers.getBytes(StandardCharsets.ISO_8859_1));
+                    out.write(frames[i]);
+                    out.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                    Thread.sleep(20);
+                }
+                Thread.sleep(5000);
+            } catch (IOException | InterruptedException e) {
+                //test finished
+            }
+        }, "mjpeg-stub");
+        server.setDaemon(true);
+        server.start();
+        return URI.create("http://127.0.0.1:" + mjpegServer.getLocalPort() + "/stream");
+    }
+
+    private void send(String cameraId, byte[] frame) {
+        sent.incrementAndGet();
+        pipeline.onFrame(cameraId, frame);
+    }
+
+    private static long count(String counter) {
+        return MetricsRegistry.getDefault().counter(counter).get();
+    }
+
+    private static long updated() {
+        return MetricsRegistry.getDefault().histogram("camera.frameLatency").getCount();
+    }
+
+    private static byte[] jpeg(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 64, 48);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.udacity.catpoint.security.data;
+
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingSecurityRepositoryTest {
+
+    @Test
+    public void eventsDoNotReadTheBackingRepository() {
+        CountingRepository backend = new CountingRepository();
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        backend.addSensor(door);
+        CachingSecurityRepository cache = new CachingSecurityRepository(backend);
+        SecurityService securityService = new SecurityService(cache, (image, confidence) -> false);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.getAlarmStatus();
+        int readsAfterWarmup = backend.reads;
+
+        for (int i = 0; i < 100; i++) {
+            Sensor sensor = cache.findSensor(door.getSensorId().getMostSignificantBits(), door.getSensorId().getLeastSignificantBits());
+            securityService.changeSensorActivationStatus(sensor, i % 2 == 0);
+        }
+
+        assertEquals(readsAfterWarmup, backend.reads);
+        assertEquals(cache.getAlarmStatus(), backend.getAlarmStatus());
+        assertEquals(Boolean.FALSE, backend.getSensors().iterator().next().getActive());
+    }
+
+    @Test
+    public void sensorsAreHandedOutAsAReadOnlyCopy() {
+        CachingSecurityRepository cache = new CachingSecurityRepository(new CountingRepository());
+        cache.addSensor(new Sensor("Front door", SensorType.DOOR));
+        Set<Sensor> sensors = cache.getSensors();
+
+        cache.addSensor(new Sensor("Back window", SensorType.WINDOW));
+        assertEquals(1, sensors.size());
+        assertThrows(UnsupportedOperationException.class, sensors::clear);
+        assertEquals(2, cache.getSensors().size());
+    }
+
+    @Test
+    public void activeSensorsAreCountedFromTheCache() {
+        CountingRepository backend = new CountingRepository();
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        door.setActive(true);
+        backend.addSensor(door);
+        CachingSecurityRepository cache = new CachingSecurityRepository(backend, Duration.ofHours(1));
+        assertEquals(1, cache.getActiveSensorCount());
+        int readsAfterWarmup = backend.reads;
+
+        Sensor window = new Sensor("Back window", SensorType.WINDOW);
+        window.setActive(true);
+        cache.addSensor(window);
+        door.setActive(false);
+        cache.updateSensor(door);
+        cache.updateSensor(window);
+        assertEquals(1, cache.getActiveSensorCount());
+        cache.removeSensor(window);
+        assertEquals(0, cache.getActiveSensorCount());
+        assertEquals(readsAfterWarmup, backend.reads);
+        cache.close();
+    }
+
+    @Test
+    public void writeThroughPassesEveryWriteOn() {
+        CountingRepository backend = new CountingRepository();
+        CachingSecurityRepository cache = new CachingSecurityRepository(backend);
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        cache.addSensor(door);
+        door.setActive(true);
+        cache.updateSensor(door);
+        cache.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        assertEquals(2, backend.sensorWrites);
+        assertEquals(AlarmStatus.PENDING_ALARM, backend.getAlarmStatus());
+        assertTrue(backend.getSensors().iterator().next().getActive());
+    }
+
+    @Test
+    public void writeBehindCoalescesWritesIntoOneBatch() {
+        CountingRepository backend = new CountingRepository();
+        CachingSecurityRepository cache = new CachingSecurityRepository(backend, Duration.ofHours(1));
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Back window", SensorType.WINDOW);
+        cache.addSensor(door);
+        cache.addSensor(window);
+        for (int i = 0; i < 50; i++) {
+            door.setActive(i % 2 == 0);
+            cache.updateSensor(door);
+            cache.setAlarmStatus(i % 2 == 0 ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM);
+        }
+        cache.removeSensor(window);
+
+        //readers see every write straight away, the backend sees none until the flush
+        assertEquals(1, cache.getSensors().size());
+        assertEquals(AlarmStatus.NO_ALARM, cache.getAlarmStatus());
+        assertEquals(0, backend.sensorWrites);
+
+        cache.flush();
+        assertEquals(1, backend.batches);
+        assertEquals(1, backend.sensorWrites);
+        assertEquals(1, backend.getSensors().size());
+        assertFalse(backend.getSensors().iterator().next().getActive());
+        assertEquals(AlarmStatus.NO_ALARM, backend.getAlarmStatus());
+    }
+
+    @Test
+    public void writeBehindFlushesOnItsOwn() throws InterruptedException {
+        CountingRepository backend = new CountingRepository();
+        CachingSecurityRepository cache = new CachingSecurityRepository(backend, Duration.ofMillis(20));
+        cache.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (backend.getArmingStatus() != ArmingStatus.ARMED_AWAY && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(ArmingStatus.ARMED_AWAY, backend.getArmingStatus());
+        cache.close();
+    }
+
+    @Test
+    public void failedFlushKeepsWritesQueued() {
+        CountingRepository backend = new CountingRepository();
+        CachingSecurityRepository cache = new CachingSecurityRepository(backend, Duration.ofHours(1));
+        cache.addSensor(new Sensor("Front door", SensorType.DOOR));
+        backend.failWrites = true;
+        assertThrows(IllegalStateException.class, cache::flush);
+
+        backend.failWrites = false;
+        cache.close();
+        assertEquals(1, backend.getSensors().size());
+    }
+
+    @Test
+    public void invalidateReloadsFromTheBackingRepository() {
+        CountingRepository backend = new CountingRepository();
+        CachingSecurityRepository cache = new CachingSecurityRepository(backend);
+        assertTrue(cache.getSensors().isEmpty());
+
+        backend.addSensor(new Sensor("Added elsewhere", SensorType.MOTION));
+        backend.setAlarmStatus(AlarmStatus.ALARM);
+        assertTrue(cache.getSensors().isEmpty());
+
+        cache.invalidate();
+        assertEquals(1, cache.getSensors().size());
+        assertEquals(AlarmStatus.ALARM, cache.getAlarmStatus());
+    }
+
+    private static class CountingRepository extends FakeSecurityRepository {
+        int reads;
+        int sensorWrites;
+        int batches;
+        boolean failWrites;
+
+        @Override
+        public void addSensor(Sensor sensor) {
+            check();
+            sensorWrites++;
+            super.addSensor(sensor);
+        }
+
+        @Override
+        public void updateSensor(Sensor sensor) {
+            check();
+            sensorWrites++;
+            super.updateSensor(sensor);
+        }
+
+        @Override
+        public void updateSensors(Collection<Sensor> sensors) {
+            check();
+            batches++;
+            super.updateSensors(sensors);
+        }
+
+        @Override
+        public Set<Sensor> getSensors() {
+            reads++;
+            return super.getSensors();
+        }
+
+        @Override
+        public AlarmStatus getAlarmStatus() {
+            reads++;
+            return super.getAlarmStatus();
+        }
+
+        @Override
+        public ArmingStatus getArmingStatus() {
+            reads++;
+            return super.getArmingStatus();
+        }
+
+        private void check() {
+            if (failWrites) {
+                throw new IllegalStateException("backend down");
+            }
+        }
+    }
+}
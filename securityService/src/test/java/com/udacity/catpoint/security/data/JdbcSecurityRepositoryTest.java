@@ -0,0 +1,107 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcSecurityRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private String url;
+    private JdbcSecurityRepository repository;
+
+    @BeforeEach
+    void init() {
+        url = "jdbc:h2:file:" + dir.resolve("catpoint").toAbsolutePath();
+        repository = new JdbcSecurityRepository(url);
+    }
+
+    @AfterEach
+    void close() {
+        repository.close();
+    }
+
+    @Test
+    public void newDatabaseStartsDisarmedWithoutSensors() {
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+        assertTrue(repository.getSensors().isEmpty());
+    }
+
+    @Test
+    public void stateSurvivesReopening() {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Kitchen window", SensorType.WINDOW);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        window.setActive(true);
+        repository.updateSensor(window);
+        repository.removeSensor(door);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.close();
+
+        repository = new JdbcSecurityRepository(url);
+        assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        assertEquals(1, repository.getSensors().size());
+        Sensor stored = repository.getSensors().iterator().next();
+        assertEquals(window.getSensorId(), stored.getSensorId());
+        assertEquals("Kitchen window", stored.getName());
+        assertEquals(SensorType.WINDOW, stored.getSensorType());
+        assertTrue(stored.getActive());
+    }
+
+    @Test
+    public void disarmingStoresBothStatusesTogether() {
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        repository.setAlarmAndArmingStatus(AlarmStatus.NO_ALARM, ArmingStatus.DISARMED);
+        repository.close();
+
+        repository = new JdbcSecurityRepository(url);
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+    }
+
+    @Test
+    public void findsSensorsByIdAndType() {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor motion = new Sensor("Hallway", SensorType.MOTION);
+        repository.updateSensors(Arrays.asList(door, motion));
+
+        UUID id = motion.getSensorId();
+        assertEquals(motion, repository.findSensor(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        assertNull(repository.findSensor(id.getMostSignificantBits(), id.getLeastSignificantBits() + 1));
+        assertEquals(1, repository.getSensorsOfType(SensorType.DOOR).size());
+        assertTrue(repository.getSensorsOfType(SensorType.DOOR).contains(door));
+    }
+
+    @Test
+    public void batchUpdatesAreAllOrNothing() {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.DOOR));
+        }
+        repository.updateSensors(sensors);
+        assertEquals(100, repository.getSensors().size());
+
+        sensors.forEach(sensor -> sensor.setActive(true));
+        //a name longer than the column can't be stored, which must roll back the whole batch
+        sensors.get(50).setName("x".repeat(300));
+        assertThrows(RepositoryException.class, () -> repository.updateSensors(sensors));
+        assertTrue(repository.getSensors().stream().noneMatch(Sensor::getActive));
+    }
+}
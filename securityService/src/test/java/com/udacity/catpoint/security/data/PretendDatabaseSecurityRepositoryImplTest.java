@@ -0,0 +1,179 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PretendDatabaseSecurityRepositoryImplTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void writeBehindKeepsChangesInMemoryUntilFlushed() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, Collections.singleton(door));
+        byte[] before = Files.readAllBytes(file);
+
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                file, Durability.WRITE_BEHIND, Duration.ofHours(1), Integer.MAX_VALUE);
+        Sensor sensor = repository.findSensor(door.getSensorId().getMostSignificantBits(), door.getSensorId().getLeastSignificantBits());
+        for (int i = 0; i < 11; i++) {
+            sensor.setActive(i % 2 == 0);
+            repository.updateSensor(sensor);
+        }
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        assertArrayEquals(before, Files.readAllBytes(file));
+
+        repository.close();
+        PretendDatabaseSecurityRepositoryImpl reopened = new PretendDatabaseSecurityRepositoryImpl(file);
+        assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+        assertTrue(reopened.getSensors().iterator().next().getActive());
+    }
+
+    @Test
+    public void sensorsAreHandedOutAsAReadOnlyCopy() throws IOException {
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(emptySnapshot("state.snapshot"));
+        repository.addSensor(new Sensor("Front door", SensorType.DOOR));
+        Set<Sensor> sensors = repository.getSensors();
+
+        repository.addSensor(new Sensor("Back window", SensorType.WINDOW));
+        assertEquals(1, sensors.size());
+        assertThrows(UnsupportedOperationException.class, sensors::clear);
+        assertEquals(2, repository.getSensors().size());
+        repository.close();
+    }
+
+    @Test
+    public void activeSensorsAreCountedWithoutMaterializing() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Back window", SensorType.WINDOW);
+        door.setActive(true);
+        window.setActive(true);
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, Set.of(door, window));
+
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(file);
+        Sensor sensor = repository.findSensor(door.getSensorId().getMostSignificantBits(), door.getSensorId().getLeastSignificantBits());
+        sensor.setActive(false);
+        repository.updateSensor(sensor);
+        assertEquals(1, repository.getActiveSensorCount());
+
+        sensor.setActive(true);
+        repository.updateSensor(sensor);
+        repository.updateSensor(sensor);
+        assertEquals(2, repository.getActiveSensorCount());
+        Sensor motion = new Sensor("Hall", SensorType.MOTION);
+        motion.setActive(true);
+        repository.addSensor(motion);
+        repository.removeSensor(sensor);
+        assertEquals(2, repository.getActiveSensorCount());
+        repository.getSensors().forEach(s -> s.setActive(false));
+        repository.updateSensors(repository.getSensors());
+        assertEquals(0, repository.getActiveSensorCount());
+        repository.close();
+    }
+
+    @Test
+    public void writeBehindFlushesOnceEnoughChangesPileUp() throws Exception {
+        Path file = emptySnapshot("state.snapshot");
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                file, Durability.WRITE_BEHIND, Duration.ofHours(1), 10);
+        for (int i = 0; i < 10; i++) {
+            repository.addSensor(new Sensor("Sensor " + i, SensorType.WINDOW));
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sensorsOnDisk(file) < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(10, sensorsOnDisk(file));
+        repository.close();
+    }
+
+    @Test
+    public void writeBehindFlushesAfterTheInterval() throws Exception {
+        Path file = emptySnapshot("state.snapshot");
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                file, Durability.WRITE_BEHIND, Duration.ofMillis(20), Integer.MAX_VALUE);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (RepositorySnapshot.open(file).getAlarmStatus() != AlarmStatus.PENDING_ALARM && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(AlarmStatus.PENDING_ALARM, RepositorySnapshot.open(file).getAlarmStatus());
+        repository.close();
+    }
+
+    @Test
+    public void synchronousLevelsWriteBeforeReturning() throws IOException {
+        for (Durability durability : new Durability[]{Durability.FSYNC, Durability.WRITE_THROUGH}) {
+            Path file = emptySnapshot(durability + ".snapshot");
+            PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(
+                    file, durability, Duration.ofHours(1), Integer.MAX_VALUE);
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+            assertEquals(ArmingStatus.ARMED_HOME, RepositorySnapshot.open(file).getArmingStatus());
+            repository.close();
+        }
+    }
+
+    /**
+     * Starts from an empty snapshot, so nothing is migrated from this machine's preferences.
+     */
+    @Test
+    public void damagedSnapshotsAreKeptBeforeAnythingIsWritten() throws IOException {
+        Path headerDamaged = dir.resolve("header.snapshot");
+        RepositorySnapshot.write(headerDamaged, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, Collections.emptyList());
+        byte[] header = damage(headerDamaged, 12);
+        new PretendDatabaseSecurityRepositoryImpl(headerDamaged).close();
+        assertArrayEquals(header, Files.readAllBytes(setAside(headerDamaged)));
+
+        Path sensorsDamaged = dir.resolve("sensors.snapshot");
+        RepositorySnapshot.write(sensorsDamaged, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED,
+                Collections.singleton(new Sensor("Front door", SensorType.DOOR)));
+        byte[] sensors = damage(sensorsDamaged, (int) Files.size(sensorsDamaged) - 1);
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(sensorsDamaged);
+        repository.addSensor(new Sensor("Back window", SensorType.WINDOW));
+        repository.close();
+        assertArrayEquals(sensors, Files.readAllBytes(setAside(sensorsDamaged)));
+    }
+
+    private static byte[] damage(Path file, int offset) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[offset]++;
+        Files.write(file, bytes);
+        return bytes;
+    }
+
+    private static Path setAside(Path file) throws IOException {
+        try (Stream<Path> siblings = Files.list(file.getParent())) {
+            return siblings.filter(f -> f.getFileName().toString().startsWith(file.getFileName() + ".corrupt-"))
+                    .findFirst()
+                    .orElseThrow(() -> new AssertionError("no copy of " + file + " was kept"));
+        }
+    }
+
+    private Path emptySnapshot(String name) throws IOException {
+        Path file = dir.resolve(name);
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, Collections.emptyList());
+        return file;
+    }
+
+    private static int sensorsOnDisk(Path file) throws IOException {
+        RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+        return snapshot.size();
+    }
+}
@@ -0,0 +1,213 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RepositorySnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void snapshotRoundTripsState() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        List<Sensor> sensors = sensors(100);
+        sensors.get(7).setActive(true);
+        sensors.get(3).setName("Kitchen window \u00e9");
+        RepositorySnapshot.write(file, AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_AWAY, sensors);
+
+        RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+        assertEquals(AlarmStatus.PENDING_ALARM, snapshot.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_AWAY, snapshot.getArmingStatus());
+        assertEquals(100, snapshot.size());
+        for (Sensor expected : sensors) {
+            UUID id = expected.getSensorId();
+            Sensor actual = snapshot.sensorAt(snapshot.indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            assertEquals(id, actual.getSensorId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getSensorType(), actual.getSensorType());
+            assertEquals(expected.getActive(), actual.getActive());
+        }
+        assertEquals(-1, snapshot.indexOf(1, 2));
+        assertEquals(100, snapshot.readSensors().size());
+    }
+
+    @Test
+    public void sensorsKeepTheirZones() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        List<Sensor> sensors = sensors(10);
+        sensors.get(1).setZone("perimeter");
+        sensors.get(2).setZone("upstairs");
+        sensors.get(3).setZone("perimeter");
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, sensors);
+
+        RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+        for (Sensor expected : sensors) {
+            UUID id = expected.getSensorId();
+            int index = snapshot.indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            assertEquals(expected.getZone(), snapshot.sensorAt(index).getZone());
+            assertTrue(snapshot.matches(index, expected));
+        }
+
+        //a sensor that moved zone can't be patched in place
+        sensors.get(1).setZone(null);
+        UUID moved = sensors.get(1).getSensorId();
+        assertFalse(snapshot.matches(snapshot.indexOf(moved.getMostSignificantBits(), moved.getLeastSignificantBits()), sensors.get(1)));
+
+        //patching active flags keeps the zones
+        sensors.get(2).setActive(true);
+        snapshot.writeWith(file, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME, List.of(sensors.get(2)), false);
+        RepositorySnapshot patched = RepositorySnapshot.open(file);
+        UUID upstairs = sensors.get(2).getSensorId();
+        Sensor stored = patched.sensorAt(patched.indexOf(upstairs.getMostSignificantBits(), upstairs.getLeastSignificantBits()));
+        assertEquals("upstairs", stored.getZone());
+        assertTrue(stored.getActive());
+        assertEquals(10, patched.readSensors().size());
+    }
+
+    @Test
+    public void snapshotCopiedToHeapNoLongerNeedsItsFile() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        List<Sensor> sensors = sensors(20);
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME, sensors);
+        RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+
+        snapshot.copyToHeap();
+        snapshot.copyToHeap();
+        RepositorySnapshot.write(file, AlarmStatus.ALARM, ArmingStatus.DISARMED, sensors(3));
+        Files.delete(file);
+
+        UUID id = sensors.get(5).getSensorId();
+        assertEquals(sensors.get(5).getName(), snapshot.sensorAt(snapshot.indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits())).getName());
+        assertEquals(20, snapshot.readSensors().size());
+        snapshot.writeWith(file, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_AWAY, Collections.emptyList(), false);
+        assertEquals(20, RepositorySnapshot.open(file).size());
+    }
+
+    @Test
+    public void versionOneSnapshotsAreReadIntoTheDefaultZone() throws IOException {
+        Path file = dir.resolve("old.snapshot");
+        UUID id = UUID.randomUUID();
+        byte[] name = "Front door".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(RepositorySnapshot.HEADER_BYTES + 24 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        out.position(RepositorySnapshot.HEADER_BYTES);
+        out.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).putInt(0).putShort((short) name.length)
+                .put((byte) SensorType.DOOR.ordinal()).put((byte) 1).put(name);
+        out.putInt(0, RepositorySnapshot.MAGIC).putShort(4, (short) 1)
+                .put(8, (byte) AlarmStatus.NO_ALARM.ordinal()).put(9, (byte) ArmingStatus.ARMED_AWAY.ordinal())
+                .putInt(12, 1).putInt(16, name.length).putInt(20, crc(out.array(), RepositorySnapshot.HEADER_BYTES));
+        out.putInt(RepositorySnapshot.HEADER_BYTES - 4, crc(Arrays.copyOf(out.array(), RepositorySnapshot.HEADER_BYTES - 4), 0));
+        Files.write(file, out.array());
+
+        RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+        List<Sensor> sensors = snapshot.readSensors();
+        assertEquals(1, sensors.size());
+        assertEquals("Front door", sensors.get(0).getName());
+        assertEquals(Sensor.DEFAULT_ZONE, sensors.get(0).getZone());
+        assertTrue(sensors.get(0).getActive());
+
+        //patching keeps the old layout, which is still readable
+        sensors.get(0).setActive(false);
+        snapshot.writeWith(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, sensors, false);
+        assertFalse(RepositorySnapshot.open(file).readSensors().get(0).getActive());
+    }
+
+    @Test
+    public void missingSnapshotOpensAsNull() throws IOException {
+        assertNull(RepositorySnapshot.open(dir.resolve("none.snapshot")));
+    }
+
+    @Test
+    public void damagedHeaderIsRejected() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, sensors(3));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[12]++;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> RepositorySnapshot.open(file));
+    }
+
+    @Test
+    public void damagedSensorDataIsOnlyDetectedWhenRead() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME, sensors(3));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1]++;
+        Files.write(file, bytes);
+
+        RepositorySnapshot snapshot = RepositorySnapshot.open(file);
+        assertEquals(ArmingStatus.ARMED_HOME, snapshot.getArmingStatus());
+        assertThrows(IOException.class, snapshot::readSensors);
+    }
+
+    @Test
+    public void repositoryFindsSensorsWithoutMaterializingThem() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        List<Sensor> sensors = sensors(1000);
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME, sensors);
+
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(file);
+        UUID id = sensors.get(500).getSensorId();
+        Sensor found = repository.findSensor(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        assertSame(found, repository.findSensor(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        found.setActive(true);
+        repository.updateSensor(found);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        //the handed out object survives materialization
+        assertTrue(repository.getSensors().contains(found));
+        assertSame(found, repository.getSensors().stream().filter(found::equals).findFirst().get());
+
+        PretendDatabaseSecurityRepositoryImpl reopened = new PretendDatabaseSecurityRepositoryImpl(file);
+        assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+        assertTrue(reopened.findSensor(id.getMostSignificantBits(), id.getLeastSignificantBits()).getActive());
+        assertEquals(1000, reopened.getSensors().size());
+    }
+
+    @Test
+    public void repositoryPersistsAddedAndRemovedSensors() throws IOException {
+        Path file = dir.resolve("state.snapshot");
+        RepositorySnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, Collections.emptyList());
+
+        PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl(file);
+        Sensor kept = new Sensor("Front door", SensorType.DOOR);
+        Sensor removed = new Sensor("Back door", SensorType.DOOR);
+        repository.addSensor(kept);
+        repository.addSensor(removed);
+        repository.removeSensor(removed);
+
+        PretendDatabaseSecurityRepositoryImpl reopened = new PretendDatabaseSecurityRepositoryImpl(file);
+        assertEquals(Collections.singleton(kept), reopened.getSensors());
+    }
+
+    private static List<Sensor> sensors(int count) {
+        List<Sensor> sensors = new ArrayList<>();
+        SensorType[] types = SensorType.values();
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        return sensors;
+    }
+
+    private static int crc(byte[] bytes, int offset) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, bytes.length - offset);
+        return (int) crc.getValue();
+    }
+}
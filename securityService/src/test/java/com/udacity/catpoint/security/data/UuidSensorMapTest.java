@@ -0,0 +1,80 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UuidSensorMapTest {
+
+    @Test
+    public void findsSensorsByTheHalvesOfTheirId() {
+        UuidSensorMap map = new UuidSensorMap();
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Back window", SensorType.WINDOW);
+        map.put(door);
+        map.put(window);
+
+        UUID id = door.getSensorId();
+        assertSame(door, map.get(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        assertSame(window, map.get(window.getSensorId()));
+        assertNull(map.get(UUID.randomUUID()));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void putReplacesTheSensorWithTheSameId() {
+        UuidSensorMap map = new UuidSensorMap();
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor renamed = new Sensor("Side door", SensorType.DOOR);
+        renamed.setSensorId(door.getSensorId());
+
+        assertNull(map.put(door));
+        assertSame(door, map.put(renamed));
+        assertSame(renamed, map.get(door.getSensorId()));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void setActiveChangesTheSensorInPlace() {
+        UuidSensorMap map = new UuidSensorMap();
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        map.put(door);
+        UUID id = door.getSensorId();
+
+        assertTrue(map.setActive(id.getMostSignificantBits(), id.getLeastSignificantBits(), true));
+        assertTrue(door.getActive());
+        assertFalse(map.setActive(id.getMostSignificantBits(), id.getLeastSignificantBits() + 1, true));
+    }
+
+    @Test
+    public void staysConsistentThroughCollidingAddsAndRemoves() {
+        //ids that differ only in a few low bits, so runs of neighbouring slots build up
+        Random random = new Random(42);
+        UuidSensorMap map = new UuidSensorMap();
+        Map<UUID, Sensor> expected = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            if (ids.isEmpty() || random.nextInt(3) != 0) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+                sensor.setSensorId(new UUID(7, random.nextInt(4096)));
+                ids.add(sensor.getSensorId());
+                assertEquals(expected.put(sensor.getSensorId(), sensor), map.put(sensor));
+            } else {
+                UUID id = ids.remove(random.nextInt(ids.size()));
+                assertEquals(expected.remove(id), map.remove(id));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<UUID, Sensor> entry : expected.entrySet()) {
+            assertSame(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertEquals(expected.size(), map.values().size());
+    }
+}
@@ -0,0 +1,262 @@
+package com.udacity.catpoint.security.notification;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.udacity.catpoint.security.api.HttpApiServer;
+import com.udacity.catpoint.security.api.HttpResponse;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationServiceTest {
+
+    private NotificationService service;
+
+    @AfterEach
+    public void closeService() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    public void alarmReachesEverySubscriberInBatches() throws Exception {
+        service = new NotificationService(10_000, 100, Duration.ofMillis(20), Duration.ofMinutes(5), 10, 3, Duration.ofMillis(10));
+        RecordingSink sink = new RecordingSink("test");
+        service.addSink(sink);
+        subscribe(sink, 2_500);
+
+        service.notify(AlarmStatus.ALARM);
+
+        awaitTrue(() -> sink.deliveredCount() == 2_500);
+        synchronized (sink) {
+            sink.batches.forEach(batch -> assertTrue(batch.size() <= 100));
+            assertTrue(sink.batches.size() <= 30, sink.batches.size() + " batches");
+            assertEquals("ALARM", sink.batches.get(0).get(0).getNotification().getType());
+        }
+    }
+
+    @Test
+    public void repeatsAreSentOnceUntilSomethingElseHappens() throws Exception {
+        service = new NotificationService(1000, 100, Duration.ofMillis(1), Duration.ofMinutes(5), 100, 3, Duration.ofMillis(10));
+        RecordingSink sink = new RecordingSink("test");
+        service.addSink(sink);
+        subscribe(sink, 1);
+
+        Notification stale = new Notification("SENSORS_STALE", "No signal from Front door", false, 0);
+        service.publish(stale);
+        service.publish(new Notification("SENSORS_STALE", "No signal from Front door", false, 1));
+        service.publish(new Notification("ALARM_CLEARED", "The alarm was cleared", false, 2));
+        service.publish(stale);
+
+        awaitTrue(() -> sink.deliveredCount() == 3);
+        Thread.sleep(50);
+        assertEquals(List.of("SENSORS_STALE", "ALARM_CLEARED", "SENSORS_STALE"), sink.types());
+    }
+
+    @Test
+    public void alarmAfterARateLimitedClearIsSent() throws Exception {
+        service = new NotificationService(1000, 100, Duration.ofMillis(1), Duration.ofMinutes(5), 1, 3, Duration.ofMillis(10));
+        RecordingSink sink = new RecordingSink("test");
+        service.addSink(sink);
+        subscribe(sink, 1);
+
+        service.notify(AlarmStatus.PENDING_ALARM);
+        service.notify(AlarmStatus.ALARM);
+        service.notify(AlarmStatus.NO_ALARM);
+        service.notify(AlarmStatus.ALARM);
+
+        awaitTrue(() -> sink.deliveredCount() == 3);
+        Thread.sleep(50);
+        assertEquals(List.of("PENDING_ALARM", "ALARM", "ALARM"), sink.types());
+    }
+
+    @Test
+    public void repeatsOfAbandonedDeliveriesAreSent() throws Exception {
+        service = new NotificationService(1000, 100, Duration.ofMillis(1), Duration.ofMinutes(5), 100, 1, Duration.ofMillis(5));
+        RecordingSink broken = new RecordingSink("broken");
+        broken.failuresLeft.set(1);
+        service.addSink(broken);
+        subscribe(broken, 1);
+
+        service.publish(new Notification("SENSORS_STALE", "No signal from Front door", false, 0));
+        awaitTrue(() -> broken.attempts.get() == 1);
+        Thread.sleep(50);
+        service.publish(new Notification("SENSORS_STALE", "No signal from Front door", false, 1));
+
+        awaitTrue(() -> broken.deliveredCount() == 1);
+        assertEquals(2, broken.attempts.get());
+    }
+
+    @Test
+    public void rateLimitHoldsBackAllButUrgentNotifications() throws Exception {
+        service = new NotificationService(1000, 100, Duration.ofMillis(1), Duration.ofMinutes(5), 3, 3, Duration.ofMillis(10));
+        RecordingSink sink = new RecordingSink("test");
+        service.addSink(sink);
+        subscribe(sink, 1);
+
+        for (int i = 0; i < 10; i++) {
+            service.publish(new Notification("PENDING_ALARM", "Sensor " + i, false, i));
+        }
+        service.publish(new Notification("ALARM", "The alarm is sounding", true, 10));
+
+        awaitTrue(() -> sink.deliveredCount() == 4);
+        Thread.sleep(50);
+        assertEquals(List.of("PENDING_ALARM", "PENDING_ALARM", "PENDING_ALARM", "ALARM"), sink.types());
+    }
+
+    @Test
+    public void failedDeliveriesAreRetriedWithBackoff() throws Exception {
+        service = new NotificationService(1000, 100, Duration.ofMillis(1), Duration.ofMinutes(5), 10, 4, Duration.ofMillis(20));
+        RecordingSink flaky = new RecordingSink("flaky");
+        flaky.failuresLeft.set(2);
+        service.addSink(flaky);
+        subscribe(flaky, 1);
+
+        long start = System.nanoTime();
+        service.notify(AlarmStatus.ALARM);
+
+        awaitTrue(() -> flaky.deliveredCount() == 1);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(3, flaky.attempts.get());
+        //two backoffs of at least 10ms and 20ms
+        assertTrue(elapsedMillis >= 30, "retried after " + elapsedMillis + "ms");
+    }
+
+    @Test
+    public void deliveriesAreDroppedAfterTheLastAttempt() throws Exception {
+        service = new NotificationService(1000, 100, Duration.ofMillis(1), Duration.ofMinutes(5), 10, 2, Duration.ofMillis(5));
+        RecordingSink broken = new RecordingSink("broken");
+        broken.failuresLeft.set(Integer.MAX_VALUE);
+        service.addSink(broken);
+        subscribe(broken, 1);
+
+        service.notify(AlarmStatus.ALARM);
+        awaitTrue(() -> broken.attempts.get() == 2);
+        Thread.sleep(100);
+        assertEquals(2, broken.attempts.get());
+        assertEquals(0, broken.deliveredCount());
+    }
+
+    @Test
+    public void slowSinkDoesNotHoldUpTheCallerOrOtherSinks() throws Exception {
+        service = new NotificationService(100, 10, Duration.ofMillis(1), Duration.ofMillis(0), 1_000_000, 3, Duration.ofMillis(10));
+        RecordingSink stuck = new RecordingSink("stuck");
+        stuck.gate = new CountDownLatch(1);
+        RecordingSink healthy = new RecordingSink("healthy");
+        service.addSink(stuck);
+        service.addSink(healthy);
+        subscribe(stuck, 10);
+        subscribe(healthy, 10);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            service.notify(i % 2 == 0 ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < 500, "notifying took " + elapsedMillis + "ms");
+
+        awaitTrue(() -> healthy.deliveredCount() >= 100);
+        stuck.gate.countDown();
+    }
+
+    @Test
+    public void webhookPostsOneArrayPerUrl() throws Exception {
+        List<JsonArray> posted = new ArrayList<>();
+        HttpApiServer receiver = new HttpApiServer(new InetSocketAddress("localhost", 0), request -> {
+            synchronized (posted) {
+                posted.add(new Gson().fromJson(request.getBodyAsString(), JsonArray.class));
+            }
+            return request.getPath().equals("/fail") ? HttpResponse.empty(503) : HttpResponse.empty(204);
+        });
+        receiver.start();
+        try {
+            String base = "http://localhost:" + receiver.getPort();
+            WebhookSink sink = new WebhookSink(Duration.ofSeconds(2));
+            Notification alarm = new Notification("ALARM", "The alarm is sounding", true, 0);
+            List<Delivery> batch = List.of(
+                    new Delivery(new Subscriber("a", WebhookSink.NAME, base + "/hook"), alarm),
+                    new Delivery(new Subscriber("b", WebhookSink.NAME, base + "/hook"), alarm),
+                    new Delivery(new Subscriber("c", WebhookSink.NAME, base + "/fail"), alarm));
+
+            DeliveryException e = assertThrows(DeliveryException.class, () -> sink.deliver(batch));
+            assertEquals(1, e.getFailed().size());
+            assertEquals("c", e.getFailed().get(0).getSubscriber().getId());
+            synchronized (posted) {
+                assertEquals(2, posted.size());
+                assertTrue(posted.stream().anyMatch(array -> array.size() == 2));
+            }
+        } finally {
+            receiver.close();
+        }
+    }
+
+    private void subscribe(RecordingSink sink, int count) {
+        for (int i = 0; i < count; i++) {
+            service.subscribe(new Subscriber(sink.getName() + "-" + i, sink.getName(), "subscriber-" + i));
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static class RecordingSink implements NotificationSink {
+        private final String name;
+        private final List<List<Delivery>> batches = new ArrayList<>();
+        private final AtomicInteger failuresLeft = new AtomicInteger();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile CountDownLatch gate;
+
+        RecordingSink(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void deliver(List<Delivery> batch) throws DeliveryException {
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            attempts.incrementAndGet();
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new DeliveryException("down", batch);
+            }
+            synchronized (this) {
+                batches.add(batch);
+            }
+        }
+
+        synchronized int deliveredCount() {
+            return batches.stream().mapToInt(List::size).sum();
+        }
+
+        synchronized List<String> types() {
+            List<String> types = new ArrayList<>();
+            batches.forEach(batch -> batch.forEach(delivery -> types.add(delivery.getNotification().getType())));
+            return types;
+        }
+    }
+}
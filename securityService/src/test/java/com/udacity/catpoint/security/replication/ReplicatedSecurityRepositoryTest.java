@@ -0,0 +1,256 @@
+package com.udacity.catpoint.security.replication;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicatedSecurityRepositoryTest {
+
+    private static final Duration FAILOVER = Duration.ofMillis(1000);
+
+    private final List<ReplicatedSecurityRepository> nodes = new ArrayList<>();
+
+    @AfterEach
+    public void closeNodes() {
+        nodes.forEach(ReplicatedSecurityRepository::close);
+    }
+
+    @Test
+    public void replicaFollowsPrimaryWrites() throws Exception {
+        ReplicatedSecurityRepository primary = startNode(null);
+        ReplicatedSecurityRepository replica = startNode(primary);
+        assertEquals(ReplicatedSecurityRepository.Role.PRIMARY, primary.getRole());
+        assertEquals(ReplicatedSecurityRepository.Role.REPLICA, replica.getRole());
+
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Back window", SensorType.WINDOW);
+        primary.addSensor(door);
+        primary.addSensor(window);
+        for (int i = 0; i < 101; i++) {
+            door.setActive(i % 2 == 0);
+            primary.updateSensor(door);
+        }
+        primary.renameSensor(door, "Side door", SensorType.WINDOW);
+        primary.removeSensor(window);
+        primary.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        primary.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        awaitTrue(() -> {
+            synchronized (replica) {
+                return replica.getAlarmStatus() == AlarmStatus.PENDING_ALARM;
+            }
+        });
+        synchronized (replica) {
+            assertEquals(ArmingStatus.ARMED_AWAY, replica.getArmingStatus());
+            assertEquals(1, replica.getSensors().size());
+            Sensor replicated = replica.getSensors().iterator().next();
+            assertEquals(door.getSensorId(), replicated.getSensorId());
+            assertEquals("Side door", replicated.getName());
+            assertEquals(SensorType.WINDOW, replicated.getSensorType());
+            assertTrue(replicated.getActive());
+        }
+        awaitTrue(() -> primary.getReplicaStatus().size() == 1 && primary.getReplicaStatus().get(0).getLagEntries() == 0);
+    }
+
+    @Test
+    public void lateReplicaCatchesUpFromASnapshot() throws Exception {
+        ReplicatedSecurityRepository primary = startNode(null);
+        for (int i = 0; i < 50; i++) {
+            primary.addSensor(new Sensor("Sensor " + i, SensorType.MOTION));
+        }
+        primary.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        ReplicatedSecurityRepository replica = startNode(primary);
+        //the snapshot is applied before start returns
+        synchronized (replica) {
+            assertEquals(50, replica.getSensors().size());
+            assertEquals(ArmingStatus.ARMED_HOME, replica.getArmingStatus());
+        }
+    }
+
+    @Test
+    public void replicaRejectsWrites() throws Exception {
+        ReplicatedSecurityRepository primary = startNode(null);
+        ReplicatedSecurityRepository replica = startNode(primary);
+        assertThrows(IllegalStateException.class, () -> replica.setArmingStatus(ArmingStatus.ARMED_HOME));
+    }
+
+    @Test
+    public void replicaTakesOverWithinASecondOfLosingThePrimary() throws Exception {
+        ReplicatedSecurityRepository primary = startNode(null);
+        ReplicatedSecurityRepository replica = startNode(primary);
+        primary.setArmingStatus(ArmingStatus.ARMED_HOME);
+        awaitTrue(() -> replica.getArmingStatus() == ArmingStatus.ARMED_HOME);
+
+        long start = System.nanoTime();
+        primary.close();
+        awaitTrue(() -> replica.getRole() == ReplicatedSecurityRepository.Role.PRIMARY);
+        long failoverMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(failoverMillis < 1000, "failover took " + failoverMillis + "ms");
+        replica.setArmingStatus(ArmingStatus.DISARMED);
+        assertEquals(ArmingStatus.DISARMED, replica.getArmingStatus());
+    }
+
+    @Test
+    public void cutOffPrimaryStopsWritingBeforeItsReplicaTakesOver() throws Exception {
+        InetSocketAddress replicaAddress = new InetSocketAddress("localhost", freePort());
+        ReplicatedSecurityRepository primary = startNode(new InetSocketAddress("localhost", 0), replicaAddress);
+        try (Partition link = new Partition(new InetSocketAddress("localhost", primary.getReplicationPort()))) {
+            ReplicatedSecurityRepository replica = startNode(replicaAddress, link.getAddress());
+            primary.setArmingStatus(ArmingStatus.ARMED_HOME);
+            awaitTrue(() -> replica.getArmingStatus() == ArmingStatus.ARMED_HOME);
+            long firstEpoch = primary.getEpoch();
+
+            link.cut();
+            awaitTrue(() -> {
+                try {
+                    primary.setAlarmStatus(AlarmStatus.NO_ALARM);
+                    return false;
+                } catch (IllegalStateException e) {
+                    return true;
+                }
+            });
+            assertEquals(ReplicatedSecurityRepository.Role.REPLICA, replica.getRole());
+
+            awaitTrue(() -> replica.getRole() == ReplicatedSecurityRepository.Role.PRIMARY);
+            assertTrue(replica.getEpoch() > firstEpoch);
+            replica.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            //the old primary finds the new one on its own and follows it
+            awaitTrue(() -> primary.getRole() == ReplicatedSecurityRepository.Role.REPLICA
+                    && primary.getArmingStatus() == ArmingStatus.ARMED_AWAY);
+            assertEquals(replica.getEpoch(), primary.getEpoch());
+        }
+    }
+
+    @Test
+    public void primaryKeepsWritingAfterItsReplicaShutsDown() throws Exception {
+        ReplicatedSecurityRepository primary = startNode(null);
+        ReplicatedSecurityRepository replica = startNode(primary);
+        primary.setArmingStatus(ArmingStatus.ARMED_HOME);
+        awaitTrue(() -> replica.getArmingStatus() == ArmingStatus.ARMED_HOME);
+
+        replica.close();
+        //longer than the lease, which a replica that said goodbye doesn't hold the primary to
+        Thread.sleep(FAILOVER.toMillis() * 2);
+        primary.setArmingStatus(ArmingStatus.DISARMED);
+        assertEquals(ArmingStatus.DISARMED, primary.getArmingStatus());
+    }
+
+    private ReplicatedSecurityRepository startNode(ReplicatedSecurityRepository peer) throws IOException {
+        InetSocketAddress peerAddress = peer == null ? null : new InetSocketAddress("localhost", peer.getReplicationPort());
+        ReplicatedSecurityRepository node = new ReplicatedSecurityRepository(new FakeSecurityRepository(),
+                new InetSocketAddress("localhost", 0), peerAddress);
+        nodes.add(node);
+        node.start();
+        return node;
+    }
+
+    private ReplicatedSecurityRepository startNode(InetSocketAddress listenAddress, InetSocketAddress peerAddress) throws IOException {
+        ReplicatedSecurityRepository node = new ReplicatedSecurityRepository(new FakeSecurityRepository(),
+                listenAddress, peerAddress, Duration.ofMillis(100), FAILOVER, 1000);
+        nodes.add(node);
+        node.start();
+        return node;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Relays connections to a node until cut, after which it swallows everything without
+     * closing anything, as a network that stops delivering does.
+     */
+    private static class Partition implements Closeable {
+        private final InetSocketAddress target;
+        private final ServerSocket listener;
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private volatile boolean cut;
+
+        Partition(InetSocketAddress target) throws IOException {
+            this.target = target;
+            listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            daemon(this::accept, "partition-accept");
+        }
+
+        InetSocketAddress getAddress() {
+            return new InetSocketAddress("localhost", listener.getLocalPort());
+        }
+
+        void cut() {
+            cut = true;
+        }
+
+        private void accept() {
+            while (!listener.isClosed()) {
+                try {
+                    Socket from = listener.accept();
+                    Socket to = new Socket(target.getHostString(), target.getPort());
+                    sockets.add(from);
+                    sockets.add(to);
+                    daemon(() -> relay(from, to), "partition-relay");
+                    daemon(() -> relay(to, from), "partition-relay");
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void relay(Socket from, Socket to) {
+            byte[] buffer = new byte[8192];
+            try {
+                int read;
+                while ((read = from.getInputStream().read(buffer)) >= 0) {
+                    if (!cut) {
+                        to.getOutputStream().write(buffer, 0, read);
+                    }
+                }
+            } catch (IOException e) {
+                //one side went away
+            }
+        }
+
+        private static void daemon(Runnable task, String name) {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            listener.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,122 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The service is driven from the GUI, the HTTP API, sensor ingest, the camera pipeline and the
+ * heartbeat sweeper at once.
+ */
+public class SecurityServiceConcurrencyTest {
+
+    private static final int THREADS = 4;
+    private static final int SENSORS_PER_THREAD = 50;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void sensorEventsFromManyThreadsWhileListenersComeAndGo() throws Exception {
+        SecurityService securityService = new SecurityService(new FakeSecurityRepository(), (image, confidence) -> false);
+        List<List<Sensor>> sensorsByThread = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Sensor> sensors = new ArrayList<>();
+            for (int i = 0; i < SENSORS_PER_THREAD; i++) {
+                Sensor sensor = new Sensor("Sensor " + t + "-" + i, SensorType.DOOR);
+                sensor.setZone("zone" + t);
+                securityService.addSensor(sensor);
+                sensors.add(sensor);
+            }
+            sensorsByThread.add(sensors);
+        }
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.enableZones();
+        CountingListener counting = new CountingListener();
+        securityService.addStatusListener(counting);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> work = new ArrayList<>();
+        for (List<Sensor> sensors : sensorsByThread) {
+            work.add(pool.submit(() -> {
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (Sensor sensor : sensors) {
+                        securityService.changeSensorActivationStatus(sensor, true);
+                        securityService.changeSensorActivationStatus(sensor, false);
+                    }
+                }
+            }));
+        }
+        //listeners registered and dropped mid-flight, as the GUI and API server do at startup
+        for (int i = 0; i < 200; i++) {
+            StatusListener passing = new CountingListener();
+            securityService.addStatusListener(passing);
+            securityService.removeStatusListener(passing);
+        }
+        for (Future<?> future : work) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(THREADS * SENSORS_PER_THREAD * ROUNDS * 2, counting.sensorChanges.get());
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(0, securityService.getZoneActiveCount("zone" + t));
+            //each pending alarm was cleared again when its sensor went inactive
+            assertEquals(AlarmStatus.NO_ALARM, securityService.getZoneAlarmStatus("zone" + t));
+        }
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void staleSensorsAreReportedHoldingTheService() throws Exception {
+        SecurityService securityService = new SecurityService(new FakeSecurityRepository(), (image, confidence) -> false);
+        securityService.addSensor(new Sensor("Front door", SensorType.DOOR));
+        CountDownLatch reported = new CountDownLatch(1);
+        AtomicBoolean heldService = new AtomicBoolean();
+        securityService.addStatusListener(new CountingListener() {
+            @Override
+            public void sensorsStaleChanged(List<Sensor> stale, List<Sensor> recovered) {
+                heldService.set(Thread.holdsLock(securityService));
+                reported.countDown();
+            }
+        });
+
+        try (SensorHeartbeatTracker tracker = new SensorHeartbeatTracker(Duration.ofMillis(50))) {
+            securityService.setHeartbeatTracker(tracker);
+            assertTrue(reported.await(5, TimeUnit.SECONDS));
+        }
+        assertTrue(heldService.get());
+    }
+
+    private static class CountingListener implements StatusListener {
+        private final AtomicInteger sensorChanges = new AtomicInteger();
+
+        @Override
+        public void notify(AlarmStatus status) {
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            sensorChanges.incrementAndGet();
+        }
+    }
+}
@@ -62,6 +62,7 @@ public class SecurityServiceTest {
     public void armedAlarmActivatedSensorPendingAlarmResult(ArmingStatus armingStatus) {
         Sensor sensor = new Sensor(SENSOR, SensorType.DOOR);
         Mockito.when(securityRepository.getSensors()).thenReturn(getSensors(true, 2));
+        Mockito.when(securityRepository.getActiveSensorCount()).thenReturn(3);
         Mockito.when(securityService.getArmingStatus()).thenReturn(armingStatus);
         Mockito.when(securityService.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
         securityService.changeSensorActivationStatus(sensor, true);
@@ -122,6 +123,7 @@ public class SecurityServiceTest {
     public void activateActiveSensorWhileSystemInPendingStateAlarmResult() {
         Sensor sensor = new Sensor(SENSOR, SensorType.DOOR);
         Mockito.when(securityRepository.getSensors()).thenReturn(getSensors(true, 2));
+        Mockito.when(securityRepository.getActiveSensorCount()).thenReturn(3);
         Mockito.when(securityService.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
         Mockito.when(securityService.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
         securityService.changeSensorActivationStatus(sensor, true);
@@ -186,7 +188,7 @@ public class SecurityServiceTest {
     public void systemDisarmedChangeToNoAlarm() {
         securityService.setArmingStatus(ArmingStatus.DISARMED);
         Mockito.verify(securityRepository, Mockito.times(1))
-                .setAlarmStatus(AlarmStatus.NO_ALARM);
+                .setAlarmAndArmingStatus(AlarmStatus.NO_ALARM, ArmingStatus.DISARMED);
     }
 
     /*
@@ -241,7 +243,8 @@ public class SecurityServiceTest {
         Mockito.when(securityRepository.getSensors())
                 .thenReturn(Collections.singleton(sensor));
         securityService.setArmingStatus(armingStatus);
-        Mockito.verify(securityRepository, Mockito.times(1)).updateSensor(any());
+        Mockito.verify(securityRepository, Mockito.times(1)).updateSensors(any());
+        Mockito.verify(securityRepository, Mockito.never()).updateSensor(any());
     }
 
     @ParameterizedTest
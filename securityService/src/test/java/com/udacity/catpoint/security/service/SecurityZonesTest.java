@@ -0,0 +1,192 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.FakeSecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityZonesTest {
+
+    private final AtomicInteger sensorReads = new AtomicInteger();
+    private SecurityService securityService;
+    private Sensor frontDoor;
+    private Sensor backDoor;
+    private Sensor hallway;
+
+    @BeforeEach
+    public void setUp() {
+        FakeSecurityRepository repository = new FakeSecurityRepository() {
+            @Override
+            public Set<Sensor> getSensors() {
+                sensorReads.incrementAndGet();
+                return super.getSensors();
+            }
+        };
+        securityService = new SecurityService(repository, (image, confidence) -> false);
+        frontDoor = sensor("Front door", SensorType.DOOR, "perimeter");
+        backDoor = sensor("Back door", SensorType.DOOR, "perimeter");
+        hallway = sensor("Hallway", SensorType.MOTION, null);
+    }
+
+    @Test
+    public void armedZoneAlarmsWhileTheRestIsDisarmed() {
+        securityService.setZoneArmingStatus("perimeter", ArmingStatus.ARMED_AWAY);
+        assertEquals(ArmingStatus.DISARMED, securityService.getArmingStatus());
+
+        securityService.changeSensorActivationStatus(hallway, true);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertEquals(1, securityService.getZoneActiveCount(Sensor.DEFAULT_ZONE));
+
+        securityService.changeSensorActivationStatus(frontDoor, true);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getZoneAlarmStatus("perimeter"));
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+
+        //the hallway is still active, but it is in a disarmed zone
+        securityService.changeSensorActivationStatus(frontDoor, false);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getZoneAlarmStatus("perimeter"));
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void secondSensorRaisesZoneAlarmUntilZoneIsDisarmed() {
+        securityService.setZoneArmingStatus("perimeter", ArmingStatus.ARMED_HOME);
+        securityService.changeSensorActivationStatus(frontDoor, true);
+        securityService.changeSensorActivationStatus(backDoor, true);
+        assertEquals(AlarmStatus.ALARM, securityService.getZoneAlarmStatus("perimeter"));
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        securityService.changeSensorActivationStatus(frontDoor, false);
+        securityService.changeSensorActivationStatus(backDoor, false);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+        securityService.setZoneArmingStatus("perimeter", ArmingStatus.DISARMED);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getZoneAlarmStatus("perimeter"));
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void armingAZoneOnlyResetsItsOwnSensors() {
+        securityService.changeSensorActivationStatus(frontDoor, true);
+        securityService.changeSensorActivationStatus(hallway, true);
+
+        securityService.setZoneArmingStatus("perimeter", ArmingStatus.ARMED_AWAY);
+
+        assertFalse(frontDoor.getActive());
+        assertTrue(hallway.getActive());
+        assertEquals(0, securityService.getZoneActiveCount("perimeter"));
+        assertEquals(1, securityService.getZoneActiveCount(Sensor.DEFAULT_ZONE));
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void wholeHomeArmingAppliesToEveryZone() {
+        securityService.setZoneArmingStatus("perimeter", ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(frontDoor, true);
+
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        assertEquals(ArmingStatus.DISARMED, securityService.getZoneArmingStatus("perimeter"));
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getZoneAlarmStatus("perimeter"));
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertEquals(ArmingStatus.ARMED_HOME, securityService.getZoneArmingStatus(Sensor.DEFAULT_ZONE));
+        assertEquals(0, securityService.getZoneActiveCount("perimeter"));
+        securityService.changeSensorActivationStatus(hallway, true);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getZoneAlarmStatus(Sensor.DEFAULT_ZONE));
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getZoneAlarmStatus("perimeter"));
+    }
+
+    @Test
+    public void sensorEventsDoNotReadOtherSensors() {
+        for (int i = 0; i < 1000; i++) {
+            sensor("Window " + i, SensorType.WINDOW, "upstairs");
+        }
+        securityService.setZoneArmingStatus("perimeter", ArmingStatus.ARMED_AWAY);
+        sensorReads.set(0);
+
+        securityService.changeSensorActivationStatus(frontDoor, true);
+        securityService.changeSensorActivationStatus(frontDoor, false);
+        securityService.changeSensorActivationStatus(hallway, true);
+
+        assertEquals(0, sensorReads.get());
+    }
+
+    @Test
+    public void movingASensorMovesItsActiveCount() {
+        securityService.enableZones();
+        securityService.changeSensorActivationStatus(hallway, true);
+
+        securityService.setSensorZone(hallway, "upstairs");
+
+        assertEquals("upstairs", hallway.getZone());
+        assertEquals(0, securityService.getZoneActiveCount(Sensor.DEFAULT_ZONE));
+        assertEquals(1, securityService.getZoneActiveCount("upstairs"));
+        assertEquals(Set.of(Sensor.DEFAULT_ZONE, "perimeter", "upstairs"), securityService.getZones());
+    }
+
+    @Test
+    public void withoutZonesTheHomeIsOneZone() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(frontDoor, true);
+
+        assertFalse(securityService.isZoned());
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getZoneAlarmStatus("perimeter"));
+        assertEquals(ArmingStatus.ARMED_AWAY, securityService.getZoneArmingStatus(Sensor.DEFAULT_ZONE));
+        assertEquals(1, securityService.getZoneActiveCount("perimeter"));
+    }
+
+    @Test
+    public void reactivatingAnActiveSensorDoesTheSameWithAndWithoutZones() {
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(frontDoor, true);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        securityService.changeSensorActivationStatus(frontDoor, true);
+        AlarmStatus withoutZones = securityService.getAlarmStatus();
+
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        securityService.enableZones();
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(frontDoor, true);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        securityService.changeSensorActivationStatus(frontDoor, true);
+
+        assertEquals(withoutZones, securityService.getZoneAlarmStatus("perimeter"));
+        assertEquals(withoutZones, securityService.getAlarmStatus());
+    }
+
+    @Test
+    public void renamingASensorKeepsItsZoneAlarm() {
+        securityService.setZoneArmingStatus("perimeter", ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(frontDoor, true);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+
+        securityService.updateSensor(frontDoor, "Side door", SensorType.WINDOW, "perimeter");
+        assertEquals("Side door", frontDoor.getName());
+        assertEquals(SensorType.WINDOW, frontDoor.getSensorType());
+        assertTrue(frontDoor.getActive());
+        assertEquals(1, securityService.getZoneActiveCount("perimeter"));
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        assertEquals(3, securityService.getSensors().size());
+
+        //moving it out is what clears the pending alarm
+        securityService.updateSensor(frontDoor, null, null, "upstairs");
+        assertEquals("Side door", frontDoor.getName());
+        assertEquals(0, securityService.getZoneActiveCount("perimeter"));
+        assertEquals(1, securityService.getZoneActiveCount("upstairs"));
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+    }
+
+    private Sensor sensor(String name, SensorType type, String zone) {
+        Sensor sensor = new Sensor(name, type);
+        sensor.setZone(zone);
+        securityService.addSensor(sensor);
+        return sensor;
+    }
+}
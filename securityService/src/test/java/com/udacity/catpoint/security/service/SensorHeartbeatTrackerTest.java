@@ -0,0 +1,145 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorHeartbeatTrackerTest {
+
+    private long now = 1_000_000;
+    private final List<Sensor> stale = new ArrayList<>();
+    private final List<Sensor> recovered = new ArrayList<>();
+    private final SensorHeartbeatTracker tracker = new SensorHeartbeatTracker(Duration.ofSeconds(10), Duration.ofSeconds(1), () -> now);
+
+    @Test
+    public void silentSensorGoesStaleWithinOneResolutionOfTheTimeout() {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        tracker.track(door);
+
+        advance(10_000);
+        sweep();
+        assertTrue(stale.isEmpty());
+
+        advance(1_999);
+        sweep();
+        assertEquals(List.of(door), stale);
+        assertTrue(tracker.isStale(door));
+        assertEquals(1, tracker.getStaleCount());
+
+        //reported once only
+        stale.clear();
+        advance(5_000);
+        sweep();
+        assertTrue(stale.isEmpty());
+    }
+
+    @Test
+    public void heartbeatsKeepSensorsFresh() {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Back window", SensorType.WINDOW);
+        tracker.track(door);
+        tracker.track(window);
+
+        for (int i = 0; i < 30; i++) {
+            advance(1_000);
+            assertTrue(tracker.heartbeat(door));
+            sweep();
+        }
+        assertEquals(List.of(window), stale);
+        assertFalse(tracker.isStale(door));
+        assertEquals(now, tracker.getLastSeen(door));
+    }
+
+    @Test
+    public void staleSensorIsReportedRecoveredOnItsNextHeartbeat() {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        tracker.track(door);
+        advance(15_000);
+        sweep();
+
+        tracker.heartbeat(door.getSensorId().getMostSignificantBits(), door.getSensorId().getLeastSignificantBits());
+        assertFalse(tracker.isStale(door));
+        sweep();
+        assertEquals(List.of(door), recovered);
+        assertEquals(0, tracker.getStaleCount());
+
+        //and can go stale again
+        stale.clear();
+        advance(15_000);
+        sweep();
+        assertEquals(List.of(door), stale);
+    }
+
+    @Test
+    public void untrackedSensorsAreForgotten() {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        tracker.track(door);
+        tracker.untrack(door);
+
+        assertFalse(tracker.heartbeat(door));
+        assertEquals(-1, tracker.getLastSeen(door));
+        advance(15_000);
+        sweep();
+        assertTrue(stale.isEmpty());
+        assertEquals(0, tracker.getTrackedCount());
+    }
+
+    @Test
+    public void onlySilentSensorsOfManyGoStale() {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.MOTION);
+            sensors.add(sensor);
+            tracker.track(sensor);
+        }
+        //remove and re-add some so that slots get reused
+        for (int i = 0; i < 1_000; i++) {
+            tracker.untrack(sensors.get(i));
+            tracker.track(sensors.get(i));
+        }
+        for (int second = 0; second < 20; second++) {
+            advance(1_000);
+            for (int i = 0; i < sensors.size(); i++) {
+                if (i % 100 != 0) {
+                    tracker.heartbeat(sensors.get(i));
+                }
+            }
+            sweep();
+        }
+        assertEquals(10_000, tracker.getTrackedCount());
+        assertEquals(100, stale.size());
+        stale.forEach(sensor -> assertEquals(0, sensors.indexOf(sensor) % 100));
+    }
+
+    @Test
+    public void lateSweepStillFindsEveryStaleSensor() {
+        Sensor door = new Sensor("Front door", SensorType.DOOR);
+        Sensor window = new Sensor("Back window", SensorType.WINDOW);
+        tracker.track(door);
+        advance(3_000);
+        tracker.track(window);
+
+        //several laps of the wheel without a sweep
+        advance(120_000);
+        tracker.heartbeat(window);
+        sweep();
+        assertEquals(List.of(door), stale);
+    }
+
+    private void advance(long millis) {
+        now += millis;
+    }
+
+    private void sweep() {
+        tracker.sweep((s, r) -> {
+            stale.addAll(s);
+            recovered.addAll(r);
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The alarm status was set, possibly to something other than what was asked for.
+ */
+@Name("com.udacity.catpoint.AlarmTransition")
+@Label("Alarm Transition")
+@Category({"Catpoint", "Security"})
+@Description("Alarm status set by the security service")
+@StackTrace(false)
+public final class AlarmTransitionEvent extends Event {
+
+    @Label("Requested")
+    String requested;
+
+    @Label("Status")
+    String status;
+
+    public static void emit(Enum<?> requested, Enum<?> status) {
+        AlarmTransitionEvent event = new AlarmTransitionEvent();
+        if (event.shouldCommit()) {
+            event.requested = requested.name();
+            event.status = status.name();
+            event.commit();
+        }
+    }
+}
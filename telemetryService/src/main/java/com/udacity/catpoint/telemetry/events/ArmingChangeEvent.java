@@ -0,0 +1,30 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The system was armed or disarmed.
+ */
+@Name("com.udacity.catpoint.ArmingChange")
+@Label("Arming Change")
+@Category({"Catpoint", "Security"})
+@Description("Arming status set by the security service")
+@StackTrace(false)
+public final class ArmingChangeEvent extends Event {
+
+    @Label("Status")
+    String status;
+
+    public static void emit(Enum<?> status) {
+        ArmingChangeEvent event = new ArmingChangeEvent();
+        if (event.shouldCommit()) {
+            event.status = status.name();
+            event.commit();
+        }
+    }
+}
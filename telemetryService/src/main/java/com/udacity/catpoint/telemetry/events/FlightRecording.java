@@ -0,0 +1,101 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Continuous flight recording of the JDK's default events plus Catpoint's own, using the
+ * bundled catpoint.jfc. Nothing is written anywhere until the recording is dumped, which
+ * happens on exit and whenever someone runs {@code jcmd <pid> JFR.dump}.
+ * <pre>
+ * catpoint.jfr=[true to record from startup]
+ * catpoint.jfr.maxAgeMinutes=[how much history to keep, default 360]
+ * catpoint.jfr.maxSizeMb=[most disk the history may take, default 250]
+ * catpoint.jfr.dumpOnExit=[file written on exit, default catpoint.jfr]
+ * </pre>
+ */
+public final class FlightRecording {
+
+    public static final String SETTINGS = "catpoint.jfc";
+    public static final String RECORDING_NAME = "catpoint-continuous";
+
+    private FlightRecording() {
+    }
+
+    /**
+     * @return the bundled Catpoint event settings on their own
+     */
+    public static Configuration catpointConfiguration() {
+        try (InputStream is = FlightRecording.class.getResourceAsStream(SETTINGS);
+             Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Bundled " + SETTINGS + " is invalid", e);
+        }
+    }
+
+    /**
+     * @return the JDK's default settings with the Catpoint events added
+     */
+    public static Map<String, String> continuousSettings() {
+        Map<String, String> settings = new HashMap<>();
+        try {
+            settings.putAll(Configuration.getConfiguration("default").getSettings());
+        } catch (IOException | ParseException e) {
+            //only the Catpoint events then
+        }
+        settings.putAll(catpointConfiguration().getSettings());
+        return settings;
+    }
+
+    /**
+     * Starts a recording that keeps a rolling window of history on disk and dumps it on exit.
+     *
+     * @param dumpOnExit where the recording is written when the JVM exits, or null for nowhere
+     */
+    public static Recording startContinuous(Duration maxAge, long maxSizeBytes, Path dumpOnExit) {
+        Recording recording = new Recording(continuousSettings());
+        recording.setName(RECORDING_NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSizeBytes);
+        if (dumpOnExit != null) {
+            try {
+                recording.setDestination(dumpOnExit);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            recording.setDumpOnExit(true);
+        }
+        recording.start();
+        return recording;
+    }
+
+    /**
+     * Starts the continuous recording if the catpoint.jfr system property asks for it.
+     *
+     * @return the recording, or null if none was asked for
+     */
+    public static Recording startIfConfigured() {
+        if (!Boolean.getBoolean("catpoint.jfr")) {
+            return null;
+        }
+        return startContinuous(Duration.ofMinutes(Long.getLong("catpoint.jfr.maxAgeMinutes", 360)),
+                Long.getLong("catpoint.jfr.maxSizeMb", 250) * 1024 * 1024,
+                Path.of(System.getProperty("catpoint.jfr.dumpOnExit", "catpoint.jfr")));
+    }
+}
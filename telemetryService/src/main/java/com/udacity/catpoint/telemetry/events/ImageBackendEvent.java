@@ -0,0 +1,61 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call to a remote classification backend such as Rekognition. Failed calls are recorded
+ * too, with {@code failed} set.
+ */
+@Name("com.udacity.catpoint.ImageBackend")
+@Label("Image Backend Call")
+@Category({"Catpoint", "Image"})
+@Description("Request to an image classification backend")
+@StackTrace(false)
+public final class ImageBackendEvent extends Event {
+
+    @Label("Backend")
+    String backend;
+
+    @Label("Camera Id")
+    String cameraId;
+
+    @Label("Labels")
+    int labels;
+
+    @Label("Cat")
+    boolean cat;
+
+    @Label("Failed")
+    boolean failed;
+
+    public static ImageBackendEvent start() {
+        ImageBackendEvent event = new ImageBackendEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String backend, String cameraId, int labels, boolean cat) {
+        finish(backend, cameraId, labels, cat, false);
+    }
+
+    public void failed(String backend, String cameraId) {
+        finish(backend, cameraId, 0, false, true);
+    }
+
+    private void finish(String backend, String cameraId, int labels, boolean cat, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.backend = backend;
+            this.cameraId = cameraId;
+            this.labels = labels;
+            this.cat = cat;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A frame was cropped, scaled and compressed before being sent to a classification backend.
+ */
+@Name("com.udacity.catpoint.ImageEncode")
+@Label("Image Encode")
+@Category({"Catpoint", "Image"})
+@Description("Frame preprocessed and encoded for a classification backend")
+@StackTrace(false)
+public final class ImageEncodeEvent extends Event {
+
+    @Label("Camera Id")
+    String cameraId;
+
+    @Label("Encoded Size")
+    @DataAmount
+    long bytes;
+
+    public static ImageEncodeEvent start() {
+        ImageEncodeEvent event = new ImageEncodeEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param bytes size of the encoded frame, or -1 if encoding failed
+     */
+    public void finish(String cameraId, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.cameraId = cameraId;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A frame was classified by the fallback service instead of the primary one.
+ */
+@Name("com.udacity.catpoint.ImageFallback")
+@Label("Image Fallback")
+@Category({"Catpoint", "Image"})
+@Description("Classification served by the fallback image service")
+@StackTrace(false)
+public final class ImageFallbackEvent extends Event {
+
+    @Label("Primary")
+    String primary;
+
+    @Label("Reason")
+    String reason;
+
+    public static void emit(String primary, String reason) {
+        ImageFallbackEvent event = new ImageFallbackEvent();
+        if (event.shouldCommit()) {
+            event.primary = primary;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+}
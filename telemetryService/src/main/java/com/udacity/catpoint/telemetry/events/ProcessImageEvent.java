@@ -0,0 +1,46 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A camera frame went through the security service, from classification to the resulting
+ * alarm update.
+ * <pre>
+ *     ProcessImageEvent event = ProcessImageEvent.start();
+ *     boolean cat = ...;
+ *     event.finish(cameraId, cat);
+ * </pre>
+ */
+@Name("com.udacity.catpoint.ProcessImage")
+@Label("Process Image")
+@Category({"Catpoint", "Security"})
+@Description("Camera frame classified and applied to the alarm state")
+@StackTrace(false)
+public final class ProcessImageEvent extends Event {
+
+    @Label("Camera Id")
+    String cameraId;
+
+    @Label("Cat")
+    boolean cat;
+
+    public static ProcessImageEvent start() {
+        ProcessImageEvent event = new ProcessImageEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String cameraId, boolean cat) {
+        end();
+        if (shouldCommit()) {
+            this.cameraId = cameraId;
+            this.cat = cat;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Repository state was written to storage.
+ */
+@Name("com.udacity.catpoint.RepositoryPersist")
+@Label("Repository Persist")
+@Category({"Catpoint", "Repository"})
+@Description("Security state written to storage")
+@StackTrace(false)
+public final class RepositoryPersistEvent extends Event {
+
+    @Label("Repository")
+    String repository;
+
+    @Label("Changes")
+    @Description("What was written, e.g. sensors,alarm_status")
+    String changes;
+
+    @Label("Sensors")
+    int sensors;
+
+    @Label("Failed")
+    boolean failed;
+
+    public static RepositoryPersistEvent start() {
+        RepositoryPersistEvent event = new RepositoryPersistEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param sensors number of sensors written, 0 if only statuses were
+     */
+    public void finish(String repository, String changes, int sensors, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.repository = repository;
+            this.changes = changes;
+            this.sensors = sensors;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
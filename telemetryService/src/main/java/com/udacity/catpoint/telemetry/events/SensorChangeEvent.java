@@ -0,0 +1,41 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+/**
+ * A sensor was activated or deactivated. This is the most frequent of the events, so the id
+ * is only turned into text when the event is actually recorded.
+ */
+@Name("com.udacity.catpoint.SensorChange")
+@Label("Sensor Change")
+@Category({"Catpoint", "Security"})
+@Description("Sensor activation status changed")
+@StackTrace(false)
+public final class SensorChangeEvent extends Event {
+
+    @Label("Sensor Id")
+    String sensorId;
+
+    @Label("Sensor Name")
+    String sensorName;
+
+    @Label("Active")
+    boolean active;
+
+    public static void emit(UUID sensorId, String sensorName, boolean active) {
+        SensorChangeEvent event = new SensorChangeEvent();
+        if (event.shouldCommit()) {
+            event.sensorId = sensorId.toString();
+            event.sensorName = sensorName;
+            event.active = active;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.udacity.catpoint.telemetry.logging;
+
+import com.udacity.catpoint.telemetry.metrics.Counter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A kind of structured event, with its own sampling rate and rate limit. Look it up once from
+ * {@link StructuredLog#event(String)} and keep it, typically in a static field.
+ * <pre>
+ *     LogRecord record = SENSOR_CHANGED.begin();
+ *     if (record != null) {
+ *         record.with("sensor", sensor.getSensorId()).with("active", active).commit();
+ *     }
+ * </pre>
+ */
+public final class EventType {
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private final String name;
+    private final StructuredLog log;
+    private final double sampleRate;
+    private final int maxPerSecond;
+    private final Counter suppressed;
+    //start of the current one second window in the high bits, events let through in the low 20
+    private final AtomicLong window = new AtomicLong();
+
+    EventType(String name, StructuredLog log, double sampleRate, int maxPerSecond, Counter suppressed) {
+        this.name = name;
+        this.log = log;
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = Math.min(maxPerSecond, (1 << 20) - 1);
+        this.suppressed = suppressed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return false if events of this type are never written
+     */
+    public boolean isEnabled() {
+        return log.isEnabled() && sampleRate > 0 && maxPerSecond != 0;
+    }
+
+    /**
+     * Claims a record for an event of this type.
+     *
+     * @return the record to fill in and commit, or null if the event is not to be logged
+     * because logging is off, it was sampled out, the rate limit is reached or the ring is full
+     */
+    public LogRecord begin() {
+        if (!log.isEnabled()) {
+            return null;
+        }
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            suppressed.increment();
+            return null;
+        }
+        if (maxPerSecond > 0 && !tryAcquire()) {
+            suppressed.increment();
+            return null;
+        }
+        return log.claim(this);
+    }
+
+    private boolean tryAcquire() {
+        long now = System.nanoTime() / WINDOW_NANOS;
+        while (true) {
+            long current = window.get();
+            long start = current >> 20;
+            long count = current & ((1 << 20) - 1);
+            long next;
+            if (start != now) {
+                next = (now << 20) | 1;
+            } else if (count < maxPerSecond) {
+                next = current + 1;
+            } else {
+                return false;
+            }
+            if (window.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.udacity.catpoint.telemetry.logging;
+
+/**
+ * The little JSON the structured log needs, written straight into a builder.
+ */
+final class JsonLines {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JsonLines() {
+    }
+
+    static void appendString(StringBuilder sb, CharSequence s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * JSON has no NaN or infinities, so those are written as null.
+     */
+    static void appendDouble(StringBuilder sb, double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            sb.append("null");
+        } else {
+            sb.append(d);
+        }
+    }
+}
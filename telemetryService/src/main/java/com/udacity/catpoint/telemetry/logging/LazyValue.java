@@ -0,0 +1,9 @@
+package com.udacity.catpoint.telemetry.logging;
+
+/**
+ * A log field whose text is only produced if the record is written, on the writer thread.
+ */
+@FunctionalInterface
+public interface LazyValue {
+    void appendTo(StringBuilder out);
+}
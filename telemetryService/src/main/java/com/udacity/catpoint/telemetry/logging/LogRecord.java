@@ -0,0 +1,83 @@
+package com.udacity.catpoint.telemetry.logging;
+
+/**
+ * One slot of the {@link StructuredLog} ring, claimed by {@link EventType#begin()}. Fill in the
+ * fields and then {@link #commit()} it; a claimed record that is never committed stalls the
+ * log. Records are reused, so keep no reference after committing.
+ * <p>
+ * Numbers and booleans are stored unboxed. Objects are stored by reference and only turned
+ * into text on the writer thread, so they must not change after being passed in.
+ */
+public final class LogRecord {
+
+    static final int MAX_FIELDS = 8;
+
+    static final byte LONG = 0;
+    static final byte DOUBLE = 1;
+    static final byte BOOLEAN = 2;
+    static final byte OBJECT = 3;
+
+    final String[] keys = new String[MAX_FIELDS];
+    final byte[] kinds = new byte[MAX_FIELDS];
+    final long[] numbers = new long[MAX_FIELDS];
+    final Object[] objects = new Object[MAX_FIELDS];
+    int size;
+
+    private final StructuredLog log;
+    EventType type;
+    long timestamp;
+    private long sequence;
+    //the sequence once committed; the writer waits for it
+    volatile long published = -1;
+
+    LogRecord(StructuredLog log) {
+        this.log = log;
+    }
+
+    void start(EventType type, long sequence, long timestamp) {
+        this.type = type;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.size = 0;
+    }
+
+    public LogRecord with(String key, long value) {
+        return add(key, LONG, value, null);
+    }
+
+    public LogRecord with(String key, double value) {
+        return add(key, DOUBLE, Double.doubleToRawLongBits(value), null);
+    }
+
+    public LogRecord with(String key, boolean value) {
+        return add(key, BOOLEAN, value ? 1 : 0, null);
+    }
+
+    /**
+     * @param value written as a JSON string; a {@link LazyValue} is asked for its text on the
+     *              writer thread, anything else is converted with {@link String#valueOf}
+     */
+    public LogRecord with(String key, Object value) {
+        return add(key, OBJECT, 0, value);
+    }
+
+    /**
+     * Hands the record to the writer.
+     */
+    public void commit() {
+        published = sequence;
+        log.committed();
+    }
+
+    private LogRecord add(String key, byte kind, long number, Object object) {
+        //fields past the limit are dropped rather than failing a hot path
+        if (size < MAX_FIELDS) {
+            keys[size] = key;
+            kinds[size] = kind;
+            numbers[size] = number;
+            objects[size] = object;
+            size++;
+        }
+        return this;
+    }
+}
@@ -0,0 +1,294 @@
+package com.udacity.catpoint.telemetry.logging;
+
+import com.udacity.catpoint.telemetry.metrics.Counter;
+import com.udacity.catpoint.telemetry.metrics.MetricsRegistry;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured event log for hot paths, such as classification results, alarm
+ * transitions and sensor events, written as JSON lines:
+ * <pre>
+ * {"ts":1600000000000,"event":"sensor.changed","sensor":"...","active":true}
+ * </pre>
+ * Events go into a fixed ring of reusable {@link LogRecord}s, which callers claim with a
+ * compare-and-set and fill in without boxing or formatting anything. A single writer thread
+ * formats and writes them, flushes whenever it catches up and then parks until the next commit
+ * wakes it. When the ring is full events are dropped and counted rather than making the caller
+ * wait.
+ * <p>
+ * Configured by catpoint.events keys in log4j.properties, which system properties override:
+ * <pre>
+ * catpoint.events.target=[stdout, stderr or a file to append to; off if unset]
+ * catpoint.events.bufferSize=[records in the ring, rounded up to a power of two, default 8192]
+ * catpoint.events.[event name].sampleRate=[fraction of events written, default 1]
+ * catpoint.events.[event name].maxPerSecond=[events written per second at most, default unlimited]
+ * </pre>
+ * Counts of written, dropped and suppressed events are kept in the log.events metrics.
+ */
+public class StructuredLog implements Closeable {
+
+    static final String PREFIX = "catpoint.events.";
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MAX_SPINS = 1000;
+
+    private static class Default {
+        static final StructuredLog INSTANCE = createDefault();
+    }
+
+    private final Properties config;
+    private final Writer out;
+    private final boolean closeOut;
+    private final LogRecord[] ring;
+    private final int mask;
+    private final Map<String, EventType> eventTypes = new ConcurrentHashMap<>();
+
+    //next sequence to claim
+    private final AtomicLong claimed = new AtomicLong();
+    //every sequence below this has been written and its slot is free again
+    private volatile long consumed;
+    private volatile boolean running;
+    //set while the writer is parked or about to park, so commits know to wake it
+    private volatile boolean idle;
+    final Thread writer;
+    private final StringBuilder line = new StringBuilder(256);
+    private final StringBuilder value = new StringBuilder(64);
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter suppressed;
+
+    /**
+     * @param config catpoint.events settings; the target is ignored in favour of {@code out}
+     * @param out    where to write, or null to log nothing
+     */
+    public StructuredLog(Properties config, Writer out) {
+        this(config, out, false);
+    }
+
+    private StructuredLog(Properties config, Writer out, boolean closeOut) {
+        this.config = config;
+        this.out = out;
+        this.closeOut = closeOut;
+        int size = Integer.highestOneBit(Math.max(2, Integer.parseInt(config.getProperty(PREFIX + "bufferSize",
+                String.valueOf(DEFAULT_BUFFER_SIZE))) * 2 - 1));
+        ring = new LogRecord[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new LogRecord(this);
+        }
+        mask = size - 1;
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        written = metrics.counter("log.events.written");
+        dropped = metrics.counter("log.events.dropped");
+        suppressed = metrics.counter("log.events.suppressed");
+
+        running = out != null;
+        if (running) {
+            writer = new Thread(this::writeLoop, "structured-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * @return the log configured by log4j.properties and system properties, flushed on exit
+     * @throws ExceptionInInitializerError if the configured target file cannot be opened
+     */
+    public static StructuredLog getDefault() {
+        return Default.INSTANCE;
+    }
+
+    /**
+     * @return the event type with this name, configured from catpoint.events.[name] settings
+     */
+    public EventType event(String name) {
+        return eventTypes.computeIfAbsent(name, n -> new EventType(n, this,
+                Double.parseDouble(config.getProperty(PREFIX + n + ".sampleRate", "1")),
+                Integer.parseInt(config.getProperty(PREFIX + n + ".maxPerSecond", "-1")),
+                suppressed));
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    LogRecord claim(EventType type) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= ring.length) {
+                dropped.increment();
+                return null;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        LogRecord record = ring[(int) sequence & mask];
+        record.start(type, sequence, System.currentTimeMillis());
+        return record;
+    }
+
+    void committed() {
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Writes out what is in the ring and stops the writer.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            if (closeOut) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLoop() {
+        long next = consumed;
+        boolean unflushed = false;
+        int spins = 0;
+        while (true) {
+            LogRecord record = ring[(int) next & mask];
+            if (record.published == next) {
+                try {
+                    write(record);
+                    written.increment();
+                } catch (IOException | RuntimeException e) {
+                    dropped.increment();
+                }
+                //let go of the values so the ring doesn't keep them alive
+                Arrays.fill(record.objects, 0, record.size, null);
+                consumed = ++next;
+                unflushed = true;
+                spins = 0;
+                continue;
+            }
+            if (claimed.get() > next && ++spins < MAX_SPINS) {
+                //claimed but not committed yet, which normally takes a few nanoseconds
+                Thread.onSpinWait();
+                continue;
+            }
+            spins = 0;
+            //caught up
+            if (unflushed) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    //nothing better to do with a failing log than to keep trying
+                }
+                unflushed = false;
+            }
+            if (!running && claimed.get() == next) {
+                return;
+            }
+            idle = true;
+            //a commit either lands before this check or sees the flag and unparks us
+            if (record.published != next && running) {
+                LockSupport.park(this);
+            }
+            idle = false;
+        }
+    }
+
+    private void write(LogRecord record) throws IOException {
+        StringBuilder sb = line;
+        sb.setLength(0);
+        sb.append("{\"ts\":").append(record.timestamp).append(",\"event\":");
+        JsonLines.appendString(sb, record.type.getName());
+        for (int i = 0; i < record.size; i++) {
+            sb.append(',');
+            JsonLines.appendString(sb, record.keys[i]);
+            sb.append(':');
+            switch (record.kinds[i]) {
+                case LogRecord.LONG -> sb.append(record.numbers[i]);
+                case LogRecord.DOUBLE -> JsonLines.appendDouble(sb, Double.longBitsToDouble(record.numbers[i]));
+                case LogRecord.BOOLEAN -> sb.append(record.numbers[i] != 0);
+                default -> appendObject(sb, record.objects[i]);
+            }
+        }
+        sb.append("}\n");
+        out.append(sb);
+    }
+
+    private void appendObject(StringBuilder sb, Object object) {
+        if (object == null) {
+            sb.append("null");
+        } else if (object instanceof LazyValue) {
+            value.setLength(0);
+            ((LazyValue) object).appendTo(value);
+            JsonLines.appendString(sb, value);
+        } else {
+            JsonLines.appendString(sb, String.valueOf(object));
+        }
+    }
+
+    static StructuredLog createDefault() {
+        Properties config = new Properties();
+        try (InputStream is = StructuredLog.class.getClassLoader().getResourceAsStream("log4j.properties")) {
+            if (is != null) {
+                config.load(is);
+            }
+        } catch (IOException e) {
+            //logging stays off
+        }
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PREFIX))
+                .forEach(name -> config.setProperty(name, System.getProperty(name)));
+
+        String target = config.getProperty(PREFIX + "target");
+        Writer out = null;
+        boolean closeOut = false;
+        if ("stdout".equals(target)) {
+            out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        } else if ("stderr".equals(target)) {
+            out = new OutputStreamWriter(System.err, StandardCharsets.UTF_8);
+        } else if (target != null && !target.isBlank()) {
+            try {
+                out = Files.newBufferedWriter(Paths.get(target), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                closeOut = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to open structured event log " + target, e);
+            }
+        }
+        if (out != null && !closeOut) {
+            out = new BufferedWriter(out);
+        }
+        StructuredLog log = new StructuredLog(config, out, closeOut);
+        Runtime.getRuntime().addShutdownHook(new Thread(log::close, "structured-log-shutdown"));
+        return log;
+    }
+}
@@ -0,0 +1,179 @@
+package com.udacity.catpoint.telemetry.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Named collection of counters, latency histograms and gauges. Look metrics up once and keep
+ * the reference; the lookup itself is a map access and does not belong on a hot path.
+ * <p>
+ * Names are dotted, lower camel case, e.g. {@code security.processImage}.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private static final double[] REPORTED_PERCENTILES = {50, 90, 99, 99.9};
+    //one export line per histogram and suffix, in this order
+    private static final List<String> HISTOGRAM_SUFFIXES = histogramSuffixes();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * The process-wide registry used by the services unless they are given another one.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge whose value is read on export. Registering the same name again
+     * replaces the earlier gauge, so a gauge describing one object's state should only be
+     * registered by the single instance that is meant to be reported.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public Map<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    public Map<String, LongSupplier> getGauges() {
+        return new TreeMap<>(gauges);
+    }
+
+    /**
+     * Writes every metric in a line-oriented text format, one value per line. Histogram
+     * values are in nanoseconds.
+     * <pre>
+     * security.processImage.count 12
+     * security.processImage.p99 1843199
+     * security.alarmStatus 2
+     * </pre>
+     */
+    public void writeText(Appendable out) {
+        forEachValue((name, value) -> {
+            try {
+                out.append(name).append(' ').append(Long.toString(value)).append('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Passes every line of the text export to the action, in the same order.
+     */
+    public void forEachValue(ObjLongConsumer<String> action) {
+        for (Map.Entry<String, Counter> e : getCounters().entrySet()) {
+            action.accept(e.getKey(), e.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> e : getGauges().entrySet()) {
+            action.accept(e.getKey(), e.getValue().getAsLong());
+        }
+        for (Map.Entry<String, LatencyHistogram> e : getHistograms().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = e.getValue().snapshot();
+            for (String suffix : HISTOGRAM_SUFFIXES) {
+                action.accept(e.getKey() + "." + suffix, histogramValue(snapshot, suffix));
+            }
+        }
+    }
+
+    /**
+     * The names of the text export lines, without reading any values.
+     */
+    public List<String> getValueNames() {
+        List<String> names = new ArrayList<>(getCounters().keySet());
+        names.addAll(getGauges().keySet());
+        for (String histogram : getHistograms().keySet()) {
+            for (String suffix : HISTOGRAM_SUFFIXES) {
+                names.add(histogram + "." + suffix);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Reads a single line of the text export.
+     *
+     * @return the value, or null if no metric exports that name
+     */
+    public Long getValue(String name) {
+        Counter counter = counters.get(name);
+        if (counter != null) {
+            return counter.get();
+        }
+        LongSupplier gauge = gauges.get(name);
+        if (gauge != null) {
+            return gauge.getAsLong();
+        }
+        int dot = name.lastIndexOf('.');
+        LatencyHistogram histogram = dot < 0 ? null : histograms.get(name.substring(0, dot));
+        String suffix = name.substring(dot + 1);
+        if (histogram == null || !HISTOGRAM_SUFFIXES.contains(suffix)) {
+            return null;
+        }
+        return histogramValue(histogram.snapshot(), suffix);
+    }
+
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        writeText(sb);
+        return sb.toString();
+    }
+
+    private static List<String> histogramSuffixes() {
+        List<String> suffixes = new ArrayList<>();
+        suffixes.add("count");
+        suffixes.add("mean");
+        for (double p : REPORTED_PERCENTILES) {
+            suffixes.add(percentileSuffix(p));
+        }
+        suffixes.add("max");
+        return List.copyOf(suffixes);
+    }
+
+    static String percentileSuffix(double percentile) {
+        String digits = percentile == Math.rint(percentile)
+                ? Long.toString((long) percentile)
+                : Double.toString(percentile).replace(".", "");
+        return "p" + digits;
+    }
+
+    private static long histogramValue(LatencyHistogram.Snapshot snapshot, String suffix) {
+        switch (suffix) {
+            case "count": return snapshot.getCount();
+            case "mean": return (long) snapshot.getMean();
+            case "max": return snapshot.getMax();
+            default:
+                for (double p : REPORTED_PERCENTILES) {
+                    if (percentileSuffix(p).equals(suffix)) {
+                        return snapshot.getValueAtPercentile(p);
+                    }
+                }
+                throw new IllegalArgumentException(suffix);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+module com.udacity.catpoint.telemetry.telemetryService {
+    exports com.udacity.catpoint.telemetry.metrics;
+    exports com.udacity.catpoint.telemetry.logging;
+    exports com.udacity.catpoint.telemetry.events;
+    requires transitive java.management;
+    requires transitive jdk.jfr;
+}
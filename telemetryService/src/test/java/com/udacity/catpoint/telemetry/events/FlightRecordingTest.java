@@ -0,0 +1,111 @@
+package com.udacity.catpoint.telemetry.events;
+
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecordingTest {
+
+    private static final List<Class<? extends jdk.jfr.Event>> EVENTS = List.of(
+            AlarmTransitionEvent.class, ArmingChangeEvent.class, SensorChangeEvent.class,
+            ProcessImageEvent.class, ImageEncodeEvent.class, ImageBackendEvent.class,
+            ImageFallbackEvent.class, RepositoryPersistEvent.class);
+
+    @Test
+    public void bundledSettingsEnableEveryEvent() {
+        Map<String, String> settings = FlightRecording.catpointConfiguration().getSettings();
+
+        for (Class<? extends jdk.jfr.Event> event : EVENTS) {
+            String name = EventType.getEventType(event).getName();
+            assertEquals("true", settings.get(name + "#enabled"), name);
+            assertEquals("false", settings.get(name + "#stackTrace"), name);
+        }
+    }
+
+    @Test
+    public void continuousSettingsKeepJdkDefaults() {
+        Map<String, String> settings = FlightRecording.continuousSettings();
+
+        assertEquals("true", settings.get("jdk.GarbageCollection#enabled"));
+        assertEquals("true", settings.get("com.udacity.catpoint.SensorChange#enabled"));
+    }
+
+    @Test
+    public void eventsAreRecordedWithTheirFields() throws IOException {
+        UUID sensorId = UUID.randomUUID();
+        Path file = Files.createTempFile("catpoint", ".jfr");
+        try (Recording recording = new Recording(FlightRecording.catpointConfiguration())) {
+            //thresholds would drop these fast duration events; settings loaded by name are overridden by name
+            recording.enable("com.udacity.catpoint.ProcessImage").withoutThreshold();
+            recording.enable("com.udacity.catpoint.RepositoryPersist").withoutThreshold();
+            recording.start();
+
+            SensorChangeEvent.emit(sensorId, "Front door", true);
+            AlarmTransitionEvent.emit(Thread.State.NEW, Thread.State.RUNNABLE);
+            ProcessImageEvent.start().finish("porch", true);
+            RepositoryPersistEvent.start().finish("snapshot", "sensors", 3, false);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        Map<String, RecordedEvent> byName = events.stream()
+                .collect(Collectors.toMap(e -> e.getEventType().getName(), e -> e, (a, b) -> a));
+
+        RecordedEvent sensor = byName.get("com.udacity.catpoint.SensorChange");
+        assertEquals(sensorId.toString(), sensor.getString("sensorId"));
+        assertEquals("Front door", sensor.getString("sensorName"));
+        assertTrue(sensor.getBoolean("active"));
+        assertNull(sensor.getStackTrace());
+
+        RecordedEvent alarm = byName.get("com.udacity.catpoint.AlarmTransition");
+        assertEquals("NEW", alarm.getString("requested"));
+        assertEquals("RUNNABLE", alarm.getString("status"));
+
+        RecordedEvent image = byName.get("com.udacity.catpoint.ProcessImage");
+        assertEquals("porch", image.getString("cameraId"));
+        assertTrue(image.getBoolean("cat"));
+
+        RecordedEvent persist = byName.get("com.udacity.catpoint.RepositoryPersist");
+        assertEquals(3, persist.getInt("sensors"));
+        assertEquals("snapshot", persist.getString("repository"));
+    }
+
+    @Test
+    public void disabledEventsAreNotRecorded() throws IOException {
+        UUID sensorId = UUID.randomUUID();
+        Path file = Files.createTempFile("catpoint", ".jfr");
+        try (Recording recording = new Recording(FlightRecording.catpointConfiguration())) {
+            recording.disable("com.udacity.catpoint.SensorChange");
+            recording.start();
+
+            SensorChangeEvent.emit(sensorId, "Window", false);
+            ArmingChangeEvent.emit(Thread.State.BLOCKED);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        //a dump can hold other recordings' events from the same chunk, so look for these ones only
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("com.udacity.catpoint.ArmingChange")
+                && "BLOCKED".equals(e.getString("status"))));
+        assertFalse(events.stream().anyMatch(e -> e.getEventType().getName().equals("com.udacity.catpoint.SensorChange")
+                && sensorId.toString().equals(e.getString("sensorId"))));
+    }
+}
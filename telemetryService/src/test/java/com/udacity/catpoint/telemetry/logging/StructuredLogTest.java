@@ -0,0 +1,184 @@
+package com.udacity.catpoint.telemetry.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StructuredLogTest {
+
+    @Test
+    public void writesOneJsonLinePerEvent() {
+        StringWriter out = new StringWriter();
+        StructuredLog log = new StructuredLog(new Properties(), out);
+        EventType type = log.event("sensor.changed");
+
+        type.begin().with("sensor", "a\"b\n").with("active", true).with("count", 3L).with("ratio", 0.5).commit();
+        type.begin().with("ratio", Double.NaN).with("missing", (Object) null).commit();
+        log.close();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].matches("\\{\"ts\":\\d+,\"event\":\"sensor.changed\",.*"), lines[0]);
+        assertTrue(lines[0].endsWith(",\"sensor\":\"a\\\"b\\n\",\"active\":true,\"count\":3,\"ratio\":0.5}"), lines[0]);
+        assertTrue(lines[1].endsWith(",\"ratio\":null,\"missing\":null}"), lines[1]);
+    }
+
+    @Test
+    public void lazyValueOnlyFormattedWhenWritten() {
+        AtomicInteger formatted = new AtomicInteger();
+        LazyValue value = sb -> sb.append("labels ").append(formatted.incrementAndGet());
+
+        Properties config = new Properties();
+        config.setProperty(StructuredLog.PREFIX + "quiet.sampleRate", "0");
+        StringWriter out = new StringWriter();
+        StructuredLog log = new StructuredLog(config, out);
+
+        assertNull(log.event("quiet").begin());
+        log.event("loud").begin().with("detail", value).commit();
+        log.close();
+
+        assertEquals(1, formatted.get());
+        assertTrue(out.toString().contains("\"detail\":\"labels 1\""), out.toString());
+    }
+
+    @Test
+    public void disabledWithoutWriter() {
+        StructuredLog log = new StructuredLog(new Properties(), null);
+        EventType type = log.event("any");
+
+        assertFalse(type.isEnabled());
+        assertNull(type.begin());
+        log.close();
+    }
+
+    @Test
+    public void rateLimitSuppressesEventsOverTheLimit() {
+        Properties config = new Properties();
+        config.setProperty(StructuredLog.PREFIX + "limited.maxPerSecond", "5");
+        StringWriter out = new StringWriter();
+        StructuredLog log = new StructuredLog(config, out);
+        EventType type = log.event("limited");
+
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            LogRecord record = type.begin();
+            if (record != null) {
+                record.commit();
+                accepted++;
+            }
+        }
+        log.close();
+
+        //at most one window boundary can be crossed in the loop
+        assertTrue(accepted >= 5 && accepted <= 10, "accepted " + accepted);
+        assertEquals(accepted, out.toString().split("\n").length);
+    }
+
+    @Test
+    public void dropsInsteadOfBlockingWhenRingIsFull() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StringWriter text = new StringWriter();
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                text.write(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Properties config = new Properties();
+        config.setProperty(StructuredLog.PREFIX + "bufferSize", "2");
+        StructuredLog log = new StructuredLog(config, out);
+        EventType type = log.event("burst");
+
+        type.begin().with("n", 0L).commit();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        //the writer is stuck on the first record, which still holds its slot
+        type.begin().with("n", 1L).commit();
+        assertNull(type.begin());
+
+        release.countDown();
+        log.close();
+        String written = text.toString();
+        assertTrue(written.contains("\"n\":0") && written.contains("\"n\":1"), written);
+        assertEquals(2, written.split("\n").length);
+    }
+
+    @Test
+    public void idleWriterParksUntilTheNextCommit() throws InterruptedException {
+        Semaphore flushes = new Semaphore(0);
+        StringWriter text = new StringWriter();
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                text.write(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() {
+                flushes.release();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        StructuredLog log = new StructuredLog(new Properties(), out);
+        EventType type = log.event("quiet");
+
+        type.begin().with("n", 0L).commit();
+        assertTrue(flushes.tryAcquire(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (log.writer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        //parked without a timeout, rather than polling
+        assertEquals(Thread.State.WAITING, log.writer.getState());
+
+        type.begin().with("n", 1L).commit();
+        assertTrue(flushes.tryAcquire(5, TimeUnit.SECONDS));
+        assertTrue(text.toString().contains("\"n\":1"), text.toString());
+        log.close();
+    }
+
+    @Test
+    public void unopenableTargetFails(@TempDir Path directory) {
+        System.setProperty(StructuredLog.PREFIX + "target", directory.toString());
+        try {
+            assertThrows(UncheckedIOException.class, StructuredLog::createDefault);
+        } finally {
+            System.clearProperty(StructuredLog.PREFIX + "target");
+        }
+    }
+
+    @Test
+    public void eventTypesAreShared() {
+        StructuredLog log = new StructuredLog(new Properties(), null);
+
+        assertSame(log.event("same"), log.event("same"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.udacity.catpoint.telemetry.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundsContainTheirValues() {
+        long[] values = {0, 1, 63, 64, 65, 100, 1_000, 123_456, 10_000_000_000L, Long.MAX_VALUE / 2};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestValueAt(index) >= value, "upper bound below " + value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueAt(index - 1) < value, "lower bound above " + value);
+        }
+    }
+
+    @Test
+    public void percentilesWithinThreePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000_000, snapshot.getMax());
+        assertEquals(50_000_500, snapshot.getMean(), 1);
+        assertEquals(50_000_000, snapshot.getValueAtPercentile(50), 50_000_000 * 0.03);
+        assertEquals(99_000_000, snapshot.getValueAtPercentile(99), 99_000_000 * 0.03);
+        assertEquals(100_000_000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void registryTextExport() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test.events").add(3);
+        registry.gauge("test.level", () -> 7);
+        registry.histogram("test.latency").record(42);
+
+        String text = registry.toText();
+        assertTrue(text.contains("test.events 3\n"));
+        assertTrue(text.contains("test.level 7\n"));
+        assertTrue(text.contains("test.latency.count 1\n"));
+        assertTrue(text.contains("test.latency.p99 42\n"));
+        assertTrue(text.contains("test.latency.p999 42\n"));
+    }
+
+    @Test
+    public void singleValuesMatchTheTextExport() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test.events").add(3);
+        registry.gauge("test.level", () -> 7);
+        registry.histogram("test.latency").record(42);
+
+        for (String line : registry.toText().split("\n")) {
+            String[] parts = line.split(" ");
+            assertEquals(Long.valueOf(parts[1]), registry.getValue(parts[0]), parts[0]);
+        }
+        assertEquals(registry.toText().lines().count(), registry.getValueNames().size());
+        assertNull(registry.getValue("test.latency.p42"));
+        assertNull(registry.getValue("test.missing"));
+    }
+}